@@ -1,9 +0,0 @@
-package com.github.thomasfox.weatherdataanalyzer;
-
-public class Constants
-{
-  public static final int DEFAULT_IMAGE_WIDTH = 1000;
-
-  public static final int DEFAULT_IMAGE_HEIGHT = 600;
-
-}
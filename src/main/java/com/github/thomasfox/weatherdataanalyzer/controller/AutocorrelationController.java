@@ -1,33 +1,50 @@
 package com.github.thomasfox.weatherdataanalyzer.controller;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
-import org.apache.commons.math3.analysis.ParametricUnivariateFunction;
-import org.apache.commons.math3.fitting.AbstractCurveFitter;
-import org.apache.commons.math3.fitting.WeightedObservedPoint;
-import org.apache.commons.math3.fitting.leastsquares.LeastSquaresBuilder;
-import org.apache.commons.math3.fitting.leastsquares.LeastSquaresProblem;
-import org.apache.commons.math3.linear.DiagonalMatrix;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 import org.jfree.data.xy.DefaultXYDataset;
 import org.jfree.data.xy.XYDataset;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
 import com.github.thomasfox.weatherdataanalyzer.service.AverageService;
+import com.github.thomasfox.weatherdataanalyzer.service.ChartCacheService;
 import com.github.thomasfox.weatherdataanalyzer.service.ChartService;
+import com.github.thomasfox.weatherdataanalyzer.service.CurveFittingService;
 import com.github.thomasfox.weatherdataanalyzer.service.DateTimeService;
+import com.github.thomasfox.weatherdataanalyzer.service.ResamplingService;
+import com.github.thomasfox.weatherdataanalyzer.service.ScanService;
+import com.github.thomasfox.weatherdataanalyzer.service.SeriesService;
+import com.github.thomasfox.weatherdataanalyzer.service.SpectrumService;
 import com.github.thomasfox.weatherdataanalyzer.service.WindDataService;
+import com.github.thomasfox.weatherdataanalyzer.service.model.AutocorrelationMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartCacheKey;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartFormat;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DownsamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ExponentialFittingFunction;
+import com.github.thomasfox.weatherdataanalyzer.service.model.FitBatchResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.FitResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.FitStatistics;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ResamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanGrid;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.SeriesFormat;
 import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
 
 import lombok.AllArgsConstructor;
 
@@ -35,10 +52,20 @@ import lombok.AllArgsConstructor;
 @AllArgsConstructor
 public class AutocorrelationController
 {
-  private static final int CORRELATION_LENGTH = 300;
-
   private static final long AVERAGE_INTERVAL_MILLIS = 30L * 60L * 1000L;
 
+  private static final String AUTOCORRELATION_TITLE = "wind speed correlations";
+
+  private static final String AUTOCORRELATION_X_LABEL = "time [s]";
+
+  private static final String AUTOCORRELATION_Y_LABEL = "Correlation";
+
+  private static final String SCAN_TITLE = "parameters";
+
+  private static final String[] SCAN_VALUE_NAMES = {"longterm offset", "longterm slope", "characteristic time"};
+
+  private static final int SCAN_HEATMAP_VALUE_INDEX = 2;
+
   private final WindDataService windDataService;
 
   private final AverageService averageService;
@@ -47,17 +74,157 @@ public class AutocorrelationController
 
   private final ChartService chartService;
 
-  @RequestMapping(value = "/wind/speed/autocorrelation", produces="image/png")
-  public ResponseEntity<byte[]> displaySpeedAutocorrelation(
+  private final SpectrumService spectrumService;
+
+  private final ScanService scanService;
+
+  private final ResamplingService resamplingService;
+
+  private final CurveFittingService curveFittingService;
+
+  private final ChartCacheService chartCacheService;
+
+  private final SeriesService seriesService;
+
+  private final ExponentialFittingFunction fittingFunction = new ExponentialFittingFunction();
+
+  @RequestMapping(value = "/wind/speed/autocorrelation", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displaySpeedAutocorrelation(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "speedFrom", required = false) Double speedFrom,
+          @RequestParam(value = "speedTo", required = false) Double speedTo,
+          @RequestParam(value = "directionFrom", required = false) Double directionFrom,
+          @RequestParam(value = "directionTo", required = false) Double directionTo,
+          @RequestParam(value = "mode", defaultValue = "LEGACY") AutocorrelationMode mode,
+          @RequestParam(value = "correlationLength", defaultValue = "300") int correlationLength,
+          @RequestParam(value = "maxGapSeconds", defaultValue = "0") int maxGapSeconds,
+          @RequestParam(value = "maxPoints", defaultValue = "1000") int maxPoints,
+          @RequestParam(value = "downsampling", defaultValue = "LTTB") DownsamplingMode downsampling,
+          @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return chartCacheService.getChart(
+        ChartCacheKey.forBuckets(
+            "/wind/speed/autocorrelation",
+            from,
+            to,
+            AVERAGE_INTERVAL_MILLIS,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo,
+            mode,
+            correlationLength,
+            maxGapSeconds,
+            maxPoints,
+            downsampling,
+            format),
+        ifNoneMatch,
+        () ->
+    {
+      JFreeChart chart = createSpeedAutocorrelationChart(
+          from,
+          to,
+          speedFrom,
+          speedTo,
+          directionFrom,
+          directionTo,
+          mode,
+          correlationLength,
+          maxGapSeconds,
+          maxPoints,
+          downsampling,
+          fitStatistics -> {});
+      return chartService.createReponseEntityFromChart(chart, format);
+    });
+  }
+
+  @RequestMapping(value = "/wind/speed/autocorrelation/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displaySpeedAutocorrelationSeries(
           @RequestParam("from") String fromString,
           @RequestParam("to") String toString,
           @RequestParam(value = "speedFrom", required = false) Double speedFrom,
           @RequestParam(value = "speedTo", required = false) Double speedTo,
           @RequestParam(value = "directionFrom", required = false) Double directionFrom,
-          @RequestParam(value = "directionTo", required = false) Double directionTo)
+          @RequestParam(value = "directionTo", required = false) Double directionTo,
+          @RequestParam(value = "mode", defaultValue = "LEGACY") AutocorrelationMode mode,
+          @RequestParam(value = "correlationLength", defaultValue = "300") int correlationLength,
+          @RequestParam(value = "maxGapSeconds", defaultValue = "0") int maxGapSeconds,
+          @RequestParam(value = "maxPoints", defaultValue = "1000") int maxPoints,
+          @RequestParam(value = "downsampling", defaultValue = "LTTB") DownsamplingMode downsampling,
+          @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
   {
     Date from = dateTimeService.parse(fromString);
     Date to = dateTimeService.parse(toString);
+    List<FitStatistics> fitStatistics = new ArrayList<>(1);
+    return seriesService.getXYSeries(
+        () -> createSpeedAutocorrelationDataset(
+            from,
+            to,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo,
+            mode,
+            correlationLength,
+            maxGapSeconds,
+            maxPoints,
+            downsampling,
+            fitStatistics::add),
+        AUTOCORRELATION_TITLE,
+        AUTOCORRELATION_X_LABEL,
+        AUTOCORRELATION_Y_LABEL,
+        format)
+        .thenApply(response -> addFitStatistics(response, fitStatistics));
+  }
+
+  private JFreeChart createSpeedAutocorrelationChart(
+      Date from,
+      Date to,
+      Double speedFrom,
+      Double speedTo,
+      Double directionFrom,
+      Double directionTo,
+      AutocorrelationMode mode,
+      int correlationLength,
+      int maxGapSeconds,
+      int maxPoints,
+      DownsamplingMode downsampling,
+      Consumer<FitStatistics> fitStatisticsConsumer)
+  {
+    XYDataset dataset = createSpeedAutocorrelationDataset(
+        from,
+        to,
+        speedFrom,
+        speedTo,
+        directionFrom,
+        directionTo,
+        mode,
+        correlationLength,
+        maxGapSeconds,
+        maxPoints,
+        downsampling,
+        fitStatisticsConsumer);
+    return createChartFromData(dataset, AUTOCORRELATION_TITLE, AUTOCORRELATION_X_LABEL, AUTOCORRELATION_Y_LABEL);
+  }
+
+  private XYDataset createSpeedAutocorrelationDataset(
+      Date from,
+      Date to,
+      Double speedFrom,
+      Double speedTo,
+      Double directionFrom,
+      Double directionTo,
+      AutocorrelationMode mode,
+      int correlationLength,
+      int maxGapSeconds,
+      int maxPoints,
+      DownsamplingMode downsampling,
+      Consumer<FitStatistics> fitStatisticsConsumer)
+  {
     List<TimeRangeWithData> dataIntervals;
     if (speedFrom != null || speedTo != null || directionFrom != null || directionTo != null)
     {
@@ -69,17 +236,35 @@ public class AutocorrelationController
           directionFrom,
           directionTo,
           AVERAGE_INTERVAL_MILLIS,
-          Wind::getSpeedTimeData);
+          WindQuantity.SPEED);
     }
     else
     {
-      dataIntervals = windDataService.getDataForTimeRangeInList(from, to, Wind::getSpeedTimeData);
+      dataIntervals = windDataService.getDataForTimeRangeInList(from, to, WindQuantity.SPEED);
     }
-
-    double[] correlationOutput = calculateSpeedCorrelations(dataIntervals);
-    double[] fitParameters = calculateFitParameters(correlationOutput);
+    dataIntervals = resamplingService.splitAtGaps(
+        dataIntervals,
+        ResamplingService.SECOND_MILLIS,
+        maxGapSeconds * 1000L);
+
+    double[] correlationOutput
+        = calculateCorrelations(dataIntervals, WindQuantity.SPEED, mode, correlationLength);
+    FitResult fit = curveFittingService.fit(
+        correlationOutput,
+        createFitKey(
+            WindQuantity.SPEED,
+            mode,
+            correlationLength,
+            maxGapSeconds,
+            from,
+            to,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo));
+    double[] fitParameters = fit.getParameters();
     double[] fitResult = createFittedValues(fitParameters, correlationOutput.length);
-    double characteristicTime = new ExponentialFittingFunction().calculateCharacteristicTime(fitParameters);
+    double characteristicTime = fittingFunction.calculateCharacteristicTime(fitParameters);
 
     double[] linearValues1 = createLinearValues(
         fitParameters[0],
@@ -90,69 +275,254 @@ public class AutocorrelationController
         fitParameters[1] + fitParameters[2] * fitParameters[3],
         (int) characteristicTime);
 
-    XYDataset dataset = getResultDataset(correlationOutput, fitResult, linearValues1, linearValues2);
-    JFreeChart chart = createChartFromData(dataset, "wind speed correlations", "time [s]", "Correlation");
-    return chartService.createReponseEntityFromChart(chart);
+    fitStatisticsConsumer.accept(FitStatistics.of(fit));
+    return getResultDataset(
+        maxPoints,
+        downsampling,
+        correlationOutput,
+        fitResult,
+        linearValues1,
+        linearValues2);
+  }
+
+  @RequestMapping(value = "/wind/speed/autocorrelation/scan/direction", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displaySpeedAutocorrelationScanDirection(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "speedFrom", required = false) Double speedFrom,
+          @RequestParam(value = "speedTo", required = false) Double speedTo,
+          @RequestParam(value = "mode", defaultValue = "LEGACY") AutocorrelationMode mode,
+          @RequestParam(value = "correlationLength", defaultValue = "300") int correlationLength,
+          @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    return displaySpeedAutocorrelationScan(
+        fromString,
+        toString,
+        speedFrom,
+        speedTo,
+        null,
+        20d,
+        mode,
+        correlationLength,
+        format,
+        ifNoneMatch);
   }
 
-  @RequestMapping(value = "/wind/speed/autocorrelation/scan/direction", produces="image/png")
-  public ResponseEntity<byte[]> displaySpeedAutocorrelationScanDirection(
+  /**
+   * Displays the parameters of the fitted autocorrelation for each cell of a grid of speed bands
+   * and direction sectors, as line chart if the grid has one dimension
+   * and as heatmap of the characteristic time otherwise.
+   */
+  @RequestMapping(value = "/wind/speed/autocorrelation/scan", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displaySpeedAutocorrelationScan(
           @RequestParam("from") String fromString,
           @RequestParam("to") String toString,
           @RequestParam(value = "speedFrom", required = false) Double speedFrom,
-          @RequestParam(value = "speedTo", required = false) Double speedTo)
+          @RequestParam(value = "speedTo", required = false) Double speedTo,
+          @RequestParam(value = "speedStep", required = false) Double speedStep,
+          @RequestParam(value = "directionStep", required = false) Double directionStep,
+          @RequestParam(value = "mode", defaultValue = "LEGACY") AutocorrelationMode mode,
+          @RequestParam(value = "correlationLength", defaultValue = "300") int correlationLength,
+          @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
   {
     Date from = dateTimeService.parse(fromString);
     Date to = dateTimeService.parse(toString);
-    List<TimeRangeWithData> dataIntervals;
-    double[] longtermSlopes = new double[18];
-    double[] longtermOffsets = new double[18];
-    double[] characteristicTimes = new double[18];
-    ExponentialFittingFunction fittingFunction = new ExponentialFittingFunction();
-    for (int i = 0; i < 18; i++)
+    return chartCacheService.getChart(
+        ChartCacheKey.forBuckets(
+            "/wind/speed/autocorrelation/scan",
+            from,
+            to,
+            AVERAGE_INTERVAL_MILLIS,
+            speedFrom,
+            speedTo,
+            speedStep,
+            directionStep,
+            mode,
+            correlationLength,
+            format),
+        ifNoneMatch,
+        () ->
     {
-      double direction = i * 20;
-      dataIntervals = windDataService.getWithSpeedAndDirectionIn(
+      ScanResult result = createSpeedAutocorrelationScan(
           from,
           to,
-          speedFrom,
-          speedTo,
-          direction,
-          direction + 20,
-          AVERAGE_INTERVAL_MILLIS,
-          Wind::getSpeedTimeData);
+          new ScanGrid(speedFrom, speedTo, speedStep, directionStep),
+          mode,
+          correlationLength,
+          fitStatistics -> {});
+      JFreeChart chart = chartService.createScanChart(result, SCAN_TITLE, SCAN_VALUE_NAMES, SCAN_HEATMAP_VALUE_INDEX);
+      return chartService.createReponseEntityFromChart(chart, format);
+    });
+  }
+
+  @RequestMapping(value = "/wind/speed/autocorrelation/scan/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displaySpeedAutocorrelationScanSeries(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "speedFrom", required = false) Double speedFrom,
+          @RequestParam(value = "speedTo", required = false) Double speedTo,
+          @RequestParam(value = "speedStep", required = false) Double speedStep,
+          @RequestParam(value = "directionStep", required = false) Double directionStep,
+          @RequestParam(value = "mode", defaultValue = "LEGACY") AutocorrelationMode mode,
+          @RequestParam(value = "correlationLength", defaultValue = "300") int correlationLength,
+          @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    ScanGrid grid = new ScanGrid(speedFrom, speedTo, speedStep, directionStep);
+    List<FitStatistics> fitStatistics = new ArrayList<>(1);
+    return seriesService.getXYSeries(
+        () -> chartService.createScanDataset(
+            createSpeedAutocorrelationScan(from, to, grid, mode, correlationLength, fitStatistics::add),
+            SCAN_VALUE_NAMES,
+            SCAN_HEATMAP_VALUE_INDEX),
+        SCAN_TITLE,
+        chartService.getScanXLabel(grid),
+        chartService.getScanYLabel(grid),
+        format)
+        .thenApply(response -> addFitStatistics(response, fitStatistics));
+  }
 
-      double[] correlationOutput = calculateSpeedCorrelations(dataIntervals);
-      if (correlationOutput[0] != 0d)
+  private ScanResult createSpeedAutocorrelationScan(
+      Date from,
+      Date to,
+      ScanGrid grid,
+      AutocorrelationMode mode,
+      int correlationLength,
+      Consumer<FitStatistics> fitStatisticsConsumer)
+  {
+    ScanResult correlations = scanService.scan(
+        from,
+        to,
+        AVERAGE_INTERVAL_MILLIS,
+        grid,
+        WindQuantity.SPEED,
+        dataIntervals -> calculateCorrelations(dataIntervals, WindQuantity.SPEED, mode, correlationLength));
+
+    // cells are ordered by direction within each speed band, so neighbouring fits are similar
+    List<double[]> curves = new ArrayList<>();
+    List<Object> keys = new ArrayList<>();
+    for (int cell = 0; cell < grid.getCellCount(); cell++)
+    {
+      double[] correlationOutput = correlations.getValues()[cell];
+      curves.add(correlationOutput == null || correlationOutput[0] == 0d ? null : correlationOutput);
+      keys.add(createFitKey(
+          WindQuantity.SPEED,
+          mode,
+          correlationLength,
+          from,
+          to,
+          grid.getSpeedStep(),
+          grid.getDirectionStep(),
+          grid.getCellSpeedFrom(cell),
+          grid.getCellDirectionFrom(cell)));
+    }
+    FitBatchResult fits = curveFittingService.fitAll(curves, keys);
+    double[][] parameters = new double[grid.getCellCount()][];
+    for (int cell = 0; cell < grid.getCellCount(); cell++)
+    {
+      FitResult fit = fits.getResults().get(cell);
+      if (fit != null)
       {
-        double[] fitParameters = calculateFitParameters(correlationOutput);
-        longtermOffsets[i] = fitParameters[0] * 100;
-        longtermSlopes[i] = -fitParameters[1] * 100000;
-        characteristicTimes[i] = fittingFunction.calculateCharacteristicTime(fitParameters);
+        parameters[cell] = new double[] {
+            fit.getParameters()[0] * 100,
+            -fit.getParameters()[1] * 100000,
+            fittingFunction.calculateCharacteristicTime(fit.getParameters())};
+      }
+      else if (correlations.hasValues(cell))
+      {
+        parameters[cell] = new double[3];
       }
     }
+    fitStatisticsConsumer.accept(fits.getStatistics());
+    return new ScanResult(grid, parameters, correlations.getIntervalCounts());
+  }
 
-    final DefaultXYDataset dataset = new DefaultXYDataset();
-    addToDataset(dataset, longtermOffsets, longtermSlopes, characteristicTimes);
+  private double[] calculateCorrelations(
+      List<TimeRangeWithData> dataIntervals,
+      WindQuantity quantity,
+      AutocorrelationMode mode,
+      int correlationLength)
+  {
+    if (correlationLength < 1)
+    {
+      throw new IllegalArgumentException("correlationLength must be positive but is " + correlationLength);
+    }
+    if (mode == AutocorrelationMode.PEARSON)
+    {
+      return calculatePearsonCorrelations(dataIntervals, quantity, correlationLength);
+    }
+    if (quantity == WindQuantity.DIRECTION)
+    {
+      return calculateDirectionCorrelation(dataIntervals, correlationLength);
+    }
+    return calculateSpeedCorrelations(dataIntervals, correlationLength);
+  }
 
-    JFreeChart chart = createChartFromData(dataset, "parameters", "direction", "value");
-    return chartService.createReponseEntityFromChart(chart);
+  /**
+   * Calculates the Pearson autocorrelation of each interval from its power spectrum
+   * and averages the results for each time difference over all intervals which are long enough.
+   * Intervals which are too long for one transform are split into segments which are averaged.
+   * Directions are correlated as unit vectors.
+   */
+  private double[] calculatePearsonCorrelations(
+      List<TimeRangeWithData> dataIntervals,
+      WindQuantity quantity,
+      int correlationLength)
+  {
+    double[] correlationOutput = createArrayFilledWithZeros(correlationLength);
+    int[] intervalCounts = new int[correlationLength];
+    for (TimeRangeWithData dataInterval : spectrumService.splitIntoSegments(dataIntervals))
+    {
+      double[] intervalCorrelations = spectrumService.getSpectrum(
+              dataInterval,
+              quantity,
+              quantity == WindQuantity.DIRECTION)
+          .getAutocorrelation(correlationLength - 1);
+      if (intervalCorrelations.length == 0 || intervalCorrelations[0] == 0d)
+      {
+        // constant data has no defined correlation
+        continue;
+      }
+      for (int timeDifference = 0; timeDifference < intervalCorrelations.length; timeDifference++)
+      {
+        correlationOutput[timeDifference] += intervalCorrelations[timeDifference];
+        intervalCounts[timeDifference]++;
+      }
+    }
+    for (int timeDifference = 0; timeDifference < correlationLength; timeDifference++)
+    {
+      if (intervalCounts[timeDifference] > 0)
+      {
+        correlationOutput[timeDifference] /= intervalCounts[timeDifference];
+      }
+    }
+    return correlationOutput;
   }
 
-  private double[] calculateSpeedCorrelations(List<TimeRangeWithData> dataIntervals)
+  private double[] calculateSpeedCorrelations(List<TimeRangeWithData> dataIntervals, int correlationLength)
   {
-    double[] correlationOutput = createArrayFilledWithZeros();
+    double[] correlationOutput = createArrayFilledWithZeros(correlationLength);
 
+    double[] correlationInput = createResamplingBuffer(dataIntervals);
     for (TimeRangeWithData dataInterval : dataIntervals)
     {
-      double[] correlationInput = windDataService.fillArrayWithDataForEachSecond(
-          dataInterval,
-          (int) (dataInterval.getRange().getDurationMillis() / 1000) + 1);
-
-      for (int timeDifference = 0; timeDifference < CORRELATION_LENGTH; timeDifference++)
+      int sampleCount = resamplingService.getSampleCount(dataInterval, ResamplingService.SECOND_MILLIS);
+      resamplingService.resample(
+          dataInterval.getData(),
+          dataInterval.getRange().getStart(),
+          ResamplingService.SECOND_MILLIS,
+          ResamplingMode.HOLD,
+          correlationInput,
+          0,
+          sampleCount);
+
+      for (int timeDifference = 0; timeDifference < correlationLength; timeDifference++)
       {
         double corelationForTimeDifference = 0d;
-        for (int i = 0; i < correlationInput.length - timeDifference; i++)
+        for (int i = 0; i < sampleCount - timeDifference; i++)
         {
           double value = correlationInput[i];
           double otherValue = correlationInput[i + timeDifference];
@@ -161,12 +531,12 @@ public class AutocorrelationController
           {
             double correlation
                 = value * otherValue
-                    / (maxValue * maxValue * (correlationInput.length - timeDifference) * dataIntervals.size());
+                    / (maxValue * maxValue * (sampleCount - timeDifference) * dataIntervals.size());
             corelationForTimeDifference += correlation;
           }
           else
           {
-            corelationForTimeDifference += 1d / ((correlationInput.length - timeDifference) * dataIntervals.size());
+            corelationForTimeDifference += 1d / ((sampleCount - timeDifference) * dataIntervals.size());
           }
         }
         correlationOutput[timeDifference] += corelationForTimeDifference;
@@ -175,17 +545,143 @@ public class AutocorrelationController
     return correlationOutput;
   }
 
-  @RequestMapping(value = "/wind/direction/autocorrelation", produces="image/png")
-  public ResponseEntity<byte[]> displayDirectionAutocorrelation(
+  @RequestMapping(value = "/wind/direction/autocorrelation", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displayDirectionAutocorrelation(
           @RequestParam("from") String fromString,
           @RequestParam("to") String toString,
           @RequestParam(value = "speedFrom", required = false) Double speedFrom,
           @RequestParam(value = "speedTo", required = false) Double speedTo,
           @RequestParam(value = "directionFrom", required = false) Double directionFrom,
-          @RequestParam(value = "directionTo", required = false) Double directionTo)
+          @RequestParam(value = "directionTo", required = false) Double directionTo,
+          @RequestParam(value = "mode", defaultValue = "LEGACY") AutocorrelationMode mode,
+          @RequestParam(value = "correlationLength", defaultValue = "300") int correlationLength,
+          @RequestParam(value = "maxGapSeconds", defaultValue = "0") int maxGapSeconds,
+          @RequestParam(value = "maxPoints", defaultValue = "1000") int maxPoints,
+          @RequestParam(value = "downsampling", defaultValue = "LTTB") DownsamplingMode downsampling,
+          @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
   {
     Date from = dateTimeService.parse(fromString);
     Date to = dateTimeService.parse(toString);
+    return chartCacheService.getChart(
+        ChartCacheKey.forBuckets(
+            "/wind/direction/autocorrelation",
+            from,
+            to,
+            AVERAGE_INTERVAL_MILLIS,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo,
+            mode,
+            correlationLength,
+            maxGapSeconds,
+            maxPoints,
+            downsampling,
+            format),
+        ifNoneMatch,
+        () ->
+    {
+      JFreeChart chart = createDirectionAutocorrelationChart(
+          from,
+          to,
+          speedFrom,
+          speedTo,
+          directionFrom,
+          directionTo,
+          mode,
+          correlationLength,
+          maxGapSeconds,
+          maxPoints,
+          downsampling,
+          fitStatistics -> {});
+      return chartService.createReponseEntityFromChart(chart, format);
+    });
+  }
+
+  @RequestMapping(value = "/wind/direction/autocorrelation/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displayDirectionAutocorrelationSeries(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "speedFrom", required = false) Double speedFrom,
+          @RequestParam(value = "speedTo", required = false) Double speedTo,
+          @RequestParam(value = "directionFrom", required = false) Double directionFrom,
+          @RequestParam(value = "directionTo", required = false) Double directionTo,
+          @RequestParam(value = "mode", defaultValue = "LEGACY") AutocorrelationMode mode,
+          @RequestParam(value = "correlationLength", defaultValue = "300") int correlationLength,
+          @RequestParam(value = "maxGapSeconds", defaultValue = "0") int maxGapSeconds,
+          @RequestParam(value = "maxPoints", defaultValue = "1000") int maxPoints,
+          @RequestParam(value = "downsampling", defaultValue = "LTTB") DownsamplingMode downsampling,
+          @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    List<FitStatistics> fitStatistics = new ArrayList<>(1);
+    return seriesService.getXYSeries(
+        () -> createDirectionAutocorrelationDataset(
+            from,
+            to,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo,
+            mode,
+            correlationLength,
+            maxGapSeconds,
+            maxPoints,
+            downsampling,
+            fitStatistics::add),
+        AUTOCORRELATION_TITLE,
+        AUTOCORRELATION_X_LABEL,
+        AUTOCORRELATION_Y_LABEL,
+        format)
+        .thenApply(response -> addFitStatistics(response, fitStatistics));
+  }
+
+  private JFreeChart createDirectionAutocorrelationChart(
+      Date from,
+      Date to,
+      Double speedFrom,
+      Double speedTo,
+      Double directionFrom,
+      Double directionTo,
+      AutocorrelationMode mode,
+      int correlationLength,
+      int maxGapSeconds,
+      int maxPoints,
+      DownsamplingMode downsampling,
+      Consumer<FitStatistics> fitStatisticsConsumer)
+  {
+    XYDataset dataset = createDirectionAutocorrelationDataset(
+        from,
+        to,
+        speedFrom,
+        speedTo,
+        directionFrom,
+        directionTo,
+        mode,
+        correlationLength,
+        maxGapSeconds,
+        maxPoints,
+        downsampling,
+        fitStatisticsConsumer);
+    return createChartFromData(dataset, AUTOCORRELATION_TITLE, AUTOCORRELATION_X_LABEL, AUTOCORRELATION_Y_LABEL);
+  }
+
+  private XYDataset createDirectionAutocorrelationDataset(
+      Date from,
+      Date to,
+      Double speedFrom,
+      Double speedTo,
+      Double directionFrom,
+      Double directionTo,
+      AutocorrelationMode mode,
+      int correlationLength,
+      int maxGapSeconds,
+      int maxPoints,
+      DownsamplingMode downsampling,
+      Consumer<FitStatistics> fitStatisticsConsumer)
+  {
     List<TimeRangeWithData> dataIntervals;
     if (speedFrom != null || speedTo != null || directionFrom != null || directionTo != null)
     {
@@ -197,39 +693,70 @@ public class AutocorrelationController
           directionFrom,
           directionTo,
           AVERAGE_INTERVAL_MILLIS,
-          Wind::getDirectionTimeData);
+          WindQuantity.DIRECTION);
     }
     else
     {
-      dataIntervals = windDataService.getDataForTimeRangeInList(from, to, Wind::getDirectionTimeData);
+      dataIntervals = windDataService.getDataForTimeRangeInList(from, to, WindQuantity.DIRECTION);
     }
-
-    double[] correlationOutput = calculateDirectionCorrelation(dataIntervals);
-    double[] fitParameters = calculateFitParameters(correlationOutput);
+    dataIntervals = resamplingService.splitAtGaps(
+        dataIntervals,
+        ResamplingService.SECOND_MILLIS,
+        maxGapSeconds * 1000L);
+
+    double[] correlationOutput
+        = calculateCorrelations(dataIntervals, WindQuantity.DIRECTION, mode, correlationLength);
+    FitResult fit = curveFittingService.fit(
+        correlationOutput,
+        createFitKey(
+            WindQuantity.DIRECTION,
+            mode,
+            correlationLength,
+            maxGapSeconds,
+            from,
+            to,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo));
+    double[] fitParameters = fit.getParameters();
     double[] fitResult = createFittedValues(fitParameters, correlationOutput.length);
     double[] linearValues1 = createLinearValues(fitParameters[0], fitParameters[1], correlationOutput.length);
     double[] linearValues2 = createLinearValues(1d, fitParameters[1] + fitParameters[2] * fitParameters[3], 50);
 
-    XYDataset dataset = getResultDataset(correlationOutput, fitResult, linearValues1, linearValues2);
-    JFreeChart chart = createChartFromData(dataset, "wind speed correlations", "time [s]", "Correlation");
-    return chartService.createReponseEntityFromChart(chart);
+    fitStatisticsConsumer.accept(FitStatistics.of(fit));
+    return getResultDataset(
+        maxPoints,
+        downsampling,
+        correlationOutput,
+        fitResult,
+        linearValues1,
+        linearValues2);
   }
 
   private double[] calculateDirectionCorrelation(
-      List<TimeRangeWithData> dataIntervals)
+      List<TimeRangeWithData> dataIntervals,
+      int correlationLength)
   {
-    double[] correlationOutput = createArrayFilledWithZeros();
+    double[] correlationOutput = createArrayFilledWithZeros(correlationLength);
 
+    double[] correlationInput = createResamplingBuffer(dataIntervals);
     for (TimeRangeWithData dataInterval : dataIntervals)
     {
-      double[] correlationInput = windDataService.fillArrayWithDataForEachSecond(
-          dataInterval,
-          (int) (dataInterval.getRange().getDurationMillis() / 1000) + 1);
-
-      for (int timeDifference = 0; timeDifference < CORRELATION_LENGTH; timeDifference++)
+      int sampleCount = resamplingService.getSampleCount(dataInterval, ResamplingService.SECOND_MILLIS);
+      resamplingService.resample(
+          dataInterval.getData(),
+          dataInterval.getRange().getStart(),
+          ResamplingService.SECOND_MILLIS,
+          ResamplingMode.HOLD,
+          correlationInput,
+          0,
+          sampleCount);
+
+      for (int timeDifference = 0; timeDifference < correlationLength; timeDifference++)
       {
         double corelationForTimeDifference = 0d;
-        for (int i = 0; i < correlationInput.length - timeDifference; i++)
+        for (int i = 0; i < sampleCount - timeDifference; i++)
         {
           double value = correlationInput[i];
           double otherValue = correlationInput[i + timeDifference];
@@ -239,7 +766,7 @@ public class AutocorrelationController
             difference = 360 - difference;
           }
           double correlation = (90d - difference)
-              / (90d * (correlationInput.length - timeDifference) * dataIntervals.size());
+              / (90d * (sampleCount - timeDifference) * dataIntervals.size());
           corelationForTimeDifference += correlation;
         }
         correlationOutput[timeDifference] += corelationForTimeDifference;
@@ -249,34 +776,63 @@ public class AutocorrelationController
   }
 
 
-  private double[] createArrayFilledWithZeros()
+  /**
+   * Creates an array which can hold the resampled data of each interval.
+   */
+  private double[] createResamplingBuffer(List<TimeRangeWithData> dataIntervals)
   {
-    double[] correlationOutput = new double[CORRELATION_LENGTH];
-    for (int i = 0; i < CORRELATION_LENGTH; i++)
+    int maxSampleCount = 0;
+    for (TimeRangeWithData dataInterval : dataIntervals)
+    {
+      maxSampleCount = Math.max(
+          maxSampleCount,
+          resamplingService.getSampleCount(dataInterval, ResamplingService.SECOND_MILLIS));
+    }
+    return new double[maxSampleCount];
+  }
+
+  private double[] createArrayFilledWithZeros(int correlationLength)
+  {
+    double[] correlationOutput = new double[correlationLength];
+    for (int i = 0; i < correlationLength; i++)
     {
       correlationOutput[i] = 0;
     }
     return correlationOutput;
   }
 
-  XYDataset getResultDataset(double[] rawResult, double[]... fittedResults)
+  /**
+   * Creates the dataset of the calculated correlations and the fitted curves.
+   * Each series is reduced to at most <code>maxPoints</code> points.
+   */
+  XYDataset getResultDataset(
+      int maxPoints,
+      DownsamplingMode downsampling,
+      double[] rawResult,
+      double[]... fittedResults)
   {
     double[][] rawResultdatasetData = chartService.convertToDatasetData(rawResult);
     rawResultdatasetData = averageService.averageChartDataLogarithmically(rawResultdatasetData, 1.05d, 5);
     final DefaultXYDataset dataset = new DefaultXYDataset();
-    dataset.addSeries("timeCorrelation", rawResultdatasetData);
+    dataset.addSeries(
+        "timeCorrelation",
+        averageService.downsample(rawResultdatasetData, maxPoints, downsampling));
 
-    addToDataset(dataset, fittedResults);
+    addToDataset(dataset, maxPoints, downsampling, fittedResults);
     return dataset;
   }
 
-  private void addToDataset(final DefaultXYDataset dataset, double[]... valuesCollection)
+  private void addToDataset(
+      final DefaultXYDataset dataset,
+      int maxPoints,
+      DownsamplingMode downsampling,
+      double[]... valuesCollection)
   {
     int i = 0;
     for (double[] values : valuesCollection)
     {
       double[][] fittedResultdatasetData = chartService.convertToDatasetData(values);
-      dataset.addSeries("dataset " + i, fittedResultdatasetData);
+      dataset.addSeries("dataset " + i, averageService.downsample(fittedResultdatasetData, maxPoints, downsampling));
       i++;
     }
   }
@@ -300,22 +856,9 @@ public class AutocorrelationController
     return lineChart;
   }
 
-  private double[] calculateFitParameters(double[] correlationOutput)
-  {
-    Collection<WeightedObservedPoint> observations = new ArrayList<>();
-    for (int i = 0; i < correlationOutput.length; ++i)
-    {
-      observations.add(new WeightedObservedPoint(1d, i, correlationOutput[i]));
-    }
-    CurveFitter curveFitter = new CurveFitter();
-    double[] parameters = curveFitter.fit(observations);
-    return parameters;
-  }
-
   private double[] createFittedValues(double[] fitParameters, int datasetLength)
   {
     double[] fittedValues = new double[datasetLength];
-    ExponentialFittingFunction fittingFunction = new ExponentialFittingFunction();
     for (int i = 0; i < datasetLength; ++i)
     {
       fittedValues[i] = fittingFunction.value(i, fitParameters);
@@ -333,62 +876,40 @@ public class AutocorrelationController
     return result;
   }
 
-  static class CurveFitter extends AbstractCurveFitter
+  /**
+   * Creates the key under which a fit result is remembered as start point for later fits of the same curve.
+   * The key contains all parameters which determine the curve, i.e. the time range and the filter,
+   * so that fits of other data do not start from it.
+   *
+   * @param parameters the parameters which determine the curve, may contain null values.
+   */
+  private List<Object> createFitKey(Object... parameters)
   {
-    @Override
-    protected LeastSquaresProblem getProblem(Collection<WeightedObservedPoint> observations)
-    {
-
-      final int len = observations.size();
-      final double[] target = new double[len];
-      final double[] weights = new double[len];
-
-      int i = 0;
-      for (WeightedObservedPoint obs : observations)
-      {
-        target[i] = obs.getY();
-        weights[i] = obs.getWeight();
-        ++i;
-      }
-
-      final AbstractCurveFitter.TheoreticalValuesFunction model
-          = new AbstractCurveFitter.TheoreticalValuesFunction(new ExponentialFittingFunction(), observations);
-
-      final double[] startPoint = new double[] { 0.8d, 0d , -0.05d, 0.5d};
-
-      return new LeastSquaresBuilder()
-          .maxEvaluations(Integer.MAX_VALUE)
-          .maxIterations(1000)
-          .start(startPoint)
-          .target(target)
-          .weight(new DiagonalMatrix(weights))
-          .model(model.getModelFunction(), model.getModelFunctionJacobian())
-          .build();
-    }
+    return Arrays.asList(parameters);
   }
 
-  static class ExponentialFittingFunction implements ParametricUnivariateFunction
+  /**
+   * Adds the convergence statistics of the curve fits to the response headers.
+   * The statistics describe the fits of one computation, so they are only added to the uncached series responses.
+   *
+   * @param statistics the statistics of the fits, empty if the computation did not run.
+   */
+  private ResponseEntity<StreamingResponseBody> addFitStatistics(
+      ResponseEntity<StreamingResponseBody> response,
+      List<FitStatistics> statistics)
   {
-    @Override
-    public double[] gradient(double x, double... parameters)
-    {
-      return new double[] { 1, x , parameters[3] * x * Math.exp(x * parameters[2]), Math.exp(x * parameters[2])};
-    }
-
-    @Override
-    public double value(double x, double... parameters)
-    {
-      return parameters[0] + parameters[1] * x + parameters[3] * Math.exp(x * parameters[2]);
-    }
-
-    public double calculateCharacteristicTime(double... parameters)
+    if (statistics.isEmpty())
     {
-      double longtermOffset = parameters[0];
-      double longtermSlope = parameters[1];
-      double shorttermSlope = parameters[1] + parameters[2] * parameters[3];
-      double shorttermOffset = parameters[0] + parameters[3];
-      double characteristicTime = (shorttermOffset - longtermOffset) / (longtermSlope - shorttermSlope);
-      return characteristicTime;
+      return response;
     }
+    FitStatistics fitStatistics = statistics.get(0);
+    return ResponseEntity.status(response.getStatusCode())
+        .headers(response.getHeaders())
+        .header("X-Fit-Count", Integer.toString(fitStatistics.getFits()))
+        .header("X-Fit-Converged", Integer.toString(fitStatistics.getConverged()))
+        .header("X-Fit-Warm-Started", Integer.toString(fitStatistics.getWarmStarted()))
+        .header("X-Fit-Evaluations", Long.toString(fitStatistics.getEvaluations()))
+        .header("X-Fit-Millis", Long.toString(fitStatistics.getElapsedMillis()))
+        .body(response.getBody());
   }
 }
@@ -1,13 +1,10 @@
 package com.github.thomasfox.weatherdataanalyzer.controller;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.LogarithmicAxis;
 import org.jfree.chart.plot.XYPlot;
@@ -15,17 +12,32 @@ import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 import org.jfree.data.Range;
 import org.jfree.data.xy.DefaultXYDataset;
 import org.jfree.data.xy.XYDataset;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
 import com.github.thomasfox.weatherdataanalyzer.service.AverageService;
+import com.github.thomasfox.weatherdataanalyzer.service.ChartCacheService;
 import com.github.thomasfox.weatherdataanalyzer.service.ChartService;
 import com.github.thomasfox.weatherdataanalyzer.service.DateTimeService;
+import com.github.thomasfox.weatherdataanalyzer.service.SeriesService;
+import com.github.thomasfox.weatherdataanalyzer.service.SpectrogramService;
+import com.github.thomasfox.weatherdataanalyzer.service.WelchService;
 import com.github.thomasfox.weatherdataanalyzer.service.WindDataService;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartCacheKey;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartFormat;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DownsamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.FftWindow;
+import com.github.thomasfox.weatherdataanalyzer.service.model.PowerSpectralDensity;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ResamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.SeriesFormat;
+import com.github.thomasfox.weatherdataanalyzer.service.model.Spectrogram;
 import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
 
 import lombok.AllArgsConstructor;
 
@@ -37,6 +49,10 @@ public class FftController
 
   private static final double FFT_FRACTION_TO_DISPLAY = 0.2d;
 
+  private static final String FREQUENCY_AXIS_LABEL = "Frequency [1/s]";
+
+  private static final String DENSITY_AXIS_LABEL = "Power spectral density [1/Hz]";
+
   private final WindDataService windDataService;
 
   private final AverageService averageService;
@@ -45,62 +61,291 @@ public class FftController
 
   private final ChartService chartService;
 
-  @RequestMapping(value = "/wind/speed/fft", produces="image/png")
-  public ResponseEntity<byte[]> displaySpeedFft(
+  private final WelchService welchService;
+
+  private final SpectrogramService spectrogramService;
+
+  private final ChartCacheService chartCacheService;
+
+  private final SeriesService seriesService;
+
+  @RequestMapping(value = "/wind/speed/fft", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displaySpeedFft(
           @RequestParam("from") String fromString,
           @RequestParam("to") String toString,
           @RequestParam(value = "speedFrom", required = false) Double speedFrom,
           @RequestParam(value = "speedTo", required = false) Double speedTo,
           @RequestParam(value = "directionFrom", required = false) Double directionFrom,
-          @RequestParam(value = "directionTo", required = false) Double directionTo)
+          @RequestParam(value = "directionTo", required = false) Double directionTo,
+          @RequestParam(value = "segmentLength", defaultValue = "1024") int segmentLength,
+          @RequestParam(value = "overlap", defaultValue = "0.5") double overlap,
+          @RequestParam(value = "window", defaultValue = "HANN") FftWindow window,
+          @RequestParam(value = "resampling", defaultValue = "HOLD") ResamplingMode resampling,
+          @RequestParam(value = "stepMillis", defaultValue = "1000") long stepMillis,
+          @RequestParam(value = "maxGapSeconds", defaultValue = "0") int maxGapSeconds,
+          @RequestParam(value = "maxPoints", defaultValue = "1000") int maxPoints,
+          @RequestParam(value = "downsampling", defaultValue = "MIN_MAX") DownsamplingMode downsampling,
+          @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
   {
     Date from = dateTimeService.parse(fromString);
     Date to = dateTimeService.parse(toString);
-    List<TimeRangeWithData> dataIntervals;
-    Double frequencyFrom = null;
-    if (speedFrom != null || speedTo != null || directionFrom != null || directionTo != null)
-    {
-      dataIntervals = windDataService.getWithSpeedAndDirectionIn(
-          from,
-          to,
-          speedFrom,
-          speedTo,
-          directionFrom,
-          directionTo,
-          AVERAGE_INTERVAL_MILLIS,
-          Wind::getSpeedTimeData);
-      frequencyFrom = 10000d/AVERAGE_INTERVAL_MILLIS;
-    }
-    else
-    {
-      dataIntervals = windDataService.getDataForTimeRangeInList(from, to, Wind::getSpeedTimeData);
-    }
-    List<Double> frequencyAmplitudes = calculateFrequencyAmplitudes(dataIntervals);
-    XYDataset dataset = getFFtResultDataset(frequencyAmplitudes);
-    JFreeChart lineChart = createChartFromData(
-        dataset,
-        frequencyFrom,
-        FFT_FRACTION_TO_DISPLAY,
-        "Wind speed frequency amplitudes");
-    return chartService.createReponseEntityFromChart(lineChart);
+    return chartCacheService.getChart(
+        ChartCacheKey.forBuckets(
+            "/wind/speed/fft",
+            from,
+            to,
+            AVERAGE_INTERVAL_MILLIS,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo,
+            segmentLength,
+            overlap,
+            window,
+            resampling,
+            stepMillis,
+            maxGapSeconds,
+            maxPoints,
+            downsampling,
+            format),
+        ifNoneMatch,
+        () -> chartService.createReponseEntityFromChart(
+            createFftChart(
+                from,
+                to,
+                speedFrom,
+                speedTo,
+                directionFrom,
+                directionTo,
+                WindQuantity.SPEED,
+                segmentLength,
+                overlap,
+                window,
+                resampling,
+                stepMillis,
+                maxGapSeconds,
+                maxPoints,
+                downsampling,
+                "Wind speed power spectral density"),
+            format));
   }
 
-  @RequestMapping(value = "/wind/direction/fft", produces="image/png")
-  public ResponseEntity<byte[]> displayDirectionFft(
+  @RequestMapping(value = "/wind/speed/fft/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displaySpeedFftSeries(
           @RequestParam("from") String fromString,
           @RequestParam("to") String toString,
           @RequestParam(value = "speedFrom", required = false) Double speedFrom,
           @RequestParam(value = "speedTo", required = false) Double speedTo,
           @RequestParam(value = "directionFrom", required = false) Double directionFrom,
-          @RequestParam(value = "directionTo", required = false) Double directionTo)
+          @RequestParam(value = "directionTo", required = false) Double directionTo,
+          @RequestParam(value = "segmentLength", defaultValue = "1024") int segmentLength,
+          @RequestParam(value = "overlap", defaultValue = "0.5") double overlap,
+          @RequestParam(value = "window", defaultValue = "HANN") FftWindow window,
+          @RequestParam(value = "resampling", defaultValue = "HOLD") ResamplingMode resampling,
+          @RequestParam(value = "stepMillis", defaultValue = "1000") long stepMillis,
+          @RequestParam(value = "maxGapSeconds", defaultValue = "0") int maxGapSeconds,
+          @RequestParam(value = "maxPoints", defaultValue = "1000") int maxPoints,
+          @RequestParam(value = "downsampling", defaultValue = "MIN_MAX") DownsamplingMode downsampling,
+          @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
   {
     Date from = dateTimeService.parse(fromString);
     Date to = dateTimeService.parse(toString);
-    List<TimeRangeWithData> dataIntervals;
+    return seriesService.getXYSeries(
+        () -> createFftDataset(
+            from,
+            to,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo,
+            WindQuantity.SPEED,
+            segmentLength,
+            overlap,
+            window,
+            resampling,
+            stepMillis,
+            maxGapSeconds,
+            maxPoints,
+            downsampling),
+        "Wind speed power spectral density",
+        FREQUENCY_AXIS_LABEL,
+        DENSITY_AXIS_LABEL,
+        format);
+  }
+
+  @RequestMapping(value = "/wind/direction/fft", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displayDirectionFft(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "speedFrom", required = false) Double speedFrom,
+          @RequestParam(value = "speedTo", required = false) Double speedTo,
+          @RequestParam(value = "directionFrom", required = false) Double directionFrom,
+          @RequestParam(value = "directionTo", required = false) Double directionTo,
+          @RequestParam(value = "segmentLength", defaultValue = "1024") int segmentLength,
+          @RequestParam(value = "overlap", defaultValue = "0.5") double overlap,
+          @RequestParam(value = "window", defaultValue = "HANN") FftWindow window,
+          @RequestParam(value = "resampling", defaultValue = "HOLD") ResamplingMode resampling,
+          @RequestParam(value = "stepMillis", defaultValue = "1000") long stepMillis,
+          @RequestParam(value = "maxGapSeconds", defaultValue = "0") int maxGapSeconds,
+          @RequestParam(value = "maxPoints", defaultValue = "1000") int maxPoints,
+          @RequestParam(value = "downsampling", defaultValue = "MIN_MAX") DownsamplingMode downsampling,
+          @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return chartCacheService.getChart(
+        ChartCacheKey.forBuckets(
+            "/wind/direction/fft",
+            from,
+            to,
+            AVERAGE_INTERVAL_MILLIS,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo,
+            segmentLength,
+            overlap,
+            window,
+            resampling,
+            stepMillis,
+            maxGapSeconds,
+            maxPoints,
+            downsampling,
+            format),
+        ifNoneMatch,
+        () -> chartService.createReponseEntityFromChart(
+            createFftChart(
+                from,
+                to,
+                speedFrom,
+                speedTo,
+                directionFrom,
+                directionTo,
+                WindQuantity.DIRECTION,
+                segmentLength,
+                overlap,
+                window,
+                resampling,
+                stepMillis,
+                maxGapSeconds,
+                maxPoints,
+                downsampling,
+                "Wind direction power spectral density"),
+            format));
+  }
+
+  @RequestMapping(value = "/wind/direction/fft/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displayDirectionFftSeries(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "speedFrom", required = false) Double speedFrom,
+          @RequestParam(value = "speedTo", required = false) Double speedTo,
+          @RequestParam(value = "directionFrom", required = false) Double directionFrom,
+          @RequestParam(value = "directionTo", required = false) Double directionTo,
+          @RequestParam(value = "segmentLength", defaultValue = "1024") int segmentLength,
+          @RequestParam(value = "overlap", defaultValue = "0.5") double overlap,
+          @RequestParam(value = "window", defaultValue = "HANN") FftWindow window,
+          @RequestParam(value = "resampling", defaultValue = "HOLD") ResamplingMode resampling,
+          @RequestParam(value = "stepMillis", defaultValue = "1000") long stepMillis,
+          @RequestParam(value = "maxGapSeconds", defaultValue = "0") int maxGapSeconds,
+          @RequestParam(value = "maxPoints", defaultValue = "1000") int maxPoints,
+          @RequestParam(value = "downsampling", defaultValue = "MIN_MAX") DownsamplingMode downsampling,
+          @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return seriesService.getXYSeries(
+        () -> createFftDataset(
+            from,
+            to,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo,
+            WindQuantity.DIRECTION,
+            segmentLength,
+            overlap,
+            window,
+            resampling,
+            stepMillis,
+            maxGapSeconds,
+            maxPoints,
+            downsampling),
+        "Wind direction power spectral density",
+        FREQUENCY_AXIS_LABEL,
+        DENSITY_AXIS_LABEL,
+        format);
+  }
+
+  private JFreeChart createFftChart(
+      Date from,
+      Date to,
+      Double speedFrom,
+      Double speedTo,
+      Double directionFrom,
+      Double directionTo,
+      WindQuantity quantity,
+      int segmentLength,
+      double overlap,
+      FftWindow window,
+      ResamplingMode resampling,
+      long stepMillis,
+      int maxGapSeconds,
+      int maxPoints,
+      DownsamplingMode downsampling,
+      String title)
+  {
+    XYDataset dataset = createFftDataset(
+        from,
+        to,
+        speedFrom,
+        speedTo,
+        directionFrom,
+        directionTo,
+        quantity,
+        segmentLength,
+        overlap,
+        window,
+        resampling,
+        stepMillis,
+        maxGapSeconds,
+        maxPoints,
+        downsampling);
     Double frequencyFrom = null;
     if (speedFrom != null || speedTo != null || directionFrom != null || directionTo != null)
     {
-      dataIntervals = windDataService.getWithSpeedAndDirectionIn(
+      frequencyFrom = 10000d/AVERAGE_INTERVAL_MILLIS;
+    }
+    return createChartFromData(
+        dataset,
+        frequencyFrom,
+        FFT_FRACTION_TO_DISPLAY * 1000d / stepMillis,
+        title);
+  }
+
+  private XYDataset createFftDataset(
+      Date from,
+      Date to,
+      Double speedFrom,
+      Double speedTo,
+      Double directionFrom,
+      Double directionTo,
+      WindQuantity quantity,
+      int segmentLength,
+      double overlap,
+      FftWindow window,
+      ResamplingMode resampling,
+      long stepMillis,
+      int maxGapSeconds,
+      int maxPoints,
+      DownsamplingMode downsampling)
+  {
+    PowerSpectralDensity density;
+    if (speedFrom != null || speedTo != null || directionFrom != null || directionTo != null)
+    {
+      List<TimeRangeWithData> dataIntervals = windDataService.getWithSpeedAndDirectionIn(
           from,
           to,
           speedFrom,
@@ -108,58 +353,164 @@ public class FftController
           directionFrom,
           directionTo,
           AVERAGE_INTERVAL_MILLIS,
-          Wind::getDirectionTimeData);
-      frequencyFrom = 10000d/AVERAGE_INTERVAL_MILLIS;
+          quantity);
+      density = welchService.estimate(
+          dataIntervals,
+          segmentLength,
+          overlap,
+          window,
+          resampling,
+          stepMillis,
+          maxGapSeconds * 1000L);
     }
     else
     {
-      dataIntervals = windDataService.getDataForTimeRangeInList(from, to, Wind::getSpeedTimeData);
+      density = welchService.estimate(
+          from,
+          to,
+          quantity,
+          segmentLength,
+          overlap,
+          window,
+          resampling,
+          stepMillis,
+          maxGapSeconds * 1000L);
     }
-    List<Double> frequencyAmplitudes = calculateFrequencyAmplitudes(dataIntervals);
-    XYDataset dataset = getFFtResultDataset(frequencyAmplitudes);
-    JFreeChart lineChart = createChartFromData(
-        dataset,
-        frequencyFrom,
-        FFT_FRACTION_TO_DISPLAY,
-        "Wind direction frequency amplitudes");
-    return chartService.createReponseEntityFromChart(lineChart);
+    return getFFtResultDataset(density, maxPoints, downsampling);
   }
 
+  @RequestMapping(value = "/wind/speed/spectrogram", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displaySpeedSpectrogram(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "segmentLength", defaultValue = "1024") int segmentLength,
+          @RequestParam(value = "overlap", defaultValue = "0.5") double overlap,
+          @RequestParam(value = "window", defaultValue = "HANN") FftWindow window,
+          @RequestParam(value = "columns", defaultValue = "400") int columns,
+          @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return chartCacheService.getChart(
+        new ChartCacheKey("/wind/speed/spectrogram", from, to, segmentLength, overlap, window, columns, format),
+        ifNoneMatch,
+        () -> chartService.createReponseEntityFromChart(
+            createSpectrogramChart(
+                from,
+                to,
+                WindQuantity.SPEED,
+                segmentLength,
+                overlap,
+                window,
+                columns,
+                "Wind speed spectrogram"),
+            format));
+  }
 
-  private List<Double> calculateFrequencyAmplitudes(
-      List<TimeRangeWithData> dataIntervals)
+  @RequestMapping(value = "/wind/speed/spectrogram/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displaySpeedSpectrogramSeries(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "segmentLength", defaultValue = "1024") int segmentLength,
+          @RequestParam(value = "overlap", defaultValue = "0.5") double overlap,
+          @RequestParam(value = "window", defaultValue = "HANN") FftWindow window,
+          @RequestParam(value = "columns", defaultValue = "400") int columns,
+          @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
   {
-    List<Double> frequencyAmplitudes = new ArrayList<>();
-    Integer amplitudesSize = null;
-    for (TimeRangeWithData singleIntervalData : dataIntervals)
-    {
-      List<Double> intervalResult = getFrequencyAmplitudes(singleIntervalData);
-      if (amplitudesSize == null)
-      {
-        amplitudesSize = intervalResult.size();
-      }
-      else if (amplitudesSize != intervalResult.size())
-      {
-        throw new IllegalStateException("fft result with size " + intervalResult.size()
-            + " for interval [" + new Date(singleIntervalData.getRange().getStart())
-            + "," + new Date(singleIntervalData.getRange().getEnd())
-            + "[ cannot be added to result with size " + amplitudesSize);
-      }
-      int i = 0;
-      for (Double amplitude : intervalResult)
-      {
-        if (frequencyAmplitudes.size() <= i)
-        {
-          frequencyAmplitudes.add(amplitude / dataIntervals.size());
-        }
-        else
-        {
-          frequencyAmplitudes.set(i, frequencyAmplitudes.get(i) + (amplitude / dataIntervals.size()));
-        }
-        i++;
-      }
-    }
-    return frequencyAmplitudes;
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return seriesService.getTimeSeries(
+        () -> chartService.createSpectrogramDataset(
+            getSpectrogram(from, to, WindQuantity.SPEED, segmentLength, overlap, window, columns)),
+        "Wind speed spectrogram",
+        ChartService.SPECTROGRAM_X_LABEL,
+        ChartService.SPECTROGRAM_Y_LABEL,
+        format);
+  }
+
+  @RequestMapping(value = "/wind/direction/spectrogram", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displayDirectionSpectrogram(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "segmentLength", defaultValue = "1024") int segmentLength,
+          @RequestParam(value = "overlap", defaultValue = "0.5") double overlap,
+          @RequestParam(value = "window", defaultValue = "HANN") FftWindow window,
+          @RequestParam(value = "columns", defaultValue = "400") int columns,
+          @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return chartCacheService.getChart(
+        new ChartCacheKey("/wind/direction/spectrogram", from, to, segmentLength, overlap, window, columns, format),
+        ifNoneMatch,
+        () -> chartService.createReponseEntityFromChart(
+            createSpectrogramChart(
+                from,
+                to,
+                WindQuantity.DIRECTION,
+                segmentLength,
+                overlap,
+                window,
+                columns,
+                "Wind direction spectrogram"),
+            format));
+  }
+
+  @RequestMapping(value = "/wind/direction/spectrogram/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displayDirectionSpectrogramSeries(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "segmentLength", defaultValue = "1024") int segmentLength,
+          @RequestParam(value = "overlap", defaultValue = "0.5") double overlap,
+          @RequestParam(value = "window", defaultValue = "HANN") FftWindow window,
+          @RequestParam(value = "columns", defaultValue = "400") int columns,
+          @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return seriesService.getTimeSeries(
+        () -> chartService.createSpectrogramDataset(
+            getSpectrogram(from, to, WindQuantity.DIRECTION, segmentLength, overlap, window, columns)),
+        "Wind direction spectrogram",
+        ChartService.SPECTROGRAM_X_LABEL,
+        ChartService.SPECTROGRAM_Y_LABEL,
+        format);
+  }
+
+  private JFreeChart createSpectrogramChart(
+      Date from,
+      Date to,
+      WindQuantity quantity,
+      int segmentLength,
+      double overlap,
+      FftWindow window,
+      int columns,
+      String title)
+  {
+    Spectrogram spectrogram = getSpectrogram(from, to, quantity, segmentLength, overlap, window, columns);
+    return chartService.createSpectrogramChart(spectrogram, title);
+  }
+
+  private Spectrogram getSpectrogram(
+      Date from,
+      Date to,
+      WindQuantity quantity,
+      int segmentLength,
+      double overlap,
+      FftWindow window,
+      int columns)
+  {
+    return spectrogramService.getSpectrogram(
+        from,
+        to,
+        quantity,
+        segmentLength,
+        overlap,
+        window,
+        columns,
+        FFT_FRACTION_TO_DISPLAY);
   }
 
   private JFreeChart createChartFromData(
@@ -168,7 +519,7 @@ public class FftController
       Double frequencyTo,
       String title)
   {
-    LogarithmicAxis xAxis = new LogarithmicAxis("Frequency [1/s]");
+    LogarithmicAxis xAxis = new LogarithmicAxis(FREQUENCY_AXIS_LABEL);
     if (frequencyFrom != null || frequencyTo != null)
     {
       if (frequencyFrom == null)
@@ -181,7 +532,7 @@ public class FftController
       }
       xAxis.setRange(new Range(frequencyFrom, frequencyTo));
     }
-    LogarithmicAxis yAxis = new LogarithmicAxis("Amplitude");
+    LogarithmicAxis yAxis = new LogarithmicAxis(DENSITY_AXIS_LABEL);
     XYPlot plot = new XYPlot(
         dataset,
         xAxis,
@@ -192,54 +543,27 @@ public class FftController
     return lineChart;
   }
 
-  private List<Double> getFrequencyAmplitudes(TimeRangeWithData speedPoints)
+  /**
+   * Converts the displayed frequencies of a power spectral density to a dataset,
+   * averaged logarithmically and reduced to at most <code>maxPoints</code> points.
+   */
+  XYDataset getFFtResultDataset(PowerSpectralDensity density, int maxPoints, DownsamplingMode downsampling)
   {
-    double[] fftInput = createArrayForFftWithDataForEachSecond(speedPoints);
-    FastFourierTransformer transformer = new FastFourierTransformer(DftNormalization.STANDARD);
-    Complex[] fftResult = transformer.transform(fftInput, TransformType.FORWARD);
-    List<Double> amplitudes = new ArrayList<>();
-    for (int i = 0; i < fftInput.length; ++i)
-    {
-      amplitudes.add(fftResult[i].abs());
-    }
-    return amplitudes;
-  }
-
-  XYDataset getFFtResultDataset(List<Double> rawFftResult)
-  {
-    int displayedSize = (int) (rawFftResult.size() * FFT_FRACTION_TO_DISPLAY);
+    // the density at frequency 0 is not displayed on the logarithmic axis
+    int displayedSize = density.getSegmentCount() == 0
+        ? 0
+        : Math.max(0, Math.min(density.size(), (int) (density.getSegmentLength() * FFT_FRACTION_TO_DISPLAY)) - 1);
     double[][] datasetData = new double[2][displayedSize];
     for (int i = 0; i < displayedSize; i++)
     {
-      datasetData[0][i] = ((double) i) / rawFftResult.size() ;
-      datasetData[1][i] = rawFftResult.get(i);
+      datasetData[0][i] = density.getFrequency(i + 1);
+      datasetData[1][i] = density.getDensity()[i + 1];
     }
-    datasetData = averageService.averageChartDataLogarithmically(datasetData, 1.05d, 5);
+    int size = averageService.averageChartDataLogarithmicallyInPlace(datasetData, displayedSize, 1.05d, 5);
+    size = averageService.downsampleInPlace(datasetData, size, maxPoints, downsampling);
+    datasetData = new double[][] {Arrays.copyOf(datasetData[0], size), Arrays.copyOf(datasetData[1], size)};
     final DefaultXYDataset dataset = new DefaultXYDataset();
     dataset.addSeries("fft", datasetData);
     return dataset;
- }
-
-  private double[] createArrayForFftWithDataForEachSecond(TimeRangeWithData data)
-  {
-    long start = data.getRange().getStart();
-    long end = data.getRange().getEnd();
-    int arraySize = calculateFftArraySize(start, end);
-    double[] fftInput = windDataService.fillArrayWithDataForEachSecond(data, arraySize);
-    return fftInput;
-  }
-
-  private int calculateFftArraySize(long start, long end)
-  {
-    int sizeInSeconds = (int) ((end - start )/ 1000l);
-
-    // FFT array size must be a power of two
-    int arrayExponent = (int) Math.ceil(Math.log(sizeInSeconds)/Math.log(2));
-    int arraySize = 1;
-    for (int i = 1; i <= arrayExponent; i++)
-    {
-      arraySize *= 2;
-    }
-    return arraySize;
   }
 }
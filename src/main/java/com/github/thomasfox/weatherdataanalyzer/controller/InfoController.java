@@ -2,9 +2,15 @@ package com.github.thomasfox.weatherdataanalyzer.controller;
 
 import java.util.Date;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.github.thomasfox.weatherdataanalyzer.repository.model.DatasetMetadata;
+import com.github.thomasfox.weatherdataanalyzer.service.DatasetMetadataService;
 import com.github.thomasfox.weatherdataanalyzer.service.WindDataService;
 
 import lombok.AllArgsConstructor;
@@ -16,16 +22,37 @@ public class InfoController
 {
   private final WindDataService windDataService;
 
+  /** null if the application runs with the archive profile, i.e. without a database. */
+  @Nullable
+  private final DatasetMetadataService datasetMetadataService;
+
   @RequestMapping("/info")
   public Info info()
   {
+    DatasetMetadata metadata = windDataService.getDatasetMetadata();
     Info result = new Info(
-        windDataService.count(),
-        windDataService.getMinTime(),
-        windDataService.getMaxTime());
+        metadata.getCount(),
+        metadata.getMinTime(),
+        metadata.getMaxTime(),
+        metadata.getLastIngestedId());
     return result;
   }
 
+  /**
+   * Starts recalculating the metadata returned by /info from the whole wind table.
+   * Returns immediately, the recalculation runs in the background.
+   * Does nothing without a database, as the metadata of an archive is always exact.
+   */
+  @RequestMapping(value = "/info/reconcile", method = RequestMethod.POST)
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  public void reconcile()
+  {
+    if (datasetMetadataService != null)
+    {
+      datasetMetadataService.reconcile();
+    }
+  }
+
   @Data
   @AllArgsConstructor
   private static class Info
@@ -35,5 +62,7 @@ public class InfoController
     private Date minTime;
 
     private Date maxTime;
+
+    private int lastIngestedId;
   }
 }
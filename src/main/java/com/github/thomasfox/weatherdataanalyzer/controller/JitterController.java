@@ -1,25 +1,33 @@
 package com.github.thomasfox.weatherdataanalyzer.controller;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
+import org.jfree.data.category.CategoryDataset;
 import org.jfree.data.category.DefaultCategoryDataset;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.github.thomasfox.weatherdataanalyzer.repository.model.DoubleValueCount;
-import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+import com.github.thomasfox.weatherdataanalyzer.service.ChartCacheService;
 import com.github.thomasfox.weatherdataanalyzer.service.ChartService;
+import com.github.thomasfox.weatherdataanalyzer.service.DataQualityService;
 import com.github.thomasfox.weatherdataanalyzer.service.DateTimeService;
+import com.github.thomasfox.weatherdataanalyzer.service.SeriesService;
 import com.github.thomasfox.weatherdataanalyzer.service.WindDataService;
-import com.github.thomasfox.weatherdataanalyzer.service.model.TimeData;
+import com.github.thomasfox.weatherdataanalyzer.service.WindGapIndexService;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartCacheKey;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartFormat;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataQualityIssue;
+import com.github.thomasfox.weatherdataanalyzer.service.model.SeriesFormat;
 import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
-import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
 
 import lombok.AllArgsConstructor;
 
@@ -27,109 +35,126 @@ import lombok.AllArgsConstructor;
 @AllArgsConstructor
 public class JitterController
 {
+  private static final String JITTER_HISTOGRAM_TITLE = "Jitter";
+
+  private static final String JITTER_HISTOGRAM_X_LABEL = "time";
+
+  private static final String JITTER_HISTOGRAM_Y_LABEL = "count";
+
   private final WindDataService windDataService;
 
   private final DateTimeService dateTimeService;
 
   private final ChartService chartService;
 
-  @RequestMapping(value = "/wind/jitter/histogram", produces="image/png")
-  public ResponseEntity<byte[]> jitterHistogram(
+  private final WindGapIndexService windGapIndexService;
+
+  private final DataQualityService dataQualityService;
+
+  private final ChartCacheService chartCacheService;
+
+  private final SeriesService seriesService;
+
+  @RequestMapping(value = "/wind/jitter/histogram", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> jitterHistogram(
       @RequestParam("from") String fromString,
       @RequestParam("to") String toString,
       @RequestParam(value = "histogramStart", required = false) Integer histogramStart,
-      @RequestParam(value = "histogramCutoff", required = false) Integer histogramCutoff)
+      @RequestParam(value = "histogramCutoff", required = false) Integer histogramCutoff,
+      @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
   {
     Date from = dateTimeService.parse(fromString);
     Date to = dateTimeService.parse(toString);
+    return chartCacheService.getChart(
+        new ChartCacheKey("/wind/jitter/histogram", from, to, histogramStart, histogramCutoff, format),
+        ifNoneMatch,
+        () ->
+    {
+      JFreeChart histogram = createJitterHistogramChart(from, to, histogramStart, histogramCutoff);
+      return chartService.createReponseEntityFromChart(histogram, format);
+    });
+  }
 
-    TimeRangeWithData speedPoints = windDataService.getDataForTimeRange(from, to, Wind::getSpeedTimeData);
+  @RequestMapping(value = "/wind/jitter/histogram/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> jitterHistogramSeries(
+      @RequestParam("from") String fromString,
+      @RequestParam("to") String toString,
+      @RequestParam(value = "histogramStart", required = false) Integer histogramStart,
+      @RequestParam(value = "histogramCutoff", required = false) Integer histogramCutoff,
+      @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return seriesService.getCategorySeries(
+        () -> createJitterHistogramDataset(from, to, histogramStart, histogramCutoff),
+        JITTER_HISTOGRAM_TITLE,
+        JITTER_HISTOGRAM_X_LABEL,
+        JITTER_HISTOGRAM_Y_LABEL,
+        format);
+  }
 
-    List<Integer> counts = new ArrayList<>();
-    Long lastX = null;
-    for (TimeData point : speedPoints.getData())
+  private JFreeChart createJitterHistogramChart(Date from, Date to, Integer histogramStart, Integer histogramCutoff)
+  {
+    return ChartFactory.createBarChart(
+        JITTER_HISTOGRAM_TITLE,
+        JITTER_HISTOGRAM_X_LABEL,
+        JITTER_HISTOGRAM_Y_LABEL,
+        createJitterHistogramDataset(from, to, histogramStart, histogramCutoff));
+  }
+
+  private CategoryDataset createJitterHistogramDataset(
+      Date from,
+      Date to,
+      Integer histogramStart,
+      Integer histogramCutoff)
+  {
+    long[] counts = windGapIndexService.getIntervalHistogram(from, to);
+    // the last bin counts all intervals of its length or longer
+    int overflowBin = counts.length - 1;
+    if (histogramCutoff != null && histogramCutoff > overflowBin)
     {
-      long x = point.getTimestamp();
-      if (lastX != null)
-      {
-        int bin = (int) ((x - lastX)/1000);
-        if ((histogramStart == null || bin >= histogramStart)
-            && (histogramCutoff == null || bin <= histogramCutoff))
-        {
-          makeSureListHasAtLeastSize(counts, bin + 1);
-          counts.set(bin, counts.get(bin) + 1);
-        }
-      }
-      lastX = x;
+      throw new IllegalArgumentException("histogramCutoff must not be larger than " + overflowBin);
     }
-    DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-    for (int i = 0; i < counts.size(); i++)
+    int firstBin = histogramStart == null ? 0 : Math.max(0, histogramStart);
+    int lastBin = histogramCutoff == null ? overflowBin : histogramCutoff;
+    while (lastBin >= firstBin && counts[lastBin] == 0)
     {
-      dataset.addValue((Number) counts.get(i), 0, i);
+      lastBin--;
     }
-    JFreeChart histogram = ChartFactory.createBarChart("Jitter", "time", "count", dataset);
-    return chartService.createReponseEntityFromChart(histogram);
-  }
-
-  private void makeSureListHasAtLeastSize(List<Integer> list, int minimumSize)
-  {
-    while(list.size() < minimumSize)
+    DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+    for (int i = 0; i <= lastBin; i++)
     {
-      list.add(0);
+      Comparable<?> bin = i == overflowBin ? "\u2265" + overflowBin : Integer.valueOf(i);
+      dataset.addValue((Number) (i < firstBin ? 0 : counts[i]), 0, bin);
     }
+    return dataset;
   }
 
   @RequestMapping(value = "/wind/timedistance/findLargerThan")
   public List<TimeRange> jitterHistogram(
       @RequestParam("from") String fromString,
       @RequestParam("to") String toString,
-      @RequestParam(value = "threshold", required = false) Integer threshold)
+      @RequestParam("threshold") int threshold)
   {
     Date from = dateTimeService.parse(fromString);
     Date to = dateTimeService.parse(toString);
-
-    TimeRangeWithData speedPoints = windDataService.getDataForTimeRange(from, to, Wind::getSpeedTimeData);
-
-    List<TimeRange> result = new ArrayList<>();
-    Long lastX = null;
-    for (TimeData point : speedPoints.getData())
-    {
-      long x = point.getTimestamp();
-      if (lastX != null)
-      {
-        int bin = (int) ((x - lastX)/1000);
-        if (bin >= threshold)
-        {
-          result.add(new TimeRange(new Date(lastX) ,new Date(x)));
-        }
-      }
-      lastX = x;
-    }
-    return result;
+    return windGapIndexService.getGaps(from, to, threshold * 1000L);
   }
 
 
+  /**
+   * Returns the time ranges with implausible data, i.e. missing data, stuck sensors, runs of identical values
+   * and impossible speed jumps.
+   */
   @RequestMapping(value = "/wind/badData")
-  public List<TimeRange> badDataCandidates(
+  public List<DataQualityIssue> badDataCandidates(
       @RequestParam("from") String fromString,
       @RequestParam("to") String toString)
   {
     Date from = dateTimeService.parse(fromString);
     Date to = dateTimeService.parse(toString);
-    List<TimeRange> result = new ArrayList<>();
-    Date intervalStart = new Date(from.getTime());
-    Date intervalEnd = new Date(intervalStart.getTime() + 5000 * 60l);
-    while (intervalStart.before(to))
-    {
-      List<DoubleValueCount> speedHistogram = windDataService.getSpeedHistogramForTimeRange(from, to);
-      if (speedHistogram.size() == 0 || (speedHistogram.size() == 1 && speedHistogram.get(0).getValue() >= 2d))
-      {
-        result.add(new TimeRange(intervalStart, intervalEnd));
-      }
-      intervalStart = intervalEnd;
-      intervalEnd = new Date(intervalStart.getTime() + 5000 * 60l);
-    }
-    return result;
+    return dataQualityService.getIssues(from, to);
   }
 
   @RequestMapping(value = "/wind/count")
@@ -0,0 +1,186 @@
+package com.github.thomasfox.weatherdataanalyzer.controller;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.jfree.chart.JFreeChart;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.github.thomasfox.weatherdataanalyzer.service.ChartCacheService;
+import com.github.thomasfox.weatherdataanalyzer.service.ChartService;
+import com.github.thomasfox.weatherdataanalyzer.service.DateTimeService;
+import com.github.thomasfox.weatherdataanalyzer.service.ScanService;
+import com.github.thomasfox.weatherdataanalyzer.service.SpectrumService;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartCacheKey;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartFormat;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanAnalysis;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanAnalysisType;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanGrid;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeDataSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindStatistics;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Displays an analysis of a wind quantity for each cell of a grid of speed bands and direction sectors.
+ */
+@RestController
+@AllArgsConstructor
+public class ScanController
+{
+  private final DateTimeService dateTimeService;
+
+  private final ChartService chartService;
+
+  private final ScanService scanService;
+
+  private final SpectrumService spectrumService;
+
+  private final ChartCacheService chartCacheService;
+
+  @RequestMapping(value = "/wind/scan", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displayScan(
+          @RequestParam("from") String fromString,
+          @RequestParam("to") String toString,
+          @RequestParam(value = "analysis", defaultValue = "MEAN") ScanAnalysisType analysisType,
+          @RequestParam(value = "quantity", defaultValue = "SPEED") WindQuantity quantity,
+          @RequestParam(value = "speedFrom", required = false) Double speedFrom,
+          @RequestParam(value = "speedTo", required = false) Double speedTo,
+          @RequestParam(value = "speedStep", required = false) Double speedStep,
+          @RequestParam(value = "directionStep", required = false) Double directionStep,
+          @RequestParam(value = "intervalMinutes", defaultValue = "60") int intervalMinutes,
+          @RequestParam(value = "frequencyFrom", defaultValue = "0") double frequencyFrom,
+          @RequestParam(value = "frequencyTo", defaultValue = "0.5") double frequencyTo,
+          @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return chartCacheService.getChart(
+        ChartCacheKey.forBuckets(
+            "/wind/scan",
+            from,
+            to,
+            intervalMinutes * 60L * 1000L,
+            analysisType,
+            quantity,
+            speedFrom,
+            speedTo,
+            speedStep,
+            directionStep,
+            intervalMinutes,
+            frequencyFrom,
+            frequencyTo,
+            format),
+        ifNoneMatch,
+        () ->
+    {
+      ScanGrid grid = new ScanGrid(speedFrom, speedTo, speedStep, directionStep);
+      ScanAnalysis analysis;
+      String valueName;
+      if (analysisType == ScanAnalysisType.BAND_POWER)
+      {
+        if (frequencyFrom >= frequencyTo)
+        {
+          throw new IllegalArgumentException("frequencyTo must be larger than frequencyFrom");
+        }
+        analysis = intervals -> new double[] {calculateBandPower(intervals, quantity, frequencyFrom, frequencyTo)};
+        valueName = "power " + frequencyFrom + " - " + frequencyTo + " Hz";
+      }
+      else
+      {
+        analysis = intervals -> new double[] {calculateMean(intervals, quantity)};
+        valueName = "mean";
+      }
+      ScanResult result = scanService.scan(from, to, intervalMinutes * 60L * 1000L, grid, quantity, analysis);
+      JFreeChart chart = chartService.createScanChart(
+          result,
+          quantity.name().toLowerCase() + " " + valueName,
+          new String[] {valueName},
+          0);
+      return chartService.createReponseEntityFromChart(chart, format);
+    });
+  }
+
+  /**
+   * Calculates the mean of the data of all intervals. Directions are averaged as unit vectors.
+   */
+  private double calculateMean(List<TimeRangeWithData> intervals, WindQuantity quantity)
+  {
+    double sum = 0d;
+    double sinSum = 0d;
+    double cosSum = 0d;
+    long count = 0;
+    for (TimeRangeWithData interval : intervals)
+    {
+      TimeDataSeries data = interval.getData();
+      for (int i = 0; i < data.size(); i++)
+      {
+        double value = data.getValue(i);
+        if (quantity == WindQuantity.DIRECTION)
+        {
+          sinSum += Math.sin(Math.toRadians(value));
+          cosSum += Math.cos(Math.toRadians(value));
+        }
+        else
+        {
+          sum += value;
+        }
+      }
+      count += data.size();
+    }
+    if (count == 0)
+    {
+      return Double.NaN;
+    }
+    if (quantity == WindQuantity.DIRECTION)
+    {
+      return WindStatistics.getMeanDirection(sinSum, cosSum);
+    }
+    return sum / count;
+  }
+
+  /**
+   * Calculates the part of the variance of the data in a frequency band
+   * from the power spectrum of each interval, and averages it over all intervals.
+   * Directions are transformed as unit vectors, so their power is the part of the variance of the unit vectors.
+   * Intervals which are too long for one transform are split into segments which are averaged.
+   */
+  private double calculateBandPower(
+      List<TimeRangeWithData> intervals,
+      WindQuantity quantity,
+      double frequencyFrom,
+      double frequencyTo)
+  {
+    List<TimeRangeWithData> segments = spectrumService.splitIntoSegments(intervals);
+    double powerSum = 0d;
+    for (TimeRangeWithData interval : segments)
+    {
+      double[] amplitudes = spectrumService.getSpectrum(interval, quantity, quantity == WindQuantity.DIRECTION)
+          .getAmplitudes();
+      int size = amplitudes.length;
+      double power = 0d;
+      for (int i = 1; i < (size + 1) / 2; i++)
+      {
+        double frequency = ((double) i) / size;
+        if (frequency >= frequencyFrom && frequency < frequencyTo)
+        {
+          // the positive and the negative frequency, which are equal for real samples
+          power += amplitudes[i] * amplitudes[i] + amplitudes[size - i] * amplitudes[size - i];
+        }
+      }
+      powerSum += power / ((double) size * size);
+    }
+    return powerSum / segments.size();
+  }
+}
@@ -0,0 +1,216 @@
+package com.github.thomasfox.weatherdataanalyzer.controller;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.github.thomasfox.weatherdataanalyzer.service.ChartCacheService;
+import com.github.thomasfox.weatherdataanalyzer.service.ChartService;
+import com.github.thomasfox.weatherdataanalyzer.service.DateTimeService;
+import com.github.thomasfox.weatherdataanalyzer.service.TurbulenceService;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartCacheKey;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartFormat;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartImage;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TurbulenceStatistics;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindCondition;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Displays the gust factor and the turbulence intensity of buckets of equal length,
+ * optionally only for buckets whose mean speed and direction are within given boundaries.
+ */
+@RestController
+@AllArgsConstructor
+public class TurbulenceController
+{
+  private final DateTimeService dateTimeService;
+
+  private final ChartService chartService;
+
+  private final TurbulenceService turbulenceService;
+
+  private final ChartCacheService chartCacheService;
+
+  @RequestMapping(value = "/wind/turbulence")
+  public TurbulenceStatistics getTurbulence(
+      @RequestParam("from") String fromString,
+      @RequestParam("to") String toString,
+      @RequestParam(value = "bucketMinutes", defaultValue = "10") int bucketMinutes,
+      @RequestParam(value = "speedFrom", required = false) Double speedFrom,
+      @RequestParam(value = "speedTo", required = false) Double speedTo,
+      @RequestParam(value = "directionFrom", required = false) Double directionFrom,
+      @RequestParam(value = "directionTo", required = false) Double directionTo,
+      @RequestParam(value = "excludeBadData", defaultValue = "false") boolean excludeBadData)
+  {
+    return turbulenceService.getTurbulence(
+        dateTimeService.parse(fromString),
+        dateTimeService.parse(toString),
+        bucketMinutes * 60L * 1000L,
+        WindCondition.of(speedFrom, speedTo, directionFrom, directionTo),
+        excludeBadData);
+  }
+
+  @RequestMapping(value = "/wind/turbulence/histogram", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getTurbulenceIntensityHistogram(
+      @RequestParam("from") String fromString,
+      @RequestParam("to") String toString,
+      @RequestParam(value = "bucketMinutes", defaultValue = "10") int bucketMinutes,
+      @RequestParam(value = "speedFrom", required = false) Double speedFrom,
+      @RequestParam(value = "speedTo", required = false) Double speedTo,
+      @RequestParam(value = "directionFrom", required = false) Double directionFrom,
+      @RequestParam(value = "directionTo", required = false) Double directionTo,
+      @RequestParam(value = "excludeBadData", defaultValue = "false") boolean excludeBadData,
+      @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    return chartCacheService.getChart(
+        new ChartCacheKey(
+            "/wind/turbulence/histogram",
+            dateTimeService.parse(fromString),
+            dateTimeService.parse(toString),
+            bucketMinutes,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo,
+            excludeBadData,
+            format),
+        ifNoneMatch,
+        () ->
+    {
+      TurbulenceStatistics statistics = getTurbulence(
+          fromString, toString, bucketMinutes, speedFrom, speedTo, directionFrom, directionTo, excludeBadData);
+      return createHistogram(
+          statistics.getTurbulenceIntensityHistogram(),
+          0d,
+          TurbulenceStatistics.TURBULENCE_INTENSITY_BIN_WIDTH,
+          "turbulence intensity",
+          format);
+    });
+  }
+
+  @RequestMapping(value = "/wind/gustfactor/histogram", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getGustFactorHistogram(
+      @RequestParam("from") String fromString,
+      @RequestParam("to") String toString,
+      @RequestParam(value = "bucketMinutes", defaultValue = "10") int bucketMinutes,
+      @RequestParam(value = "speedFrom", required = false) Double speedFrom,
+      @RequestParam(value = "speedTo", required = false) Double speedTo,
+      @RequestParam(value = "directionFrom", required = false) Double directionFrom,
+      @RequestParam(value = "directionTo", required = false) Double directionTo,
+      @RequestParam(value = "excludeBadData", defaultValue = "false") boolean excludeBadData,
+      @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    return chartCacheService.getChart(
+        new ChartCacheKey(
+            "/wind/gustfactor/histogram",
+            dateTimeService.parse(fromString),
+            dateTimeService.parse(toString),
+            bucketMinutes,
+            speedFrom,
+            speedTo,
+            directionFrom,
+            directionTo,
+            excludeBadData,
+            format),
+        ifNoneMatch,
+        () ->
+    {
+      TurbulenceStatistics statistics = getTurbulence(
+          fromString, toString, bucketMinutes, speedFrom, speedTo, directionFrom, directionTo, excludeBadData);
+      return createHistogram(
+          statistics.getGustFactorHistogram(),
+          TurbulenceStatistics.GUST_FACTOR_HISTOGRAM_START,
+          TurbulenceStatistics.GUST_FACTOR_BIN_WIDTH,
+          "gust factor",
+          format);
+    });
+  }
+
+  /**
+   * Draws the mean turbulence intensity of the buckets over their mean speed.
+   */
+  @RequestMapping(value = "/wind/turbulence/speed", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getTurbulenceIntensityBySpeed(
+      @RequestParam("from") String fromString,
+      @RequestParam("to") String toString,
+      @RequestParam(value = "bucketMinutes", defaultValue = "10") int bucketMinutes,
+      @RequestParam(value = "directionFrom", required = false) Double directionFrom,
+      @RequestParam(value = "directionTo", required = false) Double directionTo,
+      @RequestParam(value = "excludeBadData", defaultValue = "false") boolean excludeBadData,
+      @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    return chartCacheService.getChart(
+        new ChartCacheKey(
+            "/wind/turbulence/speed",
+            dateTimeService.parse(fromString),
+            dateTimeService.parse(toString),
+            bucketMinutes,
+            directionFrom,
+            directionTo,
+            excludeBadData,
+            format),
+        ifNoneMatch,
+        () ->
+    {
+      TurbulenceStatistics statistics = getTurbulence(
+          fromString, toString, bucketMinutes, null, null, directionFrom, directionTo, excludeBadData);
+      XYSeries series = new XYSeries("turbulence intensity");
+      for (int speedBin = 0; speedBin < statistics.getSpeedBinCounts().length; speedBin++)
+      {
+        double turbulenceIntensity = statistics.getMeanTurbulenceIntensity(speedBin);
+        if (!Double.isNaN(turbulenceIntensity))
+        {
+          series.add((speedBin + 0.5d) * TurbulenceStatistics.SPEED_BIN_WIDTH, turbulenceIntensity);
+        }
+      }
+      JFreeChart chart = ChartFactory.createXYLineChart(
+          "turbulence intensity by speed",
+          "speed [kts]",
+          "turbulence intensity",
+          new XYSeriesCollection(series),
+          PlotOrientation.VERTICAL,
+          false,
+          false,
+          false);
+      return chartService.createReponseEntityFromChart(chart, format);
+    });
+  }
+
+  private ResponseEntity<ChartImage> createHistogram(
+      long[] counts,
+      double histogramStart,
+      double binWidth,
+      String histogramEntityName,
+      ChartFormat format)
+  {
+    DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+    for (int bin = 0; bin < counts.length; bin++)
+    {
+      dataset.addValue((Number) counts[bin], 0, String.format("%.2f", histogramStart + bin * binWidth));
+    }
+    JFreeChart histogram = ChartFactory.createBarChart(
+        histogramEntityName + " histogram",
+        histogramEntityName,
+        "count",
+        dataset);
+    histogram.removeLegend();
+    return chartService.createReponseEntityFromChart(histogram, format);
+  }
+}
@@ -1,37 +1,52 @@
 package com.github.thomasfox.weatherdataanalyzer.controller;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
 
 import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartRenderingInfo;
-import org.jfree.chart.ChartUtils;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.DateAxis;
+import org.jfree.chart.plot.PolarPlot;
 import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.DefaultPolarItemRenderer;
+import org.jfree.data.category.CategoryDataset;
 import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.data.time.Millisecond;
 import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
 import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.format.annotation.DateTimeFormat.ISO;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.github.thomasfox.weatherdataanalyzer.repository.model.DoubleValueCount;
+import com.github.thomasfox.weatherdataanalyzer.service.AverageService;
+import com.github.thomasfox.weatherdataanalyzer.service.ChartCacheService;
 import com.github.thomasfox.weatherdataanalyzer.service.ChartService;
 import com.github.thomasfox.weatherdataanalyzer.service.DateTimeService;
+import com.github.thomasfox.weatherdataanalyzer.service.SeriesService;
 import com.github.thomasfox.weatherdataanalyzer.service.WindDataService;
+import com.github.thomasfox.weatherdataanalyzer.service.model.BucketAverages;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartCacheKey;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartDataReducer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartFormat;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DownsamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.SeriesFormat;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
 
 import lombok.AllArgsConstructor;
 
@@ -39,96 +54,302 @@ import lombok.AllArgsConstructor;
 @AllArgsConstructor
 public class WindChartController
 {
-  private static final int DEFAULT_IMAGE_WIDTH = 600;
+  private static final String SPEED_GRAPH_TITLE = "wind";
 
-  private static final int DEFAULT_IMAGE_HEIGHT = 400;
+  private static final String SPEED_GRAPH_X_LABEL = "time";
+
+  private static final String SPEED_GRAPH_Y_LABEL = "Wind speed[kts]";
+
+  /** the number of bucket averages per displayed point from which LTTB selects the displayed points. */
+  private static final int LTTB_BUCKETS_PER_POINT = 10;
+
+  private static final String HISTOGRAM_Y_LABEL = "count";
+
+  private static final String WIND_ROSE_TITLE = "wind rose [%]";
+
+  private static final String WIND_ROSE_X_LABEL = "direction [°]";
+
+  private static final String WIND_ROSE_Y_LABEL = "percentage [%]";
 
   private final WindDataService windDataService;
 
+  private final AverageService averageService;
+
   private final DateTimeService dateTimeService;
 
   private final ChartService chartService;
 
-  @RequestMapping(value = "/wind/speed/graph", produces="image/png")
-  public ResponseEntity<byte[]> display(
+  private final ChartCacheService chartCacheService;
+
+  private final SeriesService seriesService;
+
+  /**
+   * Draws the wind speed over time with at most <code>maxPoints</code> points.
+   * MEAN draws the average of each interval, MIN_MAX the slowest and fastest data point of each interval,
+   * and LTTB selects the points from finer interval averages.
+   */
+  @RequestMapping(value = "/wind/speed/graph", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> display(
           @RequestParam("from") @DateTimeFormat(iso = ISO.DATE) Date from,
-          @RequestParam("to") @DateTimeFormat(iso = ISO.DATE) Date to)
-      throws IOException
+          @RequestParam("to") @DateTimeFormat(iso = ISO.DATE) Date to,
+          @RequestParam(value = "maxPoints", defaultValue = "100") int maxPoints,
+          @RequestParam(value = "downsampling", defaultValue = "MEAN") DownsamplingMode downsampling,
+          @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    return chartCacheService.getChart(
+        new ChartCacheKey("/wind/speed/graph", from, to, maxPoints, downsampling, format),
+        ifNoneMatch,
+        () ->
+    {
+      JFreeChart lineChart = createSpeedGraphChart(from, to, maxPoints, downsampling);
+      return chartService.createReponseEntityFromChart(lineChart, format);
+    });
+  }
+
+  @RequestMapping(value = "/wind/speed/graph/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> displaySeries(
+          @RequestParam("from") @DateTimeFormat(iso = ISO.DATE) Date from,
+          @RequestParam("to") @DateTimeFormat(iso = ISO.DATE) Date to,
+          @RequestParam(value = "maxPoints", defaultValue = "100") int maxPoints,
+          @RequestParam(value = "downsampling", defaultValue = "MEAN") DownsamplingMode downsampling,
+          @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
+  {
+    return seriesService.getTimeSeries(
+        () -> createDataset(from, to, maxPoints, downsampling),
+        SPEED_GRAPH_TITLE,
+        SPEED_GRAPH_X_LABEL,
+        SPEED_GRAPH_Y_LABEL,
+        format);
+  }
+
+  private JFreeChart createSpeedGraphChart(Date from, Date to, int maxPoints, DownsamplingMode downsampling)
   {
     JFreeChart lineChart = ChartFactory.createTimeSeriesChart(
-        "wind",
-        "time",
-        "Wind speed[kts]",
-        createDataset(from, to),
+        SPEED_GRAPH_TITLE,
+        SPEED_GRAPH_X_LABEL,
+        SPEED_GRAPH_Y_LABEL,
+        createDataset(from, to, maxPoints, downsampling),
         false,
         false,
         false);
     XYPlot plot = lineChart.getXYPlot();
     DateAxis axis = (DateAxis) plot.getDomainAxis();
     axis.setDateFormatOverride(new SimpleDateFormat("dd.MM.yyyy HH:mm"));
-
-    ByteArrayOutputStream image = new ByteArrayOutputStream();
-    ChartUtils.writeChartAsPNG(
-        image,
-        lineChart,
-        DEFAULT_IMAGE_WIDTH, DEFAULT_IMAGE_HEIGHT,
-        new ChartRenderingInfo(),
-        false,
-        5);
-
-    ResponseEntity<byte[]> responseEntity = new ResponseEntity<>(image.toByteArray(), HttpStatus.OK);
-    return responseEntity;
+    return lineChart;
   }
 
-  private XYDataset createDataset(Date from, Date to)
+  private XYDataset createDataset(Date from, Date to, int maxPoints, DownsamplingMode downsampling)
   {
-    final TimeSeries series = new TimeSeries("Wind speed");
+    double[][] datasetData;
+    if (downsampling == DownsamplingMode.MIN_MAX)
+    {
+      datasetData = getMinMaxSpeeds(from, to, maxPoints);
+    }
+    else if (downsampling == DownsamplingMode.LTTB)
+    {
+      datasetData = averageService.downsample(
+          getAverageSpeeds(from, to, maxPoints * LTTB_BUCKETS_PER_POINT),
+          maxPoints,
+          DownsamplingMode.LTTB);
+    }
+    else
+    {
+      datasetData = getAverageSpeeds(from, to, maxPoints);
+    }
 
-    long intervals = 100;
-    long timeStart = from.getTime();
-    long timeEnd = to.getTime();
-    long intervalSpan = (timeEnd - timeStart) / intervals;
-    for (int i = 0; i < intervals; i++)
+    final TimeSeries series = new TimeSeries("Wind speed");
+    for (int i = 0; i < datasetData[0].length; i++)
     {
-      long averageIntervalStart = timeStart + i * intervalSpan;
-      long averageIntervalEnd = averageIntervalStart + intervalSpan;
-
-      double windSpeed = windDataService.getAverageSpeed(
-              new Date(averageIntervalStart),
-              new Date(averageIntervalEnd));
-      Date intervalTime = new Date((averageIntervalStart + averageIntervalEnd) / 2);
-      series.add(new Millisecond(intervalTime, TimeZone.getTimeZone("UTC"), Locale.getDefault()), windSpeed);
+      Date time = new Date((long) datasetData[0][i]);
+      series.addOrUpdate(
+          new Millisecond(time, TimeZone.getTimeZone("UTC"), Locale.getDefault()),
+          datasetData[1][i]);
     }
     return new TimeSeriesCollection(series);
   }
 
-  @RequestMapping(value = "/wind/speed/histogram", produces="image/png")
-  public ResponseEntity<byte[]> getWindSpeedHistogram(
+  /**
+   * Returns the average speed of each interval which contains data, at the middle of the interval.
+   */
+  private double[][] getAverageSpeeds(Date from, Date to, int intervals)
+  {
+    if (intervals < 1)
+    {
+      throw new IllegalArgumentException("maxPoints must be at least 1");
+    }
+    long intervalSpan = Math.max(1, (to.getTime() - from.getTime()) / intervals);
+    BucketAverages averages = windDataService.getBucketAverages(
+        from,
+        new Date(from.getTime() + intervals * intervalSpan),
+        intervalSpan);
+    double[][] result = new double[2][averages.size()];
+    int size = 0;
+    for (int i = 0; i < averages.size(); i++)
+    {
+      if (!averages.hasData(i))
+      {
+        continue;
+      }
+      result[0][size] = (averages.getBucketStart(i) + averages.getBucketEnd(i)) / 2;
+      result[1][size] = averages.getAverageSpeed(i);
+      size++;
+    }
+    return new double[][] {Arrays.copyOf(result[0], size), Arrays.copyOf(result[1], size)};
+  }
+
+  /**
+   * Streams the data points and keeps the slowest and the fastest data point of each interval.
+   */
+  private double[][] getMinMaxSpeeds(Date from, Date to, int maxPoints)
+  {
+    ChartDataReducer reducer = averageService.createReducer(
+        from.getTime(),
+        Math.max(to.getTime(), from.getTime() + 1),
+        maxPoints,
+        DownsamplingMode.MIN_MAX);
+    windDataService.forEachDataPoint(
+        from,
+        to,
+        (time, speed, direction, gusts)
+            -> reducer.accept(time, WindQuantity.SPEED.fromDatabaseValues(speed, direction, gusts)));
+    return reducer.getResult();
+  }
+
+  @RequestMapping(value = "/wind/speed/histogram", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getWindSpeedHistogram(
       @RequestParam("from") String fromString,
-      @RequestParam("to") String toString)
+      @RequestParam("to") String toString,
+      @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
   {
-    return getHistogram(fromString, toString, windDataService::getSpeedHistogramForTimeRange, "speed", "kts", 1d, true);
+    return getHistogram(
+        fromString,
+        toString,
+        windDataService::getSpeedHistogramForTimeRange,
+        "speed",
+        "kts",
+        1d,
+        true,
+        "/wind/speed/histogram",
+        format,
+        ifNoneMatch);
   }
 
-  @RequestMapping(value = "/wind/direction/histogram", produces="image/png")
-  public ResponseEntity<byte[]> getWindDirectionHistogram(
+  @RequestMapping(value = "/wind/speed/histogram/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getWindSpeedHistogramSeries(
       @RequestParam("from") String fromString,
-      @RequestParam("to") String toString)
+      @RequestParam("to") String toString,
+      @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
   {
-    return getHistogram(fromString, toString, windDataService::getDirectionHistogramForTimeRange, "direction", "°", 20d, false);
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return seriesService.getCategorySeries(
+        () -> createHistogramDataset(from, to, windDataService::getSpeedHistogramForTimeRange, 1d, true),
+        getHistogramTitle("speed"),
+        getHistogramXLabel("speed", "kts"),
+        HISTOGRAM_Y_LABEL,
+        format);
   }
 
-  private ResponseEntity<byte[]> getHistogram(
+  @RequestMapping(value = "/wind/direction/histogram", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getWindDirectionHistogram(
+      @RequestParam("from") String fromString,
+      @RequestParam("to") String toString,
+      @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    return getHistogram(
+        fromString,
+        toString,
+        windDataService::getDirectionHistogramForTimeRange,
+        "direction",
+        "°",
+        20d,
+        false,
+        "/wind/direction/histogram",
+        format,
+        ifNoneMatch);
+  }
+
+  @RequestMapping(value = "/wind/direction/histogram/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getWindDirectionHistogramSeries(
+      @RequestParam("from") String fromString,
+      @RequestParam("to") String toString,
+      @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return seriesService.getCategorySeries(
+        () -> createHistogramDataset(from, to, windDataService::getDirectionHistogramForTimeRange, 20d, false),
+        getHistogramTitle("direction"),
+        getHistogramXLabel("direction", "°"),
+        HISTOGRAM_Y_LABEL,
+        format);
+  }
+
+  private CompletableFuture<ResponseEntity<StreamingResponseBody>> getHistogram(
       String fromString,
       String toString,
       BiFunction<Date, Date, List<DoubleValueCount>> histogramProvider,
       String histogramEntityName,
       String histogramEntityUnits,
       double bucketSize,
-      boolean extraBucketForZero)
+      boolean extraBucketForZero,
+      String endpoint,
+      ChartFormat format,
+      String ifNoneMatch)
   {
     Date from = dateTimeService.parse(fromString);
     Date to = dateTimeService.parse(toString);
+    return chartCacheService.getChart(
+        new ChartCacheKey(
+            endpoint,
+            from,
+            to,
+            format),
+        ifNoneMatch,
+        () ->
+    {
+      JFreeChart histogram = createHistogramChart(
+          createHistogramDataset(from, to, histogramProvider, bucketSize, extraBucketForZero),
+          histogramEntityName,
+          histogramEntityUnits);
+      return chartService.createReponseEntityFromChart(histogram, format);
+    });
+  }
+
+  private JFreeChart createHistogramChart(
+      CategoryDataset dataset,
+      String histogramEntityName,
+      String histogramEntityUnits)
+  {
+    JFreeChart histogram = ChartFactory.createBarChart(
+        getHistogramTitle(histogramEntityName),
+        getHistogramXLabel(histogramEntityName, histogramEntityUnits),
+        HISTOGRAM_Y_LABEL,
+        dataset);
+    histogram.removeLegend();
+    return histogram;
+  }
+
+  private String getHistogramTitle(String histogramEntityName)
+  {
+    return histogramEntityName + " histogram";
+  }
+
+  private String getHistogramXLabel(String histogramEntityName, String histogramEntityUnits)
+  {
+    return histogramEntityName + " [" + histogramEntityUnits + "]";
+  }
+
+  private CategoryDataset createHistogramDataset(
+      Date from,
+      Date to,
+      BiFunction<Date, Date, List<DoubleValueCount>> histogramProvider,
+      double bucketSize,
+      boolean extraBucketForZero)
+  {
     List<DoubleValueCount> speedHistogram = histogramProvider.apply(from, to);
     DefaultCategoryDataset dataset = new DefaultCategoryDataset();
 
@@ -158,12 +379,115 @@ public class WindChartController
         }
       }
     }
-    JFreeChart histogram = ChartFactory.createBarChart(
-        histogramEntityName + " histogram",
-        histogramEntityName + " [" + histogramEntityUnits + "]",
-        "count",
-        dataset);
-    histogram.removeLegend();
-    return chartService.createReponseEntityFromChart(histogram);
+    return dataset;
+  }
+
+  /**
+   * Draws a wind rose, i.e. the percentage of data points in each direction sector,
+   * stacked by speed band.
+   *
+   * @param sectorDegrees the width of the direction sectors, must be a multiple of 10 which divides 360.
+   * @param speedBands the upper limits of the speed bands in knots, ascending.
+   */
+  @RequestMapping(value = "/wind/rose", produces={"image/png", "image/svg+xml"})
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getWindRose(
+      @RequestParam("from") String fromString,
+      @RequestParam("to") String toString,
+      @RequestParam(value = "sectorDegrees", defaultValue = "30") int sectorDegrees,
+      @RequestParam(value = "speedBands", defaultValue = "5,10,15,20,25") double[] speedBands,
+      @RequestParam(value = "format", defaultValue = "PNG") ChartFormat format,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return chartCacheService.getChart(
+        new ChartCacheKey(
+            "/wind/rose",
+            from,
+            to,
+            sectorDegrees,
+            speedBands,
+            format),
+        ifNoneMatch,
+        () ->
+    {
+      JFreeChart chart = createWindRoseChart(from, to, sectorDegrees, speedBands);
+      return chartService.createReponseEntityFromChart(chart, format);
+    });
+  }
+
+  @RequestMapping(value = "/wind/rose/series")
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getWindRoseSeries(
+      @RequestParam("from") String fromString,
+      @RequestParam("to") String toString,
+      @RequestParam(value = "sectorDegrees", defaultValue = "30") int sectorDegrees,
+      @RequestParam(value = "speedBands", defaultValue = "5,10,15,20,25") double[] speedBands,
+      @RequestParam(value = "format", defaultValue = "JSON") SeriesFormat format)
+  {
+    Date from = dateTimeService.parse(fromString);
+    Date to = dateTimeService.parse(toString);
+    return seriesService.getXYSeries(
+        () -> createWindRoseDataset(from, to, sectorDegrees, speedBands),
+        WIND_ROSE_TITLE,
+        WIND_ROSE_X_LABEL,
+        WIND_ROSE_Y_LABEL,
+        format);
+  }
+
+  private JFreeChart createWindRoseChart(Date from, Date to, int sectorDegrees, double[] speedBands)
+  {
+    XYDataset dataset = createWindRoseDataset(from, to, sectorDegrees, speedBands);
+    JFreeChart chart = ChartFactory.createPolarChart(WIND_ROSE_TITLE, dataset, true, false, false);
+    DefaultPolarItemRenderer renderer = (DefaultPolarItemRenderer) ((PolarPlot) chart.getPlot()).getRenderer();
+    for (int series = 0; series < dataset.getSeriesCount(); series++)
+    {
+      renderer.setSeriesFilled(series, true);
+    }
+    return chart;
+  }
+
+  private XYDataset createWindRoseDataset(Date from, Date to, int sectorDegrees, double[] speedBands)
+  {
+    long[][] windRose = windDataService.getSpeedDirectionHistogram(from, to).getWindRose(sectorDegrees, speedBands);
+
+    long total = 0;
+    for (long[] bandCounts : windRose)
+    {
+      for (long count : bandCounts)
+      {
+        total += count;
+      }
+    }
+    // bands are cumulated and the fastest band is drawn first, so that slower bands are drawn on top of it
+    XYSeriesCollection dataset = new XYSeriesCollection();
+    for (int band = windRose.length - 1; band >= 0; band--)
+    {
+      XYSeries series = new XYSeries(getSpeedBandName(band, speedBands));
+      for (int sector = 0; sector < windRose[band].length; sector++)
+      {
+        long cumulatedCount = 0;
+        for (int slowerBand = 0; slowerBand <= band; slowerBand++)
+        {
+          cumulatedCount += windRose[slowerBand][sector];
+        }
+        double percentage = total == 0 ? 0d : cumulatedCount * 100d / total;
+        series.add((sector + 0.5d) * sectorDegrees, percentage);
+      }
+      dataset.addSeries(series);
+    }
+    return dataset;
+  }
+
+  private String getSpeedBandName(int band, double[] speedBands)
+  {
+    if (speedBands.length == 0)
+    {
+      return "all speeds";
+    }
+    if (band == speedBands.length)
+    {
+      return ">= " + speedBands[band - 1] + " kts";
+    }
+    return "< " + speedBands[band] + " kts";
   }
 }
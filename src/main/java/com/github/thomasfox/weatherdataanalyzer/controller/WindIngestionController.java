@@ -0,0 +1,50 @@
+package com.github.thomasfox.weatherdataanalyzer.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.github.thomasfox.weatherdataanalyzer.service.WindIngestionService;
+import com.github.thomasfox.weatherdataanalyzer.service.model.IngestionResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindIngestionFormat;
+
+import lombok.AllArgsConstructor;
+
+@RestController
+@Profile("!archive")
+@AllArgsConstructor
+public class WindIngestionController
+{
+  /** seconds after which a rejected client should retry. */
+  private static final int RETRY_AFTER_SECONDS = 5;
+
+  private final WindIngestionService windIngestionService;
+
+  /**
+   * Inserts the wind data in the request body, see {@link WindIngestionFormat} for the formats.
+   * Responds with status 429 and a Retry-After header if too many ingestions are running.
+   */
+  @RequestMapping(value = "/wind/ingest", method = RequestMethod.POST)
+  public ResponseEntity<IngestionResult> ingest(
+      @RequestParam(value = "format", defaultValue = "CSV") WindIngestionFormat format,
+      InputStream body)
+      throws IOException
+  {
+    IngestionResult result = windIngestionService.ingest(body, format);
+    if (result == null)
+    {
+      return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+          .header(HttpHeaders.RETRY_AFTER, Integer.toString(RETRY_AFTER_SECONDS))
+          .build();
+    }
+    return ResponseEntity.ok(result);
+  }
+}
@@ -0,0 +1,93 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataBlock;
+
+/**
+ * Writes wind data points in JDBC batches, bypassing the persistence context.
+ * For best throughput, the MySQL driver should be configured with <code>rewriteBatchedStatements=true</code>,
+ * so that a batch is sent as a single multi-row insert.
+ */
+@Repository
+@Profile("!archive")
+public class WindBatchRepository
+{
+  private static final String INSERT
+      = "INSERT INTO wind (time, speed, direction, gusts, averaged) VALUES (?, ?, ?, ?, 0)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public WindBatchRepository(DataSource dataSource)
+  {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  /**
+   * Returns the times of all data points in a time range.
+   *
+   * @param start the start of the time range in milliseconds, inclusive.
+   * @param end the end of the time range in milliseconds, inclusive.
+   *
+   * @return the times in milliseconds, not null.
+   */
+  public Set<Long> getTimes(long start, long end)
+  {
+    Set<Long> result = new HashSet<>();
+    jdbcTemplate.query(
+        "SELECT time FROM wind WHERE time >= ? AND time <= ?",
+        resultSet -> { result.add(resultSet.getTimestamp(1).getTime()); },
+        new Timestamp(start),
+        new Timestamp(end));
+    return result;
+  }
+
+  /**
+   * Inserts data points of a block in a single batch.
+   *
+   * @param block the block containing the data points, not null.
+   * @param skip which data points of the block should not be inserted, indexed like the block, not null.
+   */
+  public void insert(WindDataBlock block, boolean[] skip)
+  {
+    int[] indices = new int[block.size()];
+    int size = 0;
+    for (int i = 0; i < block.size(); i++)
+    {
+      if (!skip[i])
+      {
+        indices[size++] = i;
+      }
+    }
+    int batchSize = size;
+    jdbcTemplate.batchUpdate(INSERT, new BatchPreparedStatementSetter()
+    {
+      @Override
+      public void setValues(PreparedStatement statement, int i) throws SQLException
+      {
+        int index = indices[i];
+        statement.setTimestamp(1, new Timestamp(block.getTimes()[index]));
+        statement.setInt(2, block.getSpeeds()[index]);
+        statement.setInt(3, block.getDirections()[index]);
+        statement.setInt(4, block.getGusts()[index]);
+      }
+
+      @Override
+      public int getBatchSize()
+      {
+        return batchSize;
+      }
+    });
+  }
+}
@@ -0,0 +1,9 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import org.springframework.data.repository.CrudRepository;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindGapIndexState;
+
+public interface WindGapIndexStateRepository extends CrudRepository<WindGapIndexState, Integer>
+{
+}
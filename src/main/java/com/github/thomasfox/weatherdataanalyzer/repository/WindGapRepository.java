@@ -0,0 +1,26 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindGap;
+
+public interface WindGapRepository extends CrudRepository<WindGap, Date>
+{
+  @Query(value = "SELECT g FROM WindGap g"
+      + " WHERE g.gapEnd >= :start AND g.gapEnd < :end AND g.lengthMillis >= :minLengthMillis"
+      + " ORDER BY g.gapEnd")
+  List<WindGap> getGaps(
+      @Param("start") Date start,
+      @Param("end") Date end,
+      @Param("minLengthMillis") long minLengthMillis);
+
+  @Modifying
+  @Query(value = "DELETE FROM WindGap g WHERE g.gapEnd >= :start AND g.gapEnd < :end")
+  void deleteGaps(@Param("start") Date start, @Param("end") Date end);
+}
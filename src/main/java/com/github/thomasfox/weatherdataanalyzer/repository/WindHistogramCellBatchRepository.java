@@ -0,0 +1,56 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindHistogramCell;
+
+/**
+ * Adds sample counts to the cells of the histogram cube in a single batch,
+ * without reading the existing cells first.
+ */
+@Repository
+@Profile("!archive")
+public class WindHistogramCellBatchRepository
+{
+  private static final String UPSERT = "INSERT INTO wind_histogram_cell"
+      + " (resolution_hours, bucket_start, speed, direction_bin, sample_count)"
+      + " VALUES (?, ?, ?, ?, ?)"
+      + " ON DUPLICATE KEY UPDATE sample_count = sample_count + VALUES(sample_count)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public WindHistogramCellBatchRepository(DataSource dataSource)
+  {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  /**
+   * Adds the sample counts of the given cells to the stored cells with the same key.
+   * Cells which do not exist yet are created.
+   *
+   * @param cells the cells containing the counts to add, not null.
+   */
+  public void addSampleCounts(Collection<WindHistogramCell> cells)
+  {
+    List<Object[]> batchArguments = new ArrayList<>(cells.size());
+    for (WindHistogramCell cell : cells)
+    {
+      batchArguments.add(new Object[] {
+          cell.getResolutionHours(),
+          new Timestamp(cell.getBucketStart().getTime()),
+          cell.getSpeed(),
+          cell.getDirectionBin(),
+          cell.getSampleCount()});
+    }
+    jdbcTemplate.batchUpdate(UPSERT, batchArguments);
+  }
+}
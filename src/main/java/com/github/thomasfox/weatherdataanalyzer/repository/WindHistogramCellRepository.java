@@ -0,0 +1,23 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.SpeedDirectionCount;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindHistogramCell;
+
+public interface WindHistogramCellRepository extends CrudRepository<WindHistogramCell, WindHistogramCell.Key>
+{
+  @Query(value = "SELECT c.speed AS speed, c.directionBin AS directionBin, sum(c.sampleCount) AS count"
+      + " FROM WindHistogramCell c"
+      + " WHERE c.resolutionHours = :resolutionHours AND c.bucketStart >= :start AND c.bucketStart < :end"
+      + " GROUP BY c.speed, c.directionBin")
+  List<SpeedDirectionCount> getCounts(
+      @Param("resolutionHours") int resolutionHours,
+      @Param("start") Date start,
+      @Param("end") Date end);
+}
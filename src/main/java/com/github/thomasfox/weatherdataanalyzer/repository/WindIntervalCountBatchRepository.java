@@ -0,0 +1,54 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindIntervalCount;
+
+/**
+ * Adds interval counts to the interval histogram of the gap index in a single batch,
+ * without reading the existing counts first.
+ */
+@Repository
+@Profile("!archive")
+public class WindIntervalCountBatchRepository
+{
+  private static final String UPSERT = "INSERT INTO wind_interval_count"
+      + " (day_start, interval_seconds, interval_count)"
+      + " VALUES (?, ?, ?)"
+      + " ON DUPLICATE KEY UPDATE interval_count = interval_count + VALUES(interval_count)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public WindIntervalCountBatchRepository(DataSource dataSource)
+  {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  /**
+   * Adds the given counts to the stored counts with the same key.
+   * Counts which do not exist yet are created.
+   *
+   * @param counts the counts to add, not null.
+   */
+  public void addIntervalCounts(Collection<WindIntervalCount> counts)
+  {
+    List<Object[]> batchArguments = new ArrayList<>(counts.size());
+    for (WindIntervalCount count : counts)
+    {
+      batchArguments.add(new Object[] {
+          new Timestamp(count.getDayStart().getTime()),
+          count.getIntervalSeconds(),
+          count.getIntervalCount()});
+    }
+    jdbcTemplate.batchUpdate(UPSERT, batchArguments);
+  }
+}
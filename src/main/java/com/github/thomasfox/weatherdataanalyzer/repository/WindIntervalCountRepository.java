@@ -0,0 +1,27 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindIntervalCount;
+
+public interface WindIntervalCountRepository extends CrudRepository<WindIntervalCount, WindIntervalCount.Key>
+{
+  @Query(value = "SELECT new com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount("
+      + "c.intervalSeconds, sum(c.intervalCount))"
+      + " FROM WindIntervalCount c"
+      + " WHERE c.dayStart >= :start AND c.dayStart < :end"
+      + " GROUP BY c.intervalSeconds"
+      + " ORDER BY c.intervalSeconds ASC")
+  List<IntValueCount> getCounts(@Param("start") Date start, @Param("end") Date end);
+
+  @Modifying
+  @Query(value = "DELETE FROM WindIntervalCount c WHERE c.dayStart = :dayStart")
+  void deleteByDayStart(@Param("dayStart") Date dayStart);
+}
@@ -0,0 +1,9 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import org.springframework.data.repository.CrudRepository;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindQualityIndexState;
+
+public interface WindQualityIndexStateRepository extends CrudRepository<WindQualityIndexState, Integer>
+{
+}
@@ -0,0 +1,23 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindQualityIssue;
+
+public interface WindQualityIssueRepository extends CrudRepository<WindQualityIssue, WindQualityIssue.Key>
+{
+  @Query(value = "SELECT i FROM WindQualityIssue i"
+      + " WHERE i.issueEnd > :start AND i.issueStart < :end"
+      + " ORDER BY i.issueStart")
+  List<WindQualityIssue> getIssuesOverlapping(@Param("start") Date start, @Param("end") Date end);
+
+  @Modifying
+  @Query(value = "DELETE FROM WindQualityIssue i WHERE i.issueStart >= :start AND i.issueStart < :end")
+  void deleteIssuesStartingIn(@Param("start") Date start, @Param("end") Date end);
+}
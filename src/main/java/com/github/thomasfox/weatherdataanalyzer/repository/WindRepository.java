@@ -7,8 +7,12 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 
+import com.github.thomasfox.weatherdataanalyzer.repository.model.BucketSums;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.DatasetMetadata;
 import com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.SpeedDirectionCount;
 import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindAggregate;
 
 public interface WindRepository extends CrudRepository<Wind, Integer>
 {
@@ -21,13 +25,50 @@ public interface WindRepository extends CrudRepository<Wind, Integer>
   @Query(value = "SELECT max(time) FROM Wind")
   Date getMaxTime();
 
-  @Query(value = "SELECT avg(speed) FROM Wind WHERE time >= :start AND time < :end")
-  Double getAverageSpeed(@Param("start") Date start, @Param("end") Date end);
+  @Query(value = "SELECT max(time) FROM Wind WHERE time < :time")
+  Date getMaxTimeBefore(@Param("time") Date time);
 
-  @Query(value = "SELECT avg(direction) FROM Wind WHERE time >= :start AND time < :end")
-  Double getAverageDirection(@Param("start") Date start, @Param("end") Date end);
+  @Query(value = "SELECT max(id) FROM Wind")
+  Integer getMaxId();
 
-  List<Wind> findByTimeGreaterThanAndTimeLessThanEqualOrderByTime(Date start, Date end);
+  @Query(value = "SELECT new com.github.thomasfox.weatherdataanalyzer.repository.model.DatasetMetadata("
+      + "count(*), min(time), max(time), max(id))"
+      + " FROM Wind")
+  DatasetMetadata getDatasetMetadata();
+
+  @Query(value = "SELECT new com.github.thomasfox.weatherdataanalyzer.repository.model.DatasetMetadata("
+      + "count(*), min(time), max(time), max(id))"
+      + " FROM Wind"
+      + " WHERE id > :id")
+  DatasetMetadata getDatasetMetadataForIdGreaterThan(@Param("id") int id);
+
+  @Query(value = "SELECT new com.github.thomasfox.weatherdataanalyzer.repository.model.WindAggregate("
+      + "count(*),"
+      + " sum(speed),"
+      + " sum(sin(radians(direction))),"
+      + " sum(cos(radians(direction))),"
+      + " min(speed),"
+      + " max(speed),"
+      + " max(gusts))"
+      + " FROM Wind"
+      + " WHERE time >= :start AND time < :end")
+  WindAggregate getAggregate(@Param("start") Date start, @Param("end") Date end);
+
+  @Query(nativeQuery = true, value = "SELECT CAST(FLOOR(TIMESTAMPDIFF(MICROSECOND, :start, time) / (1000 * :bucketMillis)) AS SIGNED) AS bucket,"
+      + " count(*) AS count,"
+      + " sum(speed) AS speedSum,"
+      + " sum(sin(radians(direction))) AS directionSinSum,"
+      + " sum(cos(radians(direction))) AS directionCosSum"
+      + " FROM wind"
+      + " WHERE time >= :start AND time < :end"
+      + " GROUP BY bucket"
+      + " ORDER BY bucket ASC")
+  List<BucketSums> getBucketSums(
+      @Param("start") Date start,
+      @Param("end") Date end,
+      @Param("bucketMillis") long bucketMillis);
+
+  List<Wind> findTop10000ByIdGreaterThanOrderById(int id);
 
   @Query(value = "SELECT new com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount(speed, COUNT(speed))"
       + " FROM Wind"
@@ -42,4 +83,15 @@ public interface WindRepository extends CrudRepository<Wind, Integer>
       + " GROUP BY direction"
       + " ORDER BY direction ASC")
   List<IntValueCount> getDirectionHistogram(Date start, Date end);
+
+  @Query(nativeQuery = true, value = "SELECT speed,"
+      + " FLOOR(MOD(MOD(direction, 360) + 360, 360) / :directionBinDegrees) AS directionBin,"
+      + " count(*) AS count"
+      + " FROM wind"
+      + " WHERE time >= :start AND time < :end"
+      + " GROUP BY speed, directionBin")
+  List<SpeedDirectionCount> getSpeedDirectionCounts(
+      @Param("start") Date start,
+      @Param("end") Date end,
+      @Param("directionBinDegrees") int directionBinDegrees);
 }
@@ -0,0 +1,34 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindAggregate;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindRollup;
+
+public interface WindRollupRepository extends CrudRepository<WindRollup, WindRollup.Key>
+{
+  @Query(value = "SELECT new com.github.thomasfox.weatherdataanalyzer.repository.model.WindAggregate("
+      + "sum(r.aggregate.count),"
+      + " sum(r.aggregate.speedSum),"
+      + " sum(r.aggregate.directionSinSum),"
+      + " sum(r.aggregate.directionCosSum),"
+      + " min(r.aggregate.minSpeed),"
+      + " max(r.aggregate.maxSpeed),"
+      + " max(r.aggregate.maxGusts))"
+      + " FROM WindRollup r"
+      + " WHERE r.resolutionMinutes = :resolutionMinutes AND r.bucketStart >= :start AND r.bucketStart < :end")
+  WindAggregate getAggregate(
+      @Param("resolutionMinutes") int resolutionMinutes,
+      @Param("start") Date start,
+      @Param("end") Date end);
+
+  List<WindRollup> findByResolutionMinutesAndBucketStartGreaterThanEqualAndBucketStartLessThanOrderByBucketStart(
+      int resolutionMinutes,
+      Date start,
+      Date end);
+}
@@ -0,0 +1,107 @@
+package com.github.thomasfox.weatherdataanalyzer.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+
+/**
+ * Read-only access to the wind table which streams rows to a consumer
+ * instead of loading them as entities into memory.
+ * Only the columns needed for analysis are read, and the persistence context is bypassed.
+ * The consumer must not access the database because the connection is busy while streaming.
+ */
+@Repository
+@Profile("!archive")
+public class WindStreamingRepository
+{
+  /**
+   * The fetch size which makes the MySQL driver stream the result set row by row
+   * instead of reading it completely into memory.
+   */
+  private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+  private static final String SELECT_COLUMNS = "SELECT time, speed, direction, gusts FROM wind";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public WindStreamingRepository(DataSource dataSource)
+  {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.jdbcTemplate.setFetchSize(STREAMING_FETCH_SIZE);
+  }
+
+  /**
+   * Streams all data points after the start time and before or at the end time, ordered by time.
+   *
+   * @param start the start of the time range, exclusive.
+   * @param end the end of the time range, inclusive.
+   * @param consumer the consumer for the data points, not null.
+   */
+  public void forEachWithTimeGreaterThanAndTimeLessThanEqual(Date start, Date end, WindSampleConsumer consumer)
+  {
+    jdbcTemplate.query(
+        SELECT_COLUMNS + " WHERE time > ? AND time <= ? ORDER BY time",
+        new WindSampleRowCallbackHandler(consumer),
+        start,
+        end);
+  }
+
+  /**
+   * Streams all data points at or after the start time and before the end time, ordered by time.
+   *
+   * @param start the start of the time range, inclusive.
+   * @param end the end of the time range, exclusive.
+   * @param consumer the consumer for the data points, not null.
+   */
+  public void forEachWithTimeGreaterThanEqualAndTimeLessThan(Date start, Date end, WindSampleConsumer consumer)
+  {
+    jdbcTemplate.query(
+        SELECT_COLUMNS + " WHERE time >= ? AND time < ? ORDER BY time",
+        new WindSampleRowCallbackHandler(consumer),
+        start,
+        end);
+  }
+
+  /**
+   * Streams all data points with an id smaller than or equal to the given id, ordered by time.
+   *
+   * @param maxId the largest id to return.
+   * @param consumer the consumer for the data points, not null.
+   */
+  public void forEachWithIdLessThanEqual(int maxId, WindSampleConsumer consumer)
+  {
+    jdbcTemplate.query(
+        SELECT_COLUMNS + " WHERE id <= ? ORDER BY time",
+        new WindSampleRowCallbackHandler(consumer),
+        maxId);
+  }
+
+  private static class WindSampleRowCallbackHandler implements RowCallbackHandler
+  {
+    private final WindSampleConsumer consumer;
+
+    WindSampleRowCallbackHandler(WindSampleConsumer consumer)
+    {
+      this.consumer = consumer;
+    }
+
+    @Override
+    public void processRow(ResultSet resultSet) throws SQLException
+    {
+      consumer.accept(
+          resultSet.getTimestamp(1).getTime(),
+          resultSet.getInt(2),
+          resultSet.getInt(3),
+          resultSet.getInt(4));
+    }
+  }
+}
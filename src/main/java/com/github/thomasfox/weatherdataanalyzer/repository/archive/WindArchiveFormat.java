@@ -0,0 +1,118 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.archive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and bit packing for the wind archive format.
+ * <p>
+ * An archive file consists of a header, the data blocks, and an index with one entry per block.
+ * All numbers are big-endian.
+ * <ul>
+ * <li>header: magic number (int), version (int), offset of the index (long), number of blocks (int)</li>
+ * <li>block: number of data points (int), time of the first data point (long), minimum time delta (long),
+ *   minimum speed, direction and gusts (int each), bit widths of time delta, speed, direction and gusts
+ *   (byte each), followed by the bit-packed time deltas, speeds, directions and gusts.
+ *   Each value is stored as the difference to the minimum of its column, using the bit width of the column,
+ *   and each column starts at a long boundary.</li>
+ * <li>index entry: time of the first and last data point (long each), offset of the block (long),
+ *   length of the block in bytes (int), number of data points (int)</li>
+ * </ul>
+ * Data points are ordered by time over the whole file.
+ */
+final class WindArchiveFormat
+{
+  static final int MAGIC = 0x57444131;
+
+  static final int VERSION = 1;
+
+  static final int HEADER_SIZE = 20;
+
+  static final int BLOCK_HEADER_SIZE = 36;
+
+  static final int INDEX_ENTRY_SIZE = 32;
+
+  /** the maximum number of data points in a block. */
+  static final int BLOCK_SIZE = 4096;
+
+  private WindArchiveFormat()
+  {
+  }
+
+  /**
+   * Returns the number of bits needed to store values between 0 and the given range, inclusive.
+   *
+   * @param range the difference between maximum and minimum value, interpreted as unsigned.
+   */
+  static int getBitWidth(long range)
+  {
+    return 64 - Long.numberOfLeadingZeros(range);
+  }
+
+  static int getWordCount(int valueCount, int bitWidth)
+  {
+    return (int) (((long) valueCount * bitWidth + 63) / 64);
+  }
+
+  /**
+   * Packs values into longs, using the given number of bits per value.
+   *
+   * @param values the values to pack, must fit into <code>bitWidth</code> bits.
+   * @param valueCount the number of values to pack.
+   * @param bitWidth the number of bits per value, between 0 and 64.
+   * @param target the buffer to write the packed longs to.
+   */
+  static void pack(long[] values, int valueCount, int bitWidth, ByteBuffer target)
+  {
+    if (bitWidth == 0)
+    {
+      return;
+    }
+    long[] words = new long[getWordCount(valueCount, bitWidth)];
+    for (int i = 0; i < valueCount; i++)
+    {
+      long bitPosition = (long) i * bitWidth;
+      int word = (int) (bitPosition >>> 6);
+      int shift = (int) (bitPosition & 63);
+      words[word] |= values[i] << shift;
+      if (shift + bitWidth > 64)
+      {
+        words[word + 1] |= values[i] >>> (64 - shift);
+      }
+    }
+    for (long word : words)
+    {
+      target.putLong(word);
+    }
+  }
+
+  /**
+   * Reads a single value from packed longs.
+   *
+   * @param source the buffer containing the packed longs.
+   * @param offset the offset of the first packed long in the buffer.
+   * @param index the index of the value to read.
+   * @param bitWidth the number of bits per value, between 0 and 64.
+   *
+   * @return the value.
+   */
+  static long unpack(ByteBuffer source, int offset, int index, int bitWidth)
+  {
+    if (bitWidth == 0)
+    {
+      return 0;
+    }
+    long bitPosition = (long) index * bitWidth;
+    int word = (int) (bitPosition >>> 6);
+    int shift = (int) (bitPosition & 63);
+    long value = source.getLong(offset + word * 8) >>> shift;
+    if (shift + bitWidth > 64)
+    {
+      value |= source.getLong(offset + (word + 1) * 8) << (64 - shift);
+    }
+    if (bitWidth == 64)
+    {
+      return value;
+    }
+    return value & ((1L << bitWidth) - 1);
+  }
+}
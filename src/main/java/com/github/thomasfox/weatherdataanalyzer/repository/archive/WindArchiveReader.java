@@ -0,0 +1,229 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+
+/**
+ * Read-only access to a wind archive file, see {@link WindArchiveFormat}.
+ * The file is memory-mapped, and data points are decoded directly from the mapped blocks,
+ * so only the index is held on the heap.
+ * Instances are immutable and can be used by several threads concurrently.
+ */
+public class WindArchiveReader
+{
+  /** files are mapped in segments of at most this size, each containing whole blocks. */
+  private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+  private final long[] blockStartTimes;
+
+  private final long[] blockEndTimes;
+
+  private final int[] blockCounts;
+
+  private final ByteBuffer[] blocks;
+
+  private final long count;
+
+  public WindArchiveReader(Path file) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+    {
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, WindArchiveFormat.HEADER_SIZE);
+      if (header.getInt() != WindArchiveFormat.MAGIC)
+      {
+        throw new IllegalArgumentException(file + " is not a wind archive");
+      }
+      int version = header.getInt();
+      if (version != WindArchiveFormat.VERSION)
+      {
+        throw new IllegalArgumentException("unsupported wind archive version " + version + " in " + file);
+      }
+      long indexOffset = header.getLong();
+      int blockCount = header.getInt();
+
+      MappedByteBuffer index = channel.map(
+          FileChannel.MapMode.READ_ONLY,
+          indexOffset,
+          (long) blockCount * WindArchiveFormat.INDEX_ENTRY_SIZE);
+      blockStartTimes = new long[blockCount];
+      blockEndTimes = new long[blockCount];
+      blockCounts = new int[blockCount];
+      long[] blockOffsets = new long[blockCount];
+      int[] blockLengths = new int[blockCount];
+      long totalCount = 0;
+      for (int i = 0; i < blockCount; i++)
+      {
+        blockStartTimes[i] = index.getLong();
+        blockEndTimes[i] = index.getLong();
+        blockOffsets[i] = index.getLong();
+        blockLengths[i] = index.getInt();
+        blockCounts[i] = index.getInt();
+        totalCount += blockCounts[i];
+      }
+      count = totalCount;
+
+      blocks = new ByteBuffer[blockCount];
+      int segmentFirstBlock = 0;
+      while (segmentFirstBlock < blockCount)
+      {
+        long segmentStart = blockOffsets[segmentFirstBlock];
+        int segmentEndBlock = segmentFirstBlock + 1;
+        while (segmentEndBlock < blockCount
+            && blockOffsets[segmentEndBlock] + blockLengths[segmentEndBlock] - segmentStart <= MAX_SEGMENT_SIZE)
+        {
+          segmentEndBlock++;
+        }
+        long segmentLength = blockOffsets[segmentEndBlock - 1] + blockLengths[segmentEndBlock - 1] - segmentStart;
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentLength);
+        for (int i = segmentFirstBlock; i < segmentEndBlock; i++)
+        {
+          int blockStart = (int) (blockOffsets[i] - segmentStart);
+          blocks[i] = segment.duplicate().position(blockStart).limit(blockStart + blockLengths[i]).slice();
+        }
+        segmentFirstBlock = segmentEndBlock;
+      }
+    }
+  }
+
+  public long count()
+  {
+    return count;
+  }
+
+  /**
+   * Returns the time of the first data point in milliseconds, or null if the archive is empty.
+   */
+  public Long getMinTime()
+  {
+    if (blocks.length == 0)
+    {
+      return null;
+    }
+    return blockStartTimes[0];
+  }
+
+  /**
+   * Returns the time of the last data point in milliseconds, or null if the archive is empty.
+   */
+  public Long getMaxTime()
+  {
+    if (blocks.length == 0)
+    {
+      return null;
+    }
+    return blockEndTimes[blocks.length - 1];
+  }
+
+  /**
+   * Counts the data points in a time range. Blocks completely within the time range are not decoded.
+   *
+   * @param start the start of the time range in milliseconds, inclusive.
+   * @param end the end of the time range in milliseconds, exclusive.
+   *
+   * @return the number of data points in the time range.
+   */
+  public long count(long start, long end)
+  {
+    long result = 0;
+    for (int block = getFirstBlockEndingAtOrAfter(start); block < blocks.length; block++)
+    {
+      if (blockStartTimes[block] >= end)
+      {
+        break;
+      }
+      if (blockStartTimes[block] >= start && blockEndTimes[block] < end)
+      {
+        result += blockCounts[block];
+      }
+      else
+      {
+        long[] blockResult = new long[1];
+        forEachInBlock(block, start, end, (time, speed, direction, gusts) -> blockResult[0]++);
+        result += blockResult[0];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Passes all data points in a time range to a consumer, in time order.
+   *
+   * @param start the start of the time range in milliseconds, inclusive.
+   * @param end the end of the time range in milliseconds, exclusive.
+   * @param consumer the consumer for the data points, not null.
+   */
+  public void forEach(long start, long end, WindSampleConsumer consumer)
+  {
+    for (int block = getFirstBlockEndingAtOrAfter(start); block < blocks.length; block++)
+    {
+      if (blockStartTimes[block] >= end)
+      {
+        return;
+      }
+      forEachInBlock(block, start, end, consumer);
+    }
+  }
+
+  private void forEachInBlock(int blockIndex, long start, long end, WindSampleConsumer consumer)
+  {
+    ByteBuffer block = blocks[blockIndex];
+    int size = block.getInt(0);
+    long time = block.getLong(4);
+    long minDelta = block.getLong(12);
+    int minSpeed = block.getInt(20);
+    int minDirection = block.getInt(24);
+    int minGusts = block.getInt(28);
+    int deltaBits = block.get(32);
+    int speedBits = block.get(33);
+    int directionBits = block.get(34);
+    int gustsBits = block.get(35);
+    int deltaOffset = WindArchiveFormat.BLOCK_HEADER_SIZE;
+    int speedOffset = deltaOffset + 8 * WindArchiveFormat.getWordCount(size - 1, deltaBits);
+    int directionOffset = speedOffset + 8 * WindArchiveFormat.getWordCount(size, speedBits);
+    int gustsOffset = directionOffset + 8 * WindArchiveFormat.getWordCount(size, directionBits);
+    for (int i = 0; i < size; i++)
+    {
+      if (i > 0)
+      {
+        time += minDelta + WindArchiveFormat.unpack(block, deltaOffset, i - 1, deltaBits);
+      }
+      if (time >= end)
+      {
+        return;
+      }
+      if (time >= start)
+      {
+        consumer.accept(
+            time,
+            minSpeed + (int) WindArchiveFormat.unpack(block, speedOffset, i, speedBits),
+            minDirection + (int) WindArchiveFormat.unpack(block, directionOffset, i, directionBits),
+            minGusts + (int) WindArchiveFormat.unpack(block, gustsOffset, i, gustsBits));
+      }
+    }
+  }
+
+  private int getFirstBlockEndingAtOrAfter(long time)
+  {
+    int low = 0;
+    int high = blocks.length;
+    while (low < high)
+    {
+      int middle = (low + high) >>> 1;
+      if (blockEndTimes[middle] < time)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,212 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+
+/**
+ * Writes data points to a wind archive file, see {@link WindArchiveFormat}.
+ * The data points must be passed in time order. The file is complete only after {@link #close()}.
+ */
+public class WindArchiveWriter implements WindSampleConsumer, Closeable
+{
+  private final FileChannel channel;
+
+  private final long[] times = new long[WindArchiveFormat.BLOCK_SIZE];
+
+  private final long[] speeds = new long[WindArchiveFormat.BLOCK_SIZE];
+
+  private final long[] directions = new long[WindArchiveFormat.BLOCK_SIZE];
+
+  private final long[] gusts = new long[WindArchiveFormat.BLOCK_SIZE];
+
+  private int size = 0;
+
+  private long lastTime = Long.MIN_VALUE;
+
+  private ByteBuffer index = ByteBuffer.allocate(1024 * WindArchiveFormat.INDEX_ENTRY_SIZE);
+
+  private int blockCount = 0;
+
+  public WindArchiveWriter(Path file) throws IOException
+  {
+    channel = FileChannel.open(
+        file,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+    // the header is written on close, when the index offset is known
+    channel.position(WindArchiveFormat.HEADER_SIZE);
+  }
+
+  @Override
+  public void accept(long time, int speed, int direction, int gust)
+  {
+    if (time < lastTime)
+    {
+      throw new IllegalArgumentException("data points must be ordered by time, but " + time + " follows " + lastTime);
+    }
+    lastTime = time;
+    times[size] = time;
+    speeds[size] = speed;
+    directions[size] = direction;
+    gusts[size] = gust;
+    size++;
+    if (size == WindArchiveFormat.BLOCK_SIZE)
+    {
+      try
+      {
+        writeBlock();
+      }
+      catch (IOException e)
+      {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private void writeBlock() throws IOException
+  {
+    if (size == 0)
+    {
+      return;
+    }
+    long[] deltas = new long[size];
+    long minDelta = Long.MAX_VALUE;
+    long maxDelta = Long.MIN_VALUE;
+    for (int i = 1; i < size; i++)
+    {
+      deltas[i - 1] = times[i] - times[i - 1];
+      minDelta = Math.min(minDelta, deltas[i - 1]);
+      maxDelta = Math.max(maxDelta, deltas[i - 1]);
+    }
+    if (size == 1)
+    {
+      minDelta = 0;
+      maxDelta = 0;
+    }
+    int deltaBits = WindArchiveFormat.getBitWidth(subtractMinimum(deltas, size - 1, minDelta, maxDelta));
+    int minSpeed = (int) min(speeds);
+    int speedBits = WindArchiveFormat.getBitWidth(subtractMinimum(speeds, size, minSpeed, max(speeds)));
+    int minDirection = (int) min(directions);
+    int directionBits = WindArchiveFormat.getBitWidth(
+        subtractMinimum(directions, size, minDirection, max(directions)));
+    int minGusts = (int) min(gusts);
+    int gustsBits = WindArchiveFormat.getBitWidth(subtractMinimum(gusts, size, minGusts, max(gusts)));
+
+    int length = WindArchiveFormat.BLOCK_HEADER_SIZE + 8 * (
+        WindArchiveFormat.getWordCount(size - 1, deltaBits)
+        + WindArchiveFormat.getWordCount(size, speedBits)
+        + WindArchiveFormat.getWordCount(size, directionBits)
+        + WindArchiveFormat.getWordCount(size, gustsBits));
+    ByteBuffer block = ByteBuffer.allocate(length);
+    block.putInt(size);
+    block.putLong(times[0]);
+    block.putLong(minDelta);
+    block.putInt(minSpeed);
+    block.putInt(minDirection);
+    block.putInt(minGusts);
+    block.put((byte) deltaBits);
+    block.put((byte) speedBits);
+    block.put((byte) directionBits);
+    block.put((byte) gustsBits);
+    WindArchiveFormat.pack(deltas, size - 1, deltaBits, block);
+    WindArchiveFormat.pack(speeds, size, speedBits, block);
+    WindArchiveFormat.pack(directions, size, directionBits, block);
+    WindArchiveFormat.pack(gusts, size, gustsBits, block);
+    block.flip();
+
+    long offset = channel.position();
+    writeFully(block);
+
+    if (index.remaining() < WindArchiveFormat.INDEX_ENTRY_SIZE)
+    {
+      ByteBuffer largerIndex = ByteBuffer.allocate(index.capacity() * 2);
+      index.flip();
+      largerIndex.put(index);
+      index = largerIndex;
+    }
+    index.putLong(times[0]);
+    index.putLong(times[size - 1]);
+    index.putLong(offset);
+    index.putInt(length);
+    index.putInt(size);
+    blockCount++;
+    size = 0;
+  }
+
+  /**
+   * Subtracts the minimum from the first values of an array.
+   *
+   * @return the range of the values.
+   */
+  private static long subtractMinimum(long[] values, int valueCount, long min, long max)
+  {
+    for (int i = 0; i < valueCount; i++)
+    {
+      values[i] -= min;
+    }
+    return max - min;
+  }
+
+  private long min(long[] values)
+  {
+    long result = Long.MAX_VALUE;
+    for (int i = 0; i < size; i++)
+    {
+      result = Math.min(result, values[i]);
+    }
+    return result;
+  }
+
+  private long max(long[] values)
+  {
+    long result = Long.MIN_VALUE;
+    for (int i = 0; i < size; i++)
+    {
+      result = Math.max(result, values[i]);
+    }
+    return result;
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException
+  {
+    while (buffer.hasRemaining())
+    {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Writes the remaining data points, the index and the header, and closes the file.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    try
+    {
+      writeBlock();
+      long indexOffset = channel.position();
+      index.flip();
+      writeFully(index);
+
+      ByteBuffer header = ByteBuffer.allocate(WindArchiveFormat.HEADER_SIZE);
+      header.putInt(WindArchiveFormat.MAGIC);
+      header.putInt(WindArchiveFormat.VERSION);
+      header.putLong(indexOffset);
+      header.putInt(blockCount);
+      header.flip();
+      channel.position(0);
+      writeFully(header);
+    }
+    finally
+    {
+      channel.close();
+    }
+  }
+}
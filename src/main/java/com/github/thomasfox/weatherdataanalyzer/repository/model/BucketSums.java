@@ -0,0 +1,22 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+/**
+ * Projection for the sums of the wind data within one bucket of a bucketed aggregation.
+ */
+public interface BucketSums
+{
+  /** index of the bucket, counted from the start of the aggregation. */
+  long getBucket();
+
+  /** number of data points in the bucket. */
+  long getCount();
+
+  /** sum of the speeds in 1/10 knots. */
+  long getSpeedSum();
+
+  /** sum of the sines of the directions. */
+  double getDirectionSinSum();
+
+  /** sum of the cosines of the directions. */
+  double getDirectionCosSum();
+}
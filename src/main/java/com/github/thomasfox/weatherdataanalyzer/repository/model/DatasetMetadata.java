@@ -0,0 +1,73 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+import java.util.Date;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Summary of the rows in the wind table.
+ */
+@Data
+@NoArgsConstructor
+public class DatasetMetadata
+{
+  private long count;
+
+  private Date minTime;
+
+  private Date maxTime;
+
+  /** the largest id of a row in the wind table, 0 if the table is empty. */
+  private int lastIngestedId;
+
+  /**
+   * Constructor for aggregate queries, where all values are null if no row is aggregated.
+   */
+  public DatasetMetadata(Long count, Date minTime, Date maxTime, Integer lastIngestedId)
+  {
+    if (count == null || count == 0)
+    {
+      return;
+    }
+    this.count = count;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.lastIngestedId = lastIngestedId;
+  }
+
+  /**
+   * Creates the metadata of this dataset combined with the rows of another disjoint dataset.
+   *
+   * @param other the metadata of the other dataset, not null.
+   *
+   * @return the combined metadata.
+   */
+  public DatasetMetadata combine(DatasetMetadata other)
+  {
+    DatasetMetadata result = new DatasetMetadata();
+    result.count = count + other.count;
+    result.minTime = earlier(minTime, other.minTime);
+    result.maxTime = later(maxTime, other.maxTime);
+    result.lastIngestedId = Math.max(lastIngestedId, other.lastIngestedId);
+    return result;
+  }
+
+  private static Date earlier(Date date, Date otherDate)
+  {
+    if (date == null || (otherDate != null && otherDate.before(date)))
+    {
+      return otherDate;
+    }
+    return date;
+  }
+
+  private static Date later(Date date, Date otherDate)
+  {
+    if (date == null || (otherDate != null && otherDate.after(date)))
+    {
+      return otherDate;
+    }
+    return date;
+  }
+}
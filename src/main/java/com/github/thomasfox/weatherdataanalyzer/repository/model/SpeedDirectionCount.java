@@ -0,0 +1,15 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+/**
+ * Projection for the number of data points with a given speed and direction bin.
+ */
+public interface SpeedDirectionCount
+{
+  /** the speed in 1/10 knots. */
+  int getSpeed();
+
+  /** the index of the direction bin, see {@link WindHistogramCell#DIRECTION_BIN_DEGREES}. */
+  int getDirectionBin();
+
+  long getCount();
+}
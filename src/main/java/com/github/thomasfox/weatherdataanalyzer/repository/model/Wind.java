@@ -5,8 +5,6 @@ import java.util.Date;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 
-import com.github.thomasfox.weatherdataanalyzer.service.model.TimeData;
-
 import lombok.Data;
 
 @Data
@@ -40,14 +38,4 @@ public class Wind
   {
     return (speed) * WIND_SPEED_IN_KNOTS_DATABASE_FACTOR;
   }
-
-  public TimeData getSpeedTimeData()
-  {
-    return new  TimeData(getTime().getTime(), getSpeedInKnots());
-  }
-
-  public TimeData getDirectionTimeData()
-  {
-    return new  TimeData(getTime().getTime(), getDirection());
-  }
 }
@@ -0,0 +1,128 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+import javax.persistence.Embeddable;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindStatistics;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Aggregated values of a set of wind data points, in database units.
+ * Aggregates of disjoint sets of data points can be combined by adding them.
+ */
+@Data
+@NoArgsConstructor
+@Embeddable
+public class WindAggregate
+{
+  private long count;
+
+  /** sum of the speeds in 1/10 knots. */
+  private long speedSum;
+
+  /** sum of the sines of the directions. */
+  private double directionSinSum;
+
+  /** sum of the cosines of the directions. */
+  private double directionCosSum;
+
+  /** minimum speed in 1/10 knots, or Integer.MAX_VALUE if the aggregate is empty. */
+  private int minSpeed = Integer.MAX_VALUE;
+
+  /** maximum speed in 1/10 knots, or Integer.MIN_VALUE if the aggregate is empty. */
+  private int maxSpeed = Integer.MIN_VALUE;
+
+  /** maximum gusts in 1/10 knots, or Integer.MIN_VALUE if the aggregate is empty. */
+  private int maxGusts = Integer.MIN_VALUE;
+
+  /**
+   * Constructor for aggregate queries, where all values are null if no data point is aggregated.
+   */
+  public WindAggregate(
+      Long count,
+      Long speedSum,
+      Double directionSinSum,
+      Double directionCosSum,
+      Integer minSpeed,
+      Integer maxSpeed,
+      Integer maxGusts)
+  {
+    if (count == null || count == 0)
+    {
+      return;
+    }
+    this.count = count;
+    this.speedSum = speedSum;
+    this.directionSinSum = directionSinSum;
+    this.directionCosSum = directionCosSum;
+    this.minSpeed = minSpeed;
+    this.maxSpeed = maxSpeed;
+    this.maxGusts = maxGusts;
+  }
+
+  public void add(int speed, int direction, int gusts)
+  {
+    count++;
+    speedSum += speed;
+    directionSinSum += WindStatistics.sin(direction);
+    directionCosSum += WindStatistics.cos(direction);
+    minSpeed = Math.min(minSpeed, speed);
+    maxSpeed = Math.max(maxSpeed, speed);
+    maxGusts = Math.max(maxGusts, gusts);
+  }
+
+  public void add(WindAggregate other)
+  {
+    count += other.count;
+    speedSum += other.speedSum;
+    directionSinSum += other.directionSinSum;
+    directionCosSum += other.directionCosSum;
+    minSpeed = Math.min(minSpeed, other.minSpeed);
+    maxSpeed = Math.max(maxSpeed, other.maxSpeed);
+    maxGusts = Math.max(maxGusts, other.maxGusts);
+  }
+
+  /**
+   * Returns the average speed in 1/10 knots.
+   *
+   * @return the average speed, or null if the aggregate is empty.
+   */
+  public Double getAverageSpeed()
+  {
+    if (count == 0)
+    {
+      return null;
+    }
+    return ((double) speedSum) / count;
+  }
+
+  /**
+   * Returns the direction of the mean of the unit vectors of the directions,
+   * which is also correct for directions around north.
+   *
+   * @return the average direction in degrees in [0, 360[, or null if the aggregate is empty.
+   */
+  public Double getAverageDirection()
+  {
+    if (count == 0)
+    {
+      return null;
+    }
+    return WindStatistics.getMeanDirection(directionSinSum, directionCosSum);
+  }
+
+  /**
+   * Returns the circular variance of the direction, i.e. one minus the length of the mean unit vector.
+   *
+   * @return the circular variance between 0 and 1, or null if the aggregate is empty.
+   */
+  public Double getCircularDirectionVariance()
+  {
+    if (count == 0)
+    {
+      return null;
+    }
+    return 1 - Math.hypot(directionSinSum, directionCosSum) / count;
+  }
+}
@@ -0,0 +1,27 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+
+/**
+ * A sampling gap, i.e. two consecutive data points of the wind table which are further apart
+ * than the minimum gap length of the gap index.
+ */
+@Data
+@Entity
+public class WindGap
+{
+  /** time of the data point after the gap. */
+  @Id
+  private Date gapEnd;
+
+  /** time of the data point before the gap. */
+  private Date gapStart;
+
+  /** the time between the data points in milliseconds. */
+  private long lengthMillis;
+}
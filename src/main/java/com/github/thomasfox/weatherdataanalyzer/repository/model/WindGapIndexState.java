@@ -0,0 +1,27 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+
+/**
+ * Progress of the gap index maintenance. There is only a single row.
+ */
+@Data
+@Entity
+public class WindGapIndexState
+{
+  public static final int ID = 1;
+
+  @Id
+  private int id = ID;
+
+  /** the largest id of the wind rows which are contained in the gap index. */
+  private int lastProcessedId;
+
+  /** the latest time of the wind rows which are contained in the gap index. */
+  private Date processedUntil;
+}
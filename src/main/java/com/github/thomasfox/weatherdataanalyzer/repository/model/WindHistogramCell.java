@@ -0,0 +1,66 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of data points with a given speed and direction bin within a time bucket of a fixed resolution.
+ */
+@Data
+@Entity
+@IdClass(WindHistogramCell.Key.class)
+public class WindHistogramCell
+{
+  /** width of a direction bin in degrees. */
+  public static final int DIRECTION_BIN_DEGREES = 10;
+
+  /** number of direction bins in a full circle. */
+  public static final int DIRECTION_BIN_COUNT = 360 / DIRECTION_BIN_DEGREES;
+
+  /** length of the time bucket in hours. */
+  @Id
+  private int resolutionHours;
+
+  /** start of the time bucket, a multiple of the resolution since the epoch. */
+  @Id
+  private Date bucketStart;
+
+  /** the speed in 1/10 knots, as stored in the wind table. */
+  @Id
+  private int speed;
+
+  /** the index of the direction bin, the bin covers the directions from index * DIRECTION_BIN_DEGREES inclusive. */
+  @Id
+  private int directionBin;
+
+  private long sampleCount;
+
+  public static int getDirectionBin(int direction)
+  {
+    return Math.floorMod(direction, 360) / DIRECTION_BIN_DEGREES;
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Key implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    private int resolutionHours;
+
+    private Date bucketStart;
+
+    private int speed;
+
+    private int directionBin;
+  }
+}
@@ -0,0 +1,44 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of intervals between consecutive data points with a given length in whole seconds,
+ * for the intervals ending within one day.
+ */
+@Data
+@Entity
+@IdClass(WindIntervalCount.Key.class)
+public class WindIntervalCount
+{
+  /** start of the day in UTC containing the later data point of the intervals. */
+  @Id
+  private Date dayStart;
+
+  /** the length of the intervals in whole seconds. */
+  @Id
+  private int intervalSeconds;
+
+  private long intervalCount;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Key implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    private Date dayStart;
+
+    private int intervalSeconds;
+  }
+}
@@ -0,0 +1,24 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+
+/**
+ * Progress of the data quality index maintenance. There is only a single row.
+ */
+@Data
+@Entity
+public class WindQualityIndexState
+{
+  public static final int ID = 1;
+
+  @Id
+  private int id = ID;
+
+  /** the time up to which the wind table has been scanned. */
+  private Date scannedUntil;
+}
@@ -0,0 +1,48 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataQualityIssueType;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A time range of the wind table containing implausible data, as found by the data quality scan.
+ */
+@Data
+@Entity
+@IdClass(WindQualityIssue.Key.class)
+public class WindQualityIssue
+{
+  @Id
+  @Enumerated(EnumType.STRING)
+  private DataQualityIssueType issueType;
+
+  /** start of the affected time range. */
+  @Id
+  private Date issueStart;
+
+  /** end of the affected time range. */
+  private Date issueEnd;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Key implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    private DataQualityIssueType issueType;
+
+    private Date issueStart;
+  }
+}
@@ -0,0 +1,45 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Embedded;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Aggregated wind data of all data points within a time bucket of a fixed resolution.
+ */
+@Data
+@Entity
+@IdClass(WindRollup.Key.class)
+public class WindRollup
+{
+  /** length of the bucket in minutes. */
+  @Id
+  private int resolutionMinutes;
+
+  /** start of the bucket, a multiple of the resolution since the epoch. */
+  @Id
+  private Date bucketStart;
+
+  @Embedded
+  private WindAggregate aggregate = new WindAggregate();
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Key implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    private int resolutionMinutes;
+
+    private Date bucketStart;
+  }
+}
@@ -0,0 +1,18 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.model;
+
+/**
+ * Receives wind data points as primitive values, without creating an object per data point.
+ */
+@FunctionalInterface
+public interface WindSampleConsumer
+{
+  /**
+   * Consumes a single wind data point.
+   *
+   * @param time measuring point in milliseconds since the epoch.
+   * @param speed wind speed in 1/10 knots.
+   * @param direction direction where the wind comes from in degrees.
+   * @param gusts wind speed gusts in 1/10 knots.
+   */
+  void accept(long time, int speed, int direction, int gusts);
+}
@@ -1,30 +1,57 @@
 package com.github.thomasfox.weatherdataanalyzer.service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import org.springframework.stereotype.Component;
 
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartDataReducer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DownsamplingMode;
+
+/**
+ * Reduces chart data to fewer points.
+ * The in-place methods write the result to the start of the passed arrays and return the number of result points,
+ * so no memory is allocated. The other methods leave the passed data unchanged.
+ */
 @Component
 public class AverageService
 {
   public double[][] averageChartData(double[][] datasetData, int averageFraction)
   {
-    List<Double> xValues = new ArrayList<>();
+    double[][] result = copy(datasetData);
+    return trim(result, averageChartDataInPlace(result, result[0].length, averageFraction));
+  }
 
-    List<Double> yValues = new ArrayList<>();
+  /**
+   * Replaces each <code>averageFraction</code> consecutive points by their mean.
+   *
+   * @param datasetData the data to average, x values at index 0 and y values at index 1. Is overwritten.
+   * @param length the number of points in the data.
+   * @param averageFraction the number of points per bucket.
+   *
+   * @return the number of averaged points at the start of the data arrays.
+   */
+  public int averageChartDataInPlace(double[][] datasetData, int length, int averageFraction)
+  {
+    if (averageFraction < 1)
+    {
+      throw new IllegalArgumentException("average fraction must be at least 1");
+    }
+    double[] xValues = datasetData[0];
+    double[] yValues = datasetData[1];
+    int size = 0;
     double xSum = 0;
     double ySum = 0;
-    double pointsInBucket = 0;
-    for (int i = 0; i < datasetData[0].length; i++)
+    int pointsInBucket = 0;
+    for (int i = 0; i < length; i++)
     {
-      xSum += datasetData[0][i];
-      ySum += datasetData[1][i];
+      xSum += xValues[i];
+      ySum += yValues[i];
       pointsInBucket++;
       if (pointsInBucket == averageFraction)
       {
-        xValues.add(xSum / averageFraction);
-        yValues.add(ySum / averageFraction);
+        xValues[size] = xSum / averageFraction;
+        yValues[size] = ySum / averageFraction;
+        size++;
         xSum = 0;
         ySum = 0;
         pointsInBucket = 0;
@@ -32,16 +59,11 @@ public class AverageService
     }
     if (pointsInBucket != 0)
     {
-      xValues.add(xSum / pointsInBucket);
-      yValues.add(ySum / pointsInBucket);
-    }
-    double[][] result = new double[2][xValues.size()];
-    for (int i = 0; i < xValues.size(); i++)
-    {
-      result[0][i] = xValues.get(i);
-      result[1][i] = yValues.get(i);
+      xValues[size] = xSum / pointsInBucket;
+      yValues[size] = ySum / pointsInBucket;
+      size++;
     }
-    return result;
+    return size;
   }
 
   /**
@@ -59,26 +81,53 @@ public class AverageService
       double[][] datasetData,
       double averageFactor,
       int minNumberOfPointsPerBucket)
+  {
+    double[][] result = copy(datasetData);
+    return trim(
+        result,
+        averageChartDataLogarithmicallyInPlace(result, result[0].length, averageFactor, minNumberOfPointsPerBucket));
+  }
+
+  /**
+   * In-place variant of {@link #averageChartDataLogarithmically(double[][], double, int)}.
+   *
+   * @param length the number of points in the data.
+   *
+   * @return the number of averaged points at the start of the data arrays.
+   */
+  public int averageChartDataLogarithmicallyInPlace(
+      double[][] datasetData,
+      int length,
+      double averageFactor,
+      int minNumberOfPointsPerBucket)
   {
     if (averageFactor <= 1)
     {
       throw new IllegalArgumentException("average factor must be larger than 1");
     }
-    List<Double> xValues = new ArrayList<>();
-    List<Double> yValues = new ArrayList<>();
+    if (length == 0)
+    {
+      return 0;
+    }
+    double[] xValues = datasetData[0];
+    double[] yValues = datasetData[1];
+    int size = 0;
     double xSum = 0;
     double ySum = 0;
-    double intervalStart = datasetData[0][0];
+    double intervalStart = xValues[0];
     double intervalEnd = intervalStart * averageFactor;
     int pointsInBucket = 0;
-    double lastX = datasetData[0][0];
-    for (int i = 0; i < datasetData[0].length; i++)
+    double lastX = xValues[0];
+    for (int i = 0; i < length; i++)
     {
-      double x = datasetData[0][i];
+      double x = xValues[i];
+      double y = yValues[i];
       if (x > intervalEnd && pointsInBucket >= minNumberOfPointsPerBucket)
       {
-        xValues.add(xSum / pointsInBucket);
-        yValues.add(ySum / pointsInBucket);
+        // size < i, so no point is overwritten before it is read
+        xValues[size] = xSum / pointsInBucket;
+        yValues[size] = ySum / pointsInBucket;
+        size++;
         xSum = 0;
         ySum = 0;
         pointsInBucket = 0;
@@ -93,22 +142,203 @@ public class AverageService
         intervalEnd = intervalStart * averageFactor;
       }
       xSum += x;
-      ySum += datasetData[1][i];
+      ySum += y;
       pointsInBucket++;
       lastX = x;
     }
     if (pointsInBucket != 0)
     {
-      xValues.add(xSum / pointsInBucket);
-      yValues.add(ySum / pointsInBucket);
+      xValues[size] = xSum / pointsInBucket;
+      yValues[size] = ySum / pointsInBucket;
+      size++;
     }
-    double[][] result = new double[2][xValues.size()];
-    for (int i = 0; i < xValues.size(); i++)
+    return size;
+  }
+
+  /**
+   * Reduces chart data to at most <code>maxPoints</code> points.
+   *
+   * @param datasetData the data to reduce. The x values must be increasing as the index increases.
+   * @param maxPoints the maximum number of points in the result.
+   * @param mode how to reduce the data.
+   *
+   * @return the reduced data, or a copy of the data if it has no more than <code>maxPoints</code> points.
+   */
+  public double[][] downsample(double[][] datasetData, int maxPoints, DownsamplingMode mode)
+  {
+    double[][] result = copy(datasetData);
+    return trim(result, downsampleInPlace(result, result[0].length, maxPoints, mode));
+  }
+
+  /**
+   * In-place variant of {@link #downsample(double[][], int, DownsamplingMode)}.
+   *
+   * @param length the number of points in the data.
+   *
+   * @return the number of points at the start of the data arrays after reduction.
+   */
+  public int downsampleInPlace(double[][] datasetData, int length, int maxPoints, DownsamplingMode mode)
+  {
+    int minPoints = mode == DownsamplingMode.LTTB ? 3 : mode == DownsamplingMode.MIN_MAX ? 2 : 1;
+    if (maxPoints < minPoints)
+    {
+      throw new IllegalArgumentException("maxPoints must be at least " + minPoints + " for mode " + mode);
+    }
+    if (length <= maxPoints)
+    {
+      return length;
+    }
+    switch (mode)
     {
-      result[0][i] = xValues.get(i);
-      result[1][i] = yValues.get(i);
+      case MEAN:
+        return downsampleMeanInPlace(datasetData[0], datasetData[1], length, maxPoints);
+      case MIN_MAX:
+        return downsampleMinMaxInPlace(datasetData[0], datasetData[1], length, maxPoints / 2);
+      case LTTB:
+        return downsampleLttbInPlace(datasetData[0], datasetData[1], length, maxPoints);
+      default:
+        throw new IllegalArgumentException("unknown downsampling mode " + mode);
     }
-    return result;
   }
 
+  /**
+   * Creates a reducer which downsamples streamed chart data to a fixed number of buckets.
+   *
+   * @param xFrom the smallest x value to include.
+   * @param xTo the end of the x range, exclusive.
+   * @param maxPoints the maximum number of points in the result.
+   * @param mode how to reduce the data, MEAN or MIN_MAX.
+   *
+   * @return the reducer, not null.
+   */
+  public ChartDataReducer createReducer(double xFrom, double xTo, int maxPoints, DownsamplingMode mode)
+  {
+    if (mode == DownsamplingMode.MIN_MAX)
+    {
+      return new ChartDataReducer(xFrom, xTo, maxPoints / 2, mode);
+    }
+    return new ChartDataReducer(xFrom, xTo, maxPoints, mode);
+  }
+
+  private int downsampleMeanInPlace(double[] xValues, double[] yValues, int length, int bucketCount)
+  {
+    for (int bucket = 0; bucket < bucketCount; bucket++)
+    {
+      int bucketStart = getBucketStart(bucket, length, bucketCount);
+      int bucketEnd = getBucketStart(bucket + 1, length, bucketCount);
+      double xSum = 0;
+      double ySum = 0;
+      for (int i = bucketStart; i < bucketEnd; i++)
+      {
+        xSum += xValues[i];
+        ySum += yValues[i];
+      }
+      xValues[bucket] = xSum / (bucketEnd - bucketStart);
+      yValues[bucket] = ySum / (bucketEnd - bucketStart);
+    }
+    return bucketCount;
+  }
+
+  private int downsampleMinMaxInPlace(double[] xValues, double[] yValues, int length, int bucketCount)
+  {
+    int size = 0;
+    for (int bucket = 0; bucket < bucketCount; bucket++)
+    {
+      int bucketStart = getBucketStart(bucket, length, bucketCount);
+      int bucketEnd = getBucketStart(bucket + 1, length, bucketCount);
+      int minIndex = bucketStart;
+      int maxIndex = bucketStart;
+      for (int i = bucketStart + 1; i < bucketEnd; i++)
+      {
+        if (yValues[i] < yValues[minIndex])
+        {
+          minIndex = i;
+        }
+        else if (yValues[i] > yValues[maxIndex])
+        {
+          maxIndex = i;
+        }
+      }
+      // each bucket contains at least two points, so size <= bucketStart
+      int firstIndex = Math.min(minIndex, maxIndex);
+      int secondIndex = Math.max(minIndex, maxIndex);
+      double secondX = xValues[secondIndex];
+      double secondY = yValues[secondIndex];
+      xValues[size] = xValues[firstIndex];
+      yValues[size] = yValues[firstIndex];
+      size++;
+      if (secondIndex != firstIndex)
+      {
+        xValues[size] = secondX;
+        yValues[size] = secondY;
+        size++;
+      }
+    }
+    return size;
+  }
+
+  private int downsampleLttbInPlace(double[] xValues, double[] yValues, int length, int maxPoints)
+  {
+    int bucketCount = maxPoints - 2;
+    int innerLength = length - 2;
+    double lastX = xValues[length - 1];
+    double lastY = yValues[length - 1];
+    double selectedX = xValues[0];
+    double selectedY = yValues[0];
+    for (int bucket = 0; bucket < bucketCount; bucket++)
+    {
+      int bucketStart = getBucketStart(bucket, innerLength, bucketCount) + 1;
+      int bucketEnd = getBucketStart(bucket + 1, innerLength, bucketCount) + 1;
+      int nextBucketEnd = Math.min(getBucketStart(bucket + 2, innerLength, bucketCount) + 1, length);
+      if (bucket == bucketCount - 1)
+      {
+        nextBucketEnd = length;
+      }
+      double nextXSum = 0;
+      double nextYSum = 0;
+      for (int i = bucketEnd; i < nextBucketEnd; i++)
+      {
+        nextXSum += xValues[i];
+        nextYSum += yValues[i];
+      }
+      double nextX = nextXSum / (nextBucketEnd - bucketEnd);
+      double nextY = nextYSum / (nextBucketEnd - bucketEnd);
+
+      int selectedIndex = bucketStart;
+      double maxArea = -1;
+      for (int i = bucketStart; i < bucketEnd; i++)
+      {
+        double area = Math.abs(
+            (selectedX - nextX) * (yValues[i] - selectedY) - (selectedX - xValues[i]) * (nextY - selectedY));
+        if (area > maxArea)
+        {
+          maxArea = area;
+          selectedIndex = i;
+        }
+      }
+      selectedX = xValues[selectedIndex];
+      selectedY = yValues[selectedIndex];
+      // bucket + 1 <= bucketStart, and the following buckets start after bucketStart
+      xValues[bucket + 1] = selectedX;
+      yValues[bucket + 1] = selectedY;
+    }
+    xValues[maxPoints - 1] = lastX;
+    yValues[maxPoints - 1] = lastY;
+    return maxPoints;
+  }
+
+  private static int getBucketStart(int bucket, int length, int bucketCount)
+  {
+    return (int) ((long) bucket * length / bucketCount);
+  }
+
+  private static double[][] copy(double[][] datasetData)
+  {
+    return new double[][] {datasetData[0].clone(), datasetData[1].clone()};
+  }
+
+  private static double[][] trim(double[][] datasetData, int length)
+  {
+    return new double[][] {Arrays.copyOf(datasetData[0], length), Arrays.copyOf(datasetData[1], length)};
+  }
 }
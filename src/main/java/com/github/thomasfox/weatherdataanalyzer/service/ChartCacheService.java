@@ -0,0 +1,368 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.WindRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.DatasetMetadata;
+import com.github.thomasfox.weatherdataanalyzer.service.model.CachedChart;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartCacheKey;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartImage;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataChangedEvent;
+
+/**
+ * Keeps rendered charts in memory, so that charts of unchanged data are neither recomputed nor re-rendered.
+ * Charts are rendered by the {@link ComputeService}, and each chart is rendered only once at a time.
+ * The least recently used charts are evicted if the cache exceeds its size in bytes.
+ * A chart is evicted as soon as data is written inside its time range, either by the application
+ * or, detected with a delay of at most one check interval, by another writer to the wind table.
+ * Without a database, i.e. with the archive profile, the data does not change and only the application evicts charts.
+ * Responses carry a strong entity tag of the image, so clients can revalidate and receive a 304 response.
+ */
+@Component
+public class ChartCacheService
+{
+  /** the estimated memory used by an entry in addition to its body, in bytes. */
+  static final long ENTRY_OVERHEAD_BYTES = 512;
+
+  /** the number of invalidated time ranges remembered for charts which are rendered concurrently. */
+  static final int RECENT_INVALIDATIONS_SIZE = 1000;
+
+  private static final int RETRY_AFTER_SECONDS = 5;
+
+  private final DatasetMetadataService datasetMetadataService;
+
+  private final WindRepository windRepository;
+
+  private final ComputeService computeService;
+
+  private final long maxBytes;
+
+  /** the cached charts, least recently used first. Guarded by this. */
+  private final LinkedHashMap<ChartCacheKey, CachedChart> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** the charts which are currently rendered. Guarded by this. */
+  private final Map<ChartCacheKey, CompletableFuture<CachedChart>> renderingCharts = new HashMap<>();
+
+  /** the sum of the sizes of all entries. Guarded by this. */
+  private long usedBytes;
+
+  /** the number of invalidations since startup. Guarded by this. */
+  private long invalidationCount;
+
+  /** the most recently invalidated time ranges, latest last. Guarded by this. */
+  private final Deque<TimeRange> recentInvalidations = new ArrayDeque<>();
+
+  private final Object checkLock = new Object();
+
+  /** whether the rows of the wind table have been checked at least once. Guarded by checkLock. */
+  private boolean checked;
+
+  /** the largest id of a row in the wind table whose time has been checked against the cached charts. */
+  private int checkedUntilId;
+
+  public ChartCacheService(
+      @Nullable DatasetMetadataService datasetMetadataService,
+      @Nullable WindRepository windRepository,
+      ComputeService computeService,
+      @Value("${weatherdataanalyzer.chartCache.maxBytes:67108864}") long maxBytes)
+  {
+    this.datasetMetadataService = datasetMetadataService;
+    this.windRepository = windRepository;
+    this.computeService = computeService;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns a chart from the cache, or renders and caches it on a compute thread if it is not cached.
+   * Concurrent requests for the same chart wait for a single rendering.
+   *
+   * @param key the canonicalised parameters of the chart, not null.
+   * @param ifNoneMatch the value of the If-None-Match request header, or null.
+   * @param renderer renders the chart if it is not cached, not null.
+   *        Must return a response with status 200 and a body.
+   *
+   * @return the future chart, or a response with status 304 if the client's entity tag matches the chart,
+   *         or a response with status 503 if too many charts are being rendered.
+   */
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getChart(
+      ChartCacheKey key,
+      String ifNoneMatch,
+      Supplier<ResponseEntity<ChartImage>> renderer)
+  {
+    CompletableFuture<CachedChart> rendering;
+    synchronized (this)
+    {
+      CachedChart chart = entries.get(key);
+      if (chart != null)
+      {
+        return CompletableFuture.completedFuture(createResponse(chart, ifNoneMatch));
+      }
+      rendering = renderingCharts.get(key);
+      if (rendering == null)
+      {
+        long invalidationCountBeforeRendering = invalidationCount;
+        try
+        {
+          rendering = computeService.submit(() -> render(key, renderer, invalidationCountBeforeRendering));
+        }
+        catch (RejectedExecutionException e)
+        {
+          return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+              .header(HttpHeaders.RETRY_AFTER, Integer.toString(RETRY_AFTER_SECONDS))
+              .build());
+        }
+        renderingCharts.put(key, rendering);
+        rendering.whenComplete((renderedChart, exception) -> removeRendering(key));
+      }
+    }
+    return rendering.thenApply(chart -> createResponse(chart, ifNoneMatch));
+  }
+
+  private CachedChart render(
+      ChartCacheKey key,
+      Supplier<ResponseEntity<ChartImage>> renderer,
+      long invalidationCountBeforeRendering)
+  {
+    ResponseEntity<ChartImage> response = renderer.get();
+    if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null)
+    {
+      throw new IllegalArgumentException("chart renderer returned status " + response.getStatusCode());
+    }
+    CachedChart chart = createCachedChart(key, response);
+    put(chart, invalidationCountBeforeRendering);
+    return chart;
+  }
+
+  private synchronized void removeRendering(ChartCacheKey key)
+  {
+    renderingCharts.remove(key);
+  }
+
+  synchronized CachedChart get(ChartCacheKey key)
+  {
+    return entries.get(key);
+  }
+
+  synchronized long getUsedBytes()
+  {
+    return usedBytes;
+  }
+
+  /**
+   * Adds a chart to the cache, unless its time range was invalidated while it was rendered.
+   */
+  private synchronized void put(CachedChart chart, long invalidationCountBeforeRendering)
+  {
+    if (chart.getSize() > maxBytes || !isValid(chart.getKey(), invalidationCountBeforeRendering))
+    {
+      return;
+    }
+    CachedChart replaced = entries.put(chart.getKey(), chart);
+    if (replaced != null)
+    {
+      usedBytes -= replaced.getSize();
+    }
+    usedBytes += chart.getSize();
+    Iterator<CachedChart> leastRecentlyUsed = entries.values().iterator();
+    while (usedBytes > maxBytes)
+    {
+      usedBytes -= leastRecentlyUsed.next().getSize();
+      leastRecentlyUsed.remove();
+    }
+  }
+
+  private boolean isValid(ChartCacheKey key, long invalidationCountBeforeRendering)
+  {
+    long invalidationsDuringRendering = invalidationCount - invalidationCountBeforeRendering;
+    if (invalidationsDuringRendering > recentInvalidations.size())
+    {
+      return false;
+    }
+    Iterator<TimeRange> latestFirst = recentInvalidations.descendingIterator();
+    for (long i = 0; i < invalidationsDuringRendering; i++)
+    {
+      TimeRange invalidated = latestFirst.next();
+      if (key.overlaps(invalidated.getStart(), invalidated.getEnd()))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Removes all charts whose time range overlaps a time range.
+   *
+   * @param start the start of the time range in milliseconds, inclusive.
+   * @param end the end of the time range in milliseconds, inclusive.
+   */
+  public synchronized void invalidate(long start, long end)
+  {
+    Iterator<CachedChart> iterator = entries.values().iterator();
+    while (iterator.hasNext())
+    {
+      CachedChart chart = iterator.next();
+      if (chart.getKey().overlaps(start, end))
+      {
+        usedBytes -= chart.getSize();
+        iterator.remove();
+      }
+    }
+    invalidationCount++;
+    recentInvalidations.addLast(new TimeRange(start, end));
+    if (recentInvalidations.size() > RECENT_INVALIDATIONS_SIZE)
+    {
+      recentInvalidations.removeFirst();
+    }
+  }
+
+  /**
+   * Evicts the charts containing data written by the application.
+   */
+  @EventListener
+  public void onWindDataChanged(WindDataChangedEvent event)
+  {
+    invalidate(event.getStart(), event.getEnd());
+  }
+
+  /**
+   * Evicts the charts containing rows which were added to the wind table since the last check,
+   * so that data from other writers is also detected.
+   * On the first check, all charts are evicted, as it is unknown which rows existed when they were rendered.
+   */
+  @Scheduled(
+      initialDelayString = "${weatherdataanalyzer.chartCache.initialDelayMillis:0}",
+      fixedDelayString = "${weatherdataanalyzer.chartCache.checkMillis:10000}")
+  public void checkForNewRows()
+  {
+    if (windRepository == null)
+    {
+      return;
+    }
+    synchronized (checkLock)
+    {
+      if (!checked)
+      {
+        DatasetMetadata metadata = datasetMetadataService.getMetadata();
+        if (metadata == null)
+        {
+          return;
+        }
+        invalidate(Long.MIN_VALUE, Long.MAX_VALUE);
+        checkedUntilId = metadata.getLastIngestedId();
+        checked = true;
+        return;
+      }
+      DatasetMetadata newRows = windRepository.getDatasetMetadataForIdGreaterThan(checkedUntilId);
+      if (newRows.getCount() > 0)
+      {
+        invalidate(newRows.getMinTime().getTime(), newRows.getMaxTime().getTime());
+        checkedUntilId = newRows.getLastIngestedId();
+      }
+    }
+  }
+
+  private CachedChart createCachedChart(ChartCacheKey key, ResponseEntity<ChartImage> response)
+  {
+    ChartImage body = response.getBody();
+    HttpHeaders headers = new HttpHeaders();
+    headers.putAll(response.getHeaders());
+    // the whole buffer is kept in memory, not only the image
+    long size = body.getBuffer().length + ENTRY_OVERHEAD_BYTES;
+    for (Map.Entry<String, List<String>> header : headers.entrySet())
+    {
+      size += header.getKey().length();
+      for (String value : header.getValue())
+      {
+        size += value.length();
+      }
+    }
+    return new CachedChart(key, headers, body, createETag(body), size);
+  }
+
+  private ResponseEntity<StreamingResponseBody> createResponse(CachedChart chart, String ifNoneMatch)
+  {
+    if (matches(ifNoneMatch, chart.getETag()))
+    {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+          .eTag(chart.getETag())
+          .cacheControl(CacheControl.noCache())
+          .build();
+    }
+    ChartImage body = chart.getBody();
+    return ResponseEntity.ok()
+        .headers(chart.getHeaders())
+        .eTag(chart.getETag())
+        .cacheControl(CacheControl.noCache())
+        .contentLength(body.getLength())
+        .body(body::writeTo);
+  }
+
+  /**
+   * Checks whether an If-None-Match header matches an entity tag, using the weak comparison of RFC 7232.
+   */
+  static boolean matches(String ifNoneMatch, String eTag)
+  {
+    if (ifNoneMatch == null)
+    {
+      return false;
+    }
+    for (String requestedETag : ifNoneMatch.split(","))
+    {
+      String trimmed = requestedETag.trim();
+      if (trimmed.startsWith("W/"))
+      {
+        trimmed = trimmed.substring(2);
+      }
+      if (trimmed.equals("*") || trimmed.equals(eTag))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static String createETag(ChartImage body)
+  {
+    byte[] hash;
+    try
+    {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(body.getBuffer(), 0, body.getLength());
+      hash = digest.digest();
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new RuntimeException(e);
+    }
+    StringBuilder result = new StringBuilder("\"");
+    for (int i = 0; i < 16; i++)
+    {
+      result.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+    }
+    return result.append('"').toString();
+  }
+}
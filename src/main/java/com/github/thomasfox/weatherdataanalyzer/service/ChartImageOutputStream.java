@@ -0,0 +1,22 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.io.ByteArrayOutputStream;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartImage;
+
+/**
+ * A byte array output stream which hands its buffer over to a {@link ChartImage} instead of copying it.
+ * The stream must not be written to afterwards.
+ */
+class ChartImageOutputStream extends ByteArrayOutputStream
+{
+  ChartImageOutputStream(int size)
+  {
+    super(size);
+  }
+
+  synchronized ChartImage toChartImage()
+  {
+    return new ChartImage(buf, count);
+  }
+}
@@ -1,41 +1,183 @@
 package com.github.thomasfox.weatherdataanalyzer.service;
 
-import static com.github.thomasfox.weatherdataanalyzer.Constants.DEFAULT_IMAGE_HEIGHT;
-import static com.github.thomasfox.weatherdataanalyzer.Constants.DEFAULT_IMAGE_WIDTH;
-
-import java.io.ByteArrayOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
-import org.jfree.chart.ChartRenderingInfo;
-import org.jfree.chart.ChartUtils;
 import org.jfree.chart.JFreeChart;
-import org.springframework.http.HttpStatus;
+import org.jfree.chart.axis.DateAxis;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.GrayPaintScale;
+import org.jfree.chart.renderer.xy.XYBlockRenderer;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
+import org.jfree.chart.title.PaintScaleLegend;
+import org.jfree.chart.ui.RectangleAnchor;
+import org.jfree.chart.ui.RectangleEdge;
+import org.jfree.data.xy.DefaultXYDataset;
+import org.jfree.data.xy.DefaultXYZDataset;
+import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYZDataset;
+import org.jfree.graphics2d.svg.SVGGraphics2D;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartFormat;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartImage;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanGrid;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.Spectrogram;
+
 @Component
 public class ChartService
 {
-  public ResponseEntity<byte[]> createReponseEntityFromChart(JFreeChart lineChart)
+  public static final String SPECTROGRAM_X_LABEL = "time";
+
+  public static final String SPECTROGRAM_Y_LABEL = "Frequency [1/s]";
+
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+  private final int width;
+
+  private final int height;
+
+  /** the zlib compression level of PNGs, from 0 (none) to 9 (smallest). */
+  private final int pngCompression;
+
+  /** images which can be reused for rendering, so that each chart does not allocate a new image. */
+  private final BlockingQueue<BufferedImage> imagePool;
+
+  public ChartService(
+      @Value("${weatherdataanalyzer.chart.width:1000}") int width,
+      @Value("${weatherdataanalyzer.chart.height:600}") int height,
+      @Value("${weatherdataanalyzer.chart.pngCompression:1}") int pngCompression,
+      @Value("${weatherdataanalyzer.chart.bufferPoolSize:4}") int bufferPoolSize)
+  {
+    if (width <= 0 || height <= 0)
+    {
+      throw new IllegalArgumentException("chart size must be positive, is " + width + "x" + height);
+    }
+    if (pngCompression < 0 || pngCompression > 9)
+    {
+      throw new IllegalArgumentException("pngCompression must be between 0 and 9, is " + pngCompression);
+    }
+    this.width = width;
+    this.height = height;
+    this.pngCompression = pngCompression;
+    this.imagePool = new ArrayBlockingQueue<>(Math.max(1, bufferPoolSize));
+  }
+
+  /**
+   * Renders a chart into a response body.
+   * The body keeps the buffer the chart was rendered into, so that it can be cached without copying.
+   *
+   * @param chart the chart, not null.
+   * @param format the image format, not null.
+   *
+   * @return the response with the rendered chart and its content type.
+   */
+  public ResponseEntity<ChartImage> createReponseEntityFromChart(JFreeChart chart, ChartFormat format)
   {
-    ByteArrayOutputStream image = new ByteArrayOutputStream();
+    ChartImageOutputStream outputStream = new ChartImageOutputStream(OUTPUT_BUFFER_SIZE);
     try
     {
-      ChartUtils.writeChartAsPNG(
-          image,
-          lineChart,
-          DEFAULT_IMAGE_WIDTH, DEFAULT_IMAGE_HEIGHT,
-          new ChartRenderingInfo(),
-          false,
-          5);
+      writeChart(chart, format, outputStream);
     }
     catch (IOException e)
     {
       throw new RuntimeException(e);
     }
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(format.getContentType()))
+        .body(outputStream.toChartImage());
+  }
 
-    ResponseEntity<byte[]> responseEntity = new ResponseEntity<>(image.toByteArray(), HttpStatus.OK);
-    return responseEntity;
+  /**
+   * Renders a chart directly to a stream, without collecting entity information.
+   * The stream is not closed.
+   *
+   * @param chart the chart, not null.
+   * @param format the image format, not null.
+   * @param outputStream the stream to write to, not null.
+   */
+  public void writeChart(JFreeChart chart, ChartFormat format, OutputStream outputStream) throws IOException
+  {
+    if (format == ChartFormat.SVG)
+    {
+      writeSvg(chart, outputStream);
+    }
+    else
+    {
+      writePng(chart, outputStream);
+    }
+  }
+
+  private void writePng(JFreeChart chart, OutputStream outputStream) throws IOException
+  {
+    BufferedImage image = imagePool.poll();
+    if (image == null)
+    {
+      image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+    try
+    {
+      Graphics2D graphics = image.createGraphics();
+      try
+      {
+        // a pooled image still contains the previous chart, which would shine through a transparent background
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        chart.draw(graphics, new Rectangle2D.Double(0, 0, width, height), null, null);
+      }
+      finally
+      {
+        graphics.dispose();
+      }
+      ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+      // the memory cache avoids the temporary file which ImageIO.write creates by default
+      try (ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream))
+      {
+        writer.setOutput(imageOutputStream);
+        ImageWriteParam parameters = writer.getDefaultWriteParam();
+        parameters.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        parameters.setCompressionQuality(1f - pngCompression / 9f);
+        writer.write(null, new IIOImage(image, null, null), parameters);
+      }
+      finally
+      {
+        writer.dispose();
+      }
+    }
+    finally
+    {
+      imagePool.offer(image);
+    }
+  }
+
+  private void writeSvg(JFreeChart chart, OutputStream outputStream) throws IOException
+  {
+    SVGGraphics2D graphics = new SVGGraphics2D(width, height);
+    chart.draw(graphics, new Rectangle2D.Double(0, 0, width, height), null, null);
+    Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+    writer.write(graphics.getSVGDocument());
+    writer.flush();
   }
 
   public double[][] convertToDatasetData(double[] valuesEachSecond)
@@ -48,4 +190,229 @@ public class ChartService
     }
     return datasetData;
   }
+
+  /**
+   * Creates a chart of a scan result.
+   * If the grid has more than one cell in both dimensions, the value with the given index is displayed
+   * as heatmap over direction and speed. Otherwise all values are displayed as line chart
+   * over the dimension with more than one cell, or over the direction if the grid has a single cell.
+   *
+   * @param result the scan result, not null.
+   * @param title the title of the chart.
+   * @param valueNames the names of the values in the scan result.
+   * @param heatmapValueIndex the index of the value to display in a heatmap.
+   *
+   * @return the chart, not null.
+   */
+  public JFreeChart createScanChart(ScanResult result, String title, String[] valueNames, int heatmapValueIndex)
+  {
+    ScanGrid grid = result.getGrid();
+    XYDataset dataset = createScanDataset(result, valueNames, heatmapValueIndex);
+    if (isScanHeatmap(grid))
+    {
+      return createScanHeatmap((XYZDataset) dataset, grid, title, valueNames[heatmapValueIndex]);
+    }
+    NumberAxis yAxis = new NumberAxis(getScanYLabel(grid));
+    yAxis.setAutoRangeIncludesZero(false);
+    XYPlot plot = new XYPlot(
+        dataset,
+        new NumberAxis(getScanXLabel(grid)),
+        yAxis,
+        new XYLineAndShapeRenderer(true, true));
+    return new JFreeChart(title, JFreeChart.DEFAULT_TITLE_FONT, plot, valueNames.length > 1);
+  }
+
+  /**
+   * Creates the dataset displayed by {@link #createScanChart(ScanResult, String, String[], int)}.
+   * For a heatmap, this is an XYZ dataset with the direction as x and the speed as y value.
+   */
+  public XYDataset createScanDataset(ScanResult result, String[] valueNames, int heatmapValueIndex)
+  {
+    ScanGrid grid = result.getGrid();
+    int cellsWithValues = getCellsWithValues(result);
+    if (isScanHeatmap(grid))
+    {
+      double[][] datasetData = new double[3][cellsWithValues];
+      int i = 0;
+      for (int cell = 0; cell < grid.getCellCount(); cell++)
+      {
+        if (result.hasValues(cell))
+        {
+          datasetData[0][i] = grid.getCellDirectionFrom(cell);
+          datasetData[1][i] = grid.getCellSpeedFrom(cell);
+          datasetData[2][i] = result.getValue(cell, heatmapValueIndex);
+          i++;
+        }
+      }
+      DefaultXYZDataset dataset = new DefaultXYZDataset();
+      dataset.addSeries(valueNames[heatmapValueIndex], datasetData);
+      return dataset;
+    }
+    boolean overSpeed = grid.getSpeedCellCount() > 1;
+    DefaultXYDataset dataset = new DefaultXYDataset();
+    for (int valueIndex = 0; valueIndex < valueNames.length; valueIndex++)
+    {
+      double[][] datasetData = new double[2][cellsWithValues];
+      int i = 0;
+      for (int cell = 0; cell < grid.getCellCount(); cell++)
+      {
+        if (result.hasValues(cell))
+        {
+          datasetData[0][i] = overSpeed ? grid.getCellSpeedFrom(cell) : grid.getCellDirectionFrom(cell);
+          datasetData[1][i] = result.getValue(cell, valueIndex);
+          i++;
+        }
+      }
+      dataset.addSeries(valueNames[valueIndex], datasetData);
+    }
+    return dataset;
+  }
+
+  public String getScanXLabel(ScanGrid grid)
+  {
+    return !isScanHeatmap(grid) && grid.getSpeedCellCount() > 1 ? "speed [kts]" : "direction [°]";
+  }
+
+  public String getScanYLabel(ScanGrid grid)
+  {
+    return isScanHeatmap(grid) ? "speed [kts]" : "value";
+  }
+
+  private boolean isScanHeatmap(ScanGrid grid)
+  {
+    return grid.getSpeedCellCount() > 1 && grid.getDirectionCellCount() > 1;
+  }
+
+  private JFreeChart createScanHeatmap(XYZDataset dataset, ScanGrid grid, String title, String valueName)
+  {
+    double minValue = Double.POSITIVE_INFINITY;
+    double maxValue = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < dataset.getItemCount(0); i++)
+    {
+      double value = dataset.getZValue(0, i);
+      minValue = Math.min(minValue, value);
+      maxValue = Math.max(maxValue, value);
+    }
+    if (!(minValue < maxValue))
+    {
+      minValue = Double.isInfinite(minValue) ? 0d : minValue;
+      maxValue = minValue + 1d;
+    }
+
+    GrayPaintScale paintScale = new GrayPaintScale(minValue, maxValue);
+    XYBlockRenderer renderer = new XYBlockRenderer();
+    renderer.setBlockWidth(grid.getDirectionStep());
+    renderer.setBlockHeight(grid.getSpeedStep());
+    renderer.setBlockAnchor(RectangleAnchor.BOTTOM_LEFT);
+    renderer.setPaintScale(paintScale);
+    NumberAxis xAxis = new NumberAxis(getScanXLabel(grid));
+    xAxis.setRange(0d, 360d);
+    NumberAxis yAxis = new NumberAxis(getScanYLabel(grid));
+    yAxis.setRange(grid.getSpeedFrom(), grid.getSpeedFrom() + grid.getSpeedCellCount() * grid.getSpeedStep());
+    XYPlot plot = new XYPlot(dataset, xAxis, yAxis, renderer);
+    JFreeChart chart = new JFreeChart(title, JFreeChart.DEFAULT_TITLE_FONT, plot, false);
+    PaintScaleLegend legend = new PaintScaleLegend(paintScale, new NumberAxis(valueName));
+    legend.setPosition(RectangleEdge.RIGHT);
+    chart.addSubtitle(legend);
+    return chart;
+  }
+
+  /**
+   * Creates a heatmap of a spectrogram over time and frequency.
+   * The power spectral density is displayed logarithmically, columns without segments are left empty.
+   *
+   * @param spectrogram the spectrogram, not null.
+   * @param title the title of the chart.
+   *
+   * @return the chart, not null.
+   */
+  public JFreeChart createSpectrogramChart(Spectrogram spectrogram, String title)
+  {
+    XYZDataset dataset = createSpectrogramDataset(spectrogram);
+    double minValue = Double.POSITIVE_INFINITY;
+    double maxValue = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < dataset.getItemCount(0); i++)
+    {
+      double value = dataset.getZValue(0, i);
+      if (value > Math.log10(Double.MIN_NORMAL))
+      {
+        minValue = Math.min(minValue, value);
+      }
+      maxValue = Math.max(maxValue, value);
+    }
+    if (!(minValue < maxValue))
+    {
+      minValue = Double.isInfinite(maxValue) ? 0d : maxValue - 1d;
+      maxValue = minValue + 1d;
+    }
+
+    GrayPaintScale paintScale = new GrayPaintScale(minValue, maxValue);
+    XYBlockRenderer renderer = new XYBlockRenderer();
+    renderer.setBlockWidth(((double) spectrogram.getEnd() - spectrogram.getStart()) / spectrogram.getColumnCount());
+    renderer.setBlockHeight(1d / spectrogram.getSegmentLength());
+    renderer.setBlockAnchor(RectangleAnchor.LEFT);
+    renderer.setPaintScale(paintScale);
+    DateAxis xAxis = new DateAxis(SPECTROGRAM_X_LABEL);
+    xAxis.setRange(spectrogram.getStart(), spectrogram.getEnd());
+    NumberAxis yAxis = new NumberAxis(SPECTROGRAM_Y_LABEL);
+    double halfFrequencyStep = 0.5d / spectrogram.getSegmentLength();
+    int frequencyCount = Math.max(0, spectrogram.getFrequencyCount() - 1);
+    yAxis.setRange(halfFrequencyStep, spectrogram.getFrequency(Math.max(1, frequencyCount)) + halfFrequencyStep);
+    XYPlot plot = new XYPlot(dataset, xAxis, yAxis, renderer);
+    JFreeChart chart = new JFreeChart(title, JFreeChart.DEFAULT_TITLE_FONT, plot, false);
+    PaintScaleLegend legend = new PaintScaleLegend(paintScale, new NumberAxis("log10 density [1/Hz]"));
+    legend.setPosition(RectangleEdge.RIGHT);
+    chart.addSubtitle(legend);
+    return chart;
+  }
+
+  /**
+   * Creates the dataset displayed by {@link #createSpectrogramChart(Spectrogram, String)}:
+   * the start time of each column as x, the frequency as y and the log10 of the density as z value.
+   */
+  public XYZDataset createSpectrogramDataset(Spectrogram spectrogram)
+  {
+    int columnsWithSegments = 0;
+    for (int column = 0; column < spectrogram.getColumnCount(); column++)
+    {
+      if (spectrogram.getSegmentCounts()[column] > 0)
+      {
+        columnsWithSegments++;
+      }
+    }
+    // the density at frequency 0 is always 0 because each segment is detrended by its mean
+    int frequencyCount = Math.max(0, spectrogram.getFrequencyCount() - 1);
+    double[][] datasetData = new double[3][columnsWithSegments * frequencyCount];
+    int i = 0;
+    for (int column = 0; column < spectrogram.getColumnCount(); column++)
+    {
+      if (spectrogram.getSegmentCounts()[column] == 0)
+      {
+        continue;
+      }
+      for (int frequency = 1; frequency <= frequencyCount; frequency++)
+      {
+        datasetData[0][i] = spectrogram.getColumnStart(column);
+        datasetData[1][i] = spectrogram.getFrequency(frequency);
+        datasetData[2][i] = Math.log10(Math.max(spectrogram.getDensity()[column][frequency], Double.MIN_NORMAL));
+        i++;
+      }
+    }
+    DefaultXYZDataset dataset = new DefaultXYZDataset();
+    dataset.addSeries("log10 density", datasetData);
+    return dataset;
+  }
+
+  private int getCellsWithValues(ScanResult result)
+  {
+    int cellsWithValues = 0;
+    for (int cell = 0; cell < result.getGrid().getCellCount(); cell++)
+    {
+      if (result.hasValues(cell))
+      {
+        cellsWithValues++;
+      }
+    }
+    return cellsWithValues;
+  }
 }
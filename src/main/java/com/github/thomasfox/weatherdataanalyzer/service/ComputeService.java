@@ -0,0 +1,66 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs expensive computations of requests on a bounded number of threads,
+ * so that they do not occupy the request threads of the web server and cheap requests are still answered
+ * while many expensive requests are running.
+ * If all threads are busy, computations wait in a bounded queue; if the queue is full, they are rejected.
+ */
+@Component
+public class ComputeService implements DisposableBean
+{
+  private final ThreadPoolExecutor executor;
+
+  public ComputeService(
+      @Value("${weatherdataanalyzer.compute.threads:0}") int threads,
+      @Value("${weatherdataanalyzer.compute.queueSize:50}") int queueSize)
+  {
+    // by default, one processor is kept free for cheap requests
+    int threadCount = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(
+        threadCount,
+        threadCount,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        runnable ->
+        {
+          Thread thread = new Thread(runnable, "compute-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Starts a computation on a compute thread.
+   *
+   * @param computation the computation, not null.
+   *
+   * @return the future result of the computation.
+   *
+   * @throws RejectedExecutionException if too many computations are running or waiting.
+   */
+  public <T> CompletableFuture<T> submit(Supplier<T> computation)
+  {
+    return CompletableFuture.supplyAsync(computation, executor);
+  }
+
+  @Override
+  public void destroy()
+  {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,275 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.apache.commons.math3.exception.MathIllegalStateException;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresBuilder;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresOptimizer;
+import org.apache.commons.math3.fitting.leastsquares.LevenbergMarquardtOptimizer;
+import org.apache.commons.math3.fitting.leastsquares.MultivariateJacobianFunction;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.util.Pair;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.ExponentialFittingFunction;
+import com.github.thomasfox.weatherdataanalyzer.service.model.FitBatchResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.FitResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.FitStatistics;
+
+import lombok.Getter;
+
+/**
+ * Fits the {@link ExponentialFittingFunction} to autocorrelation curves with the Levenberg-Marquardt method.
+ * Each fit is limited by a number of evaluations and a time budget.
+ * Converged results are remembered by a key given by the caller, e.g. the direction sector of a scan,
+ * and later fits with the same key start from the remembered parameters.
+ */
+@Component
+public class CurveFittingService implements DisposableBean
+{
+  /** the start point for fits without a remembered or neighbouring result. */
+  static final double[] DEFAULT_START_POINT = new double[] {0.8d, 0d, -0.05d, 0.5d};
+
+  private static final int MAX_ITERATIONS = 1000;
+
+  private static final int MAX_REMEMBERED_RESULTS = 10000;
+
+  private final ExponentialFittingFunction fittingFunction = new ExponentialFittingFunction();
+
+  private final int maxEvaluations;
+
+  private final long maxNanos;
+
+  private final ForkJoinPool forkJoinPool;
+
+  private final Map<Object, double[]> rememberedResults = Collections.synchronizedMap(
+      new LinkedHashMap<Object, double[]>(16, 0.75f, true)
+      {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, double[]> eldest)
+        {
+          return size() > MAX_REMEMBERED_RESULTS;
+        }
+      });
+
+  public CurveFittingService(
+      @Value("${weatherdataanalyzer.fit.maxEvaluations:1000}") int maxEvaluations,
+      @Value("${weatherdataanalyzer.fit.maxMillis:1000}") long maxMillis,
+      @Value("${weatherdataanalyzer.fit.parallelism:0}") int parallelism)
+  {
+    this.maxEvaluations = maxEvaluations;
+    this.maxNanos = maxMillis * 1000000L;
+    this.forkJoinPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Fits a curve.
+   *
+   * @param values the curve values at x = 0, 1, 2, ..., not null.
+   * @param key the key to remember the result under and to look up a start point, or null.
+   *
+   * @return the fit result, not null.
+   */
+  public FitResult fit(double[] values, Object key)
+  {
+    return fit(values, key, null);
+  }
+
+  /**
+   * Fits a batch of curves in parallel.
+   * The batch is divided into contiguous parts, each part is fitted sequentially,
+   * and a curve without a remembered result starts from the result of the previous curve in its part.
+   * Curves should therefore be ordered so that neighbours are similar, e.g. adjacent direction sectors.
+   *
+   * @param valueSets the curves to fit, null entries are skipped.
+   * @param keys the keys to remember the results under, same size as valueSets, entries may be null.
+   *
+   * @return the results in the order of the curves, and the statistics of the batch.
+   */
+  public FitBatchResult fitAll(List<double[]> valueSets, List<?> keys)
+  {
+    if (valueSets.size() != keys.size())
+    {
+      throw new IllegalArgumentException("valueSets and keys must have the same size");
+    }
+    long startNanos = System.nanoTime();
+    FitResult[] results = new FitResult[valueSets.size()];
+    int partCount = Math.min(valueSets.size(), forkJoinPool.getParallelism());
+    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    for (int part = 0; part < partCount; part++)
+    {
+      int from = valueSets.size() * part / partCount;
+      int to = valueSets.size() * (part + 1) / partCount;
+      tasks.add(forkJoinPool.submit(() ->
+      {
+        double[] previousParameters = null;
+        for (int i = from; i < to; i++)
+        {
+          if (valueSets.get(i) == null)
+          {
+            continue;
+          }
+          results[i] = fit(valueSets.get(i), keys.get(i), previousParameters);
+          if (results[i].isConverged())
+          {
+            previousParameters = results[i].getParameters();
+          }
+        }
+      }));
+    }
+    for (ForkJoinTask<?> task : tasks)
+    {
+      task.join();
+    }
+    List<FitResult> resultList = Arrays.asList(results);
+    return new FitBatchResult(
+        resultList,
+        FitStatistics.of(resultList, (System.nanoTime() - startNanos) / 1000000L));
+  }
+
+  private FitResult fit(double[] values, Object key, double[] neighbourParameters)
+  {
+    double[] warmStart = key == null ? null : rememberedResults.get(key);
+    if (warmStart == null)
+    {
+      warmStart = neighbourParameters;
+    }
+    long startNanos = System.nanoTime();
+    FitResult result;
+    if (warmStart != null)
+    {
+      result = fit(values, warmStart, true, startNanos, 0);
+      if (!result.isConverged())
+      {
+        result = fit(values, DEFAULT_START_POINT, false, startNanos, result.getEvaluations());
+      }
+    }
+    else
+    {
+      result = fit(values, DEFAULT_START_POINT, false, startNanos, 0);
+    }
+    if (key != null && result.isConverged())
+    {
+      rememberedResults.put(key, result.getParameters());
+    }
+    return result;
+  }
+
+  private FitResult fit(
+      double[] values,
+      double[] startPoint,
+      boolean warmStarted,
+      long startNanos,
+      int previousEvaluations)
+  {
+    Model model = new Model(values, startNanos + maxNanos);
+    try
+    {
+      LeastSquaresOptimizer.Optimum optimum = new LevenbergMarquardtOptimizer().optimize(
+          new LeastSquaresBuilder()
+              .maxEvaluations(Math.max(1, maxEvaluations - previousEvaluations))
+              .maxIterations(MAX_ITERATIONS)
+              .start(startPoint)
+              .target(values)
+              .model(model)
+              .lazyEvaluation(false)
+              .build());
+      return new FitResult(
+          optimum.getPoint().toArray(),
+          true,
+          warmStarted,
+          previousEvaluations + model.getEvaluations(),
+          optimum.getRMS(),
+          (System.nanoTime() - startNanos) / 1000000L);
+    }
+    catch (MathIllegalStateException | TimeBudgetExceededException e)
+    {
+      double[] bestPoint = model.getBestPoint() == null ? startPoint.clone() : model.getBestPoint();
+      return new FitResult(
+          bestPoint,
+          false,
+          warmStarted,
+          previousEvaluations + model.getEvaluations(),
+          Math.sqrt(model.getBestCost() / values.length),
+          (System.nanoTime() - startNanos) / 1000000L);
+    }
+  }
+
+  @Override
+  public void destroy()
+  {
+    forkJoinPool.shutdownNow();
+  }
+
+  /**
+   * Evaluates the fitting function and its jacobian at x = 0, 1, 2, ... in one pass,
+   * keeps the best point evaluated so far and enforces the time budget.
+   */
+  private class Model implements MultivariateJacobianFunction
+  {
+    private final double[] target;
+
+    private final long deadline;
+
+    @Getter
+    private int evaluations = 0;
+
+    @Getter
+    private double[] bestPoint;
+
+    @Getter
+    private double bestCost = Double.POSITIVE_INFINITY;
+
+    Model(double[] target, long deadline)
+    {
+      this.target = target;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public Pair<RealVector, RealMatrix> value(RealVector point)
+    {
+      if (System.nanoTime() > deadline)
+      {
+        throw new TimeBudgetExceededException();
+      }
+      evaluations++;
+      double[] parameters = point.toArray();
+      double[] values = new double[target.length];
+      double[][] jacobian = new double[target.length][];
+      double cost = 0d;
+      for (int x = 0; x < target.length; x++)
+      {
+        values[x] = fittingFunction.value(x, parameters);
+        jacobian[x] = fittingFunction.gradient(x, parameters);
+        double residual = values[x] - target[x];
+        cost += residual * residual;
+      }
+      if (cost < bestCost)
+      {
+        bestCost = cost;
+        bestPoint = parameters;
+      }
+      return new Pair<>(new ArrayRealVector(values, false), new Array2DRowRealMatrix(jacobian, false));
+    }
+  }
+
+  private static class TimeBudgetExceededException extends RuntimeException
+  {
+    private static final long serialVersionUID = 1L;
+  }
+}
@@ -0,0 +1,160 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataQualityIssue;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataQualityIssueType;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataQualityThresholds;
+
+/**
+ * Consumes the time-ordered data points of consecutive check windows and detects data quality issues
+ * in a single pass. A window contains the data points in ]windowStart, windowEnd].
+ * Apart from the detected issues, only the state of the current window and the current run of identical values
+ * is kept. Issues of the same type in adjoining windows are reported as a single issue.
+ */
+class DataQualityScanner implements WindSampleConsumer
+{
+  private static final long NO_TIME = Long.MIN_VALUE;
+
+  private final long start;
+
+  private final int windowCount;
+
+  private final DataQualityThresholds thresholds;
+
+  private final List<DataQualityIssue> issues = new ArrayList<>();
+
+  /** the last reported window issue of each type, which is extended by an adjoining window. */
+  private final DataQualityIssue[] lastWindowIssues = new DataQualityIssue[DataQualityIssueType.values().length];
+
+  private int currentWindow = 0;
+
+  private int pointsInWindow = 0;
+
+  private int windowSpeed;
+
+  private boolean windowSpeedConstant;
+
+  private long previousTime = NO_TIME;
+
+  private int previousSpeed;
+
+  private long runStart;
+
+  private int runSpeed;
+
+  private int runDirection;
+
+  DataQualityScanner(long start, int windowCount, DataQualityThresholds thresholds)
+  {
+    this.start = start;
+    this.windowCount = windowCount;
+    this.thresholds = thresholds;
+  }
+
+  @Override
+  public void accept(long time, int speed, int direction, int gusts)
+  {
+    int window = (int) Math.min((time - start - 1) / thresholds.getWindowMillis(), windowCount);
+    while (currentWindow < window)
+    {
+      finishWindow();
+    }
+    if (pointsInWindow == 0)
+    {
+      windowSpeed = speed;
+      windowSpeedConstant = true;
+    }
+    else if (speed != windowSpeed)
+    {
+      windowSpeedConstant = false;
+    }
+    pointsInWindow++;
+
+    if (previousTime != NO_TIME)
+    {
+      if (Math.abs(speed - previousSpeed) * Wind.WIND_SPEED_IN_KNOTS_DATABASE_FACTOR > thresholds.getMaxSpeedJump())
+      {
+        issues.add(new DataQualityIssue(DataQualityIssueType.IMPOSSIBLE_JUMP, previousTime, time));
+      }
+      if (speed != runSpeed || direction != runDirection)
+      {
+        finishRun();
+        runStart = time;
+      }
+    }
+    else
+    {
+      runStart = time;
+    }
+    runSpeed = speed;
+    runDirection = direction;
+    previousTime = time;
+    previousSpeed = speed;
+  }
+
+  private void finishWindow()
+  {
+    long windowStart = start + currentWindow * thresholds.getWindowMillis();
+    long windowEnd = windowStart + thresholds.getWindowMillis();
+    if (pointsInWindow == 0)
+    {
+      addWindowIssue(DataQualityIssueType.MISSING_DATA, windowStart, windowEnd);
+    }
+    else if (windowSpeedConstant
+        && windowSpeed * Wind.WIND_SPEED_IN_KNOTS_DATABASE_FACTOR >= thresholds.getStuckSensorMinSpeed())
+    {
+      addWindowIssue(DataQualityIssueType.STUCK_SENSOR, windowStart, windowEnd);
+    }
+    pointsInWindow = 0;
+    currentWindow++;
+  }
+
+  private void addWindowIssue(DataQualityIssueType type, long windowStart, long windowEnd)
+  {
+    DataQualityIssue lastIssue = lastWindowIssues[type.ordinal()];
+    DataQualityIssue issue;
+    if (lastIssue != null && lastIssue.getEnd() == windowStart)
+    {
+      issue = new DataQualityIssue(type, lastIssue.getStart(), windowEnd);
+      issues.set(issues.lastIndexOf(lastIssue), issue);
+    }
+    else
+    {
+      issue = new DataQualityIssue(type, windowStart, windowEnd);
+      issues.add(issue);
+    }
+    lastWindowIssues[type.ordinal()] = issue;
+  }
+
+  private void finishRun()
+  {
+    if (previousTime - runStart >= thresholds.getConstantRunMillis() && runSpeed > 0)
+    {
+      issues.add(new DataQualityIssue(DataQualityIssueType.CONSTANT_RUN, runStart, previousTime));
+    }
+  }
+
+  /**
+   * Checks the remaining windows and the last run of identical values.
+   *
+   * @return the detected issues, ordered by their start.
+   */
+  List<DataQualityIssue> finish()
+  {
+    while (currentWindow < windowCount)
+    {
+      finishWindow();
+    }
+    if (previousTime != NO_TIME)
+    {
+      finishRun();
+    }
+    issues.sort(Comparator.comparingLong(DataQualityIssue::getStart));
+    return issues;
+  }
+}
@@ -0,0 +1,289 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.WindQualityIndexStateRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindQualityIssueRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.DatasetMetadata;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindQualityIndexState;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindQualityIssue;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataQualityIssue;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataQualityThresholds;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataChangedEvent;
+
+/**
+ * Detects implausible wind data and maintains the quality index, i.e. the persisted data quality issues.
+ * The wind data is scanned in chunks of {@link #CHUNK_MILLIS}, the windows of the scan are aligned to
+ * multiples of the window length since the epoch. Runs of identical values are split at chunk boundaries.
+ * New data at the end of the time range is scanned periodically; time ranges which were changed
+ * by the application are rescanned on the next catch-up.
+ * Without a database, i.e. with the archive profile, the index must be disabled and all issues are scanned.
+ */
+@Component
+public class DataQualityService
+{
+  /** the length of the time range scanned in one transaction when the index is maintained. */
+  static final long CHUNK_MILLIS = 30L * 24L * 60L * 60L * 1000L;
+
+  private final WindDataService windDataService;
+
+  private final WindArchiveService windArchiveService;
+
+  private final WindQualityIssueRepository windQualityIssueRepository;
+
+  private final WindQualityIndexStateRepository windQualityIndexStateRepository;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final boolean enabled;
+
+  private final DataQualityThresholds thresholds;
+
+  private volatile WindQualityIndexState state;
+
+  private volatile boolean caughtUp = false;
+
+  private final Object changedRangeLock = new Object();
+
+  /** the time range changed by the application which is not rescanned yet, or null. */
+  private TimeRange changedRange;
+
+  public DataQualityService(
+      WindDataService windDataService,
+      WindArchiveService windArchiveService,
+      @Nullable WindQualityIssueRepository windQualityIssueRepository,
+      @Nullable WindQualityIndexStateRepository windQualityIndexStateRepository,
+      @Nullable TransactionTemplate transactionTemplate,
+      @Value("${weatherdataanalyzer.quality.enabled:false}") boolean enabled,
+      @Value("${weatherdataanalyzer.quality.windowMinutes:5}") int windowMinutes,
+      @Value("${weatherdataanalyzer.quality.stuckSensorMinSpeed:2}") double stuckSensorMinSpeed,
+      @Value("${weatherdataanalyzer.quality.constantRunMinutes:30}") int constantRunMinutes,
+      @Value("${weatherdataanalyzer.quality.maxSpeedJump:30}") double maxSpeedJump)
+  {
+    this.windDataService = windDataService;
+    this.windArchiveService = windArchiveService;
+    this.windQualityIssueRepository = windQualityIssueRepository;
+    this.windQualityIndexStateRepository = windQualityIndexStateRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.enabled = enabled;
+    this.thresholds = new DataQualityThresholds(
+        windowMinutes * 60L * 1000L,
+        stuckSensorMinSpeed,
+        constantRunMinutes * 60L * 1000L,
+        maxSpeedJump);
+  }
+
+  /**
+   * Returns whether the quality index is enabled, has scanned all data which existed at startup,
+   * and describes the data which is served, i.e. no archive is used.
+   *
+   * @return true if issues can be read from the index, false otherwise.
+   */
+  public boolean isAvailable()
+  {
+    return enabled && caughtUp && !windArchiveService.isAvailable();
+  }
+
+  /**
+   * Scans a time range for data quality issues in a single pass over the data.
+   *
+   * @param start the start of the first check window.
+   * @param end the time up to which check windows are created, must be larger than the start time.
+   *
+   * @return the issues, ordered by their start.
+   */
+  public List<DataQualityIssue> scan(Date start, Date end)
+  {
+    long windowMillis = thresholds.getWindowMillis();
+    long windowCount = Math.max(0, (end.getTime() - start.getTime() + windowMillis - 1) / windowMillis);
+    if (windowCount > Integer.MAX_VALUE)
+    {
+      throw new IllegalArgumentException("too many check windows: " + windowCount);
+    }
+    DataQualityScanner scanner = new DataQualityScanner(start.getTime(), (int) windowCount, thresholds);
+    windDataService.forEachDataPoint(start, new Date(start.getTime() + windowCount * windowMillis), scanner);
+    return scanner.finish();
+  }
+
+  /**
+   * Returns the data quality issues which overlap a time range.
+   * If the quality index is available, the issues are read from the index,
+   * and only the time range which is not scanned yet is scanned.
+   *
+   * @param start the start of the time range.
+   * @param end the end of the time range, must be larger than the start time.
+   *
+   * @return the issues, ordered by their start.
+   */
+  public List<DataQualityIssue> getIssues(Date start, Date end)
+  {
+    WindQualityIndexState currentState = state;
+    if (!isAvailable() || currentState == null || currentState.getScannedUntil() == null)
+    {
+      return scan(start, end);
+    }
+    long scannedUntil = currentState.getScannedUntil().getTime();
+    List<DataQualityIssue> result = new ArrayList<>();
+    if (start.getTime() < scannedUntil)
+    {
+      for (WindQualityIssue issue : windQualityIssueRepository.getIssuesOverlapping(
+          start,
+          new Date(Math.min(end.getTime(), scannedUntil))))
+      {
+        result.add(new DataQualityIssue(
+            issue.getIssueType(),
+            issue.getIssueStart().getTime(),
+            issue.getIssueEnd().getTime()));
+      }
+    }
+    if (end.getTime() > scannedUntil)
+    {
+      result.addAll(scan(new Date(Math.max(start.getTime(), scannedUntil)), end));
+    }
+    return result;
+  }
+
+  /**
+   * Determines which buckets overlap a data quality issue, so that analyses can exclude them.
+   * Bucket i contains the times in ]start + i * bucketMillis, start + (i + 1) * bucketMillis].
+   *
+   * @param start start time of the first bucket.
+   * @param bucketMillis the length of each bucket in milliseconds, must be larger than 0.
+   * @param bucketCount the number of buckets.
+   *
+   * @return the indices of the buckets containing bad data.
+   */
+  public BitSet getBadBuckets(long start, long bucketMillis, int bucketCount)
+  {
+    BitSet result = new BitSet(bucketCount);
+    long end = start + bucketCount * bucketMillis;
+    for (DataQualityIssue issue : getIssues(new Date(start), new Date(end)))
+    {
+      int firstBucket = (int) Math.max(0, Math.floorDiv(issue.getStart() - start, bucketMillis));
+      int lastBucket = (int) Math.min(bucketCount - 1, Math.floorDiv(issue.getEnd() - start - 1, bucketMillis));
+      if (firstBucket <= lastBucket)
+      {
+        result.set(firstBucket, lastBucket + 1);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Rescans the time ranges changed by the application and scans the data added since the last catch-up.
+   * The window containing the latest data point is rescanned on the next catch-up, as it may be incomplete.
+   */
+  @Scheduled(
+      initialDelayString = "${weatherdataanalyzer.quality.initialDelayMillis:0}",
+      fixedDelayString = "${weatherdataanalyzer.quality.catchUpMillis:60000}")
+  public synchronized void catchUp()
+  {
+    if (!enabled)
+    {
+      return;
+    }
+    if (state == null)
+    {
+      state = windQualityIndexStateRepository.findById(WindQualityIndexState.ID)
+          .orElseGet(WindQualityIndexState::new);
+    }
+    DatasetMetadata metadata = windDataService.getDatasetMetadata();
+    if (metadata.getCount() == 0)
+    {
+      caughtUp = true;
+      return;
+    }
+    long windowMillis = thresholds.getWindowMillis();
+    TimeRange rangeToRescan = takeChangedRange();
+    long scannedUntil = state.getScannedUntil() == null
+        ? Math.floorDiv(metadata.getMinTime().getTime() - 1, windowMillis) * windowMillis
+        : state.getScannedUntil().getTime();
+    if (rangeToRescan != null && rangeToRescan.getStart() <= scannedUntil)
+    {
+      long rescanStart = Math.floorDiv(rangeToRescan.getStart() - 1, windowMillis) * windowMillis;
+      long rescanEnd = Math.min(
+          scannedUntil,
+          -Math.floorDiv(-rangeToRescan.getEnd(), windowMillis) * windowMillis);
+      scanInChunks(rescanStart, rescanEnd);
+    }
+    long scanEnd = Math.floorDiv(metadata.getMaxTime().getTime(), windowMillis) * windowMillis;
+    if (scanEnd > scannedUntil)
+    {
+      scanInChunks(scannedUntil, scanEnd);
+      WindQualityIndexState newState = new WindQualityIndexState();
+      newState.setScannedUntil(new Date(scanEnd));
+      state = windQualityIndexStateRepository.save(newState);
+    }
+    caughtUp = true;
+  }
+
+  private void scanInChunks(long start, long end)
+  {
+    for (long chunkStart = start; chunkStart < end; chunkStart += CHUNK_MILLIS)
+    {
+      long chunkEnd = Math.min(chunkStart + CHUNK_MILLIS, end);
+      long currentChunkStart = chunkStart;
+      transactionTemplate.execute(status ->
+      {
+        windQualityIssueRepository.deleteIssuesStartingIn(new Date(currentChunkStart), new Date(chunkEnd));
+        List<WindQualityIssue> issues = new ArrayList<>();
+        for (DataQualityIssue issue : scan(new Date(currentChunkStart), new Date(chunkEnd)))
+        {
+          WindQualityIssue entity = new WindQualityIssue();
+          entity.setIssueType(issue.getType());
+          entity.setIssueStart(new Date(issue.getStart()));
+          entity.setIssueEnd(new Date(issue.getEnd()));
+          issues.add(entity);
+        }
+        windQualityIssueRepository.saveAll(issues);
+        return null;
+      });
+    }
+  }
+
+  private TimeRange takeChangedRange()
+  {
+    synchronized (changedRangeLock)
+    {
+      TimeRange result = changedRange;
+      changedRange = null;
+      return result;
+    }
+  }
+
+  /**
+   * Remembers the time range of data written by the application, so it is rescanned on the next catch-up.
+   */
+  @EventListener
+  public void onWindDataChanged(WindDataChangedEvent event)
+  {
+    if (!enabled)
+    {
+      return;
+    }
+    synchronized (changedRangeLock)
+    {
+      if (changedRange == null)
+      {
+        changedRange = new TimeRange(event.getStart(), event.getEnd());
+      }
+      else
+      {
+        changedRange = new TimeRange(
+            Math.min(changedRange.getStart(), event.getStart()),
+            Math.max(changedRange.getEnd(), event.getEnd()));
+      }
+    }
+  }
+}
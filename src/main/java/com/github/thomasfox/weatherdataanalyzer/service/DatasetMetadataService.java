@@ -0,0 +1,85 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.WindRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.DatasetMetadata;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataChangedEvent;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps the row count, the time range and the last ingested id of the wind table in memory.
+ * After the initial calculation, only rows with an id larger than the last ingested id are read,
+ * which is a cheap primary key range scan.
+ */
+@Component
+@Profile("!archive")
+@RequiredArgsConstructor
+public class DatasetMetadataService
+{
+  private final WindRepository windRepository;
+
+  private volatile DatasetMetadata metadata;
+
+  /**
+   * Returns the current metadata.
+   *
+   * @return the metadata, or null if it has not been calculated yet.
+   */
+  public DatasetMetadata getMetadata()
+  {
+    return metadata;
+  }
+
+  /**
+   * Adds the rows which were inserted since the last update to the metadata.
+   * Calculates the metadata from the whole table on the first call.
+   */
+  @Scheduled(
+      initialDelayString = "${weatherdataanalyzer.metadata.initialDelayMillis:0}",
+      fixedDelayString = "${weatherdataanalyzer.metadata.catchUpMillis:10000}")
+  public synchronized void catchUp()
+  {
+    if (metadata == null)
+    {
+      metadata = windRepository.getDatasetMetadata();
+      return;
+    }
+    DatasetMetadata newRows = windRepository.getDatasetMetadataForIdGreaterThan(metadata.getLastIngestedId());
+    if (newRows.getCount() > 0)
+    {
+      metadata = metadata.combine(newRows);
+    }
+  }
+
+  /**
+   * Adds data points written by the application to the metadata without waiting for the next scheduled catch-up.
+   */
+  @Async
+  @EventListener
+  public void onWindDataChanged(WindDataChangedEvent event)
+  {
+    catchUp();
+  }
+
+  /**
+   * Recalculates the metadata from the whole table in the background.
+   * This corrects the metadata if rows were deleted or updated, which is not detected by {@link #catchUp()}.
+   */
+  @Async
+  public void reconcile()
+  {
+    DatasetMetadata reconciledMetadata = windRepository.getDatasetMetadata();
+    synchronized (this)
+    {
+      DatasetMetadata rowsInsertedMeanwhile
+          = windRepository.getDatasetMetadataForIdGreaterThan(reconciledMetadata.getLastIngestedId());
+      metadata = reconciledMetadata.combine(rowsInsertedMeanwhile);
+    }
+  }
+}
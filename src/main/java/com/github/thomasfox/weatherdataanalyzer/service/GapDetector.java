@@ -0,0 +1,74 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+
+/**
+ * Consumes time-ordered data points and records the intervals between consecutive data points:
+ * a histogram of their lengths in whole seconds, and the intervals which are at least a minimum length long.
+ * Except for the detected gaps, the memory used does not depend on the number of data points.
+ */
+class GapDetector implements WindSampleConsumer
+{
+  /** Marker for "no previous data point". */
+  static final long NO_TIME = Long.MIN_VALUE;
+
+  /** The largest interval length in the histogram, longer intervals are counted in this bin. */
+  static final int MAX_INTERVAL_SECONDS = 3600;
+
+  private final long minGapMillis;
+
+  private final long[] intervalCounts = new long[MAX_INTERVAL_SECONDS + 1];
+
+  private final List<TimeRange> gaps = new ArrayList<>();
+
+  private long previousTime;
+
+  /**
+   * @param previousTime the time of the data point before the first consumed data point,
+   *        or NO_TIME if the interval before the first data point should not be recorded.
+   * @param minGapMillis the minimum length of an interval to be recorded as gap.
+   */
+  GapDetector(long previousTime, long minGapMillis)
+  {
+    this.previousTime = previousTime;
+    this.minGapMillis = minGapMillis;
+  }
+
+  @Override
+  public void accept(long time, int speed, int direction, int gusts)
+  {
+    if (previousTime != NO_TIME)
+    {
+      long intervalMillis = time - previousTime;
+      intervalCounts[(int) Math.min(intervalMillis / 1000, MAX_INTERVAL_SECONDS)]++;
+      if (intervalMillis >= minGapMillis)
+      {
+        gaps.add(new TimeRange(previousTime, time));
+      }
+    }
+    previousTime = time;
+  }
+
+  /**
+   * Returns the number of intervals for each length in whole seconds.
+   * The returned array is not copied.
+   */
+  long[] getIntervalCounts()
+  {
+    return intervalCounts;
+  }
+
+  List<TimeRange> getGaps()
+  {
+    return gaps;
+  }
+
+  long getPreviousTime()
+  {
+    return previousTime;
+  }
+}
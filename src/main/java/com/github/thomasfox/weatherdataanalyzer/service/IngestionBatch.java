@@ -0,0 +1,97 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataBlock;
+
+/**
+ * Collects data points into blocks of a fixed maximum size.
+ * Each full block is sorted by time and passed on, so the data points need not arrive in time order.
+ */
+class IngestionBatch implements WindSampleConsumer
+{
+  private final Consumer<WindDataBlock> blockConsumer;
+
+  private final long[] times;
+
+  private final int[] speeds;
+
+  private final int[] directions;
+
+  private final int[] gusts;
+
+  private int size = 0;
+
+  private boolean sorted = true;
+
+  IngestionBatch(int batchSize, Consumer<WindDataBlock> blockConsumer)
+  {
+    this.blockConsumer = blockConsumer;
+    this.times = new long[batchSize];
+    this.speeds = new int[batchSize];
+    this.directions = new int[batchSize];
+    this.gusts = new int[batchSize];
+  }
+
+  @Override
+  public void accept(long time, int speed, int direction, int gust)
+  {
+    if (size > 0 && time < times[size - 1])
+    {
+      sorted = false;
+    }
+    times[size] = time;
+    speeds[size] = speed;
+    directions[size] = direction;
+    gusts[size] = gust;
+    size++;
+    if (size == times.length)
+    {
+      flush();
+    }
+  }
+
+  /**
+   * Passes on the data points which were collected since the last full block, if any.
+   */
+  void flush()
+  {
+    if (size == 0)
+    {
+      return;
+    }
+    if (sorted)
+    {
+      blockConsumer.accept(new WindDataBlock(
+          Arrays.copyOf(times, size),
+          Arrays.copyOf(speeds, size),
+          Arrays.copyOf(directions, size),
+          Arrays.copyOf(gusts, size)));
+    }
+    else
+    {
+      int[] order = IntStream.range(0, size)
+          .boxed()
+          .sorted((first, second) -> Long.compare(times[first], times[second]))
+          .mapToInt(Integer::intValue)
+          .toArray();
+      long[] sortedTimes = new long[size];
+      int[] sortedSpeeds = new int[size];
+      int[] sortedDirections = new int[size];
+      int[] sortedGusts = new int[size];
+      for (int i = 0; i < size; i++)
+      {
+        sortedTimes[i] = times[order[i]];
+        sortedSpeeds[i] = speeds[order[i]];
+        sortedDirections[i] = directions[order[i]];
+        sortedGusts[i] = gusts[order[i]];
+      }
+      blockConsumer.accept(new WindDataBlock(sortedTimes, sortedSpeeds, sortedDirections, sortedGusts));
+    }
+    size = 0;
+    sorted = true;
+  }
+}
@@ -0,0 +1,54 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount;
+
+/**
+ * Counts integer values in an array which grows to the range of the added values.
+ */
+class IntValueHistogram
+{
+  private long[] counts = new long[0];
+
+  private int offset;
+
+  void add(int value)
+  {
+    if (counts.length == 0)
+    {
+      counts = new long[1];
+      offset = value;
+    }
+    else if (value < offset)
+    {
+      long[] grownCounts = new long[counts.length + offset - value];
+      System.arraycopy(counts, 0, grownCounts, offset - value, counts.length);
+      counts = grownCounts;
+      offset = value;
+    }
+    else if (value - offset >= counts.length)
+    {
+      counts = Arrays.copyOf(counts, value - offset + 1);
+    }
+    counts[value - offset]++;
+  }
+
+  /**
+   * Returns the counts of the values which occurred, ordered by value.
+   */
+  List<IntValueCount> toList()
+  {
+    List<IntValueCount> result = new ArrayList<>();
+    for (int i = 0; i < counts.length; i++)
+    {
+      if (counts[i] > 0)
+      {
+        result.add(new IntValueCount(i + offset, counts[i]));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,119 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.BucketAverages;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeDataSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindCondition;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+
+/**
+ * Consumes the time-ordered data points of a single scan, calculates the averages of each bucket
+ * and keeps the data of the buckets whose averages match a condition.
+ * Only the data of the current bucket is buffered while scanning.
+ * As in {@link WindDataService}, the averages of a bucket are calculated from the data points in
+ * [bucketStart, bucketEnd[, and the data of a bucket contains the data points in ]bucketStart, bucketEnd].
+ * The scan must therefore cover [start of first bucket, end of last bucket].
+ */
+class MatchingBucketCollector implements WindSampleConsumer
+{
+  private final BucketAverages bucketAverages;
+
+  private final WindCondition condition;
+
+  private final WindQuantity quantity;
+
+  private final List<TimeRangeWithData> result = new ArrayList<>();
+
+  private int currentBucket = 0;
+
+  private TimeDataSeries currentBucketData = new TimeDataSeries();
+
+  /** A matching bucket which still receives the data points at its end time. */
+  private TimeRangeWithData pendingBucket;
+
+  MatchingBucketCollector(BucketAverages bucketAverages, WindCondition condition, WindQuantity quantity)
+  {
+    this.bucketAverages = bucketAverages;
+    this.condition = condition;
+    this.quantity = quantity;
+  }
+
+  @Override
+  public void accept(long time, int speed, int direction, int gusts)
+  {
+    int bucket = Math.min(bucketAverages.getBucket(time), bucketAverages.size());
+    while (currentBucket < bucket)
+    {
+      finishCurrentBucket();
+    }
+    double value = quantity.fromDatabaseValues(speed, direction, gusts);
+    if (pendingBucket != null)
+    {
+      if (time == pendingBucket.getRange().getEnd())
+      {
+        pendingBucket.getData().add(time, value);
+      }
+      else
+      {
+        emitPendingBucket();
+      }
+    }
+    if (bucket < bucketAverages.size())
+    {
+      bucketAverages.addSample(bucket, speed, direction);
+      if (time > bucketAverages.getBucketStart(bucket))
+      {
+        currentBucketData.add(time, value);
+      }
+    }
+  }
+
+  /**
+   * Finishes the remaining buckets after the scan is complete.
+   *
+   * @return the data of all buckets whose averages match the condition, ordered by time.
+   */
+  List<TimeRangeWithData> finish()
+  {
+    while (currentBucket < bucketAverages.size())
+    {
+      finishCurrentBucket();
+    }
+    emitPendingBucket();
+    return result;
+  }
+
+  private void finishCurrentBucket()
+  {
+    if (bucketAverages.hasData(currentBucket)
+        && condition.matches(
+            bucketAverages.getAverageSpeed(currentBucket),
+            bucketAverages.getAverageDirection(currentBucket)))
+    {
+      emitPendingBucket();
+      pendingBucket = new TimeRangeWithData(
+          new TimeRange(bucketAverages.getBucketStart(currentBucket), bucketAverages.getBucketEnd(currentBucket)),
+          currentBucketData);
+      currentBucketData = new TimeDataSeries();
+    }
+    else
+    {
+      currentBucketData.clear();
+    }
+    currentBucket++;
+  }
+
+  private void emitPendingBucket()
+  {
+    if (pendingBucket != null)
+    {
+      result.add(pendingBucket);
+      pendingBucket = null;
+    }
+  }
+}
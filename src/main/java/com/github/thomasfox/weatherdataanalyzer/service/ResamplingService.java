@@ -0,0 +1,226 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.ResamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeDataSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+
+/**
+ * Resamples time series at equidistant sample times into primitive arrays.
+ * Samples before the first data point get the value of the first data point,
+ * samples after the last data point get the value of the last data point.
+ * The target arrays are passed in, so they can be reused for many time series.
+ */
+@Component
+public class ResamplingService
+{
+  /** sample step of one second. */
+  public static final long SECOND_MILLIS = 1000L;
+
+  /**
+   * Returns the number of samples in a time range, including samples at its start and end.
+   */
+  public int getSampleCount(TimeRangeWithData data, long stepMillis)
+  {
+    checkStep(stepMillis);
+    long result = data.getRange().getDurationMillis() / stepMillis + 1;
+    if (result > Integer.MAX_VALUE)
+    {
+      throw new IllegalArgumentException("too many samples: " + result);
+    }
+    return (int) result;
+  }
+
+  /**
+   * Resamples a time series from the start of its time range.
+   *
+   * @param data the time series, not null.
+   * @param stepMillis the time between two samples in milliseconds, must be larger than 0.
+   * @param mode how to calculate the sampled values, not null.
+   * @param count the number of samples.
+   *
+   * @return a new array containing the samples.
+   */
+  public double[] resample(TimeRangeWithData data, long stepMillis, ResamplingMode mode, int count)
+  {
+    double[] result = new double[count];
+    resample(data.getData(), data.getRange().getStart(), stepMillis, mode, result, 0, count);
+    return result;
+  }
+
+  /**
+   * Resamples a time series into an existing array.
+   *
+   * @param data the time series, not null. If it is empty, all samples are 0.
+   * @param start the time of the first sample in milliseconds.
+   * @param stepMillis the time between two samples in milliseconds, must be larger than 0.
+   * @param mode how to calculate the sampled values, not null.
+   * @param target the array to write the samples to.
+   * @param offset the index in the target array for the first sample.
+   * @param count the number of samples to write.
+   */
+  public void resample(
+      TimeDataSeries data,
+      long start,
+      long stepMillis,
+      ResamplingMode mode,
+      double[] target,
+      int offset,
+      int count)
+  {
+    checkStep(stepMillis);
+    int size = data.size();
+    if (size == 0)
+    {
+      for (int i = 0; i < count; i++)
+      {
+        target[offset + i] = 0d;
+      }
+      return;
+    }
+    // the last data point at or before the sample time, or the first data point
+    int index = Math.max(0, data.indexOfLastAtOrBefore(start));
+    for (int i = 0; i < count; i++)
+    {
+      long time = start + i * stepMillis;
+      while (index < size - 1 && data.getTimestamp(index + 1) <= time)
+      {
+        index++;
+      }
+      double value = data.getValue(index);
+      if (mode == ResamplingMode.LINEAR)
+      {
+        if (data.getTimestamp(index) < time && index < size - 1)
+        {
+          long previousTime = data.getTimestamp(index);
+          double fraction = ((double) (time - previousTime)) / (data.getTimestamp(index + 1) - previousTime);
+          value += fraction * (data.getValue(index + 1) - value);
+        }
+      }
+      else if (mode == ResamplingMode.MEAN)
+      {
+        int meanIndex = data.getTimestamp(index) >= time ? index : index + 1;
+        double sum = 0d;
+        int meanCount = 0;
+        while (meanIndex < size && data.getTimestamp(meanIndex) < time + stepMillis)
+        {
+          sum += data.getValue(meanIndex);
+          meanCount++;
+          meanIndex++;
+        }
+        if (meanCount > 0)
+        {
+          value = sum / meanCount;
+        }
+      }
+      target[offset + i] = value;
+    }
+  }
+
+  /**
+   * Marks the samples which lie in a gap of the data, i.e. where the data points before and after
+   * the sample time are more than the given time apart.
+   * Before the first and after the last data point, the distance to that data point is used.
+   * Samples at the time of a data point are never in a gap.
+   *
+   * @param data the time series, not null. If it is empty, all samples are in a gap.
+   * @param start the time of the first sample in milliseconds.
+   * @param stepMillis the time between two samples in milliseconds, must be larger than 0.
+   * @param count the number of samples.
+   * @param maxGapMillis the largest distance between data points which is not considered a gap.
+   * @param gaps the bit set in which the indices of the samples in gaps are set, not null.
+   */
+  public void markGaps(TimeDataSeries data, long start, long stepMillis, int count, long maxGapMillis, BitSet gaps)
+  {
+    checkStep(stepMillis);
+    int size = data.size();
+    if (size == 0)
+    {
+      gaps.set(0, count);
+      return;
+    }
+    int index = data.indexOfLastAtOrBefore(start);
+    for (int i = 0; i < count; i++)
+    {
+      long time = start + i * stepMillis;
+      while (index < size - 1 && data.getTimestamp(index + 1) <= time)
+      {
+        index++;
+      }
+      boolean inGap;
+      if (index < 0)
+      {
+        inGap = data.getTimestamp(0) - time > maxGapMillis;
+      }
+      else if (data.getTimestamp(index) == time)
+      {
+        inGap = false;
+      }
+      else if (index == size - 1)
+      {
+        inGap = time - data.getTimestamp(index) > maxGapMillis;
+      }
+      else
+      {
+        inGap = data.getTimestamp(index + 1) - data.getTimestamp(index) > maxGapMillis;
+      }
+      if (inGap)
+      {
+        gaps.set(i);
+      }
+    }
+  }
+
+  /**
+   * Splits time series at their gaps, see {@link #markGaps(TimeDataSeries, long, long, int, long, BitSet)},
+   * so that analyses of the resampled series do not use samples in gaps or combine samples across gaps.
+   * The parts share the data of the original time series.
+   *
+   * @param intervals the time series, not null.
+   * @param stepMillis the time between two samples in milliseconds, must be larger than 0.
+   * @param maxGapMillis the largest distance between data points which is not considered a gap,
+   *        or 0 to return the time series unchanged.
+   *
+   * @return the parts of the time series between the gaps, each starting and ending at a sample time.
+   */
+  public List<TimeRangeWithData> splitAtGaps(List<TimeRangeWithData> intervals, long stepMillis, long maxGapMillis)
+  {
+    if (maxGapMillis <= 0)
+    {
+      return intervals;
+    }
+    List<TimeRangeWithData> result = new ArrayList<>();
+    BitSet gaps = new BitSet();
+    for (TimeRangeWithData interval : intervals)
+    {
+      long start = interval.getRange().getStart();
+      int count = getSampleCount(interval, stepMillis);
+      gaps.clear();
+      markGaps(interval.getData(), start, stepMillis, count, maxGapMillis, gaps);
+      int partStart = gaps.nextClearBit(0);
+      while (partStart < count)
+      {
+        int partEnd = Math.min(gaps.nextSetBit(partStart) < 0 ? count : gaps.nextSetBit(partStart), count);
+        result.add(new TimeRangeWithData(
+            new TimeRange(start + partStart * stepMillis, start + (partEnd - 1) * stepMillis),
+            interval.getData()));
+        partStart = gaps.nextClearBit(partEnd);
+      }
+    }
+    return result;
+  }
+
+  private void checkStep(long stepMillis)
+  {
+    if (stepMillis <= 0)
+    {
+      throw new IllegalArgumentException("stepMillis must be larger than 0");
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanAnalysis;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanGrid;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+
+/**
+ * Evaluates an analysis for each cell of a grid of speed bands and direction sectors.
+ * The data of the time range is loaded once and partitioned by the average speed and direction
+ * of its intervals, then the cells are analyzed in parallel.
+ */
+@Component
+public class ScanService implements DisposableBean
+{
+  private final WindDataService windDataService;
+
+  private final ForkJoinPool forkJoinPool;
+
+  public ScanService(
+      WindDataService windDataService,
+      @Value("${weatherdataanalyzer.scan.parallelism:0}") int parallelism)
+  {
+    this.windDataService = windDataService;
+    this.forkJoinPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Divides a time range into intervals, assigns each interval to the grid cell containing its
+   * average speed and direction, and evaluates the analysis for the intervals of each cell.
+   *
+   * @param start the start of the first interval.
+   * @param end the time up to which intervals are created.
+   * @param intervalMillis the length of each interval in milliseconds.
+   * @param grid the grid of speed bands and direction sectors, not null.
+   * @param quantity the quantity of the interval data passed to the analysis.
+   * @param analysis the analysis to evaluate for each cell, not null.
+   *
+   * @return the result of the analysis for each cell.
+   */
+  public ScanResult scan(
+      Date start,
+      Date end,
+      long intervalMillis,
+      ScanGrid grid,
+      WindQuantity quantity,
+      ScanAnalysis analysis)
+  {
+    List<List<TimeRangeWithData>> cellData
+        = windDataService.getDataOfBucketsByGridCell(start, end, intervalMillis, grid, quantity);
+    double[][] values = new double[grid.getCellCount()][];
+    int[] intervalCounts = new int[grid.getCellCount()];
+    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    for (int cell = 0; cell < grid.getCellCount(); cell++)
+    {
+      List<TimeRangeWithData> intervals = cellData.get(cell);
+      intervalCounts[cell] = intervals.size();
+      if (intervals.isEmpty())
+      {
+        continue;
+      }
+      int analyzedCell = cell;
+      tasks.add(forkJoinPool.submit(() ->
+      {
+        values[analyzedCell] = analysis.analyze(intervals);
+      }));
+    }
+    for (ForkJoinTask<?> task : tasks)
+    {
+      task.join();
+    }
+    return new ScanResult(grid, values, intervalCounts);
+  }
+
+  @Override
+  public void destroy()
+  {
+    forkJoinPool.shutdownNow();
+  }
+}
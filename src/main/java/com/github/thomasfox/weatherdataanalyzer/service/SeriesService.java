@@ -0,0 +1,351 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYZDataset;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.SeriesFormat;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Extracts the data series from chart datasets and writes them to responses as JSON or binary,
+ * so that clients can render the data themselves. No chart is built for this.
+ */
+@Component
+@RequiredArgsConstructor
+public class SeriesService
+{
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final int RETRY_AFTER_SECONDS = 5;
+
+  private final JsonFactory jsonFactory = new JsonFactory()
+      .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+  private final ComputeService computeService;
+
+  /**
+   * Creates an XY dataset on a compute thread and creates a response which streams its data series.
+   *
+   * @param datasetBuilder creates the dataset, not null.
+   * @param title the title of the data.
+   * @param xLabel the label of the x values.
+   * @param yLabel the label of the y values.
+   * @param format the format of the response, not null.
+   *
+   * @return the future response, or a response with status 503 if too many computations are running.
+   */
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getXYSeries(
+      Supplier<? extends XYDataset> datasetBuilder,
+      String title,
+      String xLabel,
+      String yLabel,
+      SeriesFormat format)
+  {
+    return getSeries(() -> createSeries(datasetBuilder.get(), title, xLabel, yLabel), format);
+  }
+
+  /**
+   * Same as {@link #getXYSeries(Supplier, String, String, String, SeriesFormat)} for datasets
+   * whose x values are times in milliseconds.
+   *
+   * @see #createTimeSeries(XYDataset, String, String, String)
+   */
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getTimeSeries(
+      Supplier<? extends XYDataset> datasetBuilder,
+      String title,
+      String xLabel,
+      String yLabel,
+      SeriesFormat format)
+  {
+    return getSeries(() -> createTimeSeries(datasetBuilder.get(), title, xLabel, yLabel), format);
+  }
+
+  /**
+   * Same as {@link #getXYSeries(Supplier, String, String, String, SeriesFormat)} for category datasets.
+   *
+   * @see #createSeries(CategoryDataset, String, String, String)
+   */
+  public CompletableFuture<ResponseEntity<StreamingResponseBody>> getCategorySeries(
+      Supplier<? extends CategoryDataset> datasetBuilder,
+      String title,
+      String xLabel,
+      String yLabel,
+      SeriesFormat format)
+  {
+    return getSeries(() -> createSeries(datasetBuilder.get(), title, xLabel, yLabel), format);
+  }
+
+  private CompletableFuture<ResponseEntity<StreamingResponseBody>> getSeries(
+      Supplier<ChartSeries> seriesBuilder,
+      SeriesFormat format)
+  {
+    try
+    {
+      return computeService.submit(() -> createResponseEntity(seriesBuilder.get(), format));
+    }
+    catch (RejectedExecutionException e)
+    {
+      return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+          .header(HttpHeaders.RETRY_AFTER, Integer.toString(RETRY_AFTER_SECONDS))
+          .build());
+    }
+  }
+
+  public ResponseEntity<StreamingResponseBody> createResponseEntity(ChartSeries series, SeriesFormat format)
+  {
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(format.getContentType()))
+        .body(outputStream -> write(series, format, outputStream));
+  }
+
+  /**
+   * Extracts the data series of an XY dataset. If the dataset is an XYZ dataset, the z values are also extracted.
+   *
+   * @param dataset the dataset, not null.
+   */
+  public ChartSeries createSeries(XYDataset dataset, String title, String xLabel, String yLabel)
+  {
+    List<DataSeries> series = new ArrayList<>();
+    addSeries(dataset, series);
+    return new ChartSeries(title, xLabel, yLabel, 0d, series);
+  }
+
+  /**
+   * Extracts the data series of an XY dataset whose x values are times in milliseconds.
+   * The earliest time is subtracted from all x values and returned as offset.
+   *
+   * @param dataset the dataset, not null.
+   */
+  public ChartSeries createTimeSeries(XYDataset dataset, String title, String xLabel, String yLabel)
+  {
+    List<DataSeries> series = new ArrayList<>();
+    addSeries(dataset, series);
+    double xOffset = subtractMinimumX(series);
+    return new ChartSeries(title, xLabel, yLabel, xOffset, series);
+  }
+
+  /**
+   * Extracts the data series of a category dataset, one for each row.
+   * Category keys are used as x values if they are numbers, otherwise the index of the category is used.
+   *
+   * @param dataset the dataset, not null.
+   */
+  public ChartSeries createSeries(CategoryDataset dataset, String title, String xLabel, String yLabel)
+  {
+    List<DataSeries> series = new ArrayList<>();
+    addSeries(dataset, series);
+    return new ChartSeries(title, xLabel, yLabel, 0d, series);
+  }
+
+  private void addSeries(XYDataset dataset, List<DataSeries> result)
+  {
+    for (int series = 0; series < dataset.getSeriesCount(); series++)
+    {
+      int itemCount = dataset.getItemCount(series);
+      double[] x = new double[itemCount];
+      double[] y = new double[itemCount];
+      double[] z = dataset instanceof XYZDataset ? new double[itemCount] : null;
+      for (int item = 0; item < itemCount; item++)
+      {
+        x[item] = dataset.getXValue(series, item);
+        y[item] = dataset.getYValue(series, item);
+        if (z != null)
+        {
+          z[item] = ((XYZDataset) dataset).getZValue(series, item);
+        }
+      }
+      result.add(new DataSeries(dataset.getSeriesKey(series).toString(), x, y, z));
+    }
+  }
+
+  private void addSeries(CategoryDataset dataset, List<DataSeries> result)
+  {
+    int columnCount = dataset.getColumnCount();
+    double[] x = new double[columnCount];
+    for (int column = 0; column < columnCount; column++)
+    {
+      x[column] = getCategoryValue(dataset.getColumnKey(column), column);
+    }
+    for (int row = 0; row < dataset.getRowCount(); row++)
+    {
+      double[] y = new double[columnCount];
+      for (int column = 0; column < columnCount; column++)
+      {
+        Number value = dataset.getValue(row, column);
+        y[column] = value == null ? Double.NaN : value.doubleValue();
+      }
+      result.add(new DataSeries(dataset.getRowKey(row).toString(), x, y, null));
+    }
+  }
+
+  private static double getCategoryValue(Comparable<?> key, int index)
+  {
+    if (key instanceof Number)
+    {
+      return ((Number) key).doubleValue();
+    }
+    try
+    {
+      return Double.parseDouble(key.toString());
+    }
+    catch (NumberFormatException e)
+    {
+      return index;
+    }
+  }
+
+  private static double subtractMinimumX(List<DataSeries> series)
+  {
+    double minimum = Double.POSITIVE_INFINITY;
+    for (DataSeries dataSeries : series)
+    {
+      for (double x : dataSeries.getX())
+      {
+        minimum = Math.min(minimum, x);
+      }
+    }
+    if (Double.isInfinite(minimum))
+    {
+      return 0d;
+    }
+    for (DataSeries dataSeries : series)
+    {
+      double[] x = dataSeries.getX();
+      for (int i = 0; i < x.length; i++)
+      {
+        x[i] -= minimum;
+      }
+    }
+    return minimum;
+  }
+
+  public void write(ChartSeries series, SeriesFormat format, OutputStream outputStream) throws IOException
+  {
+    if (format == SeriesFormat.BINARY)
+    {
+      writeBinary(series, outputStream);
+    }
+    else
+    {
+      writeJson(series, outputStream);
+    }
+  }
+
+  private void writeJson(ChartSeries series, OutputStream outputStream) throws IOException
+  {
+    try (JsonGenerator generator = jsonFactory.createGenerator(outputStream))
+    {
+      generator.writeStartObject();
+      generator.writeStringField("title", series.getTitle());
+      generator.writeStringField("xLabel", series.getXLabel());
+      generator.writeStringField("yLabel", series.getYLabel());
+      generator.writeNumberField("xOffset", series.getXOffset());
+      generator.writeArrayFieldStart("series");
+      for (DataSeries dataSeries : series.getSeries())
+      {
+        generator.writeStartObject();
+        generator.writeStringField("name", dataSeries.getName());
+        writeJsonColumn(generator, "x", dataSeries.getX());
+        writeJsonColumn(generator, "y", dataSeries.getY());
+        if (dataSeries.getZ() != null)
+        {
+          writeJsonColumn(generator, "z", dataSeries.getZ());
+        }
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+  }
+
+  private void writeJsonColumn(JsonGenerator generator, String name, double[] values) throws IOException
+  {
+    generator.writeArrayFieldStart(name);
+    for (double value : values)
+    {
+      if (Double.isFinite(value))
+      {
+        generator.writeNumber(value);
+      }
+      else
+      {
+        generator.writeNull();
+      }
+    }
+    generator.writeEndArray();
+  }
+
+  private void writeBinary(ChartSeries series, OutputStream outputStream) throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putDouble(series.getXOffset());
+    buffer.putInt(series.getSeries().size());
+    for (DataSeries dataSeries : series.getSeries())
+    {
+      byte[] name = dataSeries.getName().getBytes(StandardCharsets.UTF_8);
+      ensureRemaining(buffer, 4, outputStream);
+      buffer.putInt(name.length);
+      for (byte nameByte : name)
+      {
+        ensureRemaining(buffer, 1, outputStream);
+        buffer.put(nameByte);
+      }
+      ensureRemaining(buffer, 8, outputStream);
+      buffer.putInt(dataSeries.size());
+      buffer.putInt(dataSeries.getZ() == null ? 2 : 3);
+      writeBinaryColumn(buffer, dataSeries.getX(), outputStream);
+      writeBinaryColumn(buffer, dataSeries.getY(), outputStream);
+      if (dataSeries.getZ() != null)
+      {
+        writeBinaryColumn(buffer, dataSeries.getZ(), outputStream);
+      }
+    }
+    flush(buffer, outputStream);
+  }
+
+  private void writeBinaryColumn(ByteBuffer buffer, double[] values, OutputStream outputStream) throws IOException
+  {
+    for (double value : values)
+    {
+      ensureRemaining(buffer, 4, outputStream);
+      buffer.putFloat((float) value);
+    }
+  }
+
+  private void ensureRemaining(ByteBuffer buffer, int bytes, OutputStream outputStream) throws IOException
+  {
+    if (buffer.remaining() < bytes)
+    {
+      flush(buffer, outputStream);
+    }
+  }
+
+  private void flush(ByteBuffer buffer, OutputStream outputStream) throws IOException
+  {
+    outputStream.write(buffer.array(), 0, buffer.position());
+    buffer.clear();
+  }
+}
@@ -0,0 +1,166 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.RealFft;
+import com.github.thomasfox.weatherdataanalyzer.service.model.Spectrogram;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+
+/**
+ * Consumes the time-ordered data points of a single scan and calculates a spectrogram incrementally.
+ * The data points are resampled once per second holding the last value,
+ * as {@link ResamplingService} does in hold mode.
+ * Only the samples of the current segment are buffered, so the memory used does not depend
+ * on the length of the time range.
+ * Each segment is detrended by its mean, windowed, transformed, and its power spectrum is added
+ * to the column which contains the center of the segment.
+ */
+class SpectrogramCollector implements WindSampleConsumer
+{
+  private final WindQuantity quantity;
+
+  private final long start;
+
+  private final long end;
+
+  /** the number of samples from start to end, once per second. */
+  private final long sampleCount;
+
+  private final int segmentStep;
+
+  private final RealFft fft;
+
+  private final double[] windowCoefficients;
+
+  /** the last samples, the oldest sample is at {@link #ringPosition}. */
+  private final double[] ring;
+
+  private int ringPosition = 0;
+
+  private long samplesWritten = 0;
+
+  private boolean hasValue = false;
+
+  private double currentValue;
+
+  private final double[] segment;
+
+  private final double[] buffer;
+
+  private final double[] power;
+
+  private final double[][] powerSums;
+
+  private final int[] segmentCounts;
+
+  SpectrogramCollector(
+      WindQuantity quantity,
+      long start,
+      long end,
+      int columnCount,
+      int frequencyCount,
+      RealFft fft,
+      double[] windowCoefficients,
+      int segmentStep)
+  {
+    this.quantity = quantity;
+    this.start = start;
+    this.end = end;
+    this.sampleCount = (end - start) / 1000 + 1;
+    this.segmentStep = segmentStep;
+    this.fft = fft;
+    this.windowCoefficients = windowCoefficients;
+    this.ring = new double[fft.getSize()];
+    this.segment = new double[fft.getSize()];
+    this.buffer = fft.createBuffer();
+    this.power = new double[fft.getSize() / 2 + 1];
+    this.powerSums = new double[columnCount][frequencyCount];
+    this.segmentCounts = new int[columnCount];
+  }
+
+  @Override
+  public void accept(long time, int speed, int direction, int gusts)
+  {
+    double value = quantity.fromDatabaseValues(speed, direction, gusts);
+    // the samples before the first data point get the value of the first data point
+    addSamplesBefore(time, hasValue ? currentValue : value);
+    currentValue = value;
+    hasValue = true;
+  }
+
+  private void addSamplesBefore(long time, double value)
+  {
+    while (samplesWritten < sampleCount && start + samplesWritten * 1000L < time)
+    {
+      addSample(value);
+    }
+  }
+
+  private void addSample(double value)
+  {
+    ring[ringPosition] = value;
+    ringPosition = (ringPosition + 1) % ring.length;
+    samplesWritten++;
+    if (samplesWritten >= ring.length && (samplesWritten - ring.length) % segmentStep == 0)
+    {
+      addSegment(samplesWritten - ring.length);
+    }
+  }
+
+  private void addSegment(long firstSample)
+  {
+    double sum = 0d;
+    for (int i = 0; i < segment.length; i++)
+    {
+      segment[i] = ring[(ringPosition + i) % ring.length];
+      sum += segment[i];
+    }
+    double mean = sum / segment.length;
+    for (int i = 0; i < segment.length; i++)
+    {
+      segment[i] = (segment[i] - mean) * windowCoefficients[i];
+    }
+    fft.powerSpectrum(segment, buffer, power);
+
+    long centerSample = firstSample + segment.length / 2;
+    int column = (int) Math.min(powerSums.length - 1, centerSample * powerSums.length / sampleCount);
+    double[] columnPowerSums = powerSums[column];
+    for (int k = 0; k < columnPowerSums.length; k++)
+    {
+      columnPowerSums[k] += power[k];
+    }
+    segmentCounts[column]++;
+  }
+
+  /**
+   * Adds the samples after the last data point and returns the spectrogram.
+   */
+  Spectrogram finish()
+  {
+    if (hasValue)
+    {
+      while (samplesWritten < sampleCount)
+      {
+        addSample(currentValue);
+      }
+    }
+    double windowPower = 0d;
+    for (double coefficient : windowCoefficients)
+    {
+      windowPower += coefficient * coefficient;
+    }
+    int nyquistIndex = fft.getSize() / 2;
+    for (int column = 0; column < powerSums.length; column++)
+    {
+      if (segmentCounts[column] == 0)
+      {
+        continue;
+      }
+      for (int k = 0; k < powerSums[column].length; k++)
+      {
+        double factor = (k == 0 || k == nyquistIndex) ? 1d : 2d;
+        powerSums[column][k] *= factor / (segmentCounts[column] * windowPower);
+      }
+    }
+    return new Spectrogram(start, end, fft.getSize(), powerSums, segmentCounts);
+  }
+}
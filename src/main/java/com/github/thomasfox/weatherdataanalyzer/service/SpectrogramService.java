@@ -0,0 +1,80 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.Date;
+
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.FftWindow;
+import com.github.thomasfox.weatherdataanalyzer.service.model.RealFft;
+import com.github.thomasfox.weatherdataanalyzer.service.model.Spectrogram;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Calculates spectrograms of long time ranges while the data points are streamed.
+ */
+@Component
+@AllArgsConstructor
+public class SpectrogramService
+{
+  /** the maximum number of values in a spectrogram, i.e. columns times frequencies. */
+  private static final int MAX_VALUES = 1 << 22;
+
+  private final WindDataService windDataService;
+
+  private final WelchService welchService;
+
+  /**
+   * Calculates the spectrogram of a quantity in a time range.
+   *
+   * @param start the start of the time range.
+   * @param end the end of the time range, must be after the start.
+   * @param quantity the quantity to analyze, not null.
+   * @param segmentLength the length of a segment in seconds, a power of two which is at least 2.
+   * @param overlap the fraction by which consecutive segments overlap, at least 0 and smaller than 1.
+   * @param window the window function to apply to each segment, not null.
+   * @param columnCount the number of time columns, must be larger than 0.
+   * @param maxFrequency the largest frequency to keep in Hz.
+   *
+   * @return the spectrogram, not null.
+   */
+  public Spectrogram getSpectrogram(
+      Date start,
+      Date end,
+      WindQuantity quantity,
+      int segmentLength,
+      double overlap,
+      FftWindow window,
+      int columnCount,
+      double maxFrequency)
+  {
+    if (!end.after(start))
+    {
+      throw new IllegalArgumentException("end must be after start");
+    }
+    if (columnCount <= 0 || maxFrequency <= 0d)
+    {
+      throw new IllegalArgumentException("columnCount and maxFrequency must be larger than 0");
+    }
+    RealFft fft = welchService.getTransform(segmentLength);
+    int segmentStep = welchService.getSegmentStep(segmentLength, overlap);
+    int frequencyCount = (int) Math.min(segmentLength / 2 + 1, Math.floor(maxFrequency * segmentLength) + 1);
+    if ((long) columnCount * frequencyCount > MAX_VALUES)
+    {
+      throw new IllegalArgumentException("too many values in spectrogram: " + (long) columnCount * frequencyCount);
+    }
+    SpectrogramCollector collector = new SpectrogramCollector(
+        quantity,
+        start.getTime(),
+        end.getTime(),
+        columnCount,
+        frequencyCount,
+        fft,
+        window.getCoefficients(segmentLength),
+        segmentStep);
+    // include a data point at the start time, which is the time of the first sample
+    windDataService.forEachDataPoint(new Date(start.getTime() - 1), end, collector);
+    return collector.finish();
+  }
+}
@@ -0,0 +1,184 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.ResamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.Spectrum;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Calculates the spectra of whole time series and keeps the most recently used ones,
+ * so that analyses of the same data, e.g. its autocorrelation and band power, share one transform.
+ */
+@Component
+@RequiredArgsConstructor
+public class SpectrumService
+{
+  /** the maximum number of doubles held by cached spectra, about 128 MB. */
+  private static final long MAX_CACHED_VALUES = 1L << 24;
+
+  /** the largest transform size, about 12 days. Longer time series are split into segments. */
+  public static final int MAX_TRANSFORM_SIZE = 1 << 20;
+
+  private final ResamplingService resamplingService;
+
+  private final Map<Key, Spectrum> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long cachedValues = 0;
+
+  /**
+   * Returns the spectrum of a time series, resampled once per second.
+   *
+   * @param data the time series, not null. Must not be longer than {@link #MAX_TRANSFORM_SIZE} seconds,
+   *        see {@link #splitIntoSegments(List)}.
+   * @param quantity the quantity of the time series, used to identify the series.
+   * @param asUnitVector whether the values are angles in degrees which are transformed as unit vectors.
+   *
+   * @return the spectrum, not null.
+   */
+  public Spectrum getSpectrum(TimeRangeWithData data, WindQuantity quantity, boolean asUnitVector)
+  {
+    int size = calculateTransformSize(data.getRange().getStart(), data.getRange().getEnd());
+    Key key = new Key(
+        data.getRange().getStart(),
+        data.getRange().getEnd(),
+        data.getData().size(),
+        quantity,
+        asUnitVector,
+        size);
+    synchronized (this)
+    {
+      Spectrum cached = cache.get(key);
+      if (cached != null)
+      {
+        return cached;
+      }
+    }
+    Spectrum result = calculateSpectrum(data, asUnitVector, size);
+    cache(key, result);
+    return result;
+  }
+
+  private Spectrum calculateSpectrum(TimeRangeWithData data, boolean asUnitVector, int size)
+  {
+    int sampleCount = Math.min(size, resamplingService.getSampleCount(data, ResamplingService.SECOND_MILLIS));
+    double[] samples = resamplingService.resample(
+        data,
+        ResamplingService.SECOND_MILLIS,
+        ResamplingMode.HOLD,
+        sampleCount);
+    if (!asUnitVector)
+    {
+      return new Spectrum(samples, null, size);
+    }
+    double[] imaginarySamples = new double[sampleCount];
+    for (int i = 0; i < sampleCount; i++)
+    {
+      double angle = Math.toRadians(samples[i]);
+      samples[i] = Math.cos(angle);
+      imaginarySamples[i] = Math.sin(angle);
+    }
+    return new Spectrum(samples, imaginarySamples, size);
+  }
+
+  private synchronized void cache(Key key, Spectrum spectrum)
+  {
+    long values = spectrum.getPower().length;
+    if (values > MAX_CACHED_VALUES || cache.containsKey(key))
+    {
+      return;
+    }
+    Iterator<Spectrum> leastRecentlyUsed = cache.values().iterator();
+    while (cachedValues + values > MAX_CACHED_VALUES && leastRecentlyUsed.hasNext())
+    {
+      cachedValues -= leastRecentlyUsed.next().getPower().length;
+      leastRecentlyUsed.remove();
+    }
+    cache.put(key, spectrum);
+    cachedValues += values;
+  }
+
+  /**
+   * Splits time series which are longer than {@link #MAX_TRANSFORM_SIZE} seconds into consecutive segments
+   * of equal length, so that analyses which average over time series average over the segments instead.
+   * The segments share the data of the original time series.
+   *
+   * @param intervals the time series, not null.
+   *
+   * @return the time series which are short enough and the segments of the longer ones, not null.
+   */
+  public List<TimeRangeWithData> splitIntoSegments(List<TimeRangeWithData> intervals)
+  {
+    List<TimeRangeWithData> result = new ArrayList<>();
+    for (TimeRangeWithData interval : intervals)
+    {
+      long start = interval.getRange().getStart();
+      long durationMillis = interval.getRange().getDurationMillis();
+      long maxSegmentMillis = MAX_TRANSFORM_SIZE * ResamplingService.SECOND_MILLIS;
+      long segmentCount = (durationMillis + maxSegmentMillis - 1) / maxSegmentMillis;
+      if (segmentCount <= 1)
+      {
+        result.add(interval);
+        continue;
+      }
+      for (long segment = 0; segment < segmentCount; segment++)
+      {
+        result.add(new TimeRangeWithData(
+            new TimeRange(
+                start + durationMillis * segment / segmentCount,
+                start + durationMillis * (segment + 1) / segmentCount),
+            interval.getData()));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Calculates the transform size for a time range, the smallest power of two
+   * which is at least the number of seconds in the time range.
+   */
+  public static int calculateTransformSize(long start, long end)
+  {
+    long sizeInSeconds = (end - start) / 1000L;
+    if (sizeInSeconds > MAX_TRANSFORM_SIZE)
+    {
+      throw new IllegalArgumentException("time range too large for a transform: " + sizeInSeconds + " seconds");
+    }
+    int size = 1;
+    while (size < sizeInSeconds)
+    {
+      size *= 2;
+    }
+    return size;
+  }
+
+  @AllArgsConstructor
+  @EqualsAndHashCode
+  private static class Key
+  {
+    private final long start;
+
+    private final long end;
+
+    private final int dataPointCount;
+
+    private final WindQuantity quantity;
+
+    private final boolean asUnitVector;
+
+    private final int size;
+  }
+}
@@ -0,0 +1,80 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.BitSet;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TurbulenceStatistics;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindCondition;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindStatistics;
+
+/**
+ * Consumes the time-ordered data points after a start time and calculates the turbulence statistics
+ * of consecutive buckets. Only the statistics of the current bucket are kept,
+ * so the memory used does not depend on the length of the time range.
+ * A bucket contains the data points in ]bucketStart, bucketEnd].
+ */
+class TurbulenceCollector implements WindSampleConsumer
+{
+  /** the minimum number of data points in a bucket to calculate its standard deviation. */
+  static final int MIN_POINTS_PER_BUCKET = 2;
+
+  private final long start;
+
+  private final long bucketMillis;
+
+  private final WindCondition condition;
+
+  /** the buckets which are not evaluated, e.g. because they contain bad data. */
+  private final BitSet excludedBuckets;
+
+  private final TurbulenceStatistics result;
+
+  private long currentBucket = -1;
+
+  private WindStatistics currentStatistics = new WindStatistics();
+
+  TurbulenceCollector(long start, long bucketMillis, WindCondition condition)
+  {
+    this(start, bucketMillis, condition, new BitSet());
+  }
+
+  TurbulenceCollector(long start, long bucketMillis, WindCondition condition, BitSet excludedBuckets)
+  {
+    this.start = start;
+    this.bucketMillis = bucketMillis;
+    this.condition = condition;
+    this.excludedBuckets = excludedBuckets;
+    this.result = new TurbulenceStatistics(bucketMillis);
+  }
+
+  @Override
+  public void accept(long time, int speed, int direction, int gusts)
+  {
+    long bucket = (time - start - 1) / bucketMillis;
+    if (bucket != currentBucket)
+    {
+      finishBucket();
+      currentBucket = bucket;
+    }
+    currentStatistics.add(speed, direction, gusts);
+  }
+
+  private void finishBucket()
+  {
+    if (currentBucket >= 0
+        && !excludedBuckets.get((int) currentBucket)
+        && currentStatistics.getCount() >= MIN_POINTS_PER_BUCKET
+        && currentStatistics.getMeanSpeed() > 0
+        && condition.matches(currentStatistics.getMeanSpeed(), currentStatistics.getMeanDirection()))
+    {
+      result.add(currentStatistics);
+    }
+    currentStatistics = new WindStatistics();
+  }
+
+  TurbulenceStatistics finish()
+  {
+    finishBucket();
+    return result;
+  }
+}
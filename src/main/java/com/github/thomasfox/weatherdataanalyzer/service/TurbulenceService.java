@@ -0,0 +1,61 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.BitSet;
+import java.util.Date;
+
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.TurbulenceStatistics;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindCondition;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Calculates gust factors and turbulence intensities in a single streaming pass over the data.
+ */
+@Component
+@AllArgsConstructor
+public class TurbulenceService
+{
+  private final WindDataService windDataService;
+
+  private final DataQualityService dataQualityService;
+
+  /**
+   * Divides a time range into buckets and calculates the distribution of the gust factor
+   * and the turbulence intensity over the buckets which match a condition.
+   *
+   * @param start the start of the first bucket.
+   * @param end the end of the time range, inclusive.
+   * @param bucketMillis the length of each bucket in milliseconds, must be larger than 0.
+   * @param condition the condition on the mean speed and direction of the buckets, not null.
+   * @param excludeBadData whether buckets overlapping a data quality issue are skipped.
+   *
+   * @return the statistics of the matching buckets, not null.
+   */
+  public TurbulenceStatistics getTurbulence(
+      Date start,
+      Date end,
+      long bucketMillis,
+      WindCondition condition,
+      boolean excludeBadData)
+  {
+    if (bucketMillis <= 0)
+    {
+      throw new IllegalArgumentException("bucketMillis must be larger than 0");
+    }
+    BitSet excludedBuckets = new BitSet();
+    if (excludeBadData)
+    {
+      long bucketCount = (end.getTime() - start.getTime() + bucketMillis - 1) / bucketMillis;
+      if (bucketCount > Integer.MAX_VALUE)
+      {
+        throw new IllegalArgumentException("too many buckets: " + bucketCount);
+      }
+      excludedBuckets = dataQualityService.getBadBuckets(start.getTime(), bucketMillis, (int) Math.max(0, bucketCount));
+    }
+    TurbulenceCollector collector = new TurbulenceCollector(start.getTime(), bucketMillis, condition, excludedBuckets);
+    windDataService.forEachDataPoint(start, end, collector);
+    return collector.finish();
+  }
+}
@@ -0,0 +1,234 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.PowerSpectralDensity;
+import com.github.thomasfox.weatherdataanalyzer.service.model.RealFft;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ResamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+
+/**
+ * Consumes the time-ordered data points of a single scan and estimates their power spectral density
+ * with Welch's method.
+ * The data points are resampled with the same results as {@link ResamplingService},
+ * and only the samples of the current segment are buffered, so the memory used does not depend
+ * on the length of the time range.
+ * If a maximum gap is given, segments start anew after each gap, with the same results as
+ * {@link ResamplingService#splitAtGaps(java.util.List, long, long)}.
+ */
+class WelchCollector implements WindSampleConsumer
+{
+  private final WindQuantity quantity;
+
+  private final long start;
+
+  private final long stepMillis;
+
+  /** the number of samples from start to end. */
+  private final long sampleCount;
+
+  /** the largest distance between data points which is not considered a gap, or 0 to ignore gaps. */
+  private final long maxGapMillis;
+
+  private final ResamplingMode resampling;
+
+  private final int segmentStep;
+
+  private final RealFft fft;
+
+  private final double[] windowCoefficients;
+
+  /** the last samples, the oldest sample is at {@link #ringPosition}. */
+  private final double[] ring;
+
+  private int ringPosition = 0;
+
+  private long samplesWritten = 0;
+
+  /** the index of the first sample after the last gap, segments start at this sample or later. */
+  private long partStart = 0;
+
+  private boolean hasValue = false;
+
+  private long currentTime;
+
+  private double currentValue;
+
+  /** the sum of the data points in the interval of the next sample, used for mean resampling. */
+  private double meanSum = 0d;
+
+  private int meanCount = 0;
+
+  private final double[] segment;
+
+  private final double[] buffer;
+
+  private final double[] power;
+
+  private final double[] powerSums;
+
+  private long segmentCount = 0;
+
+  WelchCollector(
+      WindQuantity quantity,
+      long start,
+      long end,
+      long stepMillis,
+      long maxGapMillis,
+      ResamplingMode resampling,
+      RealFft fft,
+      double[] windowCoefficients,
+      int segmentStep)
+  {
+    this.quantity = quantity;
+    this.start = start;
+    this.stepMillis = stepMillis;
+    this.sampleCount = (end - start) / stepMillis + 1;
+    this.maxGapMillis = maxGapMillis;
+    this.resampling = resampling;
+    this.segmentStep = segmentStep;
+    this.fft = fft;
+    this.windowCoefficients = windowCoefficients;
+    this.ring = new double[fft.getSize()];
+    this.segment = new double[fft.getSize()];
+    this.buffer = fft.createBuffer();
+    this.power = new double[fft.getSize() / 2 + 1];
+    this.powerSums = new double[power.length];
+  }
+
+  @Override
+  public void accept(long time, int speed, int direction, int gusts)
+  {
+    double value = quantity.fromDatabaseValues(speed, direction, gusts);
+    markGap(time);
+    // the samples before the first data point get the value of the first data point
+    double heldValue = hasValue ? currentValue : value;
+    if (resampling == ResamplingMode.LINEAR)
+    {
+      while (samplesWritten < sampleCount && getNextSampleTime() < time)
+      {
+        double fraction = hasValue ? ((double) (getNextSampleTime() - currentTime)) / (time - currentTime) : 0d;
+        addSample(heldValue + fraction * (value - heldValue));
+      }
+    }
+    else if (resampling == ResamplingMode.MEAN)
+    {
+      while (samplesWritten < sampleCount && getNextSampleTime() + stepMillis <= time)
+      {
+        addMeanSample(heldValue);
+      }
+      if (samplesWritten < sampleCount && getNextSampleTime() <= time)
+      {
+        meanSum += value;
+        meanCount++;
+      }
+    }
+    else
+    {
+      while (samplesWritten < sampleCount && getNextSampleTime() < time)
+      {
+        addSample(heldValue);
+      }
+    }
+    currentTime = time;
+    currentValue = value;
+    hasValue = true;
+  }
+
+  private long getNextSampleTime()
+  {
+    return start + samplesWritten * stepMillis;
+  }
+
+  /**
+   * Returns the number of samples before a time.
+   */
+  private long getSampleCountBefore(long time)
+  {
+    return time <= start ? 0 : Math.min(sampleCount, (time - start + stepMillis - 1) / stepMillis);
+  }
+
+  /**
+   * Moves the start of the segments behind the samples in a gap before a data point.
+   * Gaps are determined as in {@link ResamplingService#markGaps}: samples before the first data point are in a gap
+   * if they are more than the maximum gap before it, samples between two data points are in a gap
+   * if the data points are more than the maximum gap apart.
+   */
+  private void markGap(long time)
+  {
+    if (maxGapMillis <= 0)
+    {
+      return;
+    }
+    if (!hasValue)
+    {
+      partStart = Math.max(partStart, getSampleCountBefore(time - maxGapMillis));
+    }
+    else if (time - currentTime > maxGapMillis && getSampleCountBefore(time) > getSampleCountBefore(currentTime + 1))
+    {
+      partStart = Math.max(partStart, getSampleCountBefore(time));
+    }
+  }
+
+  private void addMeanSample(double heldValue)
+  {
+    addSample(meanCount > 0 ? meanSum / meanCount : heldValue);
+    meanSum = 0d;
+    meanCount = 0;
+  }
+
+  private void addSample(double value)
+  {
+    ring[ringPosition] = value;
+    ringPosition = (ringPosition + 1) % ring.length;
+    samplesWritten++;
+    long partSamples = samplesWritten - partStart;
+    if (partSamples >= ring.length && (partSamples - ring.length) % segmentStep == 0)
+    {
+      addSegment();
+    }
+  }
+
+  private void addSegment()
+  {
+    double sum = 0d;
+    for (int i = 0; i < segment.length; i++)
+    {
+      segment[i] = ring[(ringPosition + i) % ring.length];
+      sum += segment[i];
+    }
+    double mean = sum / segment.length;
+    for (int i = 0; i < segment.length; i++)
+    {
+      segment[i] = (segment[i] - mean) * windowCoefficients[i];
+    }
+    fft.powerSpectrum(segment, buffer, power);
+    for (int k = 0; k < powerSums.length; k++)
+    {
+      powerSums[k] += power[k];
+    }
+    segmentCount++;
+  }
+
+  /**
+   * Adds the samples after the last data point and returns the power spectral density.
+   * If no data point was consumed, no segment contributes.
+   * If a maximum gap is given, the samples more than the maximum gap after the last data point are in a gap
+   * and do not contribute.
+   */
+  PowerSpectralDensity finish()
+  {
+    if (hasValue)
+    {
+      long sampleLimit = maxGapMillis <= 0 ? sampleCount : getSampleCountBefore(currentTime + maxGapMillis + 1);
+      if (resampling == ResamplingMode.MEAN && samplesWritten < sampleLimit)
+      {
+        addMeanSample(currentValue);
+      }
+      while (samplesWritten < sampleLimit)
+      {
+        addSample(currentValue);
+      }
+    }
+    return WelchService.createDensity(fft.getSize(), stepMillis, segmentCount, powerSums, windowCoefficients);
+  }
+}
@@ -0,0 +1,324 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.FftWindow;
+import com.github.thomasfox.weatherdataanalyzer.service.model.PowerSpectralDensity;
+import com.github.thomasfox.weatherdataanalyzer.service.model.RealFft;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ResamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+
+/**
+ * Estimates power spectral densities with Welch's method:
+ * The time series are resampled at a fixed step and cut into overlapping segments of equal length,
+ * each segment is detrended by its mean, windowed and transformed, and the power spectra of all segments
+ * are averaged.
+ * Segments are resampled on the fly, so the memory needed for the transforms is bounded by the segment length.
+ */
+@Component
+public class WelchService implements DisposableBean
+{
+  private static final int MAX_SEGMENT_LENGTH = 1 << 20;
+
+  private static final int TASKS_PER_THREAD = 4;
+
+  private final ResamplingService resamplingService;
+
+  private final WindDataService windDataService;
+
+  private final ForkJoinPool forkJoinPool;
+
+  private final Map<Integer, RealFft> transforms = new ConcurrentHashMap<>();
+
+  public WelchService(
+      ResamplingService resamplingService,
+      WindDataService windDataService,
+      @Value("${weatherdataanalyzer.spectrum.parallelism:0}") int parallelism)
+  {
+    this.resamplingService = resamplingService;
+    this.windDataService = windDataService;
+    this.forkJoinPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Estimates the power spectral density of a quantity in a time range.
+   * The data points are streamed from the database and resampled from the start time,
+   * so only one segment is held in memory.
+   *
+   * @param start the time of the first sample, not null.
+   * @param end the end of the time range (inclusive), not null.
+   * @param quantity the quantity to analyze, not null.
+   * @param segmentLength the number of samples in a segment, a power of two which is at least 2.
+   * @param overlap the fraction by which consecutive segments overlap, at least 0 and smaller than 1.
+   * @param window the window function to apply to each segment, not null.
+   * @param resampling how the data points are resampled, not null.
+   * @param stepMillis the time between two samples in milliseconds, must be larger than 0.
+   * @param maxGapMillis the largest distance between data points which is not considered a gap,
+   *        segments do not contain samples in gaps. 0 to ignore gaps.
+   *
+   * @return the power spectral density averaged over all segments, not null.
+   */
+  public PowerSpectralDensity estimate(
+      Date start,
+      Date end,
+      WindQuantity quantity,
+      int segmentLength,
+      double overlap,
+      FftWindow window,
+      ResamplingMode resampling,
+      long stepMillis,
+      long maxGapMillis)
+  {
+    checkStep(stepMillis);
+    WelchCollector collector = new WelchCollector(
+        quantity,
+        start.getTime(),
+        end.getTime(),
+        stepMillis,
+        maxGapMillis,
+        resampling,
+        getTransform(segmentLength),
+        window.getCoefficients(segmentLength),
+        getSegmentStep(segmentLength, overlap));
+    // include a data point at the start time, which is the time of the first sample
+    windDataService.forEachDataPoint(new Date(start.getTime() - 1), end, collector);
+    return collector.finish();
+  }
+
+  /**
+   * Estimates the power spectral density of time series.
+   * Each series is resampled from its start.
+   * Series which are shorter than a segment do not contribute.
+   *
+   * @param intervals the time series, not null.
+   * @param segmentLength the number of samples in a segment, a power of two which is at least 2.
+   * @param overlap the fraction by which consecutive segments overlap, at least 0 and smaller than 1.
+   * @param window the window function to apply to each segment, not null.
+   * @param resampling how the series are resampled, not null.
+   * @param stepMillis the time between two samples in milliseconds, must be larger than 0.
+   * @param maxGapMillis the largest distance between data points which is not considered a gap,
+   *        the series are split at gaps. 0 to ignore gaps.
+   *
+   * @return the power spectral density averaged over all segments, not null.
+   */
+  public PowerSpectralDensity estimate(
+      List<TimeRangeWithData> intervals,
+      int segmentLength,
+      double overlap,
+      FftWindow window,
+      ResamplingMode resampling,
+      long stepMillis,
+      long maxGapMillis)
+  {
+    checkStep(stepMillis);
+    RealFft fft = getTransform(segmentLength);
+    int segmentStep = getSegmentStep(segmentLength, overlap);
+    List<TimeRangeWithData> parts = resamplingService.splitAtGaps(intervals, stepMillis, maxGapMillis);
+
+    // the number of segments before each interval, the last entry is the total number of segments
+    long[] firstSegments = new long[parts.size() + 1];
+    for (int i = 0; i < parts.size(); i++)
+    {
+      firstSegments[i + 1] = firstSegments[i] + getSegmentCount(parts.get(i), segmentLength, segmentStep, stepMillis);
+    }
+    long segmentCount = firstSegments[parts.size()];
+    double[] powerSums = new double[segmentLength / 2 + 1];
+    if (segmentCount == 0)
+    {
+      return new PowerSpectralDensity(segmentLength, stepMillis, 0, powerSums);
+    }
+
+    double[] windowCoefficients = window.getCoefficients(segmentLength);
+    long taskCount = Math.min(segmentCount, (long) forkJoinPool.getParallelism() * TASKS_PER_THREAD);
+    List<ForkJoinTask<double[]>> tasks = new ArrayList<>();
+    for (long task = 0; task < taskCount; task++)
+    {
+      long fromSegment = segmentCount * task / taskCount;
+      long toSegment = segmentCount * (task + 1) / taskCount;
+      tasks.add(forkJoinPool.submit(() -> sumPowerSpectra(
+          parts,
+          firstSegments,
+          fromSegment,
+          toSegment,
+          segmentStep,
+          windowCoefficients,
+          resampling,
+          stepMillis,
+          fft)));
+    }
+    for (ForkJoinTask<double[]> task : tasks)
+    {
+      double[] taskPowerSums = task.join();
+      for (int k = 0; k < powerSums.length; k++)
+      {
+        powerSums[k] += taskPowerSums[k];
+      }
+    }
+
+    return createDensity(segmentLength, stepMillis, segmentCount, powerSums, windowCoefficients);
+  }
+
+  /**
+   * Normalizes the summed power spectra of windowed segments to a one-sided power spectral density.
+   */
+  static PowerSpectralDensity createDensity(
+      int segmentLength,
+      long stepMillis,
+      long segmentCount,
+      double[] powerSums,
+      double[] windowCoefficients)
+  {
+    if (segmentCount == 0)
+    {
+      return new PowerSpectralDensity(segmentLength, stepMillis, 0, powerSums);
+    }
+    double windowPower = 0d;
+    for (double coefficient : windowCoefficients)
+    {
+      windowPower += coefficient * coefficient;
+    }
+    for (int k = 0; k < powerSums.length; k++)
+    {
+      // one-sided density: all frequencies except 0 and the Nyquist frequency also contain the negative frequency
+      double factor = (k == 0 || k == powerSums.length - 1) ? 1d : 2d;
+      powerSums[k] *= factor * stepMillis / (1000d * segmentCount * windowPower);
+    }
+    return new PowerSpectralDensity(segmentLength, stepMillis, segmentCount, powerSums);
+  }
+
+  /**
+   * Returns the transform for a segment length. Transforms are created once for each segment length.
+   *
+   * @param segmentLength the number of samples in a segment, a power of two which is at least 2.
+   */
+  public RealFft getTransform(int segmentLength)
+  {
+    if (segmentLength > MAX_SEGMENT_LENGTH)
+    {
+      throw new IllegalArgumentException("segmentLength must not be larger than " + MAX_SEGMENT_LENGTH);
+    }
+    return transforms.computeIfAbsent(segmentLength, RealFft::new);
+  }
+
+  /**
+   * Returns the distance in samples between the starts of consecutive segments.
+   *
+   * @param segmentLength the number of samples in a segment.
+   * @param overlap the fraction by which consecutive segments overlap, at least 0 and smaller than 1.
+   */
+  public int getSegmentStep(int segmentLength, double overlap)
+  {
+    if (!(overlap >= 0d && overlap < 1d))
+    {
+      throw new IllegalArgumentException("overlap must be at least 0 and smaller than 1 but is " + overlap);
+    }
+    return Math.max(1, (int) Math.round(segmentLength * (1d - overlap)));
+  }
+
+  private long getSegmentCount(TimeRangeWithData interval, int segmentLength, int segmentStep, long stepMillis)
+  {
+    long sampleCount = interval.getRange().getDurationMillis() / stepMillis + 1;
+    if (interval.getData().isEmpty() || sampleCount < segmentLength)
+    {
+      return 0;
+    }
+    return (sampleCount - segmentLength) / segmentStep + 1;
+  }
+
+  private double[] sumPowerSpectra(
+      List<TimeRangeWithData> intervals,
+      long[] firstSegments,
+      long fromSegment,
+      long toSegment,
+      int segmentStep,
+      double[] windowCoefficients,
+      ResamplingMode resampling,
+      long stepMillis,
+      RealFft fft)
+  {
+    double[] segment = new double[fft.getSize()];
+    double[] buffer = fft.createBuffer();
+    double[] power = new double[fft.getSize() / 2 + 1];
+    double[] result = new double[power.length];
+
+    int interval = Arrays.binarySearch(firstSegments, fromSegment);
+    if (interval < 0)
+    {
+      interval = -interval - 2;
+    }
+    for (long segmentIndex = fromSegment; segmentIndex < toSegment; segmentIndex++)
+    {
+      while (segmentIndex >= firstSegments[interval + 1])
+      {
+        interval++;
+      }
+      long offset = (segmentIndex - firstSegments[interval]) * segmentStep;
+      fillSegment(intervals.get(interval), offset, windowCoefficients, resampling, stepMillis, segment);
+      fft.powerSpectrum(segment, buffer, power);
+      for (int k = 0; k < result.length; k++)
+      {
+        result[k] += power[k];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Resamples a segment of a time series, removes its mean and applies the window.
+   *
+   * @param offset the number of samples from the start of the time series to the start of the segment.
+   */
+  private void fillSegment(
+      TimeRangeWithData interval,
+      long offset,
+      double[] windowCoefficients,
+      ResamplingMode resampling,
+      long stepMillis,
+      double[] segment)
+  {
+    resamplingService.resample(
+        interval.getData(),
+        interval.getRange().getStart() + offset * stepMillis,
+        stepMillis,
+        resampling,
+        segment,
+        0,
+        segment.length);
+    double sum = 0d;
+    for (double sample : segment)
+    {
+      sum += sample;
+    }
+    double mean = sum / segment.length;
+    for (int i = 0; i < segment.length; i++)
+    {
+      segment[i] = (segment[i] - mean) * windowCoefficients[i];
+    }
+  }
+
+  private void checkStep(long stepMillis)
+  {
+    if (stepMillis <= 0)
+    {
+      throw new IllegalArgumentException("stepMillis must be larger than 0");
+    }
+  }
+
+  @Override
+  public void destroy()
+  {
+    forkJoinPool.shutdownNow();
+  }
+}
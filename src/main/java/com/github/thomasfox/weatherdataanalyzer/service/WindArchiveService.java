@@ -0,0 +1,75 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.archive.WindArchiveReader;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.DatasetMetadata;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+
+/**
+ * Serves wind data from a memory-mapped archive file instead of the database,
+ * if the property <code>weatherdataanalyzer.archive.file</code> is set.
+ * The archive is read-only, so it takes precedence over all other data sources.
+ * With the archive profile, the application runs without a database, so the file must be set.
+ */
+@Component
+public class WindArchiveService implements WindDataSource
+{
+  private final WindArchiveReader reader;
+
+  public WindArchiveService(@Value("${weatherdataanalyzer.archive.file:}") String file)
+  {
+    if (file.isEmpty())
+    {
+      reader = null;
+      return;
+    }
+    try
+    {
+      reader = new WindArchiveReader(Paths.get(file));
+    }
+    catch (IOException e)
+    {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public boolean isAvailable()
+  {
+    return reader != null;
+  }
+
+  /**
+   * Returns the metadata of the archive. The last ingested id is always 0 because the archive contains no ids.
+   */
+  public DatasetMetadata getDatasetMetadata()
+  {
+    if (reader.count() == 0)
+    {
+      return new DatasetMetadata();
+    }
+    return new DatasetMetadata(
+        reader.count(),
+        new Date(reader.getMinTime()),
+        new Date(reader.getMaxTime()),
+        0);
+  }
+
+  @Override
+  public void forEach(long start, long end, WindSampleConsumer consumer)
+  {
+    reader.forEach(start, end, consumer);
+  }
+
+  @Override
+  public long count(long start, long end)
+  {
+    return reader.count(start, end);
+  }
+}
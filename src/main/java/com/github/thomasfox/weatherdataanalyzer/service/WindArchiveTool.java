@@ -0,0 +1,98 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.WindRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindStreamingRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.archive.WindArchiveReader;
+import com.github.thomasfox.weatherdataanalyzer.repository.archive.WindArchiveWriter;
+import com.github.thomasfox.weatherdataanalyzer.service.model.IngestionResult;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exports the wind table to an archive file or imports an archive file into the wind table,
+ * if the application is started with the option <code>--archive.export=&lt;file&gt;</code>
+ * or <code>--archive.import=&lt;file&gt;</code>. The application exits afterwards.
+ */
+@Component
+@Profile("!archive")
+@AllArgsConstructor
+@Slf4j
+public class WindArchiveTool implements ApplicationRunner
+{
+  static final String EXPORT_OPTION = "archive.export";
+
+  static final String IMPORT_OPTION = "archive.import";
+
+  private final WindRepository windRepository;
+
+  private final WindStreamingRepository windStreamingRepository;
+
+  private final WindIngestionService windIngestionService;
+
+  private final ApplicationContext applicationContext;
+
+  @Override
+  public void run(ApplicationArguments arguments) throws IOException
+  {
+    List<String> exportFiles = arguments.getOptionValues(EXPORT_OPTION);
+    List<String> importFiles = arguments.getOptionValues(IMPORT_OPTION);
+    if (exportFiles == null && importFiles == null)
+    {
+      return;
+    }
+    if (exportFiles != null)
+    {
+      for (String exportFile : exportFiles)
+      {
+        exportArchive(Paths.get(exportFile));
+      }
+    }
+    if (importFiles != null)
+    {
+      for (String importFile : importFiles)
+      {
+        importArchive(Paths.get(importFile));
+      }
+    }
+    System.exit(SpringApplication.exit(applicationContext, () -> 0));
+  }
+
+  private void exportArchive(Path file) throws IOException
+  {
+    Integer maxId = windRepository.getMaxId();
+    try (WindArchiveWriter writer = new WindArchiveWriter(file))
+    {
+      if (maxId != null)
+      {
+        windStreamingRepository.forEachWithIdLessThanEqual(maxId, writer);
+      }
+    }
+    log.info("Exported wind data up to id {} to {}", maxId, file);
+  }
+
+  private void importArchive(Path file) throws IOException
+  {
+    WindArchiveReader reader = new WindArchiveReader(file);
+    IngestionResult result = windIngestionService.ingest(
+        consumer -> reader.forEach(Long.MIN_VALUE, Long.MAX_VALUE, consumer));
+    if (result == null)
+    {
+      throw new IllegalStateException("Could not import " + file + " because other ingestions are running");
+    }
+    log.info("Imported {} data points from {}, skipped {} duplicates",
+        result.getInserted(), file, result.getDuplicates());
+  }
+}
@@ -0,0 +1,40 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.BucketConditionIndex;
+
+/**
+ * Holds the current condition index for each indexed bucket length.
+ * The indexes are built and updated by {@link WindConditionIndexService}.
+ */
+@Component
+public class WindConditionIndex
+{
+  private final Map<Long, BucketConditionIndex> indexes = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the index for a bucket length.
+   *
+   * @param bucketMillis the length of the buckets in milliseconds.
+   *
+   * @return the index, or null if the bucket length is not indexed.
+   */
+  public BucketConditionIndex get(long bucketMillis)
+  {
+    return indexes.get(bucketMillis);
+  }
+
+  void put(BucketConditionIndex index)
+  {
+    indexes.put(index.getBucketMillis(), index);
+  }
+
+  void remove(long bucketMillis)
+  {
+    indexes.remove(bucketMillis);
+  }
+}
@@ -0,0 +1,127 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.DatasetMetadata;
+import com.github.thomasfox.weatherdataanalyzer.service.model.BucketAverages;
+import com.github.thomasfox.weatherdataanalyzer.service.model.BucketConditionIndex;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataChangedEvent;
+
+/**
+ * Builds the condition indexes for the configured bucket lengths and keeps them up to date.
+ * New data at the end of the time range is added periodically; time ranges which were changed
+ * by the application are recalculated on the next refresh.
+ * Like the rollups, the indexes may lag behind the database by one refresh interval.
+ */
+@Component
+public class WindConditionIndexService
+{
+  private final WindDataService windDataService;
+
+  private final WindConditionIndex windConditionIndex;
+
+  private final boolean enabled;
+
+  private final List<Integer> bucketMinutes;
+
+  /** time ranges changed by the application which are not reflected in the indexes yet. */
+  private final Map<Long, TimeRange> changedRanges = new ConcurrentHashMap<>();
+
+  public WindConditionIndexService(
+      WindDataService windDataService,
+      WindConditionIndex windConditionIndex,
+      @Value("${weatherdataanalyzer.conditionIndex.enabled:false}") boolean enabled,
+      @Value("${weatherdataanalyzer.conditionIndex.bucketMinutes:30,60}") List<Integer> bucketMinutes)
+  {
+    this.windDataService = windDataService;
+    this.windConditionIndex = windConditionIndex;
+    this.enabled = enabled;
+    this.bucketMinutes = bucketMinutes;
+  }
+
+  /**
+   * Builds the missing indexes, recalculates changed time ranges and adds new data to the indexes.
+   */
+  @Scheduled(
+      initialDelayString = "${weatherdataanalyzer.conditionIndex.initialDelayMillis:0}",
+      fixedDelayString = "${weatherdataanalyzer.conditionIndex.refreshMillis:60000}")
+  public synchronized void refresh()
+  {
+    if (!enabled)
+    {
+      return;
+    }
+    DatasetMetadata metadata = windDataService.getDatasetMetadata();
+    if (metadata.getCount() == 0)
+    {
+      return;
+    }
+    long minTime = metadata.getMinTime().getTime();
+    long maxTime = metadata.getMaxTime().getTime();
+    for (int minutes : bucketMinutes)
+    {
+      long bucketMillis = minutes * 60L * 1000L;
+      BucketConditionIndex index = windConditionIndex.get(bucketMillis);
+      TimeRange changedRange = changedRanges.remove(bucketMillis);
+      if (index == null
+          || minTime < index.getOrigin()
+          || (changedRange != null && changedRange.getStart() < index.getOrigin()))
+      {
+        long indexStart = changedRange == null ? minTime : Math.min(minTime, changedRange.getStart());
+        long origin = Math.floorDiv(indexStart, bucketMillis) * bucketMillis;
+        windConditionIndex.put(BucketConditionIndex.create(
+            windDataService.getBucketAverages(new Date(origin), new Date(maxTime + 1), bucketMillis)));
+        continue;
+      }
+      if (changedRange != null)
+      {
+        index = index.update(getBucketAverages(index, changedRange.getStart(), changedRange.getEnd()));
+      }
+      // the last bucket may have been incomplete when it was indexed
+      long lastBucketStart = index.getOrigin() + Math.max(0, index.getSize() - 1) * bucketMillis;
+      index = index.update(getBucketAverages(index, lastBucketStart, maxTime));
+      windConditionIndex.put(index);
+    }
+  }
+
+  private BucketAverages getBucketAverages(
+      BucketConditionIndex index,
+      long start,
+      long end)
+  {
+    long bucketMillis = index.getBucketMillis();
+    long alignedStart = index.getOrigin() + Math.floorDiv(start - index.getOrigin(), bucketMillis) * bucketMillis;
+    return windDataService.getBucketAverages(new Date(alignedStart), new Date(end + 1), bucketMillis);
+  }
+
+  /**
+   * Remembers the time range of data written by the application, so it is recalculated on the next refresh.
+   */
+  @EventListener
+  public void onWindDataChanged(WindDataChangedEvent event)
+  {
+    if (!enabled)
+    {
+      return;
+    }
+    for (int minutes : bucketMinutes)
+    {
+      long bucketMillis = minutes * 60L * 1000L;
+      changedRanges.merge(
+          bucketMillis,
+          new TimeRange(event.getStart(), event.getEnd()),
+          (range, otherRange) -> new TimeRange(
+              Math.min(range.getStart(), otherRange.getStart()),
+              Math.max(range.getEnd(), otherRange.getEnd())));
+    }
+  }
+}
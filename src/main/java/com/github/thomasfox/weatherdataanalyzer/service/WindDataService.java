@@ -1,21 +1,34 @@
 package com.github.thomasfox.weatherdataanalyzer.service;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
 
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import com.github.thomasfox.weatherdataanalyzer.repository.WindRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindStreamingRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.BucketSums;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.DatasetMetadata;
 import com.github.thomasfox.weatherdataanalyzer.repository.model.DoubleValueCount;
 import com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount;
 import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
-import com.github.thomasfox.weatherdataanalyzer.service.model.TimeData;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindAggregate;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindHistogramCell;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindRollup;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.BucketAverages;
+import com.github.thomasfox.weatherdataanalyzer.service.model.BucketConditionIndex;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ScanGrid;
+import com.github.thomasfox.weatherdataanalyzer.service.model.SpeedDirectionHistogram;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeDataSeries;
 import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
 import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindCondition;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindStatistics;
 
 import lombok.AllArgsConstructor;
 
@@ -23,8 +36,33 @@ import lombok.AllArgsConstructor;
 @AllArgsConstructor
 public class WindDataService
 {
+  /** Maximum number of buckets for a bucketed aggregation, limits the memory used by the result. */
+  private static final int MAX_BUCKETS = 1000000;
+
+  // the database beans are null if the application runs with the archive profile, i.e. without a database
+
+  @Nullable
   private final WindRepository windRepository;
 
+  @Nullable
+  private final WindDataStore windDataStore;
+
+  @Nullable
+  private final WindRollupService windRollupService;
+
+  @Nullable
+  private final WindStreamingRepository windStreamingRepository;
+
+  @Nullable
+  private final DatasetMetadataService datasetMetadataService;
+
+  @Nullable
+  private final WindHistogramCubeService windHistogramCubeService;
+
+  private final WindArchiveService windArchiveService;
+
+  private final WindConditionIndex windConditionIndex;
+
   public List<Wind> getAll()
   {
     List<Wind> result = new ArrayList<>();
@@ -32,24 +70,71 @@ public class WindDataService
     return result;
   }
 
-  public long count()
+  public long count(Date start, Date end)
   {
-    return windRepository.count();
+    if (useRollups())
+    {
+      return getAggregate(start.getTime(), end.getTime()).getCount();
+    }
+    WindDataSource rawDataSource = getRawDataSource();
+    if (rawDataSource != null)
+    {
+      return rawDataSource.count(start.getTime(), end.getTime());
+    }
+    return windRepository.count(start, end);
   }
 
-  public long count(Date start, Date end)
+  /**
+   * Returns the source for raw data which answers queries without the database.
+   *
+   * @return the archive if configured, otherwise the in-memory store if available, otherwise null.
+   */
+  private WindDataSource getRawDataSource()
   {
-    return windRepository.count(start, end);
+    if (windArchiveService.isAvailable())
+    {
+      return windArchiveService;
+    }
+    if (windDataStore.isAvailable())
+    {
+      return windDataStore;
+    }
+    return null;
   }
 
-  public Date getMinTime()
+  /**
+   * Rollups and the histogram cube describe the database, so they are not used if data is served from an archive.
+   */
+  private boolean useRollups()
   {
-    return windRepository.getMinTime();
+    return !windArchiveService.isAvailable() && windRollupService.isAvailable();
   }
 
-  public Date getMaxTime()
+  private boolean useHistogramCube()
   {
-    return windRepository.getMaxTime();
+    return !windArchiveService.isAvailable() && windHistogramCubeService.isAvailable();
+  }
+
+  /**
+   * Returns the row count, time range and last ingested id of the wind data.
+   * The values are taken from the incrementally maintained metadata and may lag behind
+   * the database by the catch-up interval.
+   * If the metadata has not been calculated yet, it is calculated from the database.
+   *
+   * @return the metadata, not null.
+   */
+  public DatasetMetadata getDatasetMetadata()
+  {
+    if (windArchiveService.isAvailable())
+    {
+      return windArchiveService.getDatasetMetadata();
+    }
+    DatasetMetadata metadata = datasetMetadataService.getMetadata();
+    if (metadata != null)
+    {
+      return metadata;
+    }
+    return windRepository.getDatasetMetadata();
   }
 
   /**
@@ -64,7 +149,7 @@ public class WindDataService
    */
   public Double getAverageSpeed(Date start, Date end)
   {
-    Double rawAverageSpeed = windRepository.getAverageSpeed(start, end);
+    Double rawAverageSpeed = getAggregate(start.getTime(), end.getTime()).getAverageSpeed();
     if (rawAverageSpeed == null)
     {
       return null;
@@ -73,41 +158,187 @@ public class WindDataService
   }
 
   /**
-   * Returns the average wind direction in degrees.
+   * Returns the average wind direction in degrees, as the direction of the mean of the direction unit vectors.
    * The average is over data points, not over time interval
    * (so if sample times are irregular, the average may be wrong).
    *
    * @param start start time of the averaging interval
    * @param end end time of the averaging interval, must be larger than the start time.
    *
-   * @return the average direction in degrees, or null if no data points are within time range
+   * @return the average direction in degrees in [0, 360[, or null if no data points are within time range
    */
   public Double getAverageDirection(Date start, Date end)
   {
-    return windRepository.getAverageDirection(start, end);
+    return getAggregate(start.getTime(), end.getTime()).getAverageDirection();
+  }
+
+  /**
+   * Calculates the statistics of the data points in a time range in a single pass over the raw data.
+   * Unlike the aggregates, the statistics contain the speed variance, so rollups can not be used.
+   *
+   * @param start the start of the time range, inclusive.
+   * @param end the end of the time range, exclusive.
+   *
+   * @return the statistics, not null.
+   */
+  public WindStatistics getStatistics(Date start, Date end)
+  {
+    WindStatistics result = new WindStatistics();
+    forEachDataPointInHalfOpenRange(start.getTime(), end.getTime(), result);
+    return result;
+  }
+
+  /**
+   * Aggregates the wind data in a time range.
+   * If rollups are available, the coarsest rollups which fit into the time range are used,
+   * and finer rollups or raw data for the remaining parts at the edges of the time range.
+   *
+   * @param start the start of the time range in milliseconds, inclusive.
+   * @param end the end of the time range in milliseconds, exclusive.
+   *
+   * @return the aggregate, which is empty if no data points are within the time range.
+   */
+  private WindAggregate getAggregate(long start, long end)
+  {
+    WindAggregate result = new WindAggregate();
+    if (useRollups())
+    {
+      addAggregateUsingRollups(start, end, 0, result);
+    }
+    else
+    {
+      result.add(getRawAggregate(start, end));
+    }
+    return result;
+  }
+
+  private void addAggregateUsingRollups(long start, long end, int resolutionIndex, WindAggregate result)
+  {
+    if (start >= end)
+    {
+      return;
+    }
+    if (resolutionIndex >= WindRollupService.RESOLUTIONS_IN_MINUTES.length)
+    {
+      result.add(getRawAggregate(start, end));
+      return;
+    }
+    int resolutionMinutes = WindRollupService.RESOLUTIONS_IN_MINUTES[resolutionIndex];
+    long resolutionMillis = WindRollupService.getResolutionMillis(resolutionMinutes);
+    long alignedStart = -Math.floorDiv(-start, resolutionMillis) * resolutionMillis;
+    long alignedEnd = Math.min(
+        Math.floorDiv(end, resolutionMillis) * resolutionMillis,
+        windRollupService.getCompleteUntil(resolutionMinutes));
+    if (alignedStart >= alignedEnd)
+    {
+      addAggregateUsingRollups(start, end, resolutionIndex + 1, result);
+      return;
+    }
+    result.add(windRollupService.getAggregate(resolutionMinutes, alignedStart, alignedEnd));
+    addAggregateUsingRollups(start, alignedStart, resolutionIndex + 1, result);
+    addAggregateUsingRollups(alignedEnd, end, resolutionIndex + 1, result);
+  }
+
+  private WindAggregate getRawAggregate(long start, long end)
+  {
+    WindDataSource rawDataSource = getRawDataSource();
+    if (rawDataSource != null)
+    {
+      return rawDataSource.getAggregate(start, end);
+    }
+    return windRepository.getAggregate(new Date(start), new Date(end));
   }
 
   public List<TimeRangeWithData> getDataForTimeRangeInList(
       Date from,
       Date to,
-      Function<Wind, TimeData> windConverter)
+      WindQuantity quantity)
   {
     List<TimeRangeWithData> result = new ArrayList<>();
-    result.add(getDataForTimeRange(from, to, windConverter));
+    result.add(getDataForTimeRange(from, to, quantity));
     return result;
   }
 
-  public TimeRangeWithData getDataForTimeRange(Date start, Date end, Function<Wind, TimeData> windConverter)
+  /**
+   * Returns the data points of a quantity after the start time and before or at the end time.
+   *
+   * @param start the start of the time range, exclusive.
+   * @param end the end of the time range, inclusive.
+   * @param quantity the quantity to return.
+   *
+   * @return the data points in the time range, ordered by time.
+   */
+  public TimeRangeWithData getDataForTimeRange(Date start, Date end, WindQuantity quantity)
+  {
+    TimeDataSeries resultData = new TimeDataSeries();
+    forEachDataPoint(
+        start,
+        end,
+        (time, speed, direction, gusts) -> resultData.add(time, quantity.fromDatabaseValues(speed, direction, gusts)));
+    return new TimeRangeWithData(start, end, resultData);
+  }
+
+  /**
+   * Passes all data points after the start time and before or at the end time to a consumer, ordered by time.
+   * The data points are streamed, so the memory used does not depend on the length of the time range.
+   *
+   * @param start the start of the time range, exclusive.
+   * @param end the end of the time range, inclusive.
+   * @param consumer the consumer for the data points, not null.
+   *        If the data is streamed from the database, the consumer must not access the database.
+   */
+  public void forEachDataPoint(Date start, Date end, WindSampleConsumer consumer)
   {
-    List<Wind> dataPoints = windRepository.findByTimeGreaterThanAndTimeLessThanEqualOrderByTime(start, end);
-    List<TimeData> resultData = new ArrayList<>();
-    for (Wind wind : dataPoints)
+    WindDataSource rawDataSource = getRawDataSource();
+    if (rawDataSource != null)
     {
-      resultData.add(windConverter.apply(wind));
+      // times are in milliseconds, so ]start, end] is the same as [start + 1, end + 1[
+      rawDataSource.forEach(start.getTime() + 1, end.getTime() + 1, consumer);
+    }
+    else
+    {
+      windStreamingRepository.forEachWithTimeGreaterThanAndTimeLessThanEqual(start, end, consumer);
     }
-    return new TimeRangeWithData(start, end, resultData);
   }
 
+  /**
+   * Passes all data points at or after the start time and before the end time to a consumer, ordered by time.
+   *
+   * @param start the start of the time range in milliseconds, inclusive.
+   * @param end the end of the time range in milliseconds, exclusive.
+   * @param consumer the consumer for the data points, not null.
+   *        If the data is streamed from the database, the consumer must not access the database.
+   */
+  private void forEachDataPointInHalfOpenRange(long start, long end, WindSampleConsumer consumer)
+  {
+    WindDataSource rawDataSource = getRawDataSource();
+    if (rawDataSource != null)
+    {
+      rawDataSource.forEach(start, end, consumer);
+    }
+    else
+    {
+      windStreamingRepository.forEachWithTimeGreaterThanEqualAndTimeLessThan(new Date(start), new Date(end), consumer);
+    }
+  }
+
+  /**
+   * Returns the data of all buckets whose average speed and direction are within the given boundaries.
+   * The bucket averages and the data are calculated from a single scan over the time range.
+   *
+   * @param start start time of the first bucket.
+   * @param end the time up to which buckets are created, must be larger than the start time.
+   * @param lowerSpeedBoundary the lower speed boundary in knots (inclusive), or null for no lower boundary.
+   * @param upperSpeedBoundary the upper speed boundary in knots (exclusive), or null for no upper boundary.
+   * @param lowerDirectionBoundary the lower direction boundary in degrees (inclusive),
+   *        or null for no lower boundary.
+   * @param upperDirectionBoundary the upper direction boundary in degrees (exclusive),
+   *        or null for no upper boundary.
+   * @param averageMillis the length of each bucket in milliseconds, must be larger than 0.
+   * @param quantity the quantity to return.
+   *
+   * @return the data of each matching bucket, ordered by time.
+   */
   public List<TimeRangeWithData> getWithSpeedAndDirectionIn(
       Date start,
       Date end,
@@ -116,53 +347,126 @@ public class WindDataService
       Double lowerDirectionBoundary,
       Double upperDirectionBoundary,
       long averageMillis,
-      Function<Wind, TimeData> windConverter)
+      WindQuantity quantity)
   {
-    if (lowerSpeedBoundary == null)
+    WindCondition condition = WindCondition.of(
+        lowerSpeedBoundary,
+        upperSpeedBoundary,
+        lowerDirectionBoundary,
+        upperDirectionBoundary);
+    int bucketCount = getBucketCount(start, end, averageMillis);
+    if (isCoveredByConditionIndex(start.getTime(), bucketCount, averageMillis))
     {
-      lowerSpeedBoundary = 0d;
+      BitSet matchingBuckets = getMatchingBuckets(start.getTime(), bucketCount, averageMillis, condition);
+      return getDataOfBuckets(start.getTime(), averageMillis, matchingBuckets, quantity);
     }
-    if (upperSpeedBoundary == null)
+    BucketAverages bucketAverages = createBucketAverages(start, end, averageMillis);
+    MatchingBucketCollector collector = new MatchingBucketCollector(bucketAverages, condition, quantity);
+    if (bucketAverages.size() > 0)
     {
-      upperSpeedBoundary = 1000d;
+      // the data of the last bucket includes its end time
+      forEachDataPointInHalfOpenRange(
+          bucketAverages.getStart(),
+          bucketAverages.getBucketEnd(bucketAverages.size() - 1) + 1,
+          collector);
     }
-    if (lowerDirectionBoundary == null)
+    return collector.finish();
+  }
+
+  /**
+   * Divides a time range into buckets and returns the data of the buckets grouped by the cell of a grid
+   * which contains the average speed and direction of the bucket.
+   * The bucket averages are calculated once for all cells, and only the data of buckets within the grid
+   * is streamed.
+   *
+   * @param start start time of the first bucket.
+   * @param end the time up to which buckets are created, must be larger than the start time.
+   * @param bucketMillis the length of each bucket in milliseconds, must be larger than 0.
+   * @param grid the grid of speed bands and direction sectors, not null.
+   * @param quantity the quantity to return.
+   *
+   * @return for each cell of the grid, the data of its buckets ordered by time.
+   */
+  public List<List<TimeRangeWithData>> getDataOfBucketsByGridCell(
+      Date start,
+      Date end,
+      long bucketMillis,
+      ScanGrid grid,
+      WindQuantity quantity)
+  {
+    BucketAverages bucketAverages = getBucketAverages(start, end, bucketMillis);
+    int[] bucketCells = new int[bucketAverages.size()];
+    BitSet bucketsInGrid = new BitSet(bucketAverages.size());
+    for (int bucket = 0; bucket < bucketAverages.size(); bucket++)
     {
-      lowerDirectionBoundary = 0d;
+      if (bucketAverages.hasData(bucket))
+      {
+        bucketCells[bucket] = grid.getCell(
+            bucketAverages.getAverageSpeed(bucket),
+            bucketAverages.getAverageDirection(bucket));
+        if (bucketCells[bucket] >= 0)
+        {
+          bucketsInGrid.set(bucket);
+        }
+      }
     }
-    if (upperDirectionBoundary == null)
+    List<TimeRangeWithData> bucketData = getDataOfBuckets(start.getTime(), bucketMillis, bucketsInGrid, quantity);
+
+    List<List<TimeRangeWithData>> result = new ArrayList<>(grid.getCellCount());
+    for (int cell = 0; cell < grid.getCellCount(); cell++)
     {
-      upperDirectionBoundary = 360d;
+      result.add(new ArrayList<>());
     }
-    List<TimeRange> timeRanges = getTimeRangesWithAverageWindSpeedAndDirectionIn(
-        start,
-        end,
-        lowerSpeedBoundary,
-        upperSpeedBoundary,
-        lowerDirectionBoundary,
-        upperDirectionBoundary,
-        averageMillis,
-        false);
-    Map<TimeRange, List<Wind>> windIntervals = new LinkedHashMap<>();
-    for (TimeRange timeRange: timeRanges)
+    int dataIndex = 0;
+    for (int bucket = bucketsInGrid.nextSetBit(0); bucket >= 0; bucket = bucketsInGrid.nextSetBit(bucket + 1))
     {
-      windIntervals.put(timeRange, windRepository.findByTimeGreaterThanAndTimeLessThanEqualOrderByTime(
-          new Date(timeRange.getStart()),
-          new Date(timeRange.getEnd())));
+      result.get(bucketCells[bucket]).add(bucketData.get(dataIndex++));
     }
+    return result;
+  }
+
+  /**
+   * Returns the data of the given buckets in ]bucketStart, bucketEnd], streaming only the time ranges
+   * of the buckets.
+   */
+  private List<TimeRangeWithData> getDataOfBuckets(
+      long start,
+      long bucketMillis,
+      BitSet buckets,
+      WindQuantity quantity)
+  {
     List<TimeRangeWithData> result = new ArrayList<>();
-    for (Map.Entry<TimeRange, List<Wind>> singleWindInterval : windIntervals.entrySet())
+    for (int runStart = buckets.nextSetBit(0); runStart >= 0; runStart = buckets.nextSetBit(runStart + 1))
     {
-      List<TimeData> singleResultInterval = new ArrayList<>();
-      for (Wind wind : singleWindInterval.getValue())
+      int runEnd = buckets.nextClearBit(runStart);
+      int firstResultIndex = result.size();
+      for (int bucket = runStart; bucket < runEnd; bucket++)
       {
-        singleResultInterval.add(windConverter.apply(wind));
+        result.add(new TimeRangeWithData(
+            new TimeRange(start + bucket * bucketMillis, start + (bucket + 1) * bucketMillis),
+            new TimeDataSeries()));
       }
-      result.add(new TimeRangeWithData(singleWindInterval.getKey(), singleResultInterval));
+      long runStartMillis = start + runStart * bucketMillis;
+      forEachDataPoint(
+          new Date(runStartMillis),
+          new Date(start + runEnd * bucketMillis),
+          (time, speed, direction, gusts) ->
+          {
+            int bucketInRun = (int) ((time - runStartMillis - 1) / bucketMillis);
+            result.get(firstResultIndex + bucketInRun).getData()
+                .add(time, quantity.fromDatabaseValues(speed, direction, gusts));
+          });
+      runStart = runEnd;
     }
     return result;
   }
 
+  /**
+   * Returns the time ranges of all buckets whose average speed and direction are within the given boundaries.
+   * If a condition index exists for the bucket length, the matching buckets are looked up in the index.
+   *
+   * @param collapseAdjoiningIntervals whether adjoining matching buckets are returned as a single time range.
+   */
   public List<TimeRange> getTimeRangesWithAverageWindSpeedAndDirectionIn(
       Date start,
       Date end,
@@ -173,74 +477,206 @@ public class WindDataService
       long averageMillis,
       boolean collapseAdjoiningIntervals)
   {
-    if (averageMillis <=0 )
+    WindCondition condition = new WindCondition(
+        lowerSpeedBoundary,
+        upperSpeedBoundary,
+        lowerDirectionBoundary,
+        upperDirectionBoundary);
+    int bucketCount = getBucketCount(start, end, averageMillis);
+    BitSet matchingBuckets = getMatchingBuckets(start.getTime(), bucketCount, averageMillis, condition);
+
+    List<TimeRange> result = new ArrayList<>();
+    long startMillis = start.getTime();
+    for (int bucket = matchingBuckets.nextSetBit(0); bucket >= 0; bucket = matchingBuckets.nextSetBit(bucket + 1))
     {
-      throw new IllegalArgumentException("averageMillis must be larger than 0");
+      int rangeEnd = bucket + 1;
+      if (collapseAdjoiningIntervals)
+      {
+        rangeEnd = matchingBuckets.nextClearBit(bucket);
+      }
+      result.add(new TimeRange(startMillis + bucket * averageMillis, startMillis + rangeEnd * averageMillis));
+      bucket = rangeEnd - 1;
     }
-    if (lowerSpeedBoundary >= upperSpeedBoundary )
+    return result;
+  }
+
+  /**
+   * Determines which buckets match a condition.
+   * Buckets contained in the condition index are looked up there,
+   * the averages of the remaining buckets at the end are calculated.
+   *
+   * @return the indices of the matching buckets.
+   */
+  private BitSet getMatchingBuckets(long start, int bucketCount, long bucketMillis, WindCondition condition)
+  {
+    int indexedBuckets = 0;
+    BitSet result = new BitSet(bucketCount);
+    BucketConditionIndex index = windConditionIndex.get(bucketMillis);
+    if (index != null && Math.floorMod(start - index.getOrigin(), bucketMillis) == 0)
     {
-      throw new IllegalArgumentException("upperSpeedBound must be larger than lowerSpeedBound");
+      long firstIndexBucket = Math.floorDiv(start - index.getOrigin(), bucketMillis);
+      indexedBuckets = (int) Math.max(0, Math.min(bucketCount, index.getSize() - firstIndexBucket));
+      result.or(index.getMatchingBuckets(firstIndexBucket, indexedBuckets, condition));
     }
-    if (lowerDirectionBoundary >= upperDirectionBoundary )
+    if (indexedBuckets < bucketCount)
     {
-      throw new IllegalArgumentException("upperDirectionBoundary must be larger than lowerDirectionBoundary");
+      BucketAverages remainingBuckets = getBucketAverages(
+          new Date(start + indexedBuckets * bucketMillis),
+          new Date(start + bucketCount * bucketMillis),
+          bucketMillis);
+      for (int bucket = 0; bucket < remainingBuckets.size(); bucket++)
+      {
+        if (remainingBuckets.hasData(bucket)
+            && condition.matches(remainingBuckets.getAverageSpeed(bucket), remainingBuckets.getAverageDirection(bucket)))
+        {
+          result.set(indexedBuckets + bucket);
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean isCoveredByConditionIndex(long start, int bucketCount, long bucketMillis)
+  {
+    BucketConditionIndex index = windConditionIndex.get(bucketMillis);
+    return index != null
+        && Math.floorMod(start - index.getOrigin(), bucketMillis) == 0
+        && Math.floorDiv(start - index.getOrigin(), bucketMillis) + bucketCount <= index.getSize();
+  }
+
+  /**
+   * Calculates the average wind speed and direction for consecutive buckets of equal length
+   * in a single scan over the data.
+   * If rollups are available and aligned with the buckets, they are used instead of the raw data.
+   * The last bucket may extend beyond the end time, its average then contains
+   * the data points up to the end of the bucket.
+   *
+   * @param start start time of the first bucket.
+   * @param end the time up to which buckets are created, must be larger than the start time.
+   * @param bucketMillis the length of each bucket in milliseconds, must be larger than 0.
+   *
+   * @return the average speed in knots and direction in degrees for each bucket.
+   */
+  public BucketAverages getBucketAverages(Date start, Date end, long bucketMillis)
+  {
+    BucketAverages result = createBucketAverages(start, end, bucketMillis);
+    if (result.size() == 0)
+    {
+      return result;
     }
-    if ((end.getTime() - start.getTime()) / averageMillis > 10000)
+    long rawDataStart = start.getTime();
+    if (useRollups())
     {
-      throw new IllegalArgumentException(
-          "too many intervals: " + ((end.getTime() - start.getTime()) / averageMillis));
+      rawDataStart = addBucketSumsFromRollups(result);
     }
+    addRawBucketSums(result, rawDataStart, result.getBucketEnd(result.size() - 1));
+    return result;
+  }
 
-    List<TimeRange> result = new ArrayList<>();
-    long intervalStartMillis = start.getTime();
-    long lastAddedIntervalEndMillis = 0L;
-    while (intervalStartMillis < end.getTime())
-    {
-      Double averageSpeed = getAverageSpeed(
-          new Date(intervalStartMillis),
-          new Date(intervalStartMillis + averageMillis));
-      Double averageDirection = getAverageDirection(
-          new Date(intervalStartMillis),
-          new Date(intervalStartMillis + averageMillis));
-      if (averageSpeed != null && averageDirection != null
-          && averageSpeed >= lowerSpeedBoundary && averageSpeed < upperSpeedBoundary
-          && averageDirection >= lowerDirectionBoundary && averageDirection < upperDirectionBoundary)
+  private BucketAverages createBucketAverages(Date start, Date end, long bucketMillis)
+  {
+    return new BucketAverages(start.getTime(), bucketMillis, getBucketCount(start, end, bucketMillis));
+  }
+
+  private int getBucketCount(Date start, Date end, long bucketMillis)
+  {
+    if (bucketMillis <= 0)
+    {
+      throw new IllegalArgumentException("averageMillis must be larger than 0");
+    }
+    long bucketCount = Math.max(0, (end.getTime() - start.getTime() + bucketMillis - 1) / bucketMillis);
+    if (bucketCount > MAX_BUCKETS)
+    {
+      throw new IllegalArgumentException("too many intervals: " + bucketCount);
+    }
+    return (int) bucketCount;
+  }
+
+  /**
+   * Adds the rollups of the coarsest resolution which divides the bucket length to the buckets.
+   *
+   * @return the end of the time range covered by complete rollups, the start of the buckets
+   *         if no rollups could be used.
+   */
+  private long addBucketSumsFromRollups(BucketAverages result)
+  {
+    for (int resolutionMinutes : WindRollupService.RESOLUTIONS_IN_MINUTES)
+    {
+      long resolutionMillis = WindRollupService.getResolutionMillis(resolutionMinutes);
+      if (result.getBucketMillis() % resolutionMillis != 0 || result.getStart() % resolutionMillis != 0)
       {
-        if (lastAddedIntervalEndMillis == intervalStartMillis && collapseAdjoiningIntervals)
-        {
-          result.get(result.size() - 1).setEnd(intervalStartMillis + averageMillis);
-        }
-        else
-        {
-          result.add(new TimeRange(intervalStartMillis, intervalStartMillis + averageMillis));
-        }
-        lastAddedIntervalEndMillis = intervalStartMillis + averageMillis;
+        continue;
+      }
+      long completeUntil = windRollupService.getCompleteUntil(resolutionMinutes);
+      if (completeUntil <= result.getStart())
+      {
+        return result.getStart();
       }
-      intervalStartMillis += averageMillis;
+      int completeBuckets = (int) Math.min(
+          result.size(),
+          (completeUntil - result.getStart()) / result.getBucketMillis());
+      long rollupsEnd = result.getBucketStart(completeBuckets);
+      for (WindRollup rollup : windRollupService.getRollups(resolutionMinutes, result.getStart(), rollupsEnd))
+      {
+        WindAggregate aggregate = rollup.getAggregate();
+        result.add(
+            result.getBucket(rollup.getBucketStart().getTime()),
+            aggregate.getCount(),
+            aggregate.getSpeedSum(),
+            aggregate.getDirectionSinSum(),
+            aggregate.getDirectionCosSum());
+      }
+      return rollupsEnd;
     }
-    return result;
+    return result.getStart();
   }
 
-  public double[] fillArrayWithDataForEachSecond(TimeRangeWithData data, int arraySize)
+  private void addRawBucketSums(BucketAverages result, long start, long end)
   {
-    long start = data.getRange().getStart();
-    double[] fftInput = new double[arraySize];
-    int speedPointIndex = 0;
-    for (int i = 0; i < arraySize; i++)
+    if (start >= end)
     {
-      while (speedPointIndex < data.getData().size() - 1
-          && data.getData().get(speedPointIndex + 1).getTimestamp() <= i * 1000 + start)
+      return;
+    }
+    WindDataSource rawDataSource = getRawDataSource();
+    if (rawDataSource != null)
+    {
+      rawDataSource.forEach(start, end, (time, speed, direction, gusts)
+          -> result.addSample(result.getBucket(time), speed, direction));
+    }
+    else
+    {
+      int firstBucket = result.getBucket(start);
+      List<BucketSums> bucketSums = windRepository.getBucketSums(
+          new Date(start),
+          new Date(end),
+          result.getBucketMillis());
+      for (BucketSums singleBucketSums : bucketSums)
       {
-        speedPointIndex++;
+        result.add(
+            firstBucket + (int) singleBucketSums.getBucket(),
+            singleBucketSums.getCount(),
+            singleBucketSums.getSpeedSum(),
+            singleBucketSums.getDirectionSinSum(),
+            singleBucketSums.getDirectionCosSum());
       }
-      fftInput[i] = data.getData().get(speedPointIndex).getValue();
     }
-    return fftInput;
   }
 
   public List<DoubleValueCount> getSpeedHistogramForTimeRange(Date start, Date end)
   {
-    List<IntValueCount> dataPoints = windRepository.getSpeedHistogram(start, end);
+    List<IntValueCount> dataPoints;
+    if (useHistogramCube())
+    {
+      dataPoints = getSpeedDirectionHistogram(start, end).getSpeedHistogram();
+    }
+    else if (getRawDataSource() != null)
+    {
+      dataPoints = getRawDataSource().getSpeedHistogram(start.getTime(), end.getTime());
+    }
+    else
+    {
+      dataPoints = windRepository.getSpeedHistogram(start, end);
+    }
     List<DoubleValueCount> result = new ArrayList<>();
     for (IntValueCount count : dataPoints)
     {
@@ -251,9 +687,26 @@ public class WindDataService
     return result;
   }
 
+  /**
+   * Returns the direction histogram for a time range.
+   * If the histogram cube is available, the directions are binned to
+   * {@link WindHistogramCell#DIRECTION_BIN_DEGREES} degrees, and each bin is represented by its lower boundary.
+   */
   public List<DoubleValueCount> getDirectionHistogramForTimeRange(Date start, Date end)
   {
-    List<IntValueCount> dataPoints = windRepository.getDirectionHistogram(start, end);
+    List<IntValueCount> dataPoints;
+    if (useHistogramCube())
+    {
+      dataPoints = getSpeedDirectionHistogram(start, end).getDirectionHistogram();
+    }
+    else if (getRawDataSource() != null)
+    {
+      dataPoints = getRawDataSource().getDirectionHistogram(start.getTime(), end.getTime());
+    }
+    else
+    {
+      dataPoints = windRepository.getDirectionHistogram(start, end);
+    }
     List<DoubleValueCount> result = new ArrayList<>();
     for (IntValueCount count : dataPoints)
     {
@@ -263,4 +716,69 @@ public class WindDataService
     }
     return result;
   }
+
+  /**
+   * Counts the data points in a time range by speed and direction bin.
+   * If the histogram cube is available, the coarsest cells which fit into the time range are used,
+   * and finer cells or raw data for the remaining parts at the edges of the time range.
+   *
+   * @param start the start of the time range, inclusive.
+   * @param end the end of the time range, exclusive.
+   *
+   * @return the histogram, not null.
+   */
+  public SpeedDirectionHistogram getSpeedDirectionHistogram(Date start, Date end)
+  {
+    SpeedDirectionHistogram result = new SpeedDirectionHistogram();
+    if (useHistogramCube())
+    {
+      addCountsUsingCube(start.getTime(), end.getTime(), 0, result);
+    }
+    else
+    {
+      addRawCounts(start.getTime(), end.getTime(), result);
+    }
+    return result;
+  }
+
+  private void addCountsUsingCube(long start, long end, int resolutionIndex, SpeedDirectionHistogram result)
+  {
+    if (start >= end)
+    {
+      return;
+    }
+    if (resolutionIndex >= WindHistogramCubeService.RESOLUTIONS_IN_HOURS.length)
+    {
+      addRawCounts(start, end, result);
+      return;
+    }
+    int resolutionHours = WindHistogramCubeService.RESOLUTIONS_IN_HOURS[resolutionIndex];
+    long resolutionMillis = WindHistogramCubeService.getResolutionMillis(resolutionHours);
+    long alignedStart = -Math.floorDiv(-start, resolutionMillis) * resolutionMillis;
+    long alignedEnd = Math.min(
+        Math.floorDiv(end, resolutionMillis) * resolutionMillis,
+        windHistogramCubeService.getCompleteUntil(resolutionHours));
+    if (alignedStart >= alignedEnd)
+    {
+      addCountsUsingCube(start, end, resolutionIndex + 1, result);
+      return;
+    }
+    result.addAll(windHistogramCubeService.getCounts(resolutionHours, alignedStart, alignedEnd));
+    addCountsUsingCube(start, alignedStart, resolutionIndex + 1, result);
+    addCountsUsingCube(alignedEnd, end, resolutionIndex + 1, result);
+  }
+
+  private void addRawCounts(long start, long end, SpeedDirectionHistogram result)
+  {
+    WindDataSource rawDataSource = getRawDataSource();
+    if (rawDataSource != null)
+    {
+      rawDataSource.forEach(start, end, (time, speed, direction, gusts) -> result.addSample(speed, direction));
+      return;
+    }
+    result.addAll(windRepository.getSpeedDirectionCounts(
+        new Date(start),
+        new Date(end),
+        WindHistogramCell.DIRECTION_BIN_DEGREES));
+  }
 }
@@ -0,0 +1,61 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.List;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindAggregate;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+
+/**
+ * A source of raw wind data which answers queries without the database.
+ * All time ranges are half-open, i.e. the start is included and the end is excluded,
+ * and all times are in milliseconds.
+ */
+public interface WindDataSource
+{
+  /**
+   * Returns whether the source is configured and ready.
+   *
+   * @return true if queries can be answered by the source, false otherwise.
+   */
+  boolean isAvailable();
+
+  /**
+   * Passes all data points in a time range to a consumer, in time order.
+   */
+  void forEach(long start, long end, WindSampleConsumer consumer);
+
+  long count(long start, long end);
+
+  /**
+   * Aggregates all data points in a time range.
+   *
+   * @return the aggregate, which is empty if no data points are within the time range.
+   */
+  default WindAggregate getAggregate(long start, long end)
+  {
+    WindAggregate result = new WindAggregate();
+    forEach(start, end, (time, speed, direction, gusts) -> result.add(speed, direction, gusts));
+    return result;
+  }
+
+  /**
+   * Returns the number of data points for each wind speed in 1/10 knots, ordered by speed.
+   */
+  default List<IntValueCount> getSpeedHistogram(long start, long end)
+  {
+    IntValueHistogram histogram = new IntValueHistogram();
+    forEach(start, end, (time, speed, direction, gusts) -> histogram.add(speed));
+    return histogram.toList();
+  }
+
+  /**
+   * Returns the number of data points for each wind direction in degrees, ordered by direction.
+   */
+  default List<IntValueCount> getDirectionHistogram(long start, long end)
+  {
+    IntValueHistogram histogram = new IntValueHistogram();
+    forEach(start, end, (time, speed, direction, gusts) -> histogram.add(direction));
+    return histogram.toList();
+  }
+}
@@ -0,0 +1,323 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.WindRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindStreamingRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataBlock;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataChangedEvent;
+
+/**
+ * Optional in-memory copy of the wind table, stored column by column in time-sorted blocks.
+ * The store is loaded after startup and catches up with new rows in the wind table periodically.
+ * All time ranges are half-open, i.e. the start is included and the end is excluded.
+ */
+@Component
+@Profile("!archive")
+public class WindDataStore implements WindDataSource
+{
+  private static final int BLOCK_SIZE = 65536;
+
+  private static final int LOAD_PAGE_SIZE = 10000;
+
+  private final WindRepository windRepository;
+
+  private final WindStreamingRepository windStreamingRepository;
+
+  private final boolean enabled;
+
+  /** The blocks, sorted by time and not overlapping. The list is replaced as a whole on change. */
+  private volatile List<WindDataBlock> blocks = Collections.emptyList();
+
+  private volatile boolean loaded = false;
+
+  private int lastLoadedId = 0;
+
+  public WindDataStore(
+      WindRepository windRepository,
+      WindStreamingRepository windStreamingRepository,
+      @Value("${weatherdataanalyzer.store.enabled:false}") boolean enabled)
+  {
+    this.windRepository = windRepository;
+    this.windStreamingRepository = windStreamingRepository;
+    this.enabled = enabled;
+  }
+
+  /**
+   * Returns whether the store is enabled and has completed its initial load.
+   *
+   * @return true if queries can be answered by the store, false otherwise.
+   */
+  @Override
+  public boolean isAvailable()
+  {
+    return enabled && loaded;
+  }
+
+  /**
+   * Loads all rows of the wind table which were not loaded yet.
+   * The initial load streams the table in time order.
+   * Afterwards, rows are detected by their id, so rows which are inserted out of time order are also picked up.
+   */
+  @Scheduled(
+      initialDelayString = "${weatherdataanalyzer.store.initialDelayMillis:0}",
+      fixedDelayString = "${weatherdataanalyzer.store.catchUpMillis:60000}")
+  public synchronized void catchUp()
+  {
+    if (!enabled)
+    {
+      return;
+    }
+    if (!loaded)
+    {
+      loadInitially();
+    }
+    List<Wind> winds;
+    do
+    {
+      winds = windRepository.findTop10000ByIdGreaterThanOrderById(lastLoadedId);
+      if (!winds.isEmpty())
+      {
+        add(winds);
+        lastLoadedId = winds.get(winds.size() - 1).getId();
+      }
+    }
+    while (winds.size() == LOAD_PAGE_SIZE);
+    loaded = true;
+  }
+
+  /**
+   * Adds data points written by the application to the store without waiting for the next scheduled catch-up.
+   */
+  @Async
+  @EventListener
+  public void onWindDataChanged(WindDataChangedEvent event)
+  {
+    catchUp();
+  }
+
+  private void loadInitially()
+  {
+    Integer maxId = windRepository.getMaxId();
+    if (maxId == null)
+    {
+      return;
+    }
+    BlockBuilder blockBuilder = new BlockBuilder();
+    windStreamingRepository.forEachWithIdLessThanEqual(maxId, blockBuilder);
+    blockBuilder.flush();
+    lastLoadedId = maxId;
+  }
+
+  private void add(List<Wind> winds)
+  {
+    List<Wind> sortedWinds = new ArrayList<>(winds);
+    sortedWinds.sort(Comparator.comparing(Wind::getTime));
+    long[] times = new long[sortedWinds.size()];
+    int[] speeds = new int[sortedWinds.size()];
+    int[] directions = new int[sortedWinds.size()];
+    int[] gusts = new int[sortedWinds.size()];
+    for (int i = 0; i < sortedWinds.size(); i++)
+    {
+      Wind wind = sortedWinds.get(i);
+      times[i] = wind.getTime().getTime();
+      speeds[i] = wind.getSpeed();
+      directions[i] = wind.getDirection();
+      gusts[i] = wind.getGusts();
+    }
+    add(new WindDataBlock(times, speeds, directions, gusts));
+  }
+
+  /**
+   * Adds time-sorted data points to the store.
+   * Each data point is merged into the last block which starts before or at the data point,
+   * so the blocks stay sorted and do not overlap.
+   *
+   * @param newData the data to add, not null.
+   */
+  synchronized void add(WindDataBlock newData)
+  {
+    List<WindDataBlock> oldBlocks = blocks;
+    if (oldBlocks.isEmpty() || oldBlocks.get(oldBlocks.size() - 1).getEndTime() <= newData.getStartTime())
+    {
+      List<WindDataBlock> newBlocks = new ArrayList<>(oldBlocks);
+      newBlocks.addAll(newData.split(BLOCK_SIZE));
+      blocks = Collections.unmodifiableList(newBlocks);
+      return;
+    }
+    List<WindDataBlock> newBlocks = new ArrayList<>(oldBlocks.size() + 1);
+    int newDataIndex = 0;
+    for (int blockIndex = 0; blockIndex < oldBlocks.size(); blockIndex++)
+    {
+      WindDataBlock block = oldBlocks.get(blockIndex);
+      int newDataEnd = newData.size();
+      if (blockIndex < oldBlocks.size() - 1)
+      {
+        newDataEnd = newData.indexOfFirstAtOrAfter(oldBlocks.get(blockIndex + 1).getStartTime());
+      }
+      if (newDataEnd > newDataIndex)
+      {
+        WindDataBlock dataForBlock = slice(newData, newDataIndex, newDataEnd);
+        newBlocks.addAll(block.merge(dataForBlock).split(BLOCK_SIZE));
+        newDataIndex = newDataEnd;
+      }
+      else
+      {
+        newBlocks.add(block);
+      }
+    }
+    blocks = Collections.unmodifiableList(newBlocks);
+  }
+
+  private WindDataBlock slice(WindDataBlock block, int from, int to)
+  {
+    if (from == 0 && to == block.size())
+    {
+      return block;
+    }
+    return new WindDataBlock(
+        Arrays.copyOfRange(block.getTimes(), from, to),
+        Arrays.copyOfRange(block.getSpeeds(), from, to),
+        Arrays.copyOfRange(block.getDirections(), from, to),
+        Arrays.copyOfRange(block.getGusts(), from, to));
+  }
+
+  /**
+   * Passes all data points in a time range to a consumer, in time order.
+   *
+   * @param start the start of the time range in milliseconds, inclusive.
+   * @param end the end of the time range in milliseconds, exclusive.
+   * @param consumer the consumer for the data points, not null.
+   */
+  @Override
+  public void forEach(long start, long end, WindSampleConsumer consumer)
+  {
+    forEachSlice(start, end, (block, from, to) ->
+    {
+      long[] times = block.getTimes();
+      int[] speeds = block.getSpeeds();
+      int[] directions = block.getDirections();
+      int[] gusts = block.getGusts();
+      for (int i = from; i < to; i++)
+      {
+        consumer.accept(times[i], speeds[i], directions[i], gusts[i]);
+      }
+    });
+  }
+
+  @Override
+  public long count(long start, long end)
+  {
+    long[] count = new long[1];
+    forEachSlice(start, end, (block, from, to) -> count[0] += to - from);
+    return count[0];
+  }
+
+  private void forEachSlice(long start, long end, SliceConsumer consumer)
+  {
+    List<WindDataBlock> currentBlocks = blocks;
+    for (int blockIndex = indexOfFirstBlockEndingAtOrAfter(currentBlocks, start);
+        blockIndex < currentBlocks.size();
+        blockIndex++)
+    {
+      WindDataBlock block = currentBlocks.get(blockIndex);
+      if (block.getStartTime() >= end)
+      {
+        break;
+      }
+      int from = block.indexOfFirstAtOrAfter(start);
+      int to = block.indexOfFirstAtOrAfter(end);
+      if (to > from)
+      {
+        consumer.accept(block, from, to);
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the first block ending at or after the given time,
+   * or the number of blocks if all blocks end before the given time.
+   * Adjacent blocks may end and start with the same time, so the search must use the end time.
+   */
+  private int indexOfFirstBlockEndingAtOrAfter(List<WindDataBlock> currentBlocks, long time)
+  {
+    int low = 0;
+    int high = currentBlocks.size();
+    while (low < high)
+    {
+      int middle = (low + high) >>> 1;
+      if (currentBlocks.get(middle).getEndTime() < time)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Collects streamed, time-sorted data points into blocks and adds full blocks to the store.
+   */
+  private class BlockBuilder implements WindSampleConsumer
+  {
+    private long[] times = new long[BLOCK_SIZE];
+
+    private int[] speeds = new int[BLOCK_SIZE];
+
+    private int[] directions = new int[BLOCK_SIZE];
+
+    private int[] gusts = new int[BLOCK_SIZE];
+
+    private int size = 0;
+
+    @Override
+    public void accept(long time, int speed, int direction, int gust)
+    {
+      times[size] = time;
+      speeds[size] = speed;
+      directions[size] = direction;
+      gusts[size] = gust;
+      size++;
+      if (size == BLOCK_SIZE)
+      {
+        flush();
+      }
+    }
+
+    void flush()
+    {
+      if (size == 0)
+      {
+        return;
+      }
+      add(new WindDataBlock(
+          Arrays.copyOf(times, size),
+          Arrays.copyOf(speeds, size),
+          Arrays.copyOf(directions, size),
+          Arrays.copyOf(gusts, size)));
+      size = 0;
+    }
+  }
+
+  @FunctionalInterface
+  private interface SliceConsumer
+  {
+    void accept(WindDataBlock block, int from, int to);
+  }
+}
@@ -0,0 +1,381 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.WindGapIndexStateRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindGapRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindIntervalCountBatchRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindIntervalCountRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindStreamingRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindGap;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindGapIndexState;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindIntervalCount;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataChangedEvent;
+
+/**
+ * Maintains the gap index, i.e. the sampling gaps of the wind table which are longer than a minimum length,
+ * and per day the histogram of the intervals between consecutive data points in whole seconds.
+ * An interval belongs to the day of its later data point.
+ * New rows after the indexed time range are appended to the index. Days containing rows
+ * which are inserted out of time order are recalculated from the wind table.
+ * Gap and interval queries use the index for complete days and stream the raw data only at the edges.
+ * Without a database, i.e. with the archive profile, the index must be disabled and all data is streamed.
+ */
+@Component
+public class WindGapIndexService
+{
+  static final long DAY_MILLIS = 24L * 60L * 60L * 1000L;
+
+  private static final int LOAD_PAGE_SIZE = 10000;
+
+  private final WindRepository windRepository;
+
+  private final WindStreamingRepository windStreamingRepository;
+
+  private final WindGapRepository windGapRepository;
+
+  private final WindIntervalCountRepository windIntervalCountRepository;
+
+  private final WindIntervalCountBatchRepository windIntervalCountBatchRepository;
+
+  private final WindGapIndexStateRepository windGapIndexStateRepository;
+
+  private final WindDataService windDataService;
+
+  private final WindArchiveService windArchiveService;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final boolean enabled;
+
+  private final long minGapMillis;
+
+  private volatile WindGapIndexState state;
+
+  private volatile boolean caughtUp = false;
+
+  public WindGapIndexService(
+      @Nullable WindRepository windRepository,
+      @Nullable WindStreamingRepository windStreamingRepository,
+      @Nullable WindGapRepository windGapRepository,
+      @Nullable WindIntervalCountRepository windIntervalCountRepository,
+      @Nullable WindIntervalCountBatchRepository windIntervalCountBatchRepository,
+      @Nullable WindGapIndexStateRepository windGapIndexStateRepository,
+      WindDataService windDataService,
+      WindArchiveService windArchiveService,
+      @Nullable TransactionTemplate transactionTemplate,
+      @Value("${weatherdataanalyzer.gapIndex.enabled:false}") boolean enabled,
+      @Value("${weatherdataanalyzer.gapIndex.minGapSeconds:60}") int minGapSeconds)
+  {
+    this.windRepository = windRepository;
+    this.windStreamingRepository = windStreamingRepository;
+    this.windGapRepository = windGapRepository;
+    this.windIntervalCountRepository = windIntervalCountRepository;
+    this.windIntervalCountBatchRepository = windIntervalCountBatchRepository;
+    this.windGapIndexStateRepository = windGapIndexStateRepository;
+    this.windDataService = windDataService;
+    this.windArchiveService = windArchiveService;
+    this.transactionTemplate = transactionTemplate;
+    this.enabled = enabled;
+    this.minGapMillis = minGapSeconds * 1000L;
+  }
+
+  /**
+   * Returns whether the index is enabled, contains all rows which existed at startup,
+   * and describes the data which is served, i.e. no archive is used.
+   *
+   * @return true if queries can be answered from the index, false otherwise.
+   */
+  public boolean isAvailable()
+  {
+    return enabled && caughtUp && !windArchiveService.isAvailable();
+  }
+
+  /**
+   * Adds all rows of the wind table which were not processed yet to the index.
+   */
+  @Scheduled(
+      initialDelayString = "${weatherdataanalyzer.gapIndex.initialDelayMillis:0}",
+      fixedDelayString = "${weatherdataanalyzer.gapIndex.catchUpMillis:60000}")
+  public synchronized void catchUp()
+  {
+    if (!enabled)
+    {
+      return;
+    }
+    if (state == null)
+    {
+      state = windGapIndexStateRepository.findById(WindGapIndexState.ID).orElseGet(WindGapIndexState::new);
+    }
+    SortedSet<Long> daysToRecalculate = new TreeSet<>();
+    List<Wind> winds;
+    do
+    {
+      winds = windRepository.findTop10000ByIdGreaterThanOrderById(state.getLastProcessedId());
+      if (!winds.isEmpty())
+      {
+        List<Wind> page = winds;
+        state = transactionTemplate.execute(status -> addToIndex(page, daysToRecalculate));
+      }
+    }
+    while (winds.size() == LOAD_PAGE_SIZE);
+
+    // recalculate after all pages are processed, so that no appended row is counted twice
+    for (long dayStart : daysToRecalculate)
+    {
+      transactionTemplate.execute(status ->
+      {
+        recalculateDay(dayStart);
+        return null;
+      });
+    }
+    caughtUp = true;
+  }
+
+  /**
+   * Adds data points written by the application to the index without waiting for the next scheduled catch-up.
+   */
+  @Async
+  @EventListener
+  public void onWindDataChanged(WindDataChangedEvent event)
+  {
+    catchUp();
+  }
+
+  private WindGapIndexState addToIndex(List<Wind> winds, SortedSet<Long> daysToRecalculate)
+  {
+    List<Wind> sortedWinds = new ArrayList<>(winds);
+    sortedWinds.sort(Comparator.comparing(Wind::getTime));
+    long processedUntil = GapDetector.NO_TIME;
+    if (state.getProcessedUntil() != null)
+    {
+      processedUntil = state.getProcessedUntil().getTime();
+    }
+    int lastProcessedId = state.getLastProcessedId();
+    GapDetector detector = null;
+    long detectorDayStart = 0;
+    for (Wind wind : sortedWinds)
+    {
+      long time = wind.getTime().getTime();
+      lastProcessedId = Math.max(lastProcessedId, wind.getId());
+      if (processedUntil != GapDetector.NO_TIME && time <= processedUntil)
+      {
+        // the row changes the intervals of its day, and the first interval of the next day
+        daysToRecalculate.add(getDayStart(time));
+        daysToRecalculate.add(getDayStart(time) + DAY_MILLIS);
+        continue;
+      }
+      if (detector == null || getDayStart(time) != detectorDayStart)
+      {
+        if (detector != null)
+        {
+          store(detectorDayStart, detector);
+        }
+        detector = new GapDetector(processedUntil, minGapMillis);
+        detectorDayStart = getDayStart(time);
+      }
+      detector.accept(time, wind.getSpeed(), wind.getDirection(), wind.getGusts());
+      processedUntil = time;
+    }
+    if (detector != null)
+    {
+      store(detectorDayStart, detector);
+    }
+
+    WindGapIndexState newState = new WindGapIndexState();
+    newState.setLastProcessedId(lastProcessedId);
+    newState.setProcessedUntil(processedUntil == GapDetector.NO_TIME ? null : new Date(processedUntil));
+    return windGapIndexStateRepository.save(newState);
+  }
+
+  /**
+   * Replaces the index entries of a day by entries calculated from the wind table.
+   * Only rows up to the end of the indexed time range are considered.
+   */
+  private void recalculateDay(long dayStart)
+  {
+    if (state.getProcessedUntil() == null)
+    {
+      return;
+    }
+    long end = Math.min(dayStart + DAY_MILLIS, state.getProcessedUntil().getTime() + 1);
+    if (dayStart >= end)
+    {
+      return;
+    }
+    windIntervalCountRepository.deleteByDayStart(new Date(dayStart));
+    windGapRepository.deleteGaps(new Date(dayStart), new Date(dayStart + DAY_MILLIS));
+    Date previousTime = windRepository.getMaxTimeBefore(new Date(dayStart));
+    GapDetector detector = new GapDetector(
+        previousTime == null ? GapDetector.NO_TIME : previousTime.getTime(),
+        minGapMillis);
+    windStreamingRepository.forEachWithTimeGreaterThanEqualAndTimeLessThan(new Date(dayStart), new Date(end), detector);
+    store(dayStart, detector);
+  }
+
+  private void store(long dayStart, GapDetector detector)
+  {
+    List<WindIntervalCount> counts = new ArrayList<>();
+    long[] intervalCounts = detector.getIntervalCounts();
+    for (int intervalSeconds = 0; intervalSeconds < intervalCounts.length; intervalSeconds++)
+    {
+      if (intervalCounts[intervalSeconds] > 0)
+      {
+        WindIntervalCount count = new WindIntervalCount();
+        count.setDayStart(new Date(dayStart));
+        count.setIntervalSeconds(intervalSeconds);
+        count.setIntervalCount(intervalCounts[intervalSeconds]);
+        counts.add(count);
+      }
+    }
+    windIntervalCountBatchRepository.addIntervalCounts(counts);
+
+    List<WindGap> gaps = new ArrayList<>();
+    for (TimeRange gapRange : detector.getGaps())
+    {
+      WindGap gap = new WindGap();
+      gap.setGapStart(gapRange.getStartAsDate());
+      gap.setGapEnd(gapRange.getEndAsDate());
+      gap.setLengthMillis(gapRange.getDurationMillis());
+      gaps.add(gap);
+    }
+    windGapRepository.saveAll(gaps);
+  }
+
+  /**
+   * Returns the intervals between consecutive data points which are at least a minimum length long.
+   * If the index is used, the interval before the first data point in the time range is also considered.
+   *
+   * @param start the start of the time range, exclusive.
+   * @param end the end of the time range, inclusive.
+   * @param minLengthMillis the minimum length of the returned intervals in milliseconds.
+   *
+   * @return the gaps whose later data point is in the time range, ordered by time.
+   */
+  public List<TimeRange> getGaps(Date start, Date end, long minLengthMillis)
+  {
+    if (!isAvailable() || minLengthMillis < minGapMillis)
+    {
+      GapDetector detector = new GapDetector(GapDetector.NO_TIME, minLengthMillis);
+      windDataService.forEachDataPoint(start, end, detector);
+      return detector.getGaps();
+    }
+    // times are in milliseconds, so ]start, end] is the same as [start + 1, end + 1[
+    long[] alignedRange = getAlignedDays(start.getTime() + 1, end.getTime() + 1);
+    List<TimeRange> result = new ArrayList<>(getRawGaps(start.getTime() + 1, alignedRange[0], minLengthMillis));
+    for (WindGap gap : windGapRepository.getGaps(
+        new Date(alignedRange[0]),
+        new Date(alignedRange[1]),
+        minLengthMillis))
+    {
+      result.add(new TimeRange(gap.getGapStart(), gap.getGapEnd()));
+    }
+    result.addAll(getRawGaps(alignedRange[1], end.getTime() + 1, minLengthMillis));
+    return result;
+  }
+
+  /**
+   * Counts the intervals between consecutive data points by their length in whole seconds.
+   * Intervals longer than {@link GapDetector#MAX_INTERVAL_SECONDS} are counted in the last bin.
+   * If the index is used, the interval before the first data point in the time range is also counted.
+   *
+   * @param start the start of the time range, exclusive.
+   * @param end the end of the time range, inclusive.
+   *
+   * @return the number of intervals whose later data point is in the time range, indexed by the length in seconds.
+   */
+  public long[] getIntervalHistogram(Date start, Date end)
+  {
+    if (!isAvailable())
+    {
+      GapDetector detector = new GapDetector(GapDetector.NO_TIME, Long.MAX_VALUE);
+      windDataService.forEachDataPoint(start, end, detector);
+      return detector.getIntervalCounts();
+    }
+    long[] alignedRange = getAlignedDays(start.getTime() + 1, end.getTime() + 1);
+    long[] result = getRawIntervalCounts(start.getTime() + 1, alignedRange[0]);
+    for (IntValueCount count : windIntervalCountRepository.getCounts(
+        new Date(alignedRange[0]),
+        new Date(alignedRange[1])))
+    {
+      result[count.getValue()] += count.getCount();
+    }
+    long[] trailingCounts = getRawIntervalCounts(alignedRange[1], end.getTime() + 1);
+    for (int i = 0; i < result.length; i++)
+    {
+      result[i] += trailingCounts[i];
+    }
+    return result;
+  }
+
+  /**
+   * Returns the range of complete indexed days within a time range.
+   *
+   * @return the start (inclusive) and end (exclusive) of the days, which are equal if no day can be used.
+   */
+  private long[] getAlignedDays(long start, long end)
+  {
+    long alignedStart = -Math.floorDiv(-start, DAY_MILLIS) * DAY_MILLIS;
+    long alignedEnd = Math.floorDiv(end, DAY_MILLIS) * DAY_MILLIS;
+    WindGapIndexState currentState = state;
+    if (currentState != null && currentState.getProcessedUntil() != null)
+    {
+      alignedEnd = Math.min(alignedEnd, getDayStart(currentState.getProcessedUntil().getTime()));
+    }
+    if (alignedStart >= alignedEnd)
+    {
+      return new long[] {start, start};
+    }
+    return new long[] {alignedStart, alignedEnd};
+  }
+
+  private List<TimeRange> getRawGaps(long start, long end, long minLengthMillis)
+  {
+    if (start >= end)
+    {
+      return new ArrayList<>();
+    }
+    GapDetector detector = createDetectorStartingAt(start, minLengthMillis);
+    windStreamingRepository.forEachWithTimeGreaterThanEqualAndTimeLessThan(new Date(start), new Date(end), detector);
+    return detector.getGaps();
+  }
+
+  private long[] getRawIntervalCounts(long start, long end)
+  {
+    if (start >= end)
+    {
+      return new long[GapDetector.MAX_INTERVAL_SECONDS + 1];
+    }
+    GapDetector detector = createDetectorStartingAt(start, Long.MAX_VALUE);
+    windStreamingRepository.forEachWithTimeGreaterThanEqualAndTimeLessThan(new Date(start), new Date(end), detector);
+    return detector.getIntervalCounts();
+  }
+
+  private GapDetector createDetectorStartingAt(long start, long minLengthMillis)
+  {
+    Date previousTime = windRepository.getMaxTimeBefore(new Date(start));
+    return new GapDetector(previousTime == null ? GapDetector.NO_TIME : previousTime.getTime(), minLengthMillis);
+  }
+
+  static long getDayStart(long time)
+  {
+    return Math.floorDiv(time, DAY_MILLIS) * DAY_MILLIS;
+  }
+}
@@ -0,0 +1,209 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.WindHistogramCellBatchRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindHistogramCellRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindHistogramCubeStateRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.SpeedDirectionCount;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindHistogramCell;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindHistogramCubeState;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataChangedEvent;
+
+/**
+ * Maintains the histogram cube, i.e. the number of data points for each speed and direction bin
+ * in time buckets of 1 hour, 1 day and 30 days.
+ * New rows in the wind table are detected by their id and added to the existing counts,
+ * so rows which are inserted out of time order are also picked up.
+ */
+@Component
+@Profile("!archive")
+public class WindHistogramCubeService
+{
+  /** The resolutions of the cube in hours, coarsest first. Each resolution is a multiple of the next. */
+  static final int[] RESOLUTIONS_IN_HOURS = new int[] {720, 24, 1};
+
+  private static final int LOAD_PAGE_SIZE = 10000;
+
+  private final WindRepository windRepository;
+
+  private final WindHistogramCellRepository windHistogramCellRepository;
+
+  private final WindHistogramCellBatchRepository windHistogramCellBatchRepository;
+
+  private final WindHistogramCubeStateRepository windHistogramCubeStateRepository;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final boolean enabled;
+
+  private volatile WindHistogramCubeState state;
+
+  private volatile boolean caughtUp = false;
+
+  public WindHistogramCubeService(
+      WindRepository windRepository,
+      WindHistogramCellRepository windHistogramCellRepository,
+      WindHistogramCellBatchRepository windHistogramCellBatchRepository,
+      WindHistogramCubeStateRepository windHistogramCubeStateRepository,
+      TransactionTemplate transactionTemplate,
+      @Value("${weatherdataanalyzer.cube.enabled:false}") boolean enabled)
+  {
+    this.windRepository = windRepository;
+    this.windHistogramCellRepository = windHistogramCellRepository;
+    this.windHistogramCellBatchRepository = windHistogramCellBatchRepository;
+    this.windHistogramCubeStateRepository = windHistogramCubeStateRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.enabled = enabled;
+  }
+
+  /**
+   * Returns whether the cube is enabled and contains all rows which existed at startup.
+   *
+   * @return true if histograms can be answered from the cube, false otherwise.
+   */
+  public boolean isAvailable()
+  {
+    return enabled && caughtUp;
+  }
+
+  /**
+   * Returns the end of the time range which is completely contained in cells of the given resolution.
+   *
+   * @param resolutionHours the resolution of the cells.
+   *
+   * @return the end of the complete cells in milliseconds, or Long.MIN_VALUE if no cells exist.
+   */
+  public long getCompleteUntil(int resolutionHours)
+  {
+    WindHistogramCubeState currentState = state;
+    if (currentState == null || currentState.getProcessedUntil() == null)
+    {
+      return Long.MIN_VALUE;
+    }
+    return getBucketStart(currentState.getProcessedUntil().getTime(), resolutionHours);
+  }
+
+  /**
+   * Adds all rows of the wind table which were not processed yet to the cube.
+   */
+  @Scheduled(
+      initialDelayString = "${weatherdataanalyzer.cube.initialDelayMillis:0}",
+      fixedDelayString = "${weatherdataanalyzer.cube.catchUpMillis:60000}")
+  public synchronized void catchUp()
+  {
+    if (!enabled)
+    {
+      return;
+    }
+    if (state == null)
+    {
+      state = windHistogramCubeStateRepository.findById(WindHistogramCubeState.ID)
+          .orElseGet(WindHistogramCubeState::new);
+    }
+    List<Wind> winds;
+    do
+    {
+      winds = windRepository.findTop10000ByIdGreaterThanOrderById(state.getLastProcessedId());
+      if (!winds.isEmpty())
+      {
+        List<Wind> page = winds;
+        state = transactionTemplate.execute(status -> addToCube(page));
+      }
+    }
+    while (winds.size() == LOAD_PAGE_SIZE);
+    caughtUp = true;
+  }
+
+  /**
+   * Adds data points written by the application to the histogram cube without waiting for the next scheduled catch-up.
+   */
+  @Async
+  @EventListener
+  public void onWindDataChanged(WindDataChangedEvent event)
+  {
+    catchUp();
+  }
+
+  private WindHistogramCubeState addToCube(List<Wind> winds)
+  {
+    Map<WindHistogramCell.Key, WindHistogramCell> cells = new LinkedHashMap<>();
+    long processedUntil = Long.MIN_VALUE;
+    if (state.getProcessedUntil() != null)
+    {
+      processedUntil = state.getProcessedUntil().getTime();
+    }
+    int lastProcessedId = state.getLastProcessedId();
+    for (Wind wind : winds)
+    {
+      long time = wind.getTime().getTime();
+      int directionBin = WindHistogramCell.getDirectionBin(wind.getDirection());
+      for (int resolutionHours : RESOLUTIONS_IN_HOURS)
+      {
+        WindHistogramCell.Key key = new WindHistogramCell.Key(
+            resolutionHours,
+            new Date(getBucketStart(time, resolutionHours)),
+            wind.getSpeed(),
+            directionBin);
+        WindHistogramCell cell = cells.computeIfAbsent(key, k -> createCell(k));
+        cell.setSampleCount(cell.getSampleCount() + 1);
+      }
+      processedUntil = Math.max(processedUntil, time);
+      lastProcessedId = Math.max(lastProcessedId, wind.getId());
+    }
+    windHistogramCellBatchRepository.addSampleCounts(cells.values());
+
+    WindHistogramCubeState newState = new WindHistogramCubeState();
+    newState.setLastProcessedId(lastProcessedId);
+    newState.setProcessedUntil(new Date(processedUntil));
+    return windHistogramCubeStateRepository.save(newState);
+  }
+
+  private WindHistogramCell createCell(WindHistogramCell.Key key)
+  {
+    WindHistogramCell cell = new WindHistogramCell();
+    cell.setResolutionHours(key.getResolutionHours());
+    cell.setBucketStart(key.getBucketStart());
+    cell.setSpeed(key.getSpeed());
+    cell.setDirectionBin(key.getDirectionBin());
+    return cell;
+  }
+
+  /**
+   * Sums the cells of one resolution in a time range by speed and direction bin.
+   * The time range should be aligned to the resolution and end before {@link #getCompleteUntil(int)}.
+   *
+   * @param resolutionHours the resolution of the cells to use.
+   * @param start the start of the time range in milliseconds, inclusive.
+   * @param end the end of the time range in milliseconds, exclusive.
+   *
+   * @return the counts for each speed and direction bin which occurs in the time range.
+   */
+  public List<SpeedDirectionCount> getCounts(int resolutionHours, long start, long end)
+  {
+    return windHistogramCellRepository.getCounts(resolutionHours, new Date(start), new Date(end));
+  }
+
+  public static long getBucketStart(long time, int resolutionHours)
+  {
+    return Math.floorDiv(time, getResolutionMillis(resolutionHours)) * getResolutionMillis(resolutionHours);
+  }
+
+  public static long getResolutionMillis(int resolutionHours)
+  {
+    return resolutionHours * 60L * 60L * 1000L;
+  }
+}
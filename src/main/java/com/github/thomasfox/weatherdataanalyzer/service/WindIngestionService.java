@@ -0,0 +1,167 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.WindBatchRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.IngestionResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataBlock;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataChangedEvent;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindIngestionFormat;
+
+/**
+ * Writes wind data in bulk to the database.
+ * The input is read in batches, each batch is sorted by time, data points with a time which already exists
+ * are skipped, and the remaining data points are inserted in a single JDBC batch.
+ * The number of concurrent ingestions is limited; further ingestions are rejected instead of queued.
+ * The check for existing times and the insert of a batch are serialized, as the time column has no unique key,
+ * so concurrent ingestions of overlapping data do not insert a time twice.
+ */
+@Component
+@Profile("!archive")
+public class WindIngestionService
+{
+  static final int BATCH_SIZE = 5000;
+
+  private final WindBatchRepository windBatchRepository;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final Semaphore ingestionPermits;
+
+  /** held from the check for existing times until the insert of a batch is committed. */
+  private final Object insertLock = new Object();
+
+  public WindIngestionService(
+      WindBatchRepository windBatchRepository,
+      TransactionTemplate transactionTemplate,
+      ApplicationEventPublisher eventPublisher,
+      @Value("${weatherdataanalyzer.ingestion.maxConcurrent:2}") int maxConcurrentIngestions)
+  {
+    this.windBatchRepository = windBatchRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.eventPublisher = eventPublisher;
+    this.ingestionPermits = new Semaphore(maxConcurrentIngestions);
+  }
+
+  /**
+   * Reads wind data from the input and inserts all data points whose time does not exist yet.
+   * The data points need not be ordered by time.
+   * Batches which were inserted before a malformed part of the input is encountered remain inserted.
+   *
+   * @param input the input to read, not null.
+   * @param format the format of the input, not null.
+   *
+   * @return the statistics of the ingestion, or null if the maximum number of concurrent ingestions
+   *         is already running and the caller should retry later.
+   *
+   * @throws IOException if the input cannot be read.
+   */
+  public IngestionResult ingest(InputStream input, WindIngestionFormat format) throws IOException
+  {
+    return ingest(consumer -> format.read(input, consumer));
+  }
+
+  /**
+   * Inserts all data points of a source whose time does not exist yet.
+   *
+   * @param source the source of the data points, not null.
+   *
+   * @return the statistics of the ingestion, or null if the maximum number of concurrent ingestions
+   *         is already running and the caller should retry later.
+   *
+   * @throws IOException if the source cannot be read.
+   */
+  public IngestionResult ingest(WindSampleSource source) throws IOException
+  {
+    if (!ingestionPermits.tryAcquire())
+    {
+      return null;
+    }
+    IngestionResult result = new IngestionResult();
+    try
+    {
+      IngestionBatch batch = new IngestionBatch(BATCH_SIZE, block -> insert(block, result));
+      source.readInto(batch);
+      batch.flush();
+    }
+    finally
+    {
+      ingestionPermits.release();
+      if (result.getInserted() > 0)
+      {
+        eventPublisher.publishEvent(new WindDataChangedEvent(
+            result.getMinTime().getTime(),
+            result.getMaxTime().getTime(),
+            result.getInserted()));
+      }
+    }
+    return result;
+  }
+
+  private void insert(WindDataBlock block, IngestionResult result)
+  {
+    synchronized (insertLock)
+    {
+      insertInTransaction(block, result);
+    }
+  }
+
+  private void insertInTransaction(WindDataBlock block, IngestionResult result)
+  {
+    int inserted = transactionTemplate.execute(status ->
+    {
+      Set<Long> existingTimes = windBatchRepository.getTimes(block.getStartTime(), block.getEndTime());
+      boolean[] skip = new boolean[block.size()];
+      int toInsert = 0;
+      long[] times = block.getTimes();
+      for (int i = 0; i < block.size(); i++)
+      {
+        skip[i] = (i > 0 && times[i] == times[i - 1]) || existingTimes.contains(times[i]);
+        if (!skip[i])
+        {
+          toInsert++;
+          updateTimeRange(result, times[i]);
+        }
+      }
+      if (toInsert > 0)
+      {
+        windBatchRepository.insert(block, skip);
+      }
+      return toInsert;
+    });
+    result.setReceived(result.getReceived() + block.size());
+    result.setInserted(result.getInserted() + inserted);
+    result.setDuplicates(result.getDuplicates() + block.size() - inserted);
+  }
+
+  private void updateTimeRange(IngestionResult result, long time)
+  {
+    if (result.getMinTime() == null || time < result.getMinTime().getTime())
+    {
+      result.setMinTime(new Date(time));
+    }
+    if (result.getMaxTime() == null || time > result.getMaxTime().getTime())
+    {
+      result.setMaxTime(new Date(time));
+    }
+  }
+
+  @FunctionalInterface
+  public interface WindSampleSource
+  {
+    void readInto(WindSampleConsumer consumer) throws IOException;
+  }
+}
@@ -0,0 +1,226 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.WindRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindRollupRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.WindRollupStateRepository;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindAggregate;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindRollup;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindRollupState;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataChangedEvent;
+
+/**
+ * Maintains the rollups of the wind table, i.e. aggregates of the wind data in buckets of 1 minute,
+ * 10 minutes and 1 hour.
+ * New rows in the wind table are detected by their id and added to the existing rollups,
+ * so rows which are inserted out of time order are also picked up.
+ */
+@Component
+@Profile("!archive")
+public class WindRollupService
+{
+  /** The resolutions of the rollups in minutes, coarsest first. Each resolution is a multiple of the next. */
+  static final int[] RESOLUTIONS_IN_MINUTES = new int[] {60, 10, 1};
+
+  private static final int LOAD_PAGE_SIZE = 10000;
+
+  private final WindRepository windRepository;
+
+  private final WindRollupRepository windRollupRepository;
+
+  private final WindRollupStateRepository windRollupStateRepository;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final boolean enabled;
+
+  private volatile WindRollupState state;
+
+  private volatile boolean caughtUp = false;
+
+  public WindRollupService(
+      WindRepository windRepository,
+      WindRollupRepository windRollupRepository,
+      WindRollupStateRepository windRollupStateRepository,
+      TransactionTemplate transactionTemplate,
+      @Value("${weatherdataanalyzer.rollup.enabled:false}") boolean enabled)
+  {
+    this.windRepository = windRepository;
+    this.windRollupRepository = windRollupRepository;
+    this.windRollupStateRepository = windRollupStateRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.enabled = enabled;
+  }
+
+  /**
+   * Returns whether the rollups are enabled and contain all rows which existed at startup.
+   *
+   * @return true if aggregates can be answered from rollups, false otherwise.
+   */
+  public boolean isAvailable()
+  {
+    return enabled && caughtUp;
+  }
+
+  /**
+   * Returns the end of the time range which is completely contained in rollups of the given resolution.
+   * Buckets starting at or after this time may miss rows which have not been processed yet.
+   *
+   * @param resolutionMinutes the resolution of the rollups.
+   *
+   * @return the end of the complete rollups in milliseconds, or Long.MIN_VALUE if no rollups exist.
+   */
+  public long getCompleteUntil(int resolutionMinutes)
+  {
+    WindRollupState currentState = state;
+    if (currentState == null || currentState.getProcessedUntil() == null)
+    {
+      return Long.MIN_VALUE;
+    }
+    return getBucketStart(currentState.getProcessedUntil().getTime(), resolutionMinutes);
+  }
+
+  /**
+   * Adds all rows of the wind table which were not processed yet to the rollups.
+   */
+  @Scheduled(
+      initialDelayString = "${weatherdataanalyzer.rollup.initialDelayMillis:0}",
+      fixedDelayString = "${weatherdataanalyzer.rollup.catchUpMillis:60000}")
+  public synchronized void catchUp()
+  {
+    if (!enabled)
+    {
+      return;
+    }
+    if (state == null)
+    {
+      state = windRollupStateRepository.findById(WindRollupState.ID).orElseGet(WindRollupState::new);
+    }
+    List<Wind> winds;
+    do
+    {
+      winds = windRepository.findTop10000ByIdGreaterThanOrderById(state.getLastProcessedId());
+      if (!winds.isEmpty())
+      {
+        List<Wind> page = winds;
+        state = transactionTemplate.execute(status -> addToRollups(page));
+      }
+    }
+    while (winds.size() == LOAD_PAGE_SIZE);
+    caughtUp = true;
+  }
+
+  /**
+   * Adds data points written by the application to the rollups without waiting for the next scheduled catch-up.
+   */
+  @Async
+  @EventListener
+  public void onWindDataChanged(WindDataChangedEvent event)
+  {
+    catchUp();
+  }
+
+  private WindRollupState addToRollups(List<Wind> winds)
+  {
+    Map<WindRollup.Key, WindAggregate> aggregates = new LinkedHashMap<>();
+    long processedUntil = Long.MIN_VALUE;
+    if (state.getProcessedUntil() != null)
+    {
+      processedUntil = state.getProcessedUntil().getTime();
+    }
+    int lastProcessedId = state.getLastProcessedId();
+    for (Wind wind : winds)
+    {
+      long time = wind.getTime().getTime();
+      for (int resolutionMinutes : RESOLUTIONS_IN_MINUTES)
+      {
+        WindRollup.Key key = new WindRollup.Key(resolutionMinutes, new Date(getBucketStart(time, resolutionMinutes)));
+        aggregates.computeIfAbsent(key, k -> new WindAggregate())
+            .add(wind.getSpeed(), wind.getDirection(), wind.getGusts());
+      }
+      processedUntil = Math.max(processedUntil, time);
+      lastProcessedId = Math.max(lastProcessedId, wind.getId());
+    }
+
+    List<WindRollup> changedRollups = new ArrayList<>();
+    for (WindRollup existingRollup : windRollupRepository.findAllById(aggregates.keySet()))
+    {
+      // the bucket start may be loaded as a java.sql.Timestamp which is never equal to a java.util.Date
+      WindRollup.Key key = new WindRollup.Key(
+          existingRollup.getResolutionMinutes(),
+          new Date(existingRollup.getBucketStart().getTime()));
+      existingRollup.getAggregate().add(aggregates.remove(key));
+      changedRollups.add(existingRollup);
+    }
+    for (Map.Entry<WindRollup.Key, WindAggregate> newAggregate : aggregates.entrySet())
+    {
+      WindRollup newRollup = new WindRollup();
+      newRollup.setResolutionMinutes(newAggregate.getKey().getResolutionMinutes());
+      newRollup.setBucketStart(newAggregate.getKey().getBucketStart());
+      newRollup.setAggregate(newAggregate.getValue());
+      changedRollups.add(newRollup);
+    }
+    windRollupRepository.saveAll(changedRollups);
+
+    WindRollupState newState = new WindRollupState();
+    newState.setLastProcessedId(lastProcessedId);
+    newState.setProcessedUntil(new Date(processedUntil));
+    return windRollupStateRepository.save(newState);
+  }
+
+  /**
+   * Aggregates the rollups of one resolution in a time range.
+   * The time range should be aligned to the resolution and end before {@link #getCompleteUntil(int)}.
+   *
+   * @param resolutionMinutes the resolution of the rollups to use.
+   * @param start the start of the time range in milliseconds, inclusive.
+   * @param end the end of the time range in milliseconds, exclusive.
+   *
+   * @return the aggregate of all rollups starting in the time range.
+   */
+  public WindAggregate getAggregate(int resolutionMinutes, long start, long end)
+  {
+    return windRollupRepository.getAggregate(resolutionMinutes, new Date(start), new Date(end));
+  }
+
+  /**
+   * Returns the rollups of one resolution in a time range, ordered by time.
+   *
+   * @param resolutionMinutes the resolution of the rollups to return.
+   * @param start the start of the time range in milliseconds, inclusive.
+   * @param end the end of the time range in milliseconds, exclusive.
+   *
+   * @return all existing rollups starting in the time range.
+   */
+  public List<WindRollup> getRollups(int resolutionMinutes, long start, long end)
+  {
+    return windRollupRepository.findByResolutionMinutesAndBucketStartGreaterThanEqualAndBucketStartLessThanOrderByBucketStart(
+        resolutionMinutes,
+        new Date(start),
+        new Date(end));
+  }
+
+  public static long getBucketStart(long time, int resolutionMinutes)
+  {
+    return Math.floorDiv(time, getResolutionMillis(resolutionMinutes)) * getResolutionMillis(resolutionMinutes);
+  }
+
+  public static long getResolutionMillis(int resolutionMinutes)
+  {
+    return resolutionMinutes * 60L * 1000L;
+  }
+}
@@ -0,0 +1,20 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+/**
+ * The ways to calculate the autocorrelation of a time series.
+ */
+public enum AutocorrelationMode
+{
+  /**
+   * The original similarity measure, calculated directly for each lag.
+   * For speeds, the product of both values divided by the square of the larger value,
+   * for directions, 1 minus the angle between both values divided by 90 degrees.
+   */
+  LEGACY,
+
+  /**
+   * The Pearson autocorrelation, calculated via the power spectrum.
+   * Directions are treated as unit vectors.
+   */
+  PEARSON
+}
@@ -0,0 +1,125 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+
+import lombok.Getter;
+
+/**
+ * Average wind speed and direction for consecutive buckets of equal length.
+ * The averages are collected as sums in database units and as sums of direction unit vectors,
+ * so data points for a bucket can be added from different sources.
+ */
+@Getter
+public class BucketAverages
+{
+  /** start of the first bucket in milliseconds. */
+  private final long start;
+
+  /** length of each bucket in milliseconds. */
+  private final long bucketMillis;
+
+  private final long[] counts;
+
+  /** sum of the speeds in 1/10 knots for each bucket. */
+  private final long[] speedSums;
+
+  /** sum of the sines of the directions for each bucket. */
+  private final double[] directionSinSums;
+
+  /** sum of the cosines of the directions for each bucket. */
+  private final double[] directionCosSums;
+
+  public BucketAverages(long start, long bucketMillis, int size)
+  {
+    this.start = start;
+    this.bucketMillis = bucketMillis;
+    this.counts = new long[size];
+    this.speedSums = new long[size];
+    this.directionSinSums = new double[size];
+    this.directionCosSums = new double[size];
+  }
+
+  public int size()
+  {
+    return counts.length;
+  }
+
+  public long getBucketStart(int bucket)
+  {
+    return start + bucket * bucketMillis;
+  }
+
+  public long getBucketEnd(int bucket)
+  {
+    return getBucketStart(bucket) + bucketMillis;
+  }
+
+  /**
+   * Returns the index of the bucket containing the given time.
+   * The time must be within the buckets.
+   */
+  public int getBucket(long time)
+  {
+    return (int) ((time - start) / bucketMillis);
+  }
+
+  public boolean hasData(int bucket)
+  {
+    return counts[bucket] > 0;
+  }
+
+  public void add(int bucket, long count, long speedSum, double directionSinSum, double directionCosSum)
+  {
+    counts[bucket] += count;
+    speedSums[bucket] += speedSum;
+    directionSinSums[bucket] += directionSinSum;
+    directionCosSums[bucket] += directionCosSum;
+  }
+
+  /**
+   * Adds a single data point to a bucket.
+   *
+   * @param bucket the index of the bucket.
+   * @param speed the speed in 1/10 knots.
+   * @param direction the direction in degrees.
+   */
+  public void addSample(int bucket, int speed, int direction)
+  {
+    counts[bucket]++;
+    speedSums[bucket] += speed;
+    directionSinSums[bucket] += WindStatistics.sin(direction);
+    directionCosSums[bucket] += WindStatistics.cos(direction);
+  }
+
+  /**
+   * Returns the average speed of a bucket in knots.
+   *
+   * @param bucket the index of the bucket.
+   *
+   * @return the average speed, or NaN if the bucket contains no data.
+   */
+  public double getAverageSpeed(int bucket)
+  {
+    if (counts[bucket] == 0)
+    {
+      return Double.NaN;
+    }
+    return speedSums[bucket] * Wind.WIND_SPEED_IN_KNOTS_DATABASE_FACTOR / counts[bucket];
+  }
+
+  /**
+   * Returns the vector mean direction of a bucket in degrees.
+   *
+   * @param bucket the index of the bucket.
+   *
+   * @return the average direction in [0, 360[, or NaN if the bucket contains no data.
+   */
+  public double getAverageDirection(int bucket)
+  {
+    if (counts[bucket] == 0)
+    {
+      return Double.NaN;
+    }
+    return WindStatistics.getMeanDirection(directionSinSums[bucket], directionCosSums[bucket]);
+  }
+}
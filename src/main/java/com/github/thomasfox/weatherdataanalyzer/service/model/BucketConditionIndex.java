@@ -0,0 +1,251 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import lombok.Getter;
+
+/**
+ * Immutable index of the average speed and direction of consecutive buckets of equal length.
+ * Besides the averages, the index contains one bitmap per speed band and one per direction sector,
+ * marking the buckets whose average lies in the band or sector.
+ * A condition is evaluated by combining the bitmaps of the bands and sectors it covers completely,
+ * and by checking the averages only for buckets in bands and sectors it covers partially.
+ */
+@Getter
+public class BucketConditionIndex
+{
+  /** width of a speed band in knots. */
+  public static final double SPEED_BAND_KNOTS = 1d;
+
+  /** number of speed bands. The last band contains all speeds above its lower boundary. */
+  public static final int SPEED_BAND_COUNT = 60;
+
+  /** width of a direction sector in degrees. */
+  public static final double DIRECTION_SECTOR_DEGREES = 10d;
+
+  public static final int DIRECTION_SECTOR_COUNT = 36;
+
+  /** start of the first bucket in milliseconds. */
+  private final long origin;
+
+  /** length of each bucket in milliseconds. */
+  private final long bucketMillis;
+
+  private final int size;
+
+  /** the average speed of each bucket in knots, NaN for buckets without data. */
+  private final double[] averageSpeeds;
+
+  /** the average direction of each bucket in degrees, NaN for buckets without data. */
+  private final double[] averageDirections;
+
+  private final BitSet withData;
+
+  private final BitSet[] speedBands;
+
+  private final BitSet[] directionSectors;
+
+  private BucketConditionIndex(
+      long origin,
+      long bucketMillis,
+      double[] averageSpeeds,
+      double[] averageDirections,
+      BitSet withData,
+      BitSet[] speedBands,
+      BitSet[] directionSectors)
+  {
+    this.origin = origin;
+    this.bucketMillis = bucketMillis;
+    this.size = averageSpeeds.length;
+    this.averageSpeeds = averageSpeeds;
+    this.averageDirections = averageDirections;
+    this.withData = withData;
+    this.speedBands = speedBands;
+    this.directionSectors = directionSectors;
+  }
+
+  /**
+   * Creates an index containing the buckets of the given averages.
+   */
+  public static BucketConditionIndex create(BucketAverages averages)
+  {
+    BucketConditionIndex empty = new BucketConditionIndex(
+        averages.getStart(),
+        averages.getBucketMillis(),
+        new double[0],
+        new double[0],
+        new BitSet(),
+        createBitSets(SPEED_BAND_COUNT),
+        createBitSets(DIRECTION_SECTOR_COUNT));
+    return empty.update(averages);
+  }
+
+  /**
+   * Creates a copy of this index where the buckets of the given averages are replaced or appended.
+   *
+   * @param averages the new averages, the buckets must have the length of the buckets of this index
+   *        and must not start before the origin of this index or be misaligned to it.
+   *        Buckets between the end of this index and the start of the averages are empty in the new index.
+   *
+   * @return the updated index.
+   */
+  public BucketConditionIndex update(BucketAverages averages)
+  {
+    if (averages.getBucketMillis() != bucketMillis
+        || averages.getStart() < origin
+        || (averages.getStart() - origin) % bucketMillis != 0)
+    {
+      throw new IllegalArgumentException("averages are not aligned to the buckets of the index");
+    }
+    int offset = (int) ((averages.getStart() - origin) / bucketMillis);
+    int newSize = Math.max(size, offset + averages.size());
+    double[] newAverageSpeeds = Arrays.copyOf(averageSpeeds, newSize);
+    double[] newAverageDirections = Arrays.copyOf(averageDirections, newSize);
+    Arrays.fill(newAverageSpeeds, size, newSize, Double.NaN);
+    Arrays.fill(newAverageDirections, size, newSize, Double.NaN);
+    BitSet newWithData = copy(withData, offset, offset + averages.size());
+    BitSet[] newSpeedBands = new BitSet[speedBands.length];
+    for (int i = 0; i < speedBands.length; i++)
+    {
+      newSpeedBands[i] = copy(speedBands[i], offset, offset + averages.size());
+    }
+    BitSet[] newDirectionSectors = new BitSet[directionSectors.length];
+    for (int i = 0; i < directionSectors.length; i++)
+    {
+      newDirectionSectors[i] = copy(directionSectors[i], offset, offset + averages.size());
+    }
+
+    for (int bucket = 0; bucket < averages.size(); bucket++)
+    {
+      int indexBucket = offset + bucket;
+      double averageSpeed = averages.getAverageSpeed(bucket);
+      double averageDirection = averages.getAverageDirection(bucket);
+      newAverageSpeeds[indexBucket] = averageSpeed;
+      newAverageDirections[indexBucket] = averageDirection;
+      if (!averages.hasData(bucket))
+      {
+        continue;
+      }
+      newWithData.set(indexBucket);
+      newSpeedBands[getSpeedBand(averageSpeed)].set(indexBucket);
+      newDirectionSectors[getDirectionSector(averageDirection)].set(indexBucket);
+    }
+    return new BucketConditionIndex(
+        origin,
+        bucketMillis,
+        newAverageSpeeds,
+        newAverageDirections,
+        newWithData,
+        newSpeedBands,
+        newDirectionSectors);
+  }
+
+  /**
+   * Determines the buckets whose averages match a condition.
+   *
+   * @param firstBucket the index of the first bucket to check, may be negative or beyond the size of this index.
+   *        Buckets outside this index never match.
+   * @param bucketCount the number of buckets to check.
+   * @param condition the condition to check, not null.
+   *
+   * @return the matching buckets, indexed relative to <code>firstBucket</code>.
+   */
+  public BitSet getMatchingBuckets(long firstBucket, int bucketCount, WindCondition condition)
+  {
+    BitSet matching = getBucketsInRange(
+        speedBands,
+        averageSpeeds,
+        condition.getLowerSpeedBoundary(),
+        condition.getUpperSpeedBoundary(),
+        SPEED_BAND_KNOTS);
+    matching.and(getBucketsInRange(
+        directionSectors,
+        averageDirections,
+        condition.getLowerDirectionBoundary(),
+        condition.getUpperDirectionBoundary(),
+        DIRECTION_SECTOR_DEGREES));
+    matching.and(withData);
+
+    BitSet result = new BitSet(bucketCount);
+    int from = (int) Math.max(0, Math.min(size, firstBucket));
+    int to = (int) Math.max(0, Math.min(size, firstBucket + bucketCount));
+    for (int bucket = matching.nextSetBit(from); bucket >= 0 && bucket < to; bucket = matching.nextSetBit(bucket + 1))
+    {
+      result.set((int) (bucket - firstBucket));
+    }
+    return result;
+  }
+
+  /**
+   * Determines the buckets whose average is in [lowerBoundary, upperBoundary[.
+   * The bitmaps of bins within the range are combined, and for bins which overlap the range partially,
+   * the averages are checked.
+   */
+  private BitSet getBucketsInRange(
+      BitSet[] bins,
+      double[] averages,
+      double lowerBoundary,
+      double upperBoundary,
+      double binWidth)
+  {
+    BitSet result = new BitSet(size);
+    for (int bin = 0; bin < bins.length; bin++)
+    {
+      double binStart = bin * binWidth;
+      double binEnd = bin == bins.length - 1 ? Double.POSITIVE_INFINITY : binStart + binWidth;
+      // the first bin also contains values below zero
+      if (bin == 0)
+      {
+        binStart = Double.NEGATIVE_INFINITY;
+      }
+      if (binEnd <= lowerBoundary || binStart >= upperBoundary)
+      {
+        continue;
+      }
+      if (binStart >= lowerBoundary && binEnd <= upperBoundary)
+      {
+        result.or(bins[bin]);
+        continue;
+      }
+      BitSet binBuckets = bins[bin];
+      for (int bucket = binBuckets.nextSetBit(0); bucket >= 0; bucket = binBuckets.nextSetBit(bucket + 1))
+      {
+        if (averages[bucket] >= lowerBoundary && averages[bucket] < upperBoundary)
+        {
+          result.set(bucket);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static int getSpeedBand(double averageSpeed)
+  {
+    return (int) Math.max(0, Math.min(SPEED_BAND_COUNT - 1, Math.floor(averageSpeed / SPEED_BAND_KNOTS)));
+  }
+
+  private static int getDirectionSector(double averageDirection)
+  {
+    return (int) Math.max(
+        0,
+        Math.min(DIRECTION_SECTOR_COUNT - 1, Math.floor(averageDirection / DIRECTION_SECTOR_DEGREES)));
+  }
+
+  private static BitSet[] createBitSets(int count)
+  {
+    BitSet[] result = new BitSet[count];
+    for (int i = 0; i < count; i++)
+    {
+      result[i] = new BitSet();
+    }
+    return result;
+  }
+
+  private static BitSet copy(BitSet bitSet, int clearFrom, int clearTo)
+  {
+    BitSet result = (BitSet) bitSet.clone();
+    result.clear(clearFrom, clearTo);
+    return result;
+  }
+}
@@ -0,0 +1,27 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import org.springframework.http.HttpHeaders;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A rendered chart in the chart cache.
+ */
+@Getter
+@AllArgsConstructor
+public class CachedChart
+{
+  private final ChartCacheKey key;
+
+  /** the headers of the rendered response, without caching headers. */
+  private final HttpHeaders headers;
+
+  private final ChartImage body;
+
+  /** the strong entity tag of the body, including the quotes. */
+  private final String eTag;
+
+  /** the estimated memory used by the entry in bytes. */
+  private final long size;
+}
@@ -0,0 +1,145 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Identifies a rendered chart by its endpoint, the time range of the displayed data and the other request parameters.
+ * The parameters are canonicalised, so that requests which differ only in the notation of their parameters,
+ * e.g. in the date format or by omitting a default value, have equal keys.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class ChartCacheKey
+{
+  private final String endpoint;
+
+  /** the start of the displayed time range in milliseconds. */
+  private final long from;
+
+  /** the end of the displayed time range in milliseconds. */
+  private final long to;
+
+  /** the end of the time range of the data the chart is calculated from in milliseconds, at least <code>to</code>. */
+  private final long dataTo;
+
+  private final List<Object> parameters;
+
+  /**
+   * Constructor.
+   *
+   * @param endpoint the path of the endpoint which renders the chart, not null.
+   * @param from the start of the displayed time range, not null.
+   * @param to the end of the displayed time range, not null.
+   * @param parameters the parsed values of all other request parameters with defaults applied, may contain null.
+   */
+  public ChartCacheKey(String endpoint, Date from, Date to, Object... parameters)
+  {
+    this(to.getTime(), endpoint, from, to, parameters);
+  }
+
+  private ChartCacheKey(long dataTo, String endpoint, Date from, Date to, Object[] parameters)
+  {
+    if (to.before(from))
+    {
+      throw new IllegalArgumentException("end " + to + " must be after or equal to start " + from);
+    }
+    this.endpoint = endpoint;
+    this.from = from.getTime();
+    this.to = to.getTime();
+    this.dataTo = Math.max(dataTo, this.to);
+    List<Object> canonicalParameters = new ArrayList<>(parameters.length);
+    for (Object parameter : parameters)
+    {
+      canonicalParameters.add(canonicalise(parameter));
+    }
+    this.parameters = Collections.unmodifiableList(canonicalParameters);
+  }
+
+  /**
+   * Creates a key for a chart which is calculated from buckets of equal length starting at <code>from</code>.
+   * The last bucket may end after <code>to</code>, and the data up to its end is part of the chart.
+   *
+   * @param endpoint the path of the endpoint which renders the chart, not null.
+   * @param from the start of the displayed time range and of the first bucket, not null.
+   * @param to the end of the displayed time range, not null.
+   * @param bucketMillis the length of the buckets in milliseconds, must be larger than 0.
+   * @param parameters the parsed values of all other request parameters with defaults applied, may contain null.
+   */
+  public static ChartCacheKey forBuckets(String endpoint, Date from, Date to, long bucketMillis, Object... parameters)
+  {
+    if (bucketMillis <= 0)
+    {
+      throw new IllegalArgumentException("bucketMillis must be larger than 0");
+    }
+    long bucketCount = Math.max(0, (to.getTime() - from.getTime() + bucketMillis - 1) / bucketMillis);
+    return new ChartCacheKey(from.getTime() + bucketCount * bucketMillis, endpoint, from, to, parameters);
+  }
+
+  /**
+   * Returns whether the time range of the data of the chart contains any time of another time range.
+   *
+   * @param start the start of the other time range in milliseconds, inclusive.
+   * @param end the end of the other time range in milliseconds, inclusive.
+   */
+  public boolean overlaps(long start, long end)
+  {
+    return from <= end && start <= dataTo;
+  }
+
+  private static Object canonicalise(Object parameter)
+  {
+    if (parameter instanceof Double)
+    {
+      // -0.0 and 0.0 are not equal as Double objects
+      return ((Double) parameter) + 0d;
+    }
+    if (parameter instanceof Float)
+    {
+      return ((Float) parameter).doubleValue() + 0d;
+    }
+    if (parameter instanceof Integer || parameter instanceof Short || parameter instanceof Byte)
+    {
+      return ((Number) parameter).longValue();
+    }
+    if (parameter instanceof Date)
+    {
+      return ((Date) parameter).getTime();
+    }
+    if (parameter instanceof double[])
+    {
+      List<Object> result = new ArrayList<>();
+      for (double value : (double[]) parameter)
+      {
+        result.add(canonicalise(value));
+      }
+      return result;
+    }
+    if (parameter instanceof int[])
+    {
+      List<Object> result = new ArrayList<>();
+      for (int value : (int[]) parameter)
+      {
+        result.add(canonicalise(value));
+      }
+      return result;
+    }
+    if (parameter instanceof Object[])
+    {
+      List<Object> result = new ArrayList<>();
+      for (Object value : (Object[]) parameter)
+      {
+        result.add(canonicalise(value));
+      }
+      return result;
+    }
+    return parameter;
+  }
+}
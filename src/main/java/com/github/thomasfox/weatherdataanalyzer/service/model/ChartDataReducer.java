@@ -0,0 +1,134 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.Arrays;
+
+/**
+ * Reduces a stream of chart points to a fixed number of buckets of equal width on the x axis,
+ * so the memory needed does not depend on the number of points.
+ * Points outside the x range are ignored.
+ * Only {@link DownsamplingMode#MEAN} and {@link DownsamplingMode#MIN_MAX} are supported,
+ * because LTTB needs to look ahead at the next bucket.
+ */
+public class ChartDataReducer
+{
+  private final double xFrom;
+
+  private final double xTo;
+
+  private final DownsamplingMode mode;
+
+  private final int[] counts;
+
+  /** the x sum for MEAN, the x of the minimum for MIN_MAX. */
+  private final double[] firstX;
+
+  /** the y sum for MEAN, the minimum for MIN_MAX. */
+  private final double[] firstY;
+
+  /** the x of the maximum for MIN_MAX. */
+  private final double[] secondX;
+
+  /** the maximum for MIN_MAX. */
+  private final double[] secondY;
+
+  public ChartDataReducer(double xFrom, double xTo, int bucketCount, DownsamplingMode mode)
+  {
+    if (!(xTo > xFrom))
+    {
+      throw new IllegalArgumentException("xTo must be larger than xFrom");
+    }
+    if (bucketCount < 1)
+    {
+      throw new IllegalArgumentException("bucketCount must be at least 1");
+    }
+    if (mode != DownsamplingMode.MEAN && mode != DownsamplingMode.MIN_MAX)
+    {
+      throw new IllegalArgumentException("mode " + mode + " is not supported for streamed data");
+    }
+    this.xFrom = xFrom;
+    this.xTo = xTo;
+    this.mode = mode;
+    this.counts = new int[bucketCount];
+    this.firstX = new double[bucketCount];
+    this.firstY = new double[bucketCount];
+    if (mode == DownsamplingMode.MIN_MAX)
+    {
+      this.secondX = new double[bucketCount];
+      this.secondY = new double[bucketCount];
+    }
+    else
+    {
+      this.secondX = null;
+      this.secondY = null;
+    }
+  }
+
+  public void accept(double x, double y)
+  {
+    if (x < xFrom || x >= xTo || Double.isNaN(y))
+    {
+      return;
+    }
+    int bucket = Math.min((int) ((x - xFrom) / (xTo - xFrom) * counts.length), counts.length - 1);
+    if (mode == DownsamplingMode.MEAN)
+    {
+      firstX[bucket] += x;
+      firstY[bucket] += y;
+    }
+    else if (counts[bucket] == 0)
+    {
+      firstX[bucket] = x;
+      firstY[bucket] = y;
+      secondX[bucket] = x;
+      secondY[bucket] = y;
+    }
+    else if (y < firstY[bucket])
+    {
+      firstX[bucket] = x;
+      firstY[bucket] = y;
+    }
+    else if (y > secondY[bucket])
+    {
+      secondX[bucket] = x;
+      secondY[bucket] = y;
+    }
+    counts[bucket]++;
+  }
+
+  /**
+   * Returns the reduced points of all buckets which received data.
+   *
+   * @return the x values at index 0 and the y values at index 1, ordered by x.
+   */
+  public double[][] getResult()
+  {
+    int pointsPerBucket = mode == DownsamplingMode.MIN_MAX ? 2 : 1;
+    double[][] result = new double[2][counts.length * pointsPerBucket];
+    int size = 0;
+    for (int bucket = 0; bucket < counts.length; bucket++)
+    {
+      if (counts[bucket] == 0)
+      {
+        continue;
+      }
+      if (mode == DownsamplingMode.MEAN)
+      {
+        result[0][size] = firstX[bucket] / counts[bucket];
+        result[1][size] = firstY[bucket] / counts[bucket];
+        size++;
+        continue;
+      }
+      boolean minimumFirst = firstX[bucket] <= secondX[bucket];
+      result[0][size] = minimumFirst ? firstX[bucket] : secondX[bucket];
+      result[1][size] = minimumFirst ? firstY[bucket] : secondY[bucket];
+      size++;
+      if (firstX[bucket] != secondX[bucket] || firstY[bucket] != secondY[bucket])
+      {
+        result[0][size] = minimumFirst ? secondX[bucket] : firstX[bucket];
+        result[1][size] = minimumFirst ? secondY[bucket] : firstY[bucket];
+        size++;
+      }
+    }
+    return new double[][] {Arrays.copyOf(result[0], size), Arrays.copyOf(result[1], size)};
+  }
+}
@@ -0,0 +1,24 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+/**
+ * The image formats in which charts can be rendered.
+ */
+public enum ChartFormat
+{
+  PNG("image/png"),
+
+  /** Vector graphics, scales without loss and is usually cheaper to create than a PNG. */
+  SVG("image/svg+xml");
+
+  private final String contentType;
+
+  ChartFormat(String contentType)
+  {
+    this.contentType = contentType;
+  }
+
+  public String getContentType()
+  {
+    return contentType;
+  }
+}
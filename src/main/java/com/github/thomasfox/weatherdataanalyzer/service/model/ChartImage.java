@@ -0,0 +1,27 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The bytes of a rendered chart image.
+ * The buffer may be longer than the image, so that the image is kept in the buffer it was rendered into
+ * instead of being copied.
+ */
+@Getter
+@AllArgsConstructor
+public class ChartImage
+{
+  private final byte[] buffer;
+
+  /** the number of bytes of the image at the start of the buffer. */
+  private final int length;
+
+  public void writeTo(OutputStream outputStream) throws IOException
+  {
+    outputStream.write(buffer, 0, length);
+  }
+}
@@ -0,0 +1,28 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The data displayed in a chart, so that clients can render it themselves.
+ */
+@Getter
+@AllArgsConstructor
+public class ChartSeries
+{
+  private final String title;
+
+  private final String xLabel;
+
+  private final String yLabel;
+
+  /**
+   * The value to add to all x values. Times are stored relative to the earliest time,
+   * so that they keep their precision as float32.
+   */
+  private final double xOffset;
+
+  private final List<DataSeries> series;
+}
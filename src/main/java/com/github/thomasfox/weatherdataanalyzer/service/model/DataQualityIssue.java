@@ -0,0 +1,20 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A time range containing implausible wind data.
+ */
+@Getter
+@AllArgsConstructor
+public class DataQualityIssue
+{
+  private final DataQualityIssueType type;
+
+  /** start of the affected time range in milliseconds. */
+  private final long start;
+
+  /** end of the affected time range in milliseconds. */
+  private final long end;
+}
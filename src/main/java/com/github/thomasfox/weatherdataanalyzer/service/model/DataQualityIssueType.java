@@ -0,0 +1,19 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+/**
+ * The kinds of implausible wind data detected by the data quality scan.
+ */
+public enum DataQualityIssueType
+{
+  /** a check window without any data point. */
+  MISSING_DATA,
+
+  /** a check window where all data points have the same speed, which is not calm. */
+  STUCK_SENSOR,
+
+  /** consecutive data points with identical speed and direction over a long time, the speed not being calm. */
+  CONSTANT_RUN,
+
+  /** a speed change between two consecutive data points which is larger than physically plausible. */
+  IMPOSSIBLE_JUMP
+}
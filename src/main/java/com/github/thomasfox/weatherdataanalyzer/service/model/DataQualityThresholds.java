@@ -0,0 +1,24 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The limits for the data quality scan.
+ */
+@Getter
+@AllArgsConstructor
+public class DataQualityThresholds
+{
+  /** length of the windows checked for missing data and stuck sensors, in milliseconds. */
+  private final long windowMillis;
+
+  /** the minimum constant speed in knots in a window to report a stuck sensor. */
+  private final double stuckSensorMinSpeed;
+
+  /** the minimum duration of a run of identical values to report it, in milliseconds. */
+  private final long constantRunMillis;
+
+  /** the maximum plausible speed change between consecutive data points in knots. */
+  private final double maxSpeedJump;
+}
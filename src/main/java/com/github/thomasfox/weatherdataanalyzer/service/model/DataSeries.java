@@ -0,0 +1,26 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The values of one series of a chart as columns of equal length.
+ */
+@Getter
+@AllArgsConstructor
+public class DataSeries
+{
+  private final String name;
+
+  private final double[] x;
+
+  private final double[] y;
+
+  /** the z values of a heatmap, or null if the series has no z values. */
+  private final double[] z;
+
+  public int size()
+  {
+    return x.length;
+  }
+}
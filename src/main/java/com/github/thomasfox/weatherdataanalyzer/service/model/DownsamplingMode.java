@@ -0,0 +1,20 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+/**
+ * The ways to reduce chart data to a fixed maximum number of points.
+ */
+public enum DownsamplingMode
+{
+  /** one point per bucket at the mean x and y value of the bucket. */
+  MEAN,
+
+  /** up to two points per bucket, the points with the minimal and the maximal y value, in x order. */
+  MIN_MAX,
+
+  /**
+   * largest triangle three buckets: one point per bucket, chosen to span the largest triangle
+   * with the point chosen in the previous bucket and the mean of the next bucket.
+   * The first and the last point are always kept.
+   */
+  LTTB
+}
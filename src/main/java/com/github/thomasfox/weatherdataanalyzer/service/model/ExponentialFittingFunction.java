@@ -0,0 +1,35 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import org.apache.commons.math3.analysis.ParametricUnivariateFunction;
+
+/**
+ * The model for autocorrelation curves: a linear long-term part plus an exponentially decaying short-term part,
+ * <code>p0 + p1 * x + p3 * exp(p2 * x)</code>.
+ */
+public class ExponentialFittingFunction implements ParametricUnivariateFunction
+{
+  @Override
+  public double[] gradient(double x, double... parameters)
+  {
+    return new double[] { 1, x , parameters[3] * x * Math.exp(x * parameters[2]), Math.exp(x * parameters[2])};
+  }
+
+  @Override
+  public double value(double x, double... parameters)
+  {
+    return parameters[0] + parameters[1] * x + parameters[3] * Math.exp(x * parameters[2]);
+  }
+
+  /**
+   * Calculates the time where the tangent of the short-term part at 0 meets the long-term line.
+   */
+  public double calculateCharacteristicTime(double... parameters)
+  {
+    double longtermOffset = parameters[0];
+    double longtermSlope = parameters[1];
+    double shorttermSlope = parameters[1] + parameters[2] * parameters[3];
+    double shorttermOffset = parameters[0] + parameters[3];
+    double characteristicTime = (shorttermOffset - longtermOffset) / (longtermSlope - shorttermSlope);
+    return characteristicTime;
+  }
+}
@@ -0,0 +1,56 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+/**
+ * Window functions which are applied to a segment of a time series before its transform.
+ * The windows are periodic, as usual for spectral estimation.
+ */
+public enum FftWindow
+{
+  RECTANGULAR
+  {
+    @Override
+    public double getCoefficient(int index, int length)
+    {
+      return 1d;
+    }
+  },
+
+  HANN
+  {
+    @Override
+    public double getCoefficient(int index, int length)
+    {
+      return 0.5d - 0.5d * Math.cos(2 * Math.PI * index / length);
+    }
+  },
+
+  HAMMING
+  {
+    @Override
+    public double getCoefficient(int index, int length)
+    {
+      return 0.54d - 0.46d * Math.cos(2 * Math.PI * index / length);
+    }
+  },
+
+  BLACKMAN
+  {
+    @Override
+    public double getCoefficient(int index, int length)
+    {
+      return 0.42d - 0.5d * Math.cos(2 * Math.PI * index / length) + 0.08d * Math.cos(4 * Math.PI * index / length);
+    }
+  };
+
+  public abstract double getCoefficient(int index, int length);
+
+  public double[] getCoefficients(int length)
+  {
+    double[] result = new double[length];
+    for (int i = 0; i < length; i++)
+    {
+      result[i] = getCoefficient(i, length);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,19 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The results of a batch of fits.
+ */
+@Getter
+@AllArgsConstructor
+public class FitBatchResult
+{
+  /** the results in the order of the curves, null for skipped curves. */
+  private final List<FitResult> results;
+
+  private final FitStatistics statistics;
+}
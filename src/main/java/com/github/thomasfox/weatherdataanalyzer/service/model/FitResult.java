@@ -0,0 +1,29 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The result of fitting a model to a curve.
+ */
+@Getter
+@AllArgsConstructor
+public class FitResult
+{
+  /** the fitted parameters, or the best parameters found if the fit did not converge. */
+  private final double[] parameters;
+
+  /** whether the optimizer converged within the evaluation and time budget. */
+  private final boolean converged;
+
+  /** whether the fit was started from the result of an earlier fit. */
+  private final boolean warmStarted;
+
+  /** the number of model evaluations, including those of a failed warm start. */
+  private final int evaluations;
+
+  /** the root mean square of the residuals at the returned parameters. */
+  private final double rms;
+
+  private final long elapsedMillis;
+}
@@ -0,0 +1,61 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Convergence statistics of a batch of fits.
+ */
+@Getter
+@AllArgsConstructor
+public class FitStatistics
+{
+  private final int fits;
+
+  private final int converged;
+
+  private final int warmStarted;
+
+  private final long evaluations;
+
+  private final long elapsedMillis;
+
+  public static FitStatistics of(FitResult result)
+  {
+    return of(List.of(result), result.getElapsedMillis());
+  }
+
+  /**
+   * Collects the statistics of fit results.
+   *
+   * @param results the results, null entries are ignored.
+   * @param elapsedMillis the wall clock time used for the fits.
+   */
+  public static FitStatistics of(List<FitResult> results, long elapsedMillis)
+  {
+    int fits = 0;
+    int converged = 0;
+    int warmStarted = 0;
+    long evaluations = 0;
+    for (FitResult result : results)
+    {
+      if (result == null)
+      {
+        continue;
+      }
+      fits++;
+      if (result.isConverged())
+      {
+        converged++;
+      }
+      if (result.isWarmStarted())
+      {
+        warmStarted++;
+      }
+      evaluations += result.getEvaluations();
+    }
+    return new FitStatistics(fits, converged, warmStarted, evaluations, elapsedMillis);
+  }
+}
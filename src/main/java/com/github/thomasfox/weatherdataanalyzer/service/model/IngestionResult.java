@@ -0,0 +1,27 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.Date;
+
+import lombok.Data;
+
+/**
+ * Statistics of a bulk ingestion.
+ */
+@Data
+public class IngestionResult
+{
+  /** number of data points read from the input. */
+  private long received;
+
+  /** number of data points written to the database. */
+  private long inserted;
+
+  /** number of data points which were skipped because a data point with the same time already existed. */
+  private long duplicates;
+
+  /** time of the earliest inserted data point, or null if nothing was inserted. */
+  private Date minTime;
+
+  /** time of the latest inserted data point, or null if nothing was inserted. */
+  private Date maxTime;
+}
@@ -0,0 +1,37 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A one-sided power spectral density estimated from segments of time series sampled at a fixed step.
+ */
+@Getter
+@AllArgsConstructor
+public class PowerSpectralDensity
+{
+  /** the number of samples in a segment. */
+  private final int segmentLength;
+
+  /** the time between two samples in milliseconds. */
+  private final long stepMillis;
+
+  /** the number of segments which were averaged, 0 if no data was long enough for a segment. */
+  private final long segmentCount;
+
+  /**
+   * The power spectral density in squared units of the series per Hz,
+   * for the frequencies from 0 to the Nyquist frequency in steps of one over the segment duration.
+   */
+  private final double[] density;
+
+  public int size()
+  {
+    return density.length;
+  }
+
+  public double getFrequency(int index)
+  {
+    return index * 1000d / (segmentLength * stepMillis);
+  }
+}
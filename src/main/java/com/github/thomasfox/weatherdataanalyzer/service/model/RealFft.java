@@ -0,0 +1,198 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+/**
+ * A fast Fourier transform of real input with a fixed size.
+ * The input is packed into a complex series of half the size, which is transformed by an iterative radix-2 FFT
+ * and then separated into the transform of the real input.
+ * The twiddle factors and the bit reversal permutation are calculated once,
+ * so an instance can be reused for many transforms and concurrently by several threads
+ * if each thread uses its own buffer.
+ */
+public class RealFft
+{
+  private final int size;
+
+  private final int halfSize;
+
+  private final int[] bitReversal;
+
+  /** cosines of the twiddle factors of the complex transform of half size. */
+  private final double[] cos;
+
+  /** negative sines of the twiddle factors of the complex transform of half size. */
+  private final double[] sin;
+
+  /** cosines of the twiddle factors which separate the transform of the real input. */
+  private final double[] separationCos;
+
+  /** negative sines of the twiddle factors which separate the transform of the real input. */
+  private final double[] separationSin;
+
+  /**
+   * Creates a transform.
+   *
+   * @param size the number of real input values, a power of two which is at least 2.
+   */
+  public RealFft(int size)
+  {
+    if (size < 2 || Integer.bitCount(size) != 1)
+    {
+      throw new IllegalArgumentException("size must be a power of two and at least 2 but is " + size);
+    }
+    this.size = size;
+    this.halfSize = size / 2;
+    this.bitReversal = new int[halfSize];
+    int bits = Integer.numberOfTrailingZeros(halfSize);
+    for (int i = 0; i < halfSize; i++)
+    {
+      bitReversal[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (Integer.SIZE - bits);
+    }
+    this.cos = new double[Math.max(1, halfSize / 2)];
+    this.sin = new double[cos.length];
+    for (int i = 0; i < cos.length; i++)
+    {
+      cos[i] = Math.cos(2 * Math.PI * i / halfSize);
+      sin[i] = -Math.sin(2 * Math.PI * i / halfSize);
+    }
+    this.separationCos = new double[halfSize + 1];
+    this.separationSin = new double[halfSize + 1];
+    for (int i = 0; i <= halfSize; i++)
+    {
+      separationCos[i] = Math.cos(2 * Math.PI * i / size);
+      separationSin[i] = -Math.sin(2 * Math.PI * i / size);
+    }
+  }
+
+  public int getSize()
+  {
+    return size;
+  }
+
+  /**
+   * Creates a buffer for {@link #powerSpectrum(double[], double[], double[])}.
+   */
+  public double[] createBuffer()
+  {
+    return new double[size];
+  }
+
+  /**
+   * Calculates the squared magnitudes of the transform of real input for the frequencies
+   * from 0 to half the size.
+   *
+   * @param input the input values, its length must be the size of this transform. Is not modified.
+   * @param buffer the working memory, created by {@link #createBuffer()}.
+   * @param power the array to write the result to, its length must be at least half the size plus 1.
+   */
+  public void powerSpectrum(double[] input, double[] buffer, double[] power)
+  {
+    if (power.length < halfSize + 1)
+    {
+      throw new IllegalArgumentException("array sizes do not match transform size " + size);
+    }
+    transformPacked(input, buffer);
+    for (int k = 0; k <= halfSize; k++)
+    {
+      double real = separateReal(buffer, k);
+      double imaginary = separateImaginary(buffer, k);
+      power[k] = real * real + imaginary * imaginary;
+    }
+  }
+
+  /**
+   * Calculates the transform of real input for the frequencies from 0 to half the size.
+   * The transform for the other frequencies are the complex conjugates of these values.
+   *
+   * @param input the input values, its length must be the size of this transform. Is not modified.
+   * @param buffer the working memory, created by {@link #createBuffer()}.
+   * @param real the array to write the real parts to, its length must be at least half the size plus 1.
+   * @param imaginary the array to write the imaginary parts to, its length must be at least half the size plus 1.
+   */
+  public void transform(double[] input, double[] buffer, double[] real, double[] imaginary)
+  {
+    if (real.length < halfSize + 1 || imaginary.length < halfSize + 1)
+    {
+      throw new IllegalArgumentException("array sizes do not match transform size " + size);
+    }
+    transformPacked(input, buffer);
+    for (int k = 0; k <= halfSize; k++)
+    {
+      real[k] = separateReal(buffer, k);
+      imaginary[k] = separateImaginary(buffer, k);
+    }
+  }
+
+  /**
+   * Transforms the input, packed into a complex series of half the size, into the buffer.
+   */
+  private void transformPacked(double[] input, double[] buffer)
+  {
+    if (input.length != size || buffer.length != size)
+    {
+      throw new IllegalArgumentException("array sizes do not match transform size " + size);
+    }
+    // the real parts are stored in the first half of the buffer, the imaginary parts in the second half
+    for (int i = 0; i < halfSize; i++)
+    {
+      int target = bitReversal[i];
+      buffer[target] = input[2 * i];
+      buffer[halfSize + target] = input[2 * i + 1];
+    }
+    transformBitReversed(buffer);
+  }
+
+  /**
+   * Returns the real part of the transform of the input at frequency k, separated from the transform Z
+   * of the packed input in the buffer: the transform of the even input values is (Z[k] + conj(Z[n/2 - k])) / 2,
+   * the transform of the odd input values is (Z[k] - conj(Z[n/2 - k])) / 2i.
+   */
+  private double separateReal(double[] buffer, int k)
+  {
+    int index = k % halfSize;
+    int conjugateIndex = (halfSize - k) % halfSize;
+    double evenReal = (buffer[index] + buffer[conjugateIndex]) / 2;
+    double oddReal = (buffer[halfSize + index] + buffer[halfSize + conjugateIndex]) / 2;
+    double oddImaginary = -(buffer[index] - buffer[conjugateIndex]) / 2;
+    return evenReal + separationCos[k] * oddReal - separationSin[k] * oddImaginary;
+  }
+
+  /**
+   * Returns the imaginary part of the transform of the input at frequency k.
+   *
+   * @see #separateReal(double[], int)
+   */
+  private double separateImaginary(double[] buffer, int k)
+  {
+    int index = k % halfSize;
+    int conjugateIndex = (halfSize - k) % halfSize;
+    double evenImaginary = (buffer[halfSize + index] - buffer[halfSize + conjugateIndex]) / 2;
+    double oddReal = (buffer[halfSize + index] + buffer[halfSize + conjugateIndex]) / 2;
+    double oddImaginary = -(buffer[index] - buffer[conjugateIndex]) / 2;
+    return evenImaginary + separationCos[k] * oddImaginary + separationSin[k] * oddReal;
+  }
+
+  private void transformBitReversed(double[] buffer)
+  {
+    for (int length = 2; length <= halfSize; length <<= 1)
+    {
+      int half = length / 2;
+      int twiddleStep = halfSize / length;
+      for (int blockStart = 0; blockStart < halfSize; blockStart += length)
+      {
+        for (int j = 0; j < half; j++)
+        {
+          double twiddleReal = cos[j * twiddleStep];
+          double twiddleImaginary = sin[j * twiddleStep];
+          int even = blockStart + j;
+          int odd = even + half;
+          double oddReal = buffer[odd] * twiddleReal - buffer[halfSize + odd] * twiddleImaginary;
+          double oddImaginary = buffer[odd] * twiddleImaginary + buffer[halfSize + odd] * twiddleReal;
+          buffer[odd] = buffer[even] - oddReal;
+          buffer[halfSize + odd] = buffer[halfSize + even] - oddImaginary;
+          buffer[even] += oddReal;
+          buffer[halfSize + even] += oddImaginary;
+        }
+      }
+    }
+  }
+}
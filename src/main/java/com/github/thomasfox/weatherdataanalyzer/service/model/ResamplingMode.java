@@ -0,0 +1,19 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+/**
+ * The ways to calculate the value of a time series at equidistant sample times.
+ */
+public enum ResamplingMode
+{
+  /** the value of the last data point at or before the sample time. */
+  HOLD,
+
+  /** the value linearly interpolated between the data points before and after the sample time. */
+  LINEAR,
+
+  /**
+   * the mean of the data points from the sample time to the next sample time (exclusive),
+   * or the held value if no data point exists in this time.
+   */
+  MEAN
+}
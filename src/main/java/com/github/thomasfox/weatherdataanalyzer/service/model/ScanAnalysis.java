@@ -0,0 +1,20 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.List;
+
+/**
+ * An analysis which is evaluated for the intervals of each cell of a scan.
+ * Implementations are called concurrently for different cells and must not modify shared state.
+ */
+@FunctionalInterface
+public interface ScanAnalysis
+{
+  /**
+   * Analyzes the intervals of one cell.
+   *
+   * @param intervals the data of the intervals in the cell, ordered by time, not empty.
+   *
+   * @return the result values of the analysis, each analysis returns the same number of values.
+   */
+  double[] analyze(List<TimeRangeWithData> intervals);
+}
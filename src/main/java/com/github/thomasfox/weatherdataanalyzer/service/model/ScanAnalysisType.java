@@ -0,0 +1,13 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+/**
+ * The analyses which can be evaluated for each cell of a scan.
+ */
+public enum ScanAnalysisType
+{
+  /** the mean of the quantity over all data points of the cell. */
+  MEAN,
+
+  /** the contribution of a frequency band to the variance of the quantity, averaged over the intervals of the cell. */
+  BAND_POWER
+}
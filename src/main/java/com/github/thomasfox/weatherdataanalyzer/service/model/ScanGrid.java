@@ -0,0 +1,121 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import lombok.Getter;
+
+/**
+ * A grid of speed bands and direction sectors which partitions time intervals
+ * by their average speed and direction.
+ * Cells are numbered by speed band first, i.e. the cells of one speed band are adjacent.
+ */
+@Getter
+public class ScanGrid
+{
+  private static final int MAX_CELLS = 10000;
+
+  /** the lower speed boundary of the first speed band in knots, inclusive. */
+  private final double speedFrom;
+
+  /** the upper speed boundary of the last speed band in knots, exclusive. */
+  private final double speedTo;
+
+  /** the width of the speed bands in knots. */
+  private final double speedStep;
+
+  private final int speedCellCount;
+
+  /** the width of the direction sectors in degrees, the first sector starts at 0 degrees. */
+  private final double directionStep;
+
+  private final int directionCellCount;
+
+  /**
+   * Creates a grid. Missing speed boundaries do not restrict the speed,
+   * a missing step means that the grid has a single cell in this dimension.
+   *
+   * @param speedFrom the lower speed boundary in knots, or null for 0.
+   * @param speedTo the upper speed boundary in knots, required if speedStep is given.
+   * @param speedStep the width of the speed bands in knots, or null for a single speed band.
+   * @param directionStep the width of the direction sectors in degrees, or null for a single sector.
+   */
+  public ScanGrid(Double speedFrom, Double speedTo, Double speedStep, Double directionStep)
+  {
+    if (speedStep != null && speedTo == null)
+    {
+      throw new IllegalArgumentException("speedTo is required for speed bands");
+    }
+    this.speedFrom = speedFrom == null ? 0d : speedFrom;
+    this.speedTo = speedTo == null ? 1000d : speedTo;
+    if (this.speedFrom >= this.speedTo)
+    {
+      throw new IllegalArgumentException("speedTo must be larger than speedFrom");
+    }
+    this.speedStep = speedStep == null ? this.speedTo - this.speedFrom : speedStep;
+    this.directionStep = directionStep == null ? 360d : directionStep;
+    if (this.speedStep <= 0d || this.directionStep <= 0d)
+    {
+      throw new IllegalArgumentException("speedStep and directionStep must be larger than 0");
+    }
+    this.speedCellCount = getCellCount(this.speedTo - this.speedFrom, this.speedStep);
+    this.directionCellCount = getCellCount(360d, this.directionStep);
+    if ((long) speedCellCount * directionCellCount > MAX_CELLS)
+    {
+      throw new IllegalArgumentException("too many grid cells: " + (long) speedCellCount * directionCellCount);
+    }
+  }
+
+  private static int getCellCount(double range, double step)
+  {
+    return (int) Math.max(1, Math.ceil(range / step - 1E-9));
+  }
+
+  public int getCellCount()
+  {
+    return speedCellCount * directionCellCount;
+  }
+
+  /**
+   * Returns the cell containing an average speed and direction.
+   *
+   * @param averageSpeed the average speed in knots.
+   * @param averageDirection the average direction in degrees.
+   *
+   * @return the index of the cell, or -1 if the averages are not within the grid or NaN.
+   */
+  public int getCell(double averageSpeed, double averageDirection)
+  {
+    if (!(averageSpeed >= speedFrom && averageSpeed < speedTo
+        && averageDirection >= 0d && averageDirection < 360d))
+    {
+      return -1;
+    }
+    int speedCell = Math.min(speedCellCount - 1, (int) ((averageSpeed - speedFrom) / speedStep));
+    int directionCell = Math.min(directionCellCount - 1, (int) (averageDirection / directionStep));
+    return speedCell * directionCellCount + directionCell;
+  }
+
+  public int getSpeedCell(int cell)
+  {
+    return cell / directionCellCount;
+  }
+
+  public int getDirectionCell(int cell)
+  {
+    return cell % directionCellCount;
+  }
+
+  /**
+   * Returns the lower speed boundary of a cell in knots.
+   */
+  public double getCellSpeedFrom(int cell)
+  {
+    return speedFrom + getSpeedCell(cell) * speedStep;
+  }
+
+  /**
+   * Returns the lower direction boundary of a cell in degrees.
+   */
+  public double getCellDirectionFrom(int cell)
+  {
+    return getDirectionCell(cell) * directionStep;
+  }
+}
@@ -0,0 +1,39 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The results of an analysis for each cell of a scan grid.
+ */
+@Getter
+@AllArgsConstructor
+public class ScanResult
+{
+  private final ScanGrid grid;
+
+  /** the result values for each cell, null for cells without intervals. */
+  private final double[][] values;
+
+  /** the number of intervals for each cell. */
+  private final int[] intervalCounts;
+
+  public boolean hasValues(int cell)
+  {
+    return values[cell] != null;
+  }
+
+  /**
+   * Returns a result value of a cell.
+   *
+   * @return the value, or NaN if the cell contains no intervals.
+   */
+  public double getValue(int cell, int valueIndex)
+  {
+    if (values[cell] == null)
+    {
+      return Double.NaN;
+    }
+    return values[cell][valueIndex];
+  }
+}
@@ -0,0 +1,33 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+/**
+ * The formats in which the data series of a chart can be written.
+ */
+public enum SeriesFormat
+{
+  /**
+   * Columnar JSON: an object with the fields title, xLabel, yLabel, xOffset and series,
+   * where series is an array of objects with the fields name, x, y and optionally z,
+   * each column being an array of numbers. Values which are not finite are written as null.
+   */
+  JSON("application/json"),
+
+  /**
+   * Little-endian binary: the x offset as float64, the number of series as int32, then for each series
+   * the length of its UTF-8 encoded name as int32, the name, the number of points as int32,
+   * the number of columns (2 or 3) as int32, and each column as consecutive float32 values.
+   */
+  BINARY("application/octet-stream");
+
+  private final String contentType;
+
+  SeriesFormat(String contentType)
+  {
+    this.contentType = contentType;
+  }
+
+  public String getContentType()
+  {
+    return contentType;
+  }
+}
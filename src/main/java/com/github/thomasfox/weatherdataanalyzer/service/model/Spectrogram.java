@@ -0,0 +1,56 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Power spectral densities of consecutive time columns of a time series sampled once per second.
+ * The density of each column is averaged over the segments whose center lies in the column.
+ */
+@Getter
+@AllArgsConstructor
+public class Spectrogram
+{
+  /** the start of the first column in milliseconds. */
+  private final long start;
+
+  /** the end of the last column in milliseconds. */
+  private final long end;
+
+  /** the length of the segments in seconds. */
+  private final int segmentLength;
+
+  /**
+   * The power spectral density for each column and frequency in squared units of the series per Hz,
+   * for the frequencies from 0 in steps of 1 / segmentLength.
+   */
+  private final double[][] density;
+
+  /** the number of segments averaged in each column. */
+  private final int[] segmentCounts;
+
+  public int getColumnCount()
+  {
+    return density.length;
+  }
+
+  public int getFrequencyCount()
+  {
+    return density.length == 0 ? 0 : density[0].length;
+  }
+
+  public long getColumnStart(int column)
+  {
+    return start + (end - start) * column / density.length;
+  }
+
+  public long getColumnEnd(int column)
+  {
+    return getColumnStart(column + 1);
+  }
+
+  public double getFrequency(int index)
+  {
+    return ((double) index) / segmentLength;
+  }
+}
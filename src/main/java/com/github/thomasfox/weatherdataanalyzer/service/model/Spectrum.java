@@ -0,0 +1,173 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import lombok.Getter;
+
+/**
+ * The power spectrum of a time series sampled once per second.
+ * The transform is calculated from the samples minus their mean, zero-padded to twice the transform size,
+ * so that it yields both the amplitudes of the (mean-padded) series at the transform size
+ * and the non-circular autocorrelation.
+ * The samples may be complex, e.g. directions as unit vectors.
+ * Real samples are transformed by a {@link RealFft}, and as their power spectrum is symmetric,
+ * only its first half is kept.
+ */
+@Getter
+public class Spectrum
+{
+  /** the number of samples. */
+  private final int sampleCount;
+
+  /** the transform size for amplitudes, a power of two which is at least the number of samples. */
+  private final int size;
+
+  private final double meanReal;
+
+  private final double meanImaginary;
+
+  /** whether the samples are complex. */
+  private final boolean complex;
+
+  /**
+   * squared magnitudes of the transform of the padded samples, has twice the transform size for complex samples
+   * and the transform size plus 1 for real samples.
+   */
+  private final double[] power;
+
+  /**
+   * Calculates the spectrum of a series.
+   *
+   * @param realSamples the real parts of the samples, not null.
+   * @param imaginarySamples the imaginary parts of the samples, or null for real samples.
+   * @param size the transform size, a power of two which is at least the number of samples.
+   */
+  public Spectrum(double[] realSamples, double[] imaginarySamples, int size)
+  {
+    if (Integer.bitCount(size) != 1 || size < realSamples.length)
+    {
+      throw new IllegalArgumentException("size " + size + " must be a power of two and at least "
+          + realSamples.length);
+    }
+    this.sampleCount = realSamples.length;
+    this.size = size;
+    this.meanReal = mean(realSamples);
+    this.meanImaginary = imaginarySamples == null ? 0d : mean(imaginarySamples);
+    this.complex = imaginarySamples != null;
+    double[] real = new double[2 * size];
+    for (int i = 0; i < sampleCount; i++)
+    {
+      real[i] = realSamples[i] - meanReal;
+    }
+    if (!complex)
+    {
+      RealFft fft = new RealFft(2 * size);
+      this.power = new double[size + 1];
+      fft.powerSpectrum(real, fft.createBuffer(), power);
+      return;
+    }
+    double[] imaginary = new double[2 * size];
+    for (int i = 0; i < sampleCount; i++)
+    {
+      imaginary[i] = imaginarySamples[i] - meanImaginary;
+    }
+    FastFourierTransformer.transformInPlace(
+        new double[][] {real, imaginary},
+        DftNormalization.STANDARD,
+        TransformType.FORWARD);
+    for (int i = 0; i < real.length; i++)
+    {
+      real[i] = real[i] * real[i] + imaginary[i] * imaginary[i];
+    }
+    this.power = real;
+  }
+
+  private static double mean(double[] values)
+  {
+    if (values.length == 0)
+    {
+      return 0d;
+    }
+    double sum = 0d;
+    for (double value : values)
+    {
+      sum += value;
+    }
+    return sum / values.length;
+  }
+
+  /**
+   * Returns the squared magnitude of the transform of the padded samples at a frequency.
+   *
+   * @param frequency the index of the frequency, from 0 to twice the transform size minus 1.
+   */
+  private double getPower(int frequency)
+  {
+    return frequency < power.length ? power[frequency] : power[2 * size - frequency];
+  }
+
+  /**
+   * Returns the amplitudes of the transform of the series, padded with its mean to the transform size.
+   * The even frequencies of the doubled transform are the frequencies of the transform at the transform size.
+   *
+   * @return the amplitudes, the array has the transform size.
+   */
+  public double[] getAmplitudes()
+  {
+    double[] result = new double[size];
+    result[0] = Math.hypot(meanReal, meanImaginary) * size;
+    for (int i = 1; i < size; i++)
+    {
+      result[i] = Math.sqrt(getPower(2 * i));
+    }
+    return result;
+  }
+
+  /**
+   * Calculates the autocorrelation of the series as the inverse transform of the power spectrum
+   * (Wiener-Khinchin theorem), normalized to 1 at lag 0.
+   * For complex samples, this is the real part of the correlation, i.e. the mean cosine of the angle
+   * between the deviations from the mean.
+   *
+   * @param maxLag the largest lag in seconds to return.
+   *
+   * @return the autocorrelation for lags from 0 to the smaller of <code>maxLag</code>
+   *         and the number of samples minus 1. All values are 0 if the series is constant.
+   */
+  public double[] getAutocorrelation(int maxLag)
+  {
+    double[] correlation = new double[2 * size];
+    for (int i = 0; i < correlation.length; i++)
+    {
+      correlation[i] = getPower(i);
+    }
+    if (complex)
+    {
+      FastFourierTransformer.transformInPlace(
+          new double[][] {correlation, new double[correlation.length]},
+          DftNormalization.STANDARD,
+          TransformType.INVERSE);
+    }
+    else
+    {
+      // the power spectrum of real samples is real and symmetric, so its forward transform is real
+      // and equals its inverse transform up to the normalization
+      RealFft fft = new RealFft(correlation.length);
+      double[] real = new double[size + 1];
+      fft.transform(correlation, fft.createBuffer(), real, new double[size + 1]);
+      correlation = real;
+    }
+    double[] result = new double[Math.max(0, Math.min(maxLag + 1, sampleCount))];
+    if (result.length == 0 || correlation[0] <= 0d)
+    {
+      return result;
+    }
+    for (int lag = 0; lag < result.length; lag++)
+    {
+      result[lag] = correlation[lag] / correlation[0];
+    }
+    return result;
+  }
+}
@@ -0,0 +1,130 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.SpeedDirectionCount;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindHistogramCell;
+
+/**
+ * Number of data points for each combination of speed (in database units)
+ * and direction bin (see {@link WindHistogramCell#DIRECTION_BIN_DEGREES}).
+ */
+public class SpeedDirectionHistogram
+{
+  /** counts for each direction bin, by speed in 1/10 knots. */
+  private final TreeMap<Integer, long[]> countsBySpeed = new TreeMap<>();
+
+  public void add(int speed, int directionBin, long count)
+  {
+    countsBySpeed.computeIfAbsent(speed, s -> new long[WindHistogramCell.DIRECTION_BIN_COUNT])[directionBin] += count;
+  }
+
+  /**
+   * Adds a single data point.
+   *
+   * @param speed the speed in 1/10 knots.
+   * @param direction the direction in degrees.
+   */
+  public void addSample(int speed, int direction)
+  {
+    add(speed, WindHistogramCell.getDirectionBin(direction), 1);
+  }
+
+  public void addAll(List<SpeedDirectionCount> counts)
+  {
+    for (SpeedDirectionCount count : counts)
+    {
+      add(count.getSpeed(), count.getDirectionBin(), count.getCount());
+    }
+  }
+
+  /**
+   * Returns the number of data points for each speed in 1/10 knots, ordered by speed.
+   *
+   * @return the histogram, containing only speeds which occur.
+   */
+  public List<IntValueCount> getSpeedHistogram()
+  {
+    List<IntValueCount> result = new ArrayList<>();
+    for (Map.Entry<Integer, long[]> entry : countsBySpeed.entrySet())
+    {
+      long count = 0;
+      for (long directionBinCount : entry.getValue())
+      {
+        count += directionBinCount;
+      }
+      result.add(new IntValueCount(entry.getKey(), count));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of data points for each direction bin, ordered by direction.
+   * The value of each bin is the lower boundary of the bin in degrees.
+   *
+   * @return the histogram, containing only direction bins which occur.
+   */
+  public List<IntValueCount> getDirectionHistogram()
+  {
+    long[] counts = new long[WindHistogramCell.DIRECTION_BIN_COUNT];
+    for (long[] directionBinCounts : countsBySpeed.values())
+    {
+      for (int i = 0; i < counts.length; i++)
+      {
+        counts[i] += directionBinCounts[i];
+      }
+    }
+    List<IntValueCount> result = new ArrayList<>();
+    for (int i = 0; i < counts.length; i++)
+    {
+      if (counts[i] > 0)
+      {
+        result.add(new IntValueCount(i * WindHistogramCell.DIRECTION_BIN_DEGREES, counts[i]));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Counts the data points for a wind rose.
+   *
+   * @param sectorDegrees the width of each direction sector in degrees,
+   *        must be a multiple of the direction bin width and divide 360.
+   * @param speedBandUpperLimits the upper speed limits of the speed bands in knots, exclusive, ascending.
+   *        Speeds at or above the last limit are counted in an additional last band.
+   *
+   * @return the counts, indexed by speed band and sector. The first sector starts at 0 degrees.
+   */
+  public long[][] getWindRose(int sectorDegrees, double[] speedBandUpperLimits)
+  {
+    if (sectorDegrees <= 0
+        || sectorDegrees % WindHistogramCell.DIRECTION_BIN_DEGREES != 0
+        || 360 % sectorDegrees != 0)
+    {
+      throw new IllegalArgumentException("sectorDegrees must be a multiple of "
+          + WindHistogramCell.DIRECTION_BIN_DEGREES + " which divides 360, but is " + sectorDegrees);
+    }
+    int binsPerSector = sectorDegrees / WindHistogramCell.DIRECTION_BIN_DEGREES;
+    long[][] result = new long[speedBandUpperLimits.length + 1][360 / sectorDegrees];
+    for (Map.Entry<Integer, long[]> entry : countsBySpeed.entrySet())
+    {
+      double speedInKnots = entry.getKey() * Wind.WIND_SPEED_IN_KNOTS_DATABASE_FACTOR;
+      int band = 0;
+      while (band < speedBandUpperLimits.length && speedInKnots >= speedBandUpperLimits[band])
+      {
+        band++;
+      }
+      long[] directionBinCounts = entry.getValue();
+      for (int i = 0; i < directionBinCounts.length; i++)
+      {
+        result[band][i / binsPerSector] += directionBinCounts[i];
+      }
+    }
+    return result;
+  }
+}
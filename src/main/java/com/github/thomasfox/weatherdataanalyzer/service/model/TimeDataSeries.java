@@ -0,0 +1,95 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.Arrays;
+
+/**
+ * A time series of double values, stored in growable primitive arrays.
+ * Data points should be added in time order.
+ */
+public class TimeDataSeries
+{
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+  /** Timestamps in milliseconds */
+  private long[] timestamps;
+
+  private double[] values;
+
+  private int size = 0;
+
+  public TimeDataSeries()
+  {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  public TimeDataSeries(int initialCapacity)
+  {
+    timestamps = new long[Math.max(initialCapacity, 1)];
+    values = new double[Math.max(initialCapacity, 1)];
+  }
+
+  public void add(long timestamp, double value)
+  {
+    if (size == timestamps.length)
+    {
+      int newCapacity = timestamps.length + (timestamps.length >> 1) + 1;
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+    timestamps[size] = timestamp;
+    values[size] = value;
+    size++;
+  }
+
+  public void clear()
+  {
+    size = 0;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  public long getTimestamp(int index)
+  {
+    return timestamps[index];
+  }
+
+  public double getValue(int index)
+  {
+    return values[index];
+  }
+
+  /**
+   * Finds the last data point at or before a time by binary search.
+   *
+   * @param timestamp the time in milliseconds.
+   *
+   * @return the index of the last data point with a timestamp smaller than or equal to the given time,
+   *         or -1 if no such data point exists.
+   */
+  public int indexOfLastAtOrBefore(long timestamp)
+  {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high)
+    {
+      int middle = (low + high) >>> 1;
+      if (timestamps[middle] <= timestamp)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle - 1;
+      }
+    }
+    return high;
+  }
+}
@@ -1,7 +1,6 @@
 package com.github.thomasfox.weatherdataanalyzer.service.model;
 
 import java.util.Date;
-import java.util.List;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -12,7 +11,7 @@ import lombok.NoArgsConstructor;
 @Data
 public class TimeRangeWithData
 {
-  public TimeRangeWithData(Date start, Date end, List<TimeData> data)
+  public TimeRangeWithData(Date start, Date end, TimeDataSeries data)
   {
     this.range = new TimeRange(start, end);
     this.data = data;
@@ -20,5 +19,5 @@ public class TimeRangeWithData
 
   private TimeRange range;
 
-  private List<TimeData> data;
+  private TimeDataSeries data;
 }
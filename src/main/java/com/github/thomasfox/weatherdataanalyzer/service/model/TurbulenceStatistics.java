@@ -0,0 +1,157 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+
+import lombok.Getter;
+
+/**
+ * Distribution of the gust factor and the turbulence intensity over buckets of equal length.
+ * The gust factor of a bucket is its maximum gust divided by its mean speed,
+ * the turbulence intensity is the standard deviation of the speed divided by the mean speed.
+ * The memory used is fixed, and statistics of disjoint sets of buckets can be combined
+ * with {@link #merge(TurbulenceStatistics)}.
+ */
+@Getter
+public class TurbulenceStatistics
+{
+  /** width of a gust factor histogram bin. */
+  public static final double GUST_FACTOR_BIN_WIDTH = 0.05d;
+
+  /** the smallest gust factor in the histogram, smaller gust factors are counted in the first bin. */
+  public static final double GUST_FACTOR_HISTOGRAM_START = 1d;
+
+  /** width of a turbulence intensity histogram bin. */
+  public static final double TURBULENCE_INTENSITY_BIN_WIDTH = 0.01d;
+
+  /** width of a speed bin for the turbulence intensity by speed, in knots. */
+  public static final double SPEED_BIN_WIDTH = 1d;
+
+  private static final int GUST_FACTOR_BINS = 60;
+
+  private static final int TURBULENCE_INTENSITY_BINS = 100;
+
+  private static final int SPEED_BINS = 60;
+
+  /** length of each bucket in milliseconds. */
+  private final long bucketMillis;
+
+  /** number of buckets with a turbulence intensity. */
+  private long bucketCount;
+
+  /** number of buckets with a gust factor, buckets without gust data are not counted. */
+  private long gustBucketCount;
+
+  private double turbulenceIntensitySum;
+
+  private double gustFactorSum;
+
+  /** counts per gust factor bin, the last bin also counts all larger gust factors. */
+  private final long[] gustFactorHistogram = new long[GUST_FACTOR_BINS];
+
+  /** counts per turbulence intensity bin, the last bin also counts all larger intensities. */
+  private final long[] turbulenceIntensityHistogram = new long[TURBULENCE_INTENSITY_BINS];
+
+  /** number of buckets per speed bin, the last bin also counts all larger speeds. */
+  private final long[] speedBinCounts = new long[SPEED_BINS];
+
+  private final double[] speedBinTurbulenceIntensitySums = new double[SPEED_BINS];
+
+  public TurbulenceStatistics(long bucketMillis)
+  {
+    this.bucketMillis = bucketMillis;
+  }
+
+  /**
+   * Adds the statistics of a bucket.
+   *
+   * @param bucket the statistics of the data points in the bucket, must have a mean speed larger than 0.
+   */
+  public void add(WindStatistics bucket)
+  {
+    double meanSpeed = bucket.getMeanSpeed();
+    double turbulenceIntensity = bucket.getSpeedStandardDeviation() / meanSpeed;
+    bucketCount++;
+    turbulenceIntensitySum += turbulenceIntensity;
+    turbulenceIntensityHistogram[
+        getBin(turbulenceIntensity, 0d, TURBULENCE_INTENSITY_BIN_WIDTH, TURBULENCE_INTENSITY_BINS)]++;
+    int speedBin = getBin(meanSpeed, 0d, SPEED_BIN_WIDTH, SPEED_BINS);
+    speedBinCounts[speedBin]++;
+    speedBinTurbulenceIntensitySums[speedBin] += turbulenceIntensity;
+
+    if (bucket.getMaxGusts() > 0)
+    {
+      double gustFactor = bucket.getMaxGusts() * Wind.WIND_SPEED_IN_KNOTS_DATABASE_FACTOR / meanSpeed;
+      gustBucketCount++;
+      gustFactorSum += gustFactor;
+      gustFactorHistogram[getBin(gustFactor, GUST_FACTOR_HISTOGRAM_START, GUST_FACTOR_BIN_WIDTH, GUST_FACTOR_BINS)]++;
+    }
+  }
+
+  public void merge(TurbulenceStatistics other)
+  {
+    if (other.bucketMillis != bucketMillis)
+    {
+      throw new IllegalArgumentException("bucket lengths differ");
+    }
+    bucketCount += other.bucketCount;
+    gustBucketCount += other.gustBucketCount;
+    turbulenceIntensitySum += other.turbulenceIntensitySum;
+    gustFactorSum += other.gustFactorSum;
+    add(gustFactorHistogram, other.gustFactorHistogram);
+    add(turbulenceIntensityHistogram, other.turbulenceIntensityHistogram);
+    add(speedBinCounts, other.speedBinCounts);
+    for (int i = 0; i < SPEED_BINS; i++)
+    {
+      speedBinTurbulenceIntensitySums[i] += other.speedBinTurbulenceIntensitySums[i];
+    }
+  }
+
+  /**
+   * Returns the mean turbulence intensity of all buckets.
+   *
+   * @return the mean turbulence intensity, or NaN if no bucket was added.
+   */
+  public double getMeanTurbulenceIntensity()
+  {
+    return bucketCount == 0 ? Double.NaN : turbulenceIntensitySum / bucketCount;
+  }
+
+  /**
+   * Returns the mean gust factor of all buckets with gust data.
+   *
+   * @return the mean gust factor, or NaN if no bucket with gust data was added.
+   */
+  public double getMeanGustFactor()
+  {
+    return gustBucketCount == 0 ? Double.NaN : gustFactorSum / gustBucketCount;
+  }
+
+  /**
+   * Returns the mean turbulence intensity of the buckets whose mean speed is in a speed bin.
+   *
+   * @param speedBin the index of the speed bin.
+   *
+   * @return the mean turbulence intensity, or NaN if no bucket is in the speed bin.
+   */
+  public double getMeanTurbulenceIntensity(int speedBin)
+  {
+    if (speedBinCounts[speedBin] == 0)
+    {
+      return Double.NaN;
+    }
+    return speedBinTurbulenceIntensitySums[speedBin] / speedBinCounts[speedBin];
+  }
+
+  private static int getBin(double value, double start, double binWidth, int binCount)
+  {
+    return (int) Math.max(0, Math.min(binCount - 1, Math.floor((value - start) / binWidth)));
+  }
+
+  private static void add(long[] sums, long[] summands)
+  {
+    for (int i = 0; i < sums.length; i++)
+    {
+      sums[i] += summands[i];
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import lombok.Getter;
+
+/**
+ * A condition on the average wind speed and direction of a time interval.
+ * Lower boundaries are inclusive, upper boundaries are exclusive.
+ */
+@Getter
+public class WindCondition
+{
+  /** lower speed boundary in knots. */
+  private final double lowerSpeedBoundary;
+
+  /** upper speed boundary in knots. */
+  private final double upperSpeedBoundary;
+
+  /** lower direction boundary in degrees. */
+  private final double lowerDirectionBoundary;
+
+  /** upper direction boundary in degrees. */
+  private final double upperDirectionBoundary;
+
+  public WindCondition(
+      double lowerSpeedBoundary,
+      double upperSpeedBoundary,
+      double lowerDirectionBoundary,
+      double upperDirectionBoundary)
+  {
+    if (lowerSpeedBoundary >= upperSpeedBoundary )
+    {
+      throw new IllegalArgumentException("upperSpeedBound must be larger than lowerSpeedBound");
+    }
+    if (lowerDirectionBoundary >= upperDirectionBoundary )
+    {
+      throw new IllegalArgumentException("upperDirectionBoundary must be larger than lowerDirectionBoundary");
+    }
+    this.lowerSpeedBoundary = lowerSpeedBoundary;
+    this.upperSpeedBoundary = upperSpeedBoundary;
+    this.lowerDirectionBoundary = lowerDirectionBoundary;
+    this.upperDirectionBoundary = upperDirectionBoundary;
+  }
+
+  /**
+   * Creates a condition where missing boundaries do not restrict the speed or direction.
+   */
+  public static WindCondition of(
+      Double lowerSpeedBoundary,
+      Double upperSpeedBoundary,
+      Double lowerDirectionBoundary,
+      Double upperDirectionBoundary)
+  {
+    return new WindCondition(
+        lowerSpeedBoundary == null ? 0d : lowerSpeedBoundary,
+        upperSpeedBoundary == null ? 1000d : upperSpeedBoundary,
+        lowerDirectionBoundary == null ? 0d : lowerDirectionBoundary,
+        upperDirectionBoundary == null ? 360d : upperDirectionBoundary);
+  }
+
+  /**
+   * Checks whether average values match this condition.
+   *
+   * @param averageSpeed the average speed in knots, or NaN if no data exists.
+   * @param averageDirection the average direction in degrees, or NaN if no data exists.
+   *
+   * @return true if the averages match this condition, false otherwise or if no data exists.
+   */
+  public boolean matches(double averageSpeed, double averageDirection)
+  {
+    return averageSpeed >= lowerSpeedBoundary && averageSpeed < upperSpeedBoundary
+        && averageDirection >= lowerDirectionBoundary && averageDirection < upperDirectionBoundary;
+  }
+}
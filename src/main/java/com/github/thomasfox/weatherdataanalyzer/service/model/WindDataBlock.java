@@ -0,0 +1,147 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * An immutable block of wind data points, sorted by time, stored column by column in primitive arrays.
+ * Speed, direction and gusts are stored in database units.
+ */
+@Getter
+public class WindDataBlock
+{
+  private final long[] times;
+
+  private final int[] speeds;
+
+  private final int[] directions;
+
+  private final int[] gusts;
+
+  public WindDataBlock(long[] times, int[] speeds, int[] directions, int[] gusts)
+  {
+    if (speeds.length != times.length || directions.length != times.length || gusts.length != times.length)
+    {
+      throw new IllegalArgumentException("all columns must have the same length");
+    }
+    if (times.length == 0)
+    {
+      throw new IllegalArgumentException("a block must not be empty");
+    }
+    this.times = times;
+    this.speeds = speeds;
+    this.directions = directions;
+    this.gusts = gusts;
+  }
+
+  public int size()
+  {
+    return times.length;
+  }
+
+  public long getStartTime()
+  {
+    return times[0];
+  }
+
+  public long getEndTime()
+  {
+    return times[times.length - 1];
+  }
+
+  /**
+   * Returns the index of the first data point with a time larger than or equal to the given time.
+   *
+   * @param time the time in milliseconds to search for.
+   *
+   * @return the index of the first data point at or after <code>time</code>,
+   *         or the block size if all data points are before <code>time</code>.
+   */
+  public int indexOfFirstAtOrAfter(long time)
+  {
+    int low = 0;
+    int high = times.length;
+    while (low < high)
+    {
+      int middle = (low + high) >>> 1;
+      if (times[middle] < time)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Merges the data points of two blocks, keeping the time order.
+   * Data points with equal times in both blocks are kept, the data points of this block come first.
+   *
+   * @param other the block to merge with, not null.
+   *
+   * @return a new block containing the data points of both blocks.
+   */
+  public WindDataBlock merge(WindDataBlock other)
+  {
+    int size = size() + other.size();
+    long[] mergedTimes = new long[size];
+    int[] mergedSpeeds = new int[size];
+    int[] mergedDirections = new int[size];
+    int[] mergedGusts = new int[size];
+    int i = 0;
+    int j = 0;
+    for (int k = 0; k < size; k++)
+    {
+      if (j >= other.size() || (i < size() && times[i] <= other.times[j]))
+      {
+        mergedTimes[k] = times[i];
+        mergedSpeeds[k] = speeds[i];
+        mergedDirections[k] = directions[i];
+        mergedGusts[k] = gusts[i];
+        i++;
+      }
+      else
+      {
+        mergedTimes[k] = other.times[j];
+        mergedSpeeds[k] = other.speeds[j];
+        mergedDirections[k] = other.directions[j];
+        mergedGusts[k] = other.gusts[j];
+        j++;
+      }
+    }
+    return new WindDataBlock(mergedTimes, mergedSpeeds, mergedDirections, mergedGusts);
+  }
+
+  /**
+   * Splits this block into blocks which do not exceed a maximum size.
+   *
+   * @param maxSize the maximum size of the resulting blocks, must be larger than 0.
+   *
+   * @return the resulting blocks, in time order. Contains only this block if it is not larger than maxSize.
+   */
+  public List<WindDataBlock> split(int maxSize)
+  {
+    List<WindDataBlock> result = new ArrayList<>();
+    if (size() <= maxSize)
+    {
+      result.add(this);
+      return result;
+    }
+    for (int from = 0; from < size(); from += maxSize)
+    {
+      int to = Math.min(from + maxSize, size());
+      result.add(new WindDataBlock(
+          Arrays.copyOfRange(times, from, to),
+          Arrays.copyOfRange(speeds, from, to),
+          Arrays.copyOfRange(directions, from, to),
+          Arrays.copyOfRange(gusts, from, to)));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,22 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when data points were written to the wind table by the application,
+ * so that caches and aggregates can update the affected time range.
+ */
+@Getter
+@AllArgsConstructor
+public class WindDataChangedEvent
+{
+  /** the time of the earliest written data point in milliseconds. */
+  private final long start;
+
+  /** the time of the latest written data point in milliseconds. */
+  private final long end;
+
+  /** the number of written data points. */
+  private final long count;
+}
@@ -0,0 +1,130 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+
+/**
+ * The input formats for bulk ingestion of wind data.
+ * Speed and gusts are given in 1/10 knots and direction in degrees, as stored in the database.
+ */
+public enum WindIngestionFormat
+{
+  /**
+   * Comma separated lines of time, speed, direction and gusts.
+   * The time is either milliseconds since the epoch, an ISO-8601 date time with offset,
+   * or a local date time in the format <code>yyyy-MM-dd HH:mm:ss[.SSS]</code>.
+   * An optional header line starting with "time" and empty lines are ignored.
+   */
+  CSV
+  {
+    @Override
+    public void read(InputStream input, WindSampleConsumer consumer) throws IOException
+    {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null)
+      {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || (lineNumber == 1 && line.startsWith("time")))
+        {
+          continue;
+        }
+        String[] fields = line.split(",");
+        if (fields.length != 4)
+        {
+          throw new IllegalArgumentException("line " + lineNumber + " does not have 4 fields: " + line);
+        }
+        try
+        {
+          consumer.accept(
+              parseTime(fields[0].trim()),
+              Integer.parseInt(fields[1].trim()),
+              Integer.parseInt(fields[2].trim()),
+              Integer.parseInt(fields[3].trim()));
+        }
+        catch (NumberFormatException | DateTimeParseException e)
+        {
+          throw new IllegalArgumentException("could not parse line " + lineNumber + ": " + line, e);
+        }
+      }
+    }
+  },
+
+  /**
+   * Fixed size big-endian records of 14 bytes: the time in milliseconds since the epoch (8 bytes),
+   * followed by speed, direction and gusts (2 bytes each, signed).
+   */
+  BINARY
+  {
+    @Override
+    public void read(InputStream input, WindSampleConsumer consumer) throws IOException
+    {
+      byte[] record = new byte[RECORD_SIZE];
+      ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+      InputStream bufferedInput = new BufferedInputStream(input);
+      long recordNumber = 0;
+      while (true)
+      {
+        int recordBytes = bufferedInput.readNBytes(record, 0, RECORD_SIZE);
+        if (recordBytes == 0)
+        {
+          return;
+        }
+        if (recordBytes < RECORD_SIZE)
+        {
+          throw new IllegalArgumentException("record " + recordNumber + " is incomplete");
+        }
+        consumer.accept(
+            recordBuffer.getLong(0),
+            recordBuffer.getShort(8),
+            recordBuffer.getShort(10),
+            recordBuffer.getShort(12));
+        recordNumber++;
+      }
+    }
+  };
+
+  /** size of a record in the binary format in bytes. */
+  public static final int RECORD_SIZE = 14;
+
+  private static final DateTimeFormatter LOCAL_DATE_TIME_FORMAT
+      = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSS]");
+
+  /**
+   * Reads all data points from the input and passes them to the consumer, in input order.
+   *
+   * @param input the input to read, not null. The input is not closed.
+   * @param consumer the consumer for the data points, not null.
+   *
+   * @throws IOException if the input cannot be read.
+   * @throws IllegalArgumentException if the input is malformed.
+   */
+  public abstract void read(InputStream input, WindSampleConsumer consumer) throws IOException;
+
+  static long parseTime(String time)
+  {
+    if (time.chars().allMatch(Character::isDigit))
+    {
+      return Long.parseLong(time);
+    }
+    if (time.indexOf('T') != -1)
+    {
+      return OffsetDateTime.parse(time).toInstant().toEpochMilli();
+    }
+    return LocalDateTime.parse(time, LOCAL_DATE_TIME_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+}
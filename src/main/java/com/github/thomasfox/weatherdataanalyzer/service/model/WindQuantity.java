@@ -0,0 +1,50 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+
+/**
+ * The quantities of a wind data point which can be analyzed as a time series.
+ */
+public enum WindQuantity
+{
+  /** wind speed in knots. */
+  SPEED
+  {
+    @Override
+    public double fromDatabaseValues(int speed, int direction, int gusts)
+    {
+      return speed * Wind.WIND_SPEED_IN_KNOTS_DATABASE_FACTOR;
+    }
+  },
+
+  /** direction where the wind comes from in degrees. */
+  DIRECTION
+  {
+    @Override
+    public double fromDatabaseValues(int speed, int direction, int gusts)
+    {
+      return direction;
+    }
+  },
+
+  /** wind speed gusts in knots. */
+  GUSTS
+  {
+    @Override
+    public double fromDatabaseValues(int speed, int direction, int gusts)
+    {
+      return gusts * Wind.WIND_SPEED_IN_KNOTS_DATABASE_FACTOR;
+    }
+  };
+
+  /**
+   * Extracts the value of this quantity from the raw database values of a data point.
+   *
+   * @param speed wind speed in 1/10 knots.
+   * @param direction wind direction in degrees.
+   * @param gusts wind speed gusts in 1/10 knots.
+   *
+   * @return the value of this quantity.
+   */
+  public abstract double fromDatabaseValues(int speed, int direction, int gusts);
+}
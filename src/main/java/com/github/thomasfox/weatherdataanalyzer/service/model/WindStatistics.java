@@ -0,0 +1,201 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.Wind;
+import com.github.thomasfox.weatherdataanalyzer.repository.model.WindSampleConsumer;
+
+import lombok.Getter;
+
+/**
+ * Single-pass statistics of a set of wind data points.
+ * The speed variance is accumulated with Welford's algorithm, the direction as the sum of unit vectors.
+ * Statistics of disjoint sets of data points, e.g. of blocks or of different threads,
+ * can be combined with {@link #merge(WindStatistics)}, which gives the same result as a single pass.
+ */
+public class WindStatistics implements WindSampleConsumer
+{
+  private static final double[] SIN_OF_DEGREES = new double[360];
+
+  private static final double[] COS_OF_DEGREES = new double[360];
+
+  static
+  {
+    for (int degrees = 0; degrees < 360; degrees++)
+    {
+      SIN_OF_DEGREES[degrees] = Math.sin(Math.toRadians(degrees));
+      COS_OF_DEGREES[degrees] = Math.cos(Math.toRadians(degrees));
+    }
+  }
+
+  @Getter
+  private long count;
+
+  /** mean speed in 1/10 knots. */
+  private double speedMean;
+
+  /** sum of the squared differences of the speeds from the mean, in (1/10 knots)^2. */
+  private double speedM2;
+
+  /** minimum speed in 1/10 knots, or Integer.MAX_VALUE if no data point was added. */
+  @Getter
+  private int minSpeed = Integer.MAX_VALUE;
+
+  /** maximum speed in 1/10 knots, or Integer.MIN_VALUE if no data point was added. */
+  @Getter
+  private int maxSpeed = Integer.MIN_VALUE;
+
+  /** maximum gusts in 1/10 knots, or Integer.MIN_VALUE if no data point was added. */
+  @Getter
+  private int maxGusts = Integer.MIN_VALUE;
+
+  /** sum of the sines of the directions. */
+  @Getter
+  private double directionSinSum;
+
+  /** sum of the cosines of the directions. */
+  @Getter
+  private double directionCosSum;
+
+  @Override
+  public void accept(long time, int speed, int direction, int gusts)
+  {
+    add(speed, direction, gusts);
+  }
+
+  /**
+   * Adds a data point.
+   *
+   * @param speed wind speed in 1/10 knots.
+   * @param direction direction where the wind comes from in degrees.
+   * @param gusts wind speed gusts in 1/10 knots.
+   */
+  public void add(int speed, int direction, int gusts)
+  {
+    count++;
+    double delta = speed - speedMean;
+    speedMean += delta / count;
+    speedM2 += delta * (speed - speedMean);
+    minSpeed = Math.min(minSpeed, speed);
+    maxSpeed = Math.max(maxSpeed, speed);
+    maxGusts = Math.max(maxGusts, gusts);
+    directionSinSum += sin(direction);
+    directionCosSum += cos(direction);
+  }
+
+  /**
+   * Adds the statistics of a disjoint set of data points to these statistics.
+   *
+   * @param other the statistics to add, not null. Is not changed.
+   */
+  public void merge(WindStatistics other)
+  {
+    if (other.count == 0)
+    {
+      return;
+    }
+    long mergedCount = count + other.count;
+    double delta = other.speedMean - speedMean;
+    speedM2 += other.speedM2 + delta * delta * count * other.count / mergedCount;
+    speedMean += delta * other.count / mergedCount;
+    count = mergedCount;
+    minSpeed = Math.min(minSpeed, other.minSpeed);
+    maxSpeed = Math.max(maxSpeed, other.maxSpeed);
+    maxGusts = Math.max(maxGusts, other.maxGusts);
+    directionSinSum += other.directionSinSum;
+    directionCosSum += other.directionCosSum;
+  }
+
+  /**
+   * Returns the mean speed in knots.
+   *
+   * @return the mean speed, or NaN if no data point was added.
+   */
+  public double getMeanSpeed()
+  {
+    if (count == 0)
+    {
+      return Double.NaN;
+    }
+    return speedMean * Wind.WIND_SPEED_IN_KNOTS_DATABASE_FACTOR;
+  }
+
+  /**
+   * Returns the population variance of the speed in knots^2.
+   *
+   * @return the variance, or NaN if no data point was added.
+   */
+  public double getSpeedVariance()
+  {
+    if (count == 0)
+    {
+      return Double.NaN;
+    }
+    return speedM2 / count * Wind.WIND_SPEED_IN_KNOTS_DATABASE_FACTOR * Wind.WIND_SPEED_IN_KNOTS_DATABASE_FACTOR;
+  }
+
+  public double getSpeedStandardDeviation()
+  {
+    return Math.sqrt(getSpeedVariance());
+  }
+
+  /**
+   * Returns the direction of the mean of the unit vectors of all directions.
+   *
+   * @return the mean direction in degrees in [0, 360[, or NaN if no data point was added.
+   */
+  public double getMeanDirection()
+  {
+    if (count == 0)
+    {
+      return Double.NaN;
+    }
+    return getMeanDirection(directionSinSum, directionCosSum);
+  }
+
+  /**
+   * Returns the circular variance of the direction, i.e. one minus the length of the mean unit vector.
+   *
+   * @return the circular variance between 0 (constant direction) and 1, or NaN if no data point was added.
+   */
+  public double getCircularDirectionVariance()
+  {
+    if (count == 0)
+    {
+      return Double.NaN;
+    }
+    return 1 - Math.hypot(directionSinSum, directionCosSum) / count;
+  }
+
+  /**
+   * Returns the direction of a sum of unit vectors.
+   *
+   * @param sinSum the sum of the sines of the directions.
+   * @param cosSum the sum of the cosines of the directions.
+   *
+   * @return the direction in degrees in [0, 360[.
+   */
+  public static double getMeanDirection(double sinSum, double cosSum)
+  {
+    double result = Math.toDegrees(Math.atan2(sinSum, cosSum));
+    if (result < 0)
+    {
+      result += 360;
+    }
+    return result >= 360 ? 0 : result;
+  }
+
+  /**
+   * Returns the sine of a direction in whole degrees, using a table.
+   */
+  public static double sin(int directionInDegrees)
+  {
+    return SIN_OF_DEGREES[Math.floorMod(directionInDegrees, 360)];
+  }
+
+  /**
+   * Returns the cosine of a direction in whole degrees, using a table.
+   */
+  public static double cos(int directionInDegrees)
+  {
+    return COS_OF_DEGREES[Math.floorMod(directionInDegrees, 360)];
+  }
+}
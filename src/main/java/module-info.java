@@ -4,14 +4,21 @@ open module org.github.thomasfox.weatherdataanalyzer
   requires spring.context;
   requires spring.beans;
   requires java.sql;
+  requires java.desktop;
   requires spring.boot.autoconfigure;
   requires spring.boot;
   requires spring.web;
+  requires spring.webmvc;
   requires spring.core;
   requires lombok;
   requires spring.data.jpa;
+  requires spring.tx;
+  requires spring.jdbc;
   requires java.persistence;
   requires jfreechart;
+  requires org.jfree.svg;
   requires java.net.http;
   requires commons.math3;
+  requires com.fasterxml.jackson.core;
+  requires org.slf4j;
 }
\ No newline at end of file
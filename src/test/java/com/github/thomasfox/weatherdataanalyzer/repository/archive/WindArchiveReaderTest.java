@@ -0,0 +1,56 @@
+package com.github.thomasfox.weatherdataanalyzer.repository.archive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class WindArchiveReaderTest
+{
+  @Test
+  public void testWrittenDataPointsAreReadBack() throws IOException
+  {
+    Path file = Files.createTempFile("wind", ".archive");
+    try
+    {
+      int dataPointCount = 2 * WindArchiveFormat.BLOCK_SIZE + 100;
+      try (WindArchiveWriter writer = new WindArchiveWriter(file))
+      {
+        for (int i = 0; i < dataPointCount; i++)
+        {
+          // irregular time steps, negative values, and a constant gusts column
+          writer.accept(1_500_000_000_000L + i * 1000L + (i % 3) * 7, i % 400, (i * 7) % 360 - 5, 42);
+        }
+      }
+
+      WindArchiveReader reader = new WindArchiveReader(file);
+      assertEquals(dataPointCount, reader.count());
+      assertEquals(Long.valueOf(1_500_000_000_000L), reader.getMinTime());
+
+      List<long[]> dataPoints = new ArrayList<>();
+      reader.forEach(Long.MIN_VALUE, Long.MAX_VALUE, (time, speed, direction, gusts)
+          -> dataPoints.add(new long[] {time, speed, direction, gusts}));
+      assertEquals(dataPointCount, dataPoints.size());
+      for (int i = 0; i < dataPointCount; i++)
+      {
+        assertEquals(1_500_000_000_000L + i * 1000L + (i % 3) * 7, dataPoints.get(i)[0]);
+        assertEquals(i % 400, dataPoints.get(i)[1]);
+        assertEquals((i * 7) % 360 - 5, dataPoints.get(i)[2]);
+        assertEquals(42, dataPoints.get(i)[3]);
+      }
+
+      long start = 1_500_000_000_000L + 4000L * 1000L;
+      long end = 1_500_000_000_000L + 8200L * 1000L;
+      assertEquals(4200, reader.count(start, end));
+    }
+    finally
+    {
+      Files.delete(file);
+    }
+  }
+}
@@ -1,9 +1,13 @@
 package com.github.thomasfox.weatherdataanalyzer.service;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import org.junit.jupiter.api.Test;
 
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartDataReducer;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DownsamplingMode;
+
 public class AverageServiceTest
 {
   private final AverageService averageService = new AverageService();
@@ -15,6 +19,140 @@ public class AverageServiceTest
     assertArrayEquals(averageResult, getChartData());
   }
 
+  @Test
+  public void testAverageChartDataByThree()
+  {
+    double[][] averageResult = averageService.averageChartData(getChartData(), 3);
+    assertArrayEquals(new double[] {1d, 4d, 7d, 9d}, averageResult[0], 1e-12);
+    assertArrayEquals(new double[] {5d / 3, 5d, 8d, 10d}, averageResult[1], 1e-12);
+  }
+
+  @Test
+  public void testAverageChartDataInPlace()
+  {
+    double[][] data = getChartData();
+    int size = averageService.averageChartDataInPlace(data, 10, 5);
+    assertEquals(2, size);
+    assertEquals(2d, data[0][0], 1e-12);
+    assertEquals(7d, data[0][1], 1e-12);
+  }
+
+  @Test
+  public void testAverageChartDataLogarithmically()
+  {
+    double[][] data = new double[][] {{1, 2, 3, 4, 5, 6, 7, 8}, {1, 1, 1, 1, 3, 3, 3, 3}};
+    double[][] averageResult = averageService.averageChartDataLogarithmically(data, 2, 2);
+    assertArrayEquals(new double[] {1.5d, 3.5d, 6.5d}, averageResult[0], 1e-12);
+    assertArrayEquals(new double[] {1d, 1d, 3d}, averageResult[1], 1e-12);
+    assertArrayEquals(new double[] {1, 2, 3, 4, 5, 6, 7, 8}, data[0]);
+  }
+
+  @Test
+  public void testDownsampleMean()
+  {
+    double[][] result = averageService.downsample(getChartData(), 5, DownsamplingMode.MEAN);
+    assertArrayEquals(new double[] {0.5d, 2.5d, 4.5d, 6.5d, 8.5d}, result[0], 1e-12);
+  }
+
+  @Test
+  public void testDownsampleMinMaxKeepsPeaks()
+  {
+    double[][] data = getPeakData();
+    double[][] result = averageService.downsample(data, 10, DownsamplingMode.MIN_MAX);
+    assertEquals(10, result[0].length);
+    assertContainsPoint(result, 37, 100);
+    assertContainsPoint(result, 71, -50);
+    assertIncreasing(result[0]);
+  }
+
+  @Test
+  public void testDownsampleLttbKeepsPeaksAndEnds()
+  {
+    double[][] data = getPeakData();
+    double[][] result = averageService.downsample(data, 10, DownsamplingMode.LTTB);
+    assertEquals(10, result[0].length);
+    assertContainsPoint(result, 0, 0);
+    assertContainsPoint(result, 99, 0);
+    assertContainsPoint(result, 37, 100);
+    assertContainsPoint(result, 71, -50);
+    assertIncreasing(result[0]);
+  }
+
+  @Test
+  public void testDownsampleKeepsShortData()
+  {
+    double[][] result = averageService.downsample(getChartData(), 10, DownsamplingMode.LTTB);
+    assertArrayEquals(getChartData(), result);
+  }
+
+  @Test
+  public void testChartDataReducerMinMax()
+  {
+    ChartDataReducer reducer = averageService.createReducer(0, 100, 10, DownsamplingMode.MIN_MAX);
+    double[][] data = getPeakData();
+    for (int i = 0; i < data[0].length; i++)
+    {
+      reducer.accept(data[0][i], data[1][i]);
+    }
+    double[][] result = reducer.getResult();
+    assertEquals(10, result[0].length);
+    assertContainsPoint(result, 37, 100);
+    assertContainsPoint(result, 71, -50);
+    assertIncreasing(result[0]);
+  }
+
+  @Test
+  public void testChartDataReducerMean()
+  {
+    ChartDataReducer reducer = averageService.createReducer(0, 10, 2, DownsamplingMode.MEAN);
+    double[][] data = getChartData();
+    for (int i = 0; i < data[0].length; i++)
+    {
+      reducer.accept(data[0][i], data[1][i]);
+    }
+    double[][] result = reducer.getResult();
+    assertArrayEquals(new double[] {2d, 7d}, result[0], 1e-12);
+    assertArrayEquals(new double[] {2.8d, 8d}, result[1], 1e-12);
+  }
+
+  private void assertContainsPoint(double[][] data, double x, double y)
+  {
+    for (int i = 0; i < data[0].length; i++)
+    {
+      if (data[0][i] == x && data[1][i] == y)
+      {
+        return;
+      }
+    }
+    throw new AssertionError("point (" + x + ", " + y + ") not found");
+  }
+
+  private void assertIncreasing(double[] values)
+  {
+    for (int i = 1; i < values.length; i++)
+    {
+      if (values[i] <= values[i - 1])
+      {
+        throw new AssertionError("values not increasing at index " + i);
+      }
+    }
+  }
+
+  private double[][] getPeakData()
+  {
+    double[][] result = new double[2][100];
+    for (int i = 0; i < 100; i++)
+    {
+      result[0][i] = i;
+      result[1][i] = (i % 2) * 0.1;
+    }
+    result[1][0] = 0;
+    result[1][99] = 0;
+    result[1][37] = 100;
+    result[1][71] = -50;
+    return result;
+  }
+
   private double[][] getChartData()
   {
     double[][] result = new double[2][10];
@@ -0,0 +1,245 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartCacheKey;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartImage;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataChangedEvent;
+
+public class ChartCacheServiceTest
+{
+  private final ComputeService computeService = new ComputeService(1, 1);
+
+  private final ChartCacheService chartCacheService = new ChartCacheService(null, null, computeService, 10000L);
+
+  private final AtomicInteger renderCount = new AtomicInteger();
+
+  @Test
+  public void testCachedChartIsNotRenderedAgain()
+  {
+    ResponseEntity<StreamingResponseBody> first
+        = chartCacheService.getChart(createKey(1000L, 2000L), null, () -> render(100)).join();
+    ResponseEntity<StreamingResponseBody> second
+        = chartCacheService.getChart(createKey(1000L, 2000L), null, () -> render(100)).join();
+
+    assertEquals(1, renderCount.get());
+    assertEquals(HttpStatus.OK, second.getStatusCode());
+    assertArrayEquals(getBody(first), getBody(second));
+    assertEquals(100, getBody(second).length);
+    assertNotNull(second.getHeaders().getETag());
+    assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+  }
+
+  @Test
+  public void testMatchingETagReturnsNotModified()
+  {
+    String eTag = chartCacheService.getChart(createKey(1000L, 2000L), null, () -> render(100)).join()
+        .getHeaders().getETag();
+
+    ResponseEntity<StreamingResponseBody> response
+        = chartCacheService.getChart(createKey(1000L, 2000L), "\"other\", W/" + eTag, () -> render(100)).join();
+
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    assertNull(response.getBody());
+    assertEquals(eTag, response.getHeaders().getETag());
+    assertEquals(1, renderCount.get());
+  }
+
+  @Test
+  public void testEquivalentParametersHaveEqualKeys()
+  {
+    assertEquals(
+        new ChartCacheKey("/chart", new Date(0L), new Date(1L), 0d, 5, new double[] {1d, 2d}, null),
+        new ChartCacheKey("/chart", new Date(0L), new Date(1L), -0d, 5L, new double[] {1d, 2d}, null));
+    assertFalse(new ChartCacheKey("/chart", new Date(0L), new Date(1L), 1d)
+        .equals(new ChartCacheKey("/chart", new Date(0L), new Date(1L), 2d)));
+  }
+
+  @Test
+  public void testWrittenDataEvictsOnlyOverlappingCharts()
+  {
+    chartCacheService.getChart(createKey(1000L, 2000L), null, () -> render(100)).join();
+    chartCacheService.getChart(createKey(3000L, 4000L), null, () -> render(100)).join();
+
+    chartCacheService.onWindDataChanged(new WindDataChangedEvent(2000L, 2500L, 2));
+
+    assertNull(chartCacheService.get(createKey(1000L, 2000L)));
+    assertNotNull(chartCacheService.get(createKey(3000L, 4000L)));
+  }
+
+  @Test
+  public void testWrittenDataInLastBucketEvictsBucketedChart()
+  {
+    ChartCacheKey key = ChartCacheKey.forBuckets("/test", new Date(1000L), new Date(2500L), 1000L);
+    chartCacheService.getChart(key, null, () -> render(100)).join();
+
+    chartCacheService.onWindDataChanged(new WindDataChangedEvent(3100L, 3500L, 2));
+    assertNotNull(chartCacheService.get(key));
+
+    chartCacheService.onWindDataChanged(new WindDataChangedEvent(2600L, 2900L, 2));
+    assertNull(chartCacheService.get(key));
+  }
+
+  @Test
+  public void testChartIsNotCachedIfItsRangeIsInvalidatedWhileRendering()
+  {
+    chartCacheService.getChart(createKey(1000L, 2000L), null, () ->
+    {
+      chartCacheService.invalidate(1500L, 1500L);
+      return render(100);
+    }).join();
+    chartCacheService.getChart(createKey(3000L, 4000L), null, () ->
+    {
+      chartCacheService.invalidate(1500L, 1500L);
+      return render(100);
+    }).join();
+
+    assertNull(chartCacheService.get(createKey(1000L, 2000L)));
+    assertNotNull(chartCacheService.get(createKey(3000L, 4000L)));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedChartIsEvictedWhenSizeIsExceeded()
+  {
+    int bodySize = 3000 - (int) ChartCacheService.ENTRY_OVERHEAD_BYTES;
+    chartCacheService.getChart(createKey(0L, 1L), null, () -> render(bodySize)).join();
+    chartCacheService.getChart(createKey(0L, 2L), null, () -> render(bodySize)).join();
+    chartCacheService.getChart(createKey(0L, 3L), null, () -> render(bodySize)).join();
+    chartCacheService.getChart(createKey(0L, 1L), null, () -> render(bodySize)).join();
+
+    chartCacheService.getChart(createKey(0L, 4L), null, () -> render(bodySize)).join();
+
+    assertNotNull(chartCacheService.get(createKey(0L, 1L)));
+    assertNull(chartCacheService.get(createKey(0L, 2L)));
+    assertNotNull(chartCacheService.get(createKey(0L, 3L)));
+    assertNotNull(chartCacheService.get(createKey(0L, 4L)));
+    assertTrue(chartCacheService.getUsedBytes() <= 10000L);
+  }
+
+  @Test
+  public void testConcurrentRequestsAreRenderedOnce()
+  {
+    CountDownLatch renderingStarted = new CountDownLatch(1);
+    CountDownLatch renderingAllowed = new CountDownLatch(1);
+    CompletableFuture<ResponseEntity<StreamingResponseBody>> first = chartCacheService.getChart(createKey(0L, 1L), null, () ->
+    {
+      renderingStarted.countDown();
+      await(renderingAllowed);
+      return render(100);
+    });
+    await(renderingStarted);
+    CompletableFuture<ResponseEntity<StreamingResponseBody>> second
+        = chartCacheService.getChart(createKey(0L, 1L), null, () -> render(100));
+    renderingAllowed.countDown();
+
+    assertArrayEquals(getBody(first.join()), getBody(second.join()));
+    assertEquals(1, renderCount.get());
+  }
+
+  @Test
+  public void testRenderingIsRejectedIfQueueIsFull()
+  {
+    CountDownLatch renderingAllowed = new CountDownLatch(1);
+    CompletableFuture<ResponseEntity<StreamingResponseBody>> running = chartCacheService.getChart(createKey(0L, 1L), null, () ->
+    {
+      await(renderingAllowed);
+      return render(100);
+    });
+    CompletableFuture<ResponseEntity<StreamingResponseBody>> queued
+        = chartCacheService.getChart(createKey(0L, 2L), null, () -> render(100));
+
+    ResponseEntity<StreamingResponseBody> rejected = chartCacheService.getChart(createKey(0L, 3L), null, () -> render(100)).join();
+    renderingAllowed.countDown();
+
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+    assertEquals(HttpStatus.OK, running.join().getStatusCode());
+    assertEquals(HttpStatus.OK, queued.join().getStatusCode());
+  }
+
+  @Test
+  public void testOnlyImageIsSentFromLongerBuffer()
+  {
+    byte[] buffer = {1, 2, 3, 4};
+
+    ResponseEntity<StreamingResponseBody> response = chartCacheService.getChart(
+        createKey(0L, 1L),
+        null,
+        () -> new ResponseEntity<>(new ChartImage(buffer, 2), HttpStatus.OK)).join();
+
+    assertArrayEquals(new byte[] {1, 2}, getBody(response));
+    assertEquals(2, response.getHeaders().getContentLength());
+    assertEquals(ChartCacheService.createETag(new ChartImage(new byte[] {1, 2}, 2)), response.getHeaders().getETag());
+  }
+
+  @Test
+  public void testMatches()
+  {
+    assertTrue(ChartCacheService.matches("*", "\"abc\""));
+    assertTrue(ChartCacheService.matches("\"abc\"", "\"abc\""));
+    assertFalse(ChartCacheService.matches("\"abcd\"", "\"abc\""));
+    assertFalse(ChartCacheService.matches(null, "\"abc\""));
+  }
+
+  @AfterEach
+  public void shutdown()
+  {
+    computeService.destroy();
+  }
+
+  private ChartCacheKey createKey(long from, long to)
+  {
+    return new ChartCacheKey("/chart", new Date(from), new Date(to), 5);
+  }
+
+  private ResponseEntity<ChartImage> render(int size)
+  {
+    byte[] body = new byte[size];
+    body[0] = (byte) renderCount.incrementAndGet();
+    return new ResponseEntity<>(new ChartImage(body, size), HttpStatus.OK);
+  }
+
+  private static byte[] getBody(ResponseEntity<StreamingResponseBody> response)
+  {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try
+    {
+      response.getBody().writeTo(outputStream);
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException(e);
+    }
+    return outputStream.toByteArray();
+  }
+
+  private static void await(CountDownLatch latch)
+  {
+    try
+    {
+      latch.await();
+    }
+    catch (InterruptedException e)
+    {
+      throw new RuntimeException(e);
+    }
+  }
+}
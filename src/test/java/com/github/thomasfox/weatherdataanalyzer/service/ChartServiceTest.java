@@ -0,0 +1,133 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.w3c.dom.Element;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartFormat;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartImage;
+
+public class ChartServiceTest
+{
+  private final ChartService chartService = new ChartService(300, 200, 1, 1);
+
+  @Test
+  public void testPngHasConfiguredSize() throws IOException
+  {
+    ResponseEntity<ChartImage> response = chartService.createReponseEntityFromChart(createLineChart(), ChartFormat.PNG);
+
+    assertEquals(MediaType.IMAGE_PNG, response.getHeaders().getContentType());
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(getBytes(response)));
+    assertEquals(300, image.getWidth());
+    assertEquals(200, image.getHeight());
+  }
+
+  @Test
+  public void testPooledImageDoesNotKeepPreviousChart() throws IOException
+  {
+    JFreeChart transparentChart = createLineChart();
+    transparentChart.setBackgroundPaint(null);
+    byte[] first = getBytes(chartService.createReponseEntityFromChart(transparentChart, ChartFormat.PNG));
+
+    chartService.createReponseEntityFromChart(createBarChart(), ChartFormat.PNG);
+    byte[] second = getBytes(chartService.createReponseEntityFromChart(transparentChart, ChartFormat.PNG));
+
+    assertEquals(
+        ImageIO.read(new ByteArrayInputStream(first)).getRGB(5, 5),
+        ImageIO.read(new ByteArrayInputStream(second)).getRGB(5, 5));
+  }
+
+  @Test
+  public void testHigherCompressionCreatesSmallerPng()
+  {
+    ChartImage fast = new ChartService(300, 200, 0, 1)
+        .createReponseEntityFromChart(createBarChart(), ChartFormat.PNG)
+        .getBody();
+    ChartImage small = new ChartService(300, 200, 9, 1)
+        .createReponseEntityFromChart(createBarChart(), ChartFormat.PNG)
+        .getBody();
+
+    assertTrue(small.getLength() < fast.getLength());
+  }
+
+  @Test
+  public void testSvgIsWellFormed() throws Exception
+  {
+    ResponseEntity<ChartImage> response = chartService.createReponseEntityFromChart(createBarChart(), ChartFormat.SVG);
+
+    assertEquals(MediaType.parseMediaType("image/svg+xml"), response.getHeaders().getContentType());
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    // do not load the SVG DTD from the internet
+    factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+    Element root = factory.newDocumentBuilder()
+        .parse(new ByteArrayInputStream(getBytes(response)))
+        .getDocumentElement();
+    assertEquals("svg", root.getTagName());
+    assertEquals("300", root.getAttribute("width"));
+    assertEquals("200", root.getAttribute("height"));
+    assertNotEquals(0, root.getElementsByTagName("text").getLength());
+    assertNotEquals(0, root.getElementsByTagName("linearGradient").getLength());
+  }
+
+  @Test
+  public void testSvgIsWrittenToStream() throws IOException
+  {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    chartService.writeChart(createLineChart(), ChartFormat.SVG, outputStream);
+
+    assertTrue(outputStream.toString("UTF-8").contains("<text"));
+    assertTrue(outputStream.toString("UTF-8").trim().endsWith("</svg>"));
+  }
+
+  @Test
+  public void testInvalidCompressionIsRejected()
+  {
+    assertThrows(IllegalArgumentException.class, () -> new ChartService(300, 200, 10, 1));
+  }
+
+  private byte[] getBytes(ResponseEntity<ChartImage> response)
+  {
+    return Arrays.copyOf(response.getBody().getBuffer(), response.getBody().getLength());
+  }
+
+  private JFreeChart createLineChart()
+  {
+    XYSeries series = new XYSeries("speed");
+    for (int i = 0; i < 20; i++)
+    {
+      series.add(i, Math.sin(i / 3d));
+    }
+    return ChartFactory.createXYLineChart("speed", "time [s]", "speed [kts]", new XYSeriesCollection(series));
+  }
+
+  private JFreeChart createBarChart()
+  {
+    DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+    for (int i = 0; i < 20; i++)
+    {
+      dataset.addValue(i * i, "count", Integer.valueOf(i));
+    }
+    return ChartFactory.createBarChart("histogram", "speed <kts> & more", "count", dataset);
+  }
+}
@@ -0,0 +1,80 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.ExponentialFittingFunction;
+import com.github.thomasfox.weatherdataanalyzer.service.model.FitBatchResult;
+import com.github.thomasfox.weatherdataanalyzer.service.model.FitResult;
+
+public class CurveFittingServiceTest
+{
+  private final CurveFittingService curveFittingService = new CurveFittingService(1000, 10000, 2);
+
+  @Test
+  public void testFitIsWarmStartedFromRememberedResult()
+  {
+    double[] parameters = new double[] {0.7d, -0.0002d, -0.03d, 0.3d};
+    double[] curve = createCurve(parameters);
+
+    FitResult coldResult = curveFittingService.fit(curve, "key");
+    FitResult warmResult = curveFittingService.fit(curve, "key");
+
+    assertTrue(coldResult.isConverged());
+    assertFalse(coldResult.isWarmStarted());
+    assertArrayEquals(parameters, coldResult.getParameters(), 1E-6);
+    assertTrue(warmResult.isConverged());
+    assertTrue(warmResult.isWarmStarted());
+    assertTrue(warmResult.getEvaluations() < coldResult.getEvaluations());
+    assertArrayEquals(parameters, warmResult.getParameters(), 1E-6);
+  }
+
+  @Test
+  public void testFitAllSkipsMissingCurvesAndReportsStatistics()
+  {
+    double[] firstParameters = new double[] {0.7d, -0.0002d, -0.03d, 0.3d};
+    double[] secondParameters = new double[] {0.6d, -0.0001d, -0.02d, 0.4d};
+
+    FitBatchResult result = curveFittingService.fitAll(
+        Arrays.asList(createCurve(firstParameters), null, createCurve(secondParameters)),
+        Arrays.asList(null, null, null));
+
+    List<FitResult> results = result.getResults();
+    assertEquals(3, results.size());
+    assertArrayEquals(firstParameters, results.get(0).getParameters(), 1E-6);
+    assertNull(results.get(1));
+    assertArrayEquals(secondParameters, results.get(2).getParameters(), 1E-6);
+    assertEquals(2, result.getStatistics().getFits());
+    assertEquals(2, result.getStatistics().getConverged());
+  }
+
+  @Test
+  public void testEvaluationBudget()
+  {
+    CurveFittingService limitedService = new CurveFittingService(3, 10000, 1);
+
+    FitResult result = limitedService.fit(createCurve(new double[] {0.7d, -0.0002d, -0.03d, 0.3d}), null);
+
+    assertFalse(result.isConverged());
+    assertTrue(result.getEvaluations() <= 3);
+  }
+
+  private double[] createCurve(double[] parameters)
+  {
+    ExponentialFittingFunction function = new ExponentialFittingFunction();
+    double[] result = new double[300];
+    for (int i = 0; i < result.length; i++)
+    {
+      result[i] = function.value(i, parameters);
+    }
+    return result;
+  }
+}
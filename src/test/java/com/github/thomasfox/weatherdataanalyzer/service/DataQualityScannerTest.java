@@ -0,0 +1,67 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataQualityIssue;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataQualityIssueType;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataQualityThresholds;
+
+public class DataQualityScannerTest
+{
+  /** windows of 10 seconds, stuck above 2 kts, runs of 30 seconds, jumps of more than 20 kts. */
+  private final DataQualityThresholds thresholds = new DataQualityThresholds(10000L, 2d, 30000L, 20d);
+
+  @Test
+  public void testDetectsAllIssueTypes()
+  {
+    DataQualityScanner scanner = new DataQualityScanner(0L, 10, thresholds);
+    // window 0: varying data
+    scanner.accept(1000L, 50, 10, 0);
+    scanner.accept(5000L, 60, 10, 0);
+    // windows 1 and 2: no data
+    // windows 3 to 6: constant speed 10 kts, direction 20 degrees
+    for (long time = 31000L; time <= 70000L; time += 3000L)
+    {
+      scanner.accept(time, 100, 20, 0);
+    }
+    // window 7: jump from 10 to 35 kts
+    scanner.accept(75000L, 350, 20, 0);
+    scanner.accept(78000L, 80, 20, 0);
+    // windows 8 and 9: calm, which is neither a stuck sensor nor a constant run
+    for (long time = 81000L; time <= 100000L; time += 3000L)
+    {
+      scanner.accept(time, 0, 20, 0);
+    }
+
+    List<DataQualityIssue> issues = scanner.finish();
+
+    assertEquals(5, issues.size());
+    assertIssue(issues.get(0), DataQualityIssueType.MISSING_DATA, 10000L, 30000L);
+    assertIssue(issues.get(1), DataQualityIssueType.STUCK_SENSOR, 30000L, 70000L);
+    assertIssue(issues.get(2), DataQualityIssueType.CONSTANT_RUN, 31000L, 70000L);
+    assertIssue(issues.get(3), DataQualityIssueType.IMPOSSIBLE_JUMP, 70000L, 75000L);
+    assertIssue(issues.get(4), DataQualityIssueType.IMPOSSIBLE_JUMP, 75000L, 78000L);
+  }
+
+  @Test
+  public void testEmptyRangeIsMissingData()
+  {
+    DataQualityScanner scanner = new DataQualityScanner(0L, 3, thresholds);
+
+    List<DataQualityIssue> issues = scanner.finish();
+
+    assertEquals(1, issues.size());
+    assertIssue(issues.get(0), DataQualityIssueType.MISSING_DATA, 0L, 30000L);
+  }
+
+  private void assertIssue(DataQualityIssue issue, DataQualityIssueType type, long start, long end)
+  {
+    assertEquals(type, issue.getType());
+    assertEquals(start, issue.getStart());
+    assertEquals(end, issue.getEnd());
+  }
+}
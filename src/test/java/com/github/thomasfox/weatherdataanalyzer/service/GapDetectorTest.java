@@ -0,0 +1,43 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+
+public class GapDetectorTest
+{
+  @Test
+  public void testIntervalsAndGaps()
+  {
+    GapDetector detector = new GapDetector(GapDetector.NO_TIME, 60000L);
+    detector.accept(1000L, 0, 0, 0);
+    detector.accept(3500L, 0, 0, 0);
+    detector.accept(5500L, 0, 0, 0);
+    detector.accept(65500L, 0, 0, 0);
+    detector.accept(10065500L, 0, 0, 0);
+
+    long[] counts = detector.getIntervalCounts();
+    assertEquals(2, counts[2]);
+    assertEquals(1, counts[60]);
+    assertEquals(1, counts[GapDetector.MAX_INTERVAL_SECONDS]);
+    List<TimeRange> gaps = detector.getGaps();
+    assertEquals(2, gaps.size());
+    assertEquals(new TimeRange(5500L, 65500L), gaps.get(0));
+    assertEquals(new TimeRange(65500L, 10065500L), gaps.get(1));
+  }
+
+  @Test
+  public void testPreviousTimeIsUsedForFirstInterval()
+  {
+    GapDetector detector = new GapDetector(0L, 60000L);
+    detector.accept(61000L, 0, 0, 0);
+
+    assertEquals(1, detector.getIntervalCounts()[61]);
+    assertEquals(1, detector.getGaps().size());
+    assertEquals(61000L, detector.getPreviousTime());
+  }
+}
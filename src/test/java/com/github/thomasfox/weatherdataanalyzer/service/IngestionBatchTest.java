@@ -0,0 +1,59 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataBlock;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindIngestionFormat;
+
+public class IngestionBatchTest
+{
+  @Test
+  public void testCsvIsCollectedInSortedBlocks() throws IOException
+  {
+    List<WindDataBlock> blocks = new ArrayList<>();
+    IngestionBatch batch = new IngestionBatch(2, blocks::add);
+    String csv = "time,speed,direction,gusts\n"
+        + "3000,30,3,33\n"
+        + "1000,10,1,11\n"
+        + "\n"
+        + "2000,20,2,22\n";
+
+    WindIngestionFormat.CSV.read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), batch);
+    batch.flush();
+
+    assertEquals(2, blocks.size());
+    assertArrayEquals(new long[] {1000L, 3000L}, blocks.get(0).getTimes());
+    assertArrayEquals(new int[] {10, 30}, blocks.get(0).getSpeeds());
+    assertArrayEquals(new int[] {1, 3}, blocks.get(0).getDirections());
+    assertArrayEquals(new int[] {11, 33}, blocks.get(0).getGusts());
+    assertArrayEquals(new long[] {2000L}, blocks.get(1).getTimes());
+  }
+
+  @Test
+  public void testBinary() throws IOException
+  {
+    ByteBuffer input = ByteBuffer.allocate(2 * WindIngestionFormat.RECORD_SIZE);
+    input.putLong(1000L).putShort((short) 10).putShort((short) 1).putShort((short) 11);
+    input.putLong(2000L).putShort((short) 20).putShort((short) 2).putShort((short) 22);
+    List<WindDataBlock> blocks = new ArrayList<>();
+    IngestionBatch batch = new IngestionBatch(10, blocks::add);
+
+    WindIngestionFormat.BINARY.read(new ByteArrayInputStream(input.array()), batch);
+    batch.flush();
+
+    assertEquals(1, blocks.size());
+    assertArrayEquals(new long[] {1000L, 2000L}, blocks.get(0).getTimes());
+    assertArrayEquals(new int[] {20, 2, 22}, new int[] {
+        blocks.get(0).getSpeeds()[1], blocks.get(0).getDirections()[1], blocks.get(0).getGusts()[1]});
+  }
+}
@@ -0,0 +1,45 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.BucketAverages;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindCondition;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+
+public class MatchingBucketCollectorTest
+{
+  @Test
+  public void testMatchingBucketsContainDataUpToAndIncludingTheirEnd()
+  {
+    BucketAverages bucketAverages = new BucketAverages(0L, 1000L, 3);
+    MatchingBucketCollector collector = new MatchingBucketCollector(
+        bucketAverages,
+        new WindCondition(1d, 2d, 0d, 360d),
+        WindQuantity.SPEED);
+
+    // bucket 0 averages 1.5 kts, bucket 1 averages 5 kts, bucket 2 averages 1 kt
+    collector.accept(0L, 10, 0, 0);
+    collector.accept(500L, 20, 0, 0);
+    collector.accept(1000L, 50, 0, 0);
+    collector.accept(1500L, 50, 0, 0);
+    collector.accept(2000L, 10, 0, 0);
+    collector.accept(3000L, 90, 0, 0);
+    List<TimeRangeWithData> result = collector.finish();
+
+    assertEquals(2, result.size());
+    assertEquals(0L, result.get(0).getRange().getStart());
+    assertEquals(2, result.get(0).getData().size());
+    assertEquals(500L, result.get(0).getData().getTimestamp(0));
+    assertEquals(1000L, result.get(0).getData().getTimestamp(1));
+    assertEquals(2000L, result.get(1).getRange().getStart());
+    assertEquals(1, result.get(1).getData().size());
+    assertEquals(3000L, result.get(1).getData().getTimestamp(0));
+    assertEquals(1.5d, bucketAverages.getAverageSpeed(0), 1e-9);
+    assertEquals(5d, bucketAverages.getAverageSpeed(1), 1e-9);
+  }
+}
@@ -0,0 +1,87 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.ResamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeDataSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+
+public class ResamplingServiceTest
+{
+  private final ResamplingService resamplingService = new ResamplingService();
+
+  @Test
+  public void testHold()
+  {
+    double[] result = new double[7];
+    resamplingService.resample(createData(), 0L, 1000L, ResamplingMode.HOLD, result, 1, 6);
+
+    assertArrayEquals(new double[] {0d, 2d, 2d, 4d, 4d, 4d, 10d}, result);
+  }
+
+  @Test
+  public void testLinear()
+  {
+    double[] result = new double[6];
+    resamplingService.resample(createData(), 0L, 1000L, ResamplingMode.LINEAR, result, 0, 6);
+
+    assertArrayEquals(new double[] {2d, 2d, 4d, 6d, 8d, 10d}, result, 1E-9);
+  }
+
+  @Test
+  public void testMeanWithLargerStep()
+  {
+    double[] result = new double[3];
+    resamplingService.resample(createData(), 0L, 2000L, ResamplingMode.MEAN, result, 0, 3);
+
+    assertArrayEquals(new double[] {2d, 4d, 10d}, result, 1E-9);
+  }
+
+  @Test
+  public void testMarkGaps()
+  {
+    BitSet gaps = new BitSet();
+    resamplingService.markGaps(createData(), -2000L, 1000L, 11, 2000L, gaps);
+
+    // samples at -2, -1, ..., 8 seconds; data points at 1, 2, 5 seconds
+    BitSet expected = new BitSet();
+    expected.set(0);
+    expected.set(5);
+    expected.set(6);
+    expected.set(10);
+    assertEquals(expected, gaps);
+  }
+
+  @Test
+  public void testSplitAtGaps()
+  {
+    TimeRangeWithData interval = new TimeRangeWithData(new TimeRange(-2000L, 8000L), createData());
+
+    List<TimeRangeWithData> result = resamplingService.splitAtGaps(List.of(interval), 1000L, 2000L);
+
+    assertEquals(2, result.size());
+    assertEquals(new TimeRange(-1000L, 2000L), result.get(0).getRange());
+    assertEquals(new TimeRange(5000L, 7000L), result.get(1).getRange());
+    assertSame(interval.getData(), result.get(1).getData());
+  }
+
+  /**
+   * Creates data points at 1 s (value 2), 2 s (value 4) and 5 s (value 10).
+   */
+  private TimeDataSeries createData()
+  {
+    TimeDataSeries result = new TimeDataSeries();
+    result.add(1000L, 2d);
+    result.add(2000L, 4d);
+    result.add(5000L, 10d);
+    return result;
+  }
+}
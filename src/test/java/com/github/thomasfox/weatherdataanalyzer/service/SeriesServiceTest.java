@@ -0,0 +1,128 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.time.Millisecond;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.ChartSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.DataSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.SeriesFormat;
+
+public class SeriesServiceTest
+{
+  private final SeriesService seriesService = new SeriesService(null);
+
+  @Test
+  public void testCreateSeriesFromXYDataset()
+  {
+    XYSeries series = new XYSeries("fft");
+    series.add(1d, 2d);
+    series.add(3d, 4d);
+
+    ChartSeries result = seriesService.createSeries(
+        new XYSeriesCollection(series), "title", "frequency", "amplitude");
+
+    assertEquals("title", result.getTitle());
+    assertEquals("frequency", result.getXLabel());
+    assertEquals("amplitude", result.getYLabel());
+    assertEquals(0d, result.getXOffset());
+    assertEquals(1, result.getSeries().size());
+    DataSeries dataSeries = result.getSeries().get(0);
+    assertEquals("fft", dataSeries.getName());
+    assertArrayEquals(new double[] {1d, 3d}, dataSeries.getX());
+    assertArrayEquals(new double[] {2d, 4d}, dataSeries.getY());
+    assertNull(dataSeries.getZ());
+  }
+
+  @Test
+  public void testCreateTimeSeriesSubtractsEarliestTime()
+  {
+    TimeSeries series = new TimeSeries("speed");
+    series.add(new Millisecond(new Date(1_600_000_000_000L)), 5d);
+    series.add(new Millisecond(new Date(1_600_000_001_000L)), 6d);
+
+    ChartSeries result = seriesService.createTimeSeries(new TimeSeriesCollection(series), "wind", "time", "speed");
+
+    assertEquals(1_600_000_000_000d, result.getXOffset());
+    assertArrayEquals(new double[] {0d, 1000d}, result.getSeries().get(0).getX());
+    assertArrayEquals(new double[] {5d, 6d}, result.getSeries().get(0).getY());
+  }
+
+  @Test
+  public void testCreateSeriesFromCategoryDataset()
+  {
+    DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+    dataset.addValue(3, "count", Double.valueOf(0.5d));
+    dataset.addValue(7, "count", "1.5");
+    dataset.addValue(9, "count", "other");
+
+    ChartSeries result = seriesService.createSeries(dataset, "histogram", "speed", "count");
+
+    assertEquals("speed", result.getXLabel());
+    assertArrayEquals(new double[] {0.5d, 1.5d, 2d}, result.getSeries().get(0).getX());
+    assertArrayEquals(new double[] {3d, 7d, 9d}, result.getSeries().get(0).getY());
+  }
+
+  @Test
+  public void testWriteJson() throws IOException
+  {
+    ChartSeries series = new ChartSeries(
+        "title",
+        "x",
+        "y",
+        0d,
+        List.of(new DataSeries("a", new double[] {1d, 2d}, new double[] {3d, Double.NaN}, null)));
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    seriesService.write(series, SeriesFormat.JSON, outputStream);
+
+    assertEquals(
+        "{\"title\":\"title\",\"xLabel\":\"x\",\"yLabel\":\"y\",\"xOffset\":0.0,"
+            + "\"series\":[{\"name\":\"a\",\"x\":[1.0,2.0],\"y\":[3.0,null]}]}",
+        outputStream.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testWriteBinary() throws IOException
+  {
+    ChartSeries series = new ChartSeries(
+        "title",
+        "x",
+        "y",
+        10d,
+        List.of(new DataSeries("ab", new double[] {1d, 2d}, new double[] {3d, 4d}, new double[] {5d, 6d})));
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    seriesService.write(series, SeriesFormat.BINARY, outputStream);
+
+    ByteBuffer buffer = ByteBuffer.wrap(outputStream.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+    assertEquals(8 + 4 + 4 + 2 + 4 + 4 + 6 * 4, buffer.remaining());
+    assertEquals(10d, buffer.getDouble());
+    assertEquals(1, buffer.getInt());
+    assertEquals(2, buffer.getInt());
+    assertEquals('a', buffer.get());
+    assertEquals('b', buffer.get());
+    assertEquals(2, buffer.getInt());
+    assertEquals(3, buffer.getInt());
+    for (float expected : new float[] {1f, 2f, 3f, 4f, 5f, 6f})
+    {
+      assertEquals(expected, buffer.getFloat());
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.FftWindow;
+import com.github.thomasfox.weatherdataanalyzer.service.model.RealFft;
+import com.github.thomasfox.weatherdataanalyzer.service.model.Spectrogram;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+
+public class SpectrogramCollectorTest
+{
+  @Test
+  public void testFrequencyChangeIsResolvedInTime()
+  {
+    // 2048 seconds with a period of 16 seconds followed by 2048 seconds with a period of 8 seconds,
+    // one data point every two seconds
+    long end = 4095 * 1000L;
+    SpectrogramCollector collector = new SpectrogramCollector(
+        WindQuantity.SPEED,
+        0L,
+        end,
+        2,
+        65,
+        new RealFft(128),
+        FftWindow.HANN.getCoefficients(128),
+        64);
+    for (long second = 0; second < 4096; second += 2)
+    {
+      int period = second < 2048 ? 16 : 8;
+      int speed = (int) Math.round(100 + 50 * Math.sin(2 * Math.PI * second / period));
+      collector.accept(second * 1000L, speed, 0, 0);
+    }
+
+    Spectrogram result = collector.finish();
+
+    assertEquals(2, result.getColumnCount());
+    assertEquals(65, result.getFrequencyCount());
+    // (4096 - 128) / 64 + 1 segments, divided by the position of their centers
+    assertEquals(31, result.getSegmentCounts()[0]);
+    assertEquals(32, result.getSegmentCounts()[1]);
+    assertEquals(8, getPeak(result.getDensity()[0]));
+    assertEquals(16, getPeak(result.getDensity()[1]));
+    assertEquals(end / 2, result.getColumnStart(1));
+  }
+
+  private int getPeak(double[] density)
+  {
+    int peak = 0;
+    for (int i = 1; i < density.length; i++)
+    {
+      if (density[i] > density[peak])
+      {
+        peak = i;
+      }
+    }
+    return peak;
+  }
+}
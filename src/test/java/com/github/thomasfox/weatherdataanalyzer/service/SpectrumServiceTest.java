@@ -0,0 +1,45 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeDataSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+
+public class SpectrumServiceTest
+{
+  private final SpectrumService spectrumService = new SpectrumService(new ResamplingService());
+
+  @Test
+  public void testSplitIntoSegments()
+  {
+    long maxMillis = SpectrumService.MAX_TRANSFORM_SIZE * 1000L;
+    TimeDataSeries data = new TimeDataSeries();
+    TimeRangeWithData shortInterval = new TimeRangeWithData(new TimeRange(0L, maxMillis), data);
+    TimeRangeWithData longInterval = new TimeRangeWithData(new TimeRange(0L, 2 * maxMillis + 1000L), data);
+
+    List<TimeRangeWithData> result = spectrumService.splitIntoSegments(List.of(shortInterval, longInterval));
+
+    assertEquals(4, result.size());
+    assertSame(shortInterval, result.get(0));
+    assertEquals(0L, result.get(1).getRange().getStart());
+    assertEquals(2 * maxMillis + 1000L, result.get(3).getRange().getEnd());
+    for (int i = 1; i < result.size(); i++)
+    {
+      TimeRange range = result.get(i).getRange();
+      assertSame(data, result.get(i).getData());
+      assertTrue(range.getDurationMillis() <= maxMillis);
+      SpectrumService.calculateTransformSize(range.getStart(), range.getEnd());
+      if (i > 1)
+      {
+        assertEquals(result.get(i - 1).getRange().getEnd(), range.getStart());
+      }
+    }
+  }
+}
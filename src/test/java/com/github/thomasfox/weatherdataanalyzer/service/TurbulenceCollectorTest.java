@@ -0,0 +1,53 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.TurbulenceStatistics;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindCondition;
+
+public class TurbulenceCollectorTest
+{
+  @Test
+  public void testTurbulenceAndGustFactorPerBucket()
+  {
+    TurbulenceCollector collector = new TurbulenceCollector(0L, 1000L, WindCondition.of(null, null, null, null));
+    // bucket 0: speeds 8 and 12 kts, mean 10, standard deviation 2, gusts 15 kts
+    collector.accept(500L, 80, 10, 100);
+    collector.accept(1000L, 120, 350, 150);
+    // bucket 1: a single data point is not enough for a standard deviation
+    collector.accept(1500L, 100, 0, 100);
+    // bucket 3: speeds 4 and 4 kts, no gust data
+    collector.accept(3500L, 40, 180, 0);
+    collector.accept(3600L, 40, 180, 0);
+
+    TurbulenceStatistics result = collector.finish();
+
+    assertEquals(2, result.getBucketCount());
+    assertEquals(1, result.getGustBucketCount());
+    assertEquals(0.1d, result.getMeanTurbulenceIntensity(), 1e-9);
+    assertEquals(1.5d, result.getMeanGustFactor(), 1e-9);
+    assertEquals(1, result.getTurbulenceIntensityHistogram()[0]);
+    assertEquals(1, result.getTurbulenceIntensityHistogram()[20]);
+    assertEquals(1, result.getGustFactorHistogram()[10]);
+    assertEquals(0.2d, result.getMeanTurbulenceIntensity(10), 1e-9);
+    assertEquals(0d, result.getMeanTurbulenceIntensity(4), 1e-9);
+  }
+
+  @Test
+  public void testConditionFiltersBuckets()
+  {
+    TurbulenceCollector collector = new TurbulenceCollector(0L, 1000L, WindCondition.of(5d, null, null, 90d));
+    collector.accept(500L, 80, 10, 100);
+    collector.accept(1000L, 120, 350, 150);
+    collector.accept(1500L, 80, 180, 100);
+    collector.accept(2000L, 120, 180, 150);
+    collector.accept(2500L, 30, 10, 100);
+    collector.accept(3000L, 50, 10, 150);
+
+    TurbulenceStatistics result = collector.finish();
+
+    assertEquals(1, result.getBucketCount());
+  }
+}
@@ -0,0 +1,105 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.FftWindow;
+import com.github.thomasfox.weatherdataanalyzer.service.model.PowerSpectralDensity;
+import com.github.thomasfox.weatherdataanalyzer.service.model.RealFft;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ResamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeDataSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindQuantity;
+
+public class WelchCollectorTest
+{
+  private final WelchService welchService = new WelchService(new ResamplingService(), null, 1);
+
+  @Test
+  public void testHoldResamplingMatchesWelchService()
+  {
+    assertStreamingMatchesWelchService(ResamplingMode.HOLD, 0L, 30);
+  }
+
+  @Test
+  public void testLinearResamplingMatchesWelchService()
+  {
+    assertStreamingMatchesWelchService(ResamplingMode.LINEAR, 0L, 30);
+  }
+
+  @Test
+  public void testMeanResamplingMatchesWelchService()
+  {
+    assertStreamingMatchesWelchService(ResamplingMode.MEAN, 0L, 30);
+  }
+
+  @Test
+  public void testGapsMatchWelchService()
+  {
+    // the data points are up to 2.099 seconds apart, so there are a few short gaps
+    assertStreamingMatchesWelchService(ResamplingMode.HOLD, 2090L, 25);
+  }
+
+  @Test
+  public void testNoData()
+  {
+    WelchCollector collector = createCollector(0L, 1000_000L, ResamplingMode.HOLD, 0L);
+
+    PowerSpectralDensity result = collector.finish();
+
+    assertEquals(0, result.getSegmentCount());
+    assertEquals(33, result.size());
+  }
+
+  private void assertStreamingMatchesWelchService(ResamplingMode resampling, long maxGapMillis, int segmentCount)
+  {
+    // irregular data points, some of them within the same second, starting after the first sample
+    long start = 1_000_000L;
+    long end = start + 1000 * 1000L;
+    WelchCollector collector = createCollector(start, end, resampling, maxGapMillis);
+    TimeDataSeries data = new TimeDataSeries();
+    long time = start + 300L;
+    for (int i = 0; time <= end; i++)
+    {
+      int direction = (int) Math.round(180 + 90 * Math.sin(2 * Math.PI * i / 10) + (i * 7919) % 13);
+      collector.accept(time, 0, direction, 0);
+      data.add(time, direction);
+      time += 400L + (i * 104729) % 1700;
+    }
+
+    PowerSpectralDensity streamed = collector.finish();
+    PowerSpectralDensity expected = welchService.estimate(
+        List.of(new TimeRangeWithData(new TimeRange(start, end), data)),
+        64,
+        0.5d,
+        FftWindow.HANN,
+        resampling,
+        1000L,
+        maxGapMillis);
+
+    assertEquals(expected.getSegmentCount(), streamed.getSegmentCount());
+    assertEquals(segmentCount, streamed.getSegmentCount());
+    for (int k = 0; k < expected.size(); k++)
+    {
+      assertEquals(expected.getDensity()[k], streamed.getDensity()[k], 1E-9 * expected.getDensity()[k] + 1E-12);
+    }
+  }
+
+  private WelchCollector createCollector(long start, long end, ResamplingMode resampling, long maxGapMillis)
+  {
+    return new WelchCollector(
+        WindQuantity.DIRECTION,
+        start,
+        end,
+        1000L,
+        maxGapMillis,
+        resampling,
+        new RealFft(64),
+        FftWindow.HANN.getCoefficients(64),
+        32);
+  }
+}
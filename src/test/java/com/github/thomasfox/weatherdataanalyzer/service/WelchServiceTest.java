@@ -0,0 +1,80 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.service.model.FftWindow;
+import com.github.thomasfox.weatherdataanalyzer.service.model.PowerSpectralDensity;
+import com.github.thomasfox.weatherdataanalyzer.service.model.ResamplingMode;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeDataSeries;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRange;
+import com.github.thomasfox.weatherdataanalyzer.service.model.TimeRangeWithData;
+
+public class WelchServiceTest
+{
+  private final WelchService welchService = new WelchService(new ResamplingService(), null, 2);
+
+  @Test
+  public void testSineWaveInIntervalsOfDifferentLength()
+  {
+    List<TimeRangeWithData> intervals = List.of(
+        createSineWave(0L, 1000, 2d),
+        createSineWave(10_000_000L, 3000, 2d),
+        createSineWave(20_000_000L, 100, 2d));
+
+    PowerSpectralDensity result = welchService.estimate(
+        intervals,
+        256,
+        0.5d,
+        FftWindow.HANN,
+        ResamplingMode.HOLD,
+        1000L,
+        0L);
+
+    assertEquals(129, result.size());
+    // 1000 samples contain 6 segments, 3000 samples 22 segments, 100 samples none
+    assertEquals(6 + 22, result.getSegmentCount());
+    int peak = 0;
+    double totalPower = 0d;
+    for (int k = 0; k < result.size(); k++)
+    {
+      if (result.getDensity()[k] > result.getDensity()[peak])
+      {
+        peak = k;
+      }
+      totalPower += result.getDensity()[k] / result.getSegmentLength();
+    }
+    assertEquals(1d / 16, result.getFrequency(peak), 1E-9);
+    // the variance of a sine wave with amplitude 2 is 2
+    assertEquals(2d, totalPower, 0.01d);
+  }
+
+  @Test
+  public void testNoIntervalLongEnough()
+  {
+    PowerSpectralDensity result = welchService.estimate(
+        List.of(createSineWave(0L, 100, 1d)),
+        256,
+        0d,
+        FftWindow.RECTANGULAR,
+        ResamplingMode.HOLD,
+        1000L,
+        0L);
+
+    assertEquals(0, result.getSegmentCount());
+    assertEquals(129, result.size());
+  }
+
+  private TimeRangeWithData createSineWave(long start, int seconds, double amplitude)
+  {
+    TimeDataSeries data = new TimeDataSeries();
+    for (int i = 0; i < seconds; i++)
+    {
+      data.add(start + i * 1000L, 10d + amplitude * Math.sin(2 * Math.PI * i / 16));
+    }
+    return new TimeRangeWithData(new TimeRange(start, start + (seconds - 1) * 1000L), data);
+  }
+}
@@ -0,0 +1,64 @@
+package com.github.thomasfox.weatherdataanalyzer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount;
+import com.github.thomasfox.weatherdataanalyzer.service.model.WindDataBlock;
+
+public class WindDataStoreTest
+{
+  private final WindDataStore windDataStore = new WindDataStore(null, null, true);
+
+  @Test
+  public void testAddOutOfOrderKeepsTimeOrder()
+  {
+    windDataStore.add(createBlock(1000L, 2000L, 3000L));
+    windDataStore.add(createBlock(4000L, 5000L));
+    windDataStore.add(createBlock(0L, 2500L, 6000L));
+
+    List<Long> times = new ArrayList<>();
+    windDataStore.forEach(0L, 10000L, (time, speed, direction, gusts) -> times.add(time));
+    assertEquals(List.of(0L, 1000L, 2000L, 2500L, 3000L, 4000L, 5000L, 6000L), times);
+  }
+
+  @Test
+  public void testRangeIsHalfOpen()
+  {
+    windDataStore.add(createBlock(1000L, 2000L, 3000L, 4000L));
+
+    assertEquals(2L, windDataStore.count(2000L, 4000L));
+    assertEquals(25d, windDataStore.getAggregate(2000L, 4000L).getAverageSpeed());
+    assertEquals(null, windDataStore.getAggregate(5000L, 6000L).getAverageSpeed());
+  }
+
+  @Test
+  public void testSpeedHistogram()
+  {
+    windDataStore.add(createBlock(1000L, 2000L, 3000L, 4000L));
+    windDataStore.add(createBlock(1500L));
+
+    assertEquals(
+        List.of(new IntValueCount(10, 1), new IntValueCount(15, 1), new IntValueCount(20, 1)),
+        windDataStore.getSpeedHistogram(1000L, 3000L));
+  }
+
+  /**
+   * Creates a block where the speed is the time in seconds times 10, and the direction is the time in seconds.
+   */
+  private WindDataBlock createBlock(long... times)
+  {
+    int[] speeds = new int[times.length];
+    int[] directions = new int[times.length];
+    for (int i = 0; i < times.length; i++)
+    {
+      speeds[i] = (int) (times[i] / 100);
+      directions[i] = (int) (times[i] / 1000);
+    }
+    return new WindDataBlock(times, speeds, directions, speeds);
+  }
+}
@@ -0,0 +1,62 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+
+public class BucketConditionIndexTest
+{
+  @Test
+  public void testMatchingBucketsForFullAndPartialBands()
+  {
+    BucketAverages averages = new BucketAverages(0L, 1000L, 5);
+    // average speeds 5.0, 5.5, 12.0, no data, 5.9 kts; directions 100, 275, 100, -, 359 degrees
+    averages.addSample(0, 50, 100);
+    averages.addSample(1, 50, 265);
+    averages.addSample(1, 60, 285);
+    averages.addSample(2, 120, 100);
+    averages.addSample(4, 59, 359);
+    BucketConditionIndex index = BucketConditionIndex.create(averages);
+
+    BitSet matching = index.getMatchingBuckets(0, 5, new WindCondition(5.5d, 20d, 0d, 360d));
+    assertEquals(bitSet(1, 2, 4), matching);
+
+    matching = index.getMatchingBuckets(0, 5, new WindCondition(0d, 1000d, 95d, 280d));
+    assertEquals(bitSet(0, 1, 2), matching);
+
+    // buckets before the origin and after the end of the index never match
+    matching = index.getMatchingBuckets(-2, 4, new WindCondition(0d, 1000d, 0d, 360d));
+    assertEquals(bitSet(2, 3), matching);
+    matching = index.getMatchingBuckets(4, 3, new WindCondition(0d, 1000d, 0d, 360d));
+    assertEquals(bitSet(0), matching);
+  }
+
+  @Test
+  public void testUpdateReplacesAndAppendsBuckets()
+  {
+    BucketAverages averages = new BucketAverages(0L, 1000L, 2);
+    averages.addSample(0, 50, 100);
+    averages.addSample(1, 50, 100);
+    BucketConditionIndex index = BucketConditionIndex.create(averages);
+
+    BucketAverages update = new BucketAverages(1000L, 1000L, 2);
+    update.addSample(0, 150, 100);
+    update.addSample(1, 50, 100);
+    index = index.update(update);
+
+    assertEquals(3, index.getSize());
+    assertEquals(bitSet(0, 2), index.getMatchingBuckets(0, 3, new WindCondition(0d, 10d, 0d, 360d)));
+  }
+
+  private static BitSet bitSet(int... bits)
+  {
+    BitSet result = new BitSet();
+    for (int bit : bits)
+    {
+      result.set(bit);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,67 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+import org.junit.jupiter.api.Test;
+
+public class RealFftTest
+{
+  @Test
+  public void testPowerSpectrumEqualsComplexTransform()
+  {
+    for (int size : new int[] {2, 4, 8, 256})
+    {
+      Random random = new Random(size);
+      double[] input = new double[size];
+      for (int i = 0; i < size; i++)
+      {
+        input[i] = random.nextGaussian();
+      }
+      Complex[] expected = new FastFourierTransformer(DftNormalization.STANDARD)
+          .transform(input, TransformType.FORWARD);
+
+      RealFft fft = new RealFft(size);
+      double[] power = new double[size / 2 + 1];
+      fft.powerSpectrum(input, fft.createBuffer(), power);
+
+      for (int k = 0; k <= size / 2; k++)
+      {
+        double expectedPower = expected[k].abs() * expected[k].abs();
+        assertEquals(expectedPower, power[k], 1E-9 * (1 + expectedPower), "size " + size + ", frequency " + k);
+      }
+    }
+  }
+
+  @Test
+  public void testTransformEqualsComplexTransform()
+  {
+    for (int size : new int[] {2, 4, 8, 256})
+    {
+      Random random = new Random(size);
+      double[] input = new double[size];
+      for (int i = 0; i < size; i++)
+      {
+        input[i] = random.nextGaussian();
+      }
+      Complex[] expected = new FastFourierTransformer(DftNormalization.STANDARD)
+          .transform(input, TransformType.FORWARD);
+
+      RealFft fft = new RealFft(size);
+      double[] real = new double[size / 2 + 1];
+      double[] imaginary = new double[size / 2 + 1];
+      fft.transform(input, fft.createBuffer(), real, imaginary);
+
+      for (int k = 0; k <= size / 2; k++)
+      {
+        assertEquals(expected[k].getReal(), real[k], 1E-9, "size " + size + ", frequency " + k);
+        assertEquals(expected[k].getImaginary(), imaginary[k], 1E-9, "size " + size + ", frequency " + k);
+      }
+    }
+  }
+}
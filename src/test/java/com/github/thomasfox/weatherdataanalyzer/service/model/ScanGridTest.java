@@ -0,0 +1,45 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class ScanGridTest
+{
+  @Test
+  public void testCellsOfSpeedBandsAndDirectionSectors()
+  {
+    ScanGrid grid = new ScanGrid(5d, 20d, 5d, 20d);
+
+    assertEquals(3, grid.getSpeedCellCount());
+    assertEquals(18, grid.getDirectionCellCount());
+    assertEquals(54, grid.getCellCount());
+    assertEquals(0, grid.getCell(5d, 0d));
+    assertEquals(17, grid.getCell(9.9d, 359d));
+    assertEquals(18 + 2, grid.getCell(10d, 45d));
+    assertEquals(-1, grid.getCell(4.9d, 45d));
+    assertEquals(-1, grid.getCell(20d, 45d));
+    assertEquals(-1, grid.getCell(Double.NaN, Double.NaN));
+
+    int cell = grid.getCell(17d, 200d);
+    assertEquals(15d, grid.getCellSpeedFrom(cell));
+    assertEquals(200d, grid.getCellDirectionFrom(cell));
+  }
+
+  @Test
+  public void testSingleSpeedBand()
+  {
+    ScanGrid grid = new ScanGrid(null, null, null, 20d);
+
+    assertEquals(1, grid.getSpeedCellCount());
+    assertEquals(18, grid.getCellCount());
+    assertEquals(3, grid.getCell(45d, 60d));
+  }
+
+  @Test
+  public void testSpeedBandsRequireUpperBoundary()
+  {
+    assertThrows(IllegalArgumentException.class, () -> new ScanGrid(null, null, 2d, null));
+  }
+}
@@ -0,0 +1,94 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+import org.junit.jupiter.api.Test;
+
+public class SpectrumTest
+{
+  private static final double DELTA = 1E-9;
+
+  @Test
+  public void testAutocorrelationEqualsDirectCalculation()
+  {
+    double[] samples = createRandomSamples(100);
+
+    double[] result = new Spectrum(samples, null, 128).getAutocorrelation(150);
+
+    assertEquals(100, result.length);
+    double mean = 0d;
+    for (double sample : samples)
+    {
+      mean += sample / samples.length;
+    }
+    double variance = 0d;
+    for (double sample : samples)
+    {
+      variance += (sample - mean) * (sample - mean);
+    }
+    for (int lag = 0; lag < result.length; lag++)
+    {
+      double covariance = 0d;
+      for (int i = 0; i + lag < samples.length; i++)
+      {
+        covariance += (samples[i] - mean) * (samples[i + lag] - mean);
+      }
+      assertEquals(covariance / variance, result[lag], DELTA);
+    }
+  }
+
+  @Test
+  public void testAutocorrelationOfConstantUnitVectors()
+  {
+    double[] cosines = new double[] {0d, 0d, 0d};
+    double[] sines = new double[] {1d, 1d, 1d};
+
+    double[] result = new Spectrum(cosines, sines, 4).getAutocorrelation(2);
+
+    assertEquals(3, result.length);
+    assertEquals(0d, result[0], DELTA);
+  }
+
+  @Test
+  public void testAmplitudesEqualTransformOfSamplesPaddedWithMean()
+  {
+    double[] samples = createRandomSamples(50);
+    double[] padded = new double[64];
+    double mean = 0d;
+    for (double sample : samples)
+    {
+      mean += sample / samples.length;
+    }
+    for (int i = 0; i < padded.length; i++)
+    {
+      padded[i] = i < samples.length ? samples[i] : mean;
+    }
+    Complex[] expected = new FastFourierTransformer(DftNormalization.STANDARD)
+        .transform(padded, TransformType.FORWARD);
+
+    double[] result = new Spectrum(samples, null, 64).getAmplitudes();
+
+    assertEquals(64, result.length);
+    for (int i = 0; i < result.length; i++)
+    {
+      assertEquals(expected[i].abs(), result[i], DELTA);
+    }
+  }
+
+  private double[] createRandomSamples(int count)
+  {
+    Random random = new Random(42);
+    double[] result = new double[count];
+    for (int i = 0; i < count; i++)
+    {
+      result[i] = 10d + random.nextGaussian();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,39 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.thomasfox.weatherdataanalyzer.repository.model.IntValueCount;
+
+public class SpeedDirectionHistogramTest
+{
+  @Test
+  public void testHistogramsAndWindRose()
+  {
+    SpeedDirectionHistogram histogram = new SpeedDirectionHistogram();
+    histogram.addSample(30, 5);
+    histogram.addSample(30, 359);
+    histogram.addSample(120, 15);
+    histogram.add(120, 9, 2);
+
+    List<IntValueCount> speedHistogram = histogram.getSpeedHistogram();
+    assertEquals(2, speedHistogram.size());
+    assertEquals(new IntValueCount(30, 2), speedHistogram.get(0));
+    assertEquals(new IntValueCount(120, 3), speedHistogram.get(1));
+
+    List<IntValueCount> directionHistogram = histogram.getDirectionHistogram();
+    assertEquals(4, directionHistogram.size());
+    assertEquals(new IntValueCount(0, 1), directionHistogram.get(0));
+    assertEquals(new IntValueCount(10, 1), directionHistogram.get(1));
+    assertEquals(new IntValueCount(90, 2), directionHistogram.get(2));
+    assertEquals(new IntValueCount(350, 1), directionHistogram.get(3));
+
+    long[][] windRose = histogram.getWindRose(90, new double[] {10d});
+    assertArrayEquals(new long[] {1, 0, 0, 1}, windRose[0]);
+    assertArrayEquals(new long[] {1, 2, 0, 0}, windRose[1]);
+  }
+}
@@ -0,0 +1,81 @@
+package com.github.thomasfox.weatherdataanalyzer.service.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class WindStatisticsTest
+{
+  @Test
+  public void testSinglePass()
+  {
+    WindStatistics statistics = new WindStatistics();
+    statistics.add(100, 10, 120);
+    statistics.add(120, 350, 150);
+    statistics.add(140, 0, 130);
+
+    assertEquals(3, statistics.getCount());
+    assertEquals(12d, statistics.getMeanSpeed(), 1e-9);
+    assertEquals(8d / 3, statistics.getSpeedVariance(), 1e-9);
+    assertEquals(100, statistics.getMinSpeed());
+    assertEquals(140, statistics.getMaxSpeed());
+    assertEquals(150, statistics.getMaxGusts());
+    assertEquals(0d, statistics.getMeanDirection(), 1e-9);
+    assertTrue(statistics.getCircularDirectionVariance() < 0.02d);
+  }
+
+  @Test
+  public void testMergeEqualsSinglePass()
+  {
+    Random random = new Random(17);
+    WindStatistics singlePass = new WindStatistics();
+    WindStatistics[] parts = new WindStatistics[] {new WindStatistics(), new WindStatistics(), new WindStatistics()};
+    for (int i = 0; i < 1000; i++)
+    {
+      int speed = 50 + random.nextInt(200);
+      int direction = 300 + random.nextInt(120);
+      int gusts = speed + random.nextInt(50);
+      singlePass.add(speed, direction, gusts);
+      parts[i % 7 == 0 ? 0 : (i < 500 ? 1 : 2)].add(speed, direction, gusts);
+    }
+    WindStatistics merged = new WindStatistics();
+    for (WindStatistics part : parts)
+    {
+      merged.merge(part);
+    }
+    merged.merge(new WindStatistics());
+
+    assertEquals(singlePass.getCount(), merged.getCount());
+    assertEquals(singlePass.getMeanSpeed(), merged.getMeanSpeed(), 1e-9);
+    assertEquals(singlePass.getSpeedVariance(), merged.getSpeedVariance(), 1e-9);
+    assertEquals(singlePass.getMinSpeed(), merged.getMinSpeed());
+    assertEquals(singlePass.getMaxSpeed(), merged.getMaxSpeed());
+    assertEquals(singlePass.getMaxGusts(), merged.getMaxGusts());
+    assertEquals(singlePass.getMeanDirection(), merged.getMeanDirection(), 1e-9);
+    assertEquals(singlePass.getCircularDirectionVariance(), merged.getCircularDirectionVariance(), 1e-9);
+  }
+
+  @Test
+  public void testOppositeDirections()
+  {
+    WindStatistics statistics = new WindStatistics();
+    statistics.add(100, 90, 100);
+    statistics.add(100, 270, 100);
+
+    assertEquals(1d, statistics.getCircularDirectionVariance(), 1e-9);
+    assertEquals(0d, statistics.getSpeedVariance(), 1e-9);
+  }
+
+  @Test
+  public void testEmpty()
+  {
+    WindStatistics statistics = new WindStatistics();
+
+    assertEquals(0, statistics.getCount());
+    assertTrue(Double.isNaN(statistics.getMeanSpeed()));
+    assertTrue(Double.isNaN(statistics.getMeanDirection()));
+  }
+}